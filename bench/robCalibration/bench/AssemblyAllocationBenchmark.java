@@ -0,0 +1,117 @@
+package robCalibration.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import robCalibration.BlockAssembler;
+import robCalibration.NormalEquationAccumulator;
+
+/**
+ * Measures the heap allocation of the primitive block assembly per measurement.
+ * Uses the allocation counter of the current thread, so the JVM has to support
+ * com.sun.management.ThreadMXBean (HotSpot does).
+ *
+ * Usage: AssemblyAllocationBenchmark [measurements]
+ * The process exits with status 1 if the measured loops allocate per measurement. Every heap allocation
+ * takes at least 16 bytes, so less than one byte per measurement means the constant noise of the
+ * allocation counter and no allocation by the assembly itself.
+ */
+public class AssemblyAllocationBenchmark {
+
+	public static void main(String[] args) {
+		int measurements = args.length>0 ? Integer.parseInt(args[0]) : 1000000;
+
+		// deterministic synthetic poses, generated before the measurement starts
+		double[] robot = new double[measurements*BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[measurements*BlockAssembler.POSE_SIZE];
+		Random random = new Random(42);
+		for(int i=0;i<measurements;i++) {
+			randomPose(random, robot, i*BlockAssembler.POSE_SIZE);
+			randomPose(random, tracker, i*BlockAssembler.POSE_SIZE);
+		}
+
+		double[] a = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
+		double[] b = new double[BlockAssembler.ROWS];
+		NormalEquationAccumulator accumulator = new NormalEquationAccumulator();
+
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		// warm up, lets the JIT compile the loops
+		for(int round=0;round<5;round++) {
+			assemble(robot, tracker, measurements, a, b);
+			accumulate(robot, tracker, measurements, accumulator);
+		}
+
+		// cost of reading the counter itself
+		long probe = bean.getThreadAllocatedBytes(threadId);
+		long overhead = bean.getThreadAllocatedBytes(threadId)-probe;
+
+		long before = bean.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		double checksum = assemble(robot, tracker, measurements, a, b);
+		long assembleNanos = System.nanoTime()-start;
+		long assembleBytes = bean.getThreadAllocatedBytes(threadId)-before-overhead;
+
+		before = bean.getThreadAllocatedBytes(threadId);
+		start = System.nanoTime();
+		accumulate(robot, tracker, measurements, accumulator);
+		long accumulateNanos = System.nanoTime()-start;
+		long accumulateBytes = bean.getThreadAllocatedBytes(threadId)-before-overhead;
+
+		System.out.println("[AssemblyAllocationBenchmark] measurements: "+measurements+", checksum: "+checksum);
+		System.out.println("[AssemblyAllocationBenchmark] assembleA/assembleB: "
+				+((double)assembleBytes/measurements)+" bytes/measurement, "
+				+((double)assembleNanos/measurements)+" ns/measurement");
+		System.out.println("[AssemblyAllocationBenchmark] NormalEquationAccumulator.add: "
+				+((double)accumulateBytes/measurements)+" bytes/measurement, "
+				+((double)accumulateNanos/measurements)+" ns/measurement");
+
+		if(assembleBytes>=measurements || accumulateBytes>=measurements) {
+			System.err.println("[AssemblyAllocationBenchmark] allocation detected");
+			System.exit(1);
+		}
+	}
+
+	private static double assemble(double[] robot, double[] tracker, int measurements, double[] a, double[] b) {
+		double checksum = 0;
+		for(int i=0;i<measurements;i++) {
+			BlockAssembler.assembleA(robot, i*BlockAssembler.POSE_SIZE, tracker, i*BlockAssembler.POSE_SIZE, a, 0);
+			BlockAssembler.assembleB(robot, i*BlockAssembler.POSE_SIZE, b, 0);
+			checksum += a[i%a.length]+b[9];
+		}
+		return checksum;
+	}
+
+	private static void accumulate(double[] robot, double[] tracker, int measurements, NormalEquationAccumulator accumulator) {
+		accumulator.reset();
+		for(int i=0;i<measurements;i++) {
+			accumulator.add(robot, i*BlockAssembler.POSE_SIZE, tracker, i*BlockAssembler.POSE_SIZE);
+		}
+	}
+
+	/**
+	 * writes a rigid transformation from random Euler angles and a random translation
+	 */
+	private static void randomPose(Random random, double[] out, int offset) {
+		double a = random.nextDouble()*2*Math.PI;
+		double b = random.nextDouble()*Math.PI;
+		double c = random.nextDouble()*2*Math.PI;
+		double ca = Math.cos(a), sa = Math.sin(a);
+		double cb = Math.cos(b), sb = Math.sin(b);
+		double cc = Math.cos(c), sc = Math.sin(c);
+		// R = Rz(a)*Ry(b)*Rz(c)
+		out[offset] = ca*cb*cc-sa*sc;
+		out[offset+1] = -ca*cb*sc-sa*cc;
+		out[offset+2] = ca*sb;
+		out[offset+3] = random.nextDouble()*1000-500;
+		out[offset+4] = sa*cb*cc+ca*sc;
+		out[offset+5] = -sa*cb*sc+ca*cc;
+		out[offset+6] = sa*sb;
+		out[offset+7] = random.nextDouble()*1000-500;
+		out[offset+8] = -sb*cc;
+		out[offset+9] = sb*sc;
+		out[offset+10] = cb;
+		out[offset+11] = random.nextDouble()*1000-500;
+	}
+}
@@ -0,0 +1,55 @@
+package robCalibration.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import robCalibration.BlockAssembler;
+
+/**
+ * Assembly of the blocks Ai and Bi of all measurements by {@link BlockAssembler},
+ * which replaced createAEntry/createBEntry of QR24. Every block is written into the same scratch buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AssemblyBenchmark {
+
+	@Param({"25", "1000", "10000", "100000", "1000000"})
+	public int count;
+
+	private BenchmarkData data;
+	private final double[] a = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
+	private final double[] b = new double[BlockAssembler.ROWS];
+
+	@Setup(Level.Trial)
+	public void setup() {
+		data = new BenchmarkData(count);
+	}
+
+	@Benchmark
+	public void assemble(Blackhole blackhole) {
+		for(int i=0;i<count;i++) {
+			int o = i*BlockAssembler.POSE_SIZE;
+			BlockAssembler.assembleA(data.robot, o, data.tracker, o, a, 0);
+			BlockAssembler.assembleB(data.robot, o, b, 0);
+			blackhole.consume(a);
+			blackhole.consume(b);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package robCalibration.bench;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import robCalibration.BlockAssembler;
+import robCalibration.QR24;
+import robCalibration.TestDataGenerator;
+
+/**
+ * Deterministic synthetic measurements shared by the JMH benchmarks.
+ * The same count always produces the same poses, so results of different commits are comparable.
+ */
+final class BenchmarkData {
+
+	/**
+	 * seed of the generator, never change it or old results can't be compared anymore
+	 */
+	static final long SEED = 24;
+
+	final int count;
+	final double[] robot;
+	final double[] tracker;
+
+	BenchmarkData(int count) {
+		this.count = count;
+		robot = new double[count*BlockAssembler.POSE_SIZE];
+		tracker = new double[count*BlockAssembler.POSE_SIZE];
+		TestDataGenerator generator = new TestDataGenerator(SEED);
+		generator.setNoise(0.1, 0.0005);
+		generator.generate(count, robot, tracker);
+	}
+
+	/**
+	 * @return lines of the robot log in the format of robot.txt
+	 */
+	List<String> robotLines() {
+		List<String> lines = new ArrayList<String>(count);
+		StringBuilder line = new StringBuilder();
+		for(int i=0;i<count;i++) {
+			line.setLength(0);
+			for(int k=0;k<BlockAssembler.POSE_SIZE;k++) {
+				line.append(robot[i*BlockAssembler.POSE_SIZE+k]).append(' ');
+			}
+			lines.add(line.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * @return lines of the tracking log in the format of tracking.txt, all samples visible
+	 */
+	List<String> trackingLines() {
+		List<String> lines = new ArrayList<String>(count);
+		StringBuilder line = new StringBuilder();
+		for(int i=0;i<count;i++) {
+			line.setLength(0);
+			line.append(1614021795.0+i*0.001).append(" y ");
+			for(int k=0;k<BlockAssembler.POSE_SIZE;k++) {
+				line.append(tracker[i*BlockAssembler.POSE_SIZE+k]).append(' ');
+			}
+			line.append("0.080241 ");
+			lines.add(line.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * writes lines into a file
+	 */
+	static void write(Path file, List<String> lines) throws Exception {
+		try(BufferedWriter writer = Files.newBufferedWriter(file)) {
+			for(String line : lines) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * stores the measurements in the lists of a calibration object
+	 */
+	void fill(QR24 calibration) {
+		calibration.poseMatrices.clear();
+		calibration.markerPoseMatrices.clear();
+		for(int i=0;i<count;i++) {
+			calibration.poseMatrices.add(TestDataGenerator.toMatrix(robot, i*BlockAssembler.POSE_SIZE));
+			calibration.markerPoseMatrices.add(TestDataGenerator.toMatrix(tracker, i*BlockAssembler.POSE_SIZE));
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package robCalibration.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the calibration pipeline with the GC profiler (allocation rate)
+ * and writes the results as JSON, so runs of different commits can be compared.
+ *
+ * The benchmarks are built together with src by the Maven profile bench (mvn -P bench package) into target/benchmarks.jar.
+ *
+ * Usage: java -cp target/benchmarks.jar robCalibration.bench.BenchmarkRunner [regular expression of the benchmarks] [result file]
+ *        e.g. BenchmarkRunner Calibrate jmh-$(git rev-parse --short HEAD).json
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		String include = args.length>0 ? args[0] : "robCalibration.bench.*Benchmark";
+		String result = args.length>1 ? args[1] : "jmh-result.json";
+		Options options = new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result)
+				.build();
+		new Runner(options).run();
+		System.out.println("[BenchmarkRunner] results written to "+result);
+	}
+}
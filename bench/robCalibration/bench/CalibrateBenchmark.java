@@ -0,0 +1,48 @@
+package robCalibration.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import robCalibration.QR24;
+
+/**
+ * End-to-end {@link QR24#calibrate()} on the measurement lists: assembly, QR solve and orthonormalization.
+ * Like {@link SolveBenchmark} it stops at 100000 measurements because of the dense system.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class CalibrateBenchmark {
+
+	@Param({"25", "1000", "10000", "100000"})
+	public int count;
+
+	private QR24 calibration;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		calibration = new QR24();
+		new BenchmarkData(count).fill(calibration);
+	}
+
+	@Benchmark
+	public RealMatrix[] calibrate() throws Exception {
+		return calibration.calibrate();
+	}
+}
@@ -0,0 +1,54 @@
+package robCalibration.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import robCalibration.BlockAssembler;
+import robCalibration.QR24;
+import robCalibration.ReducedSolver;
+
+/**
+ * The orthonormalization of X and Y in {@link QR24#toTransforms(RealVector)}, see {@link PoseKernelBenchmark} for the kernels.
+ * It works on the 24 entries of the solution only, so it has no measurement count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrthonormalizationBenchmark {
+
+	private QR24 calibration;
+	private RealVector w;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		calibration = new QR24();
+		BenchmarkData data = new BenchmarkData(25);
+		ReducedSolver solver = new ReducedSolver();
+		for(int i=0;i<data.count;i++) {
+			solver.add(data.robot, i*BlockAssembler.POSE_SIZE, data.tracker, i*BlockAssembler.POSE_SIZE);
+		}
+		// noisy solution, its rotational parts aren't orthonormal
+		w = solver.solve();
+	}
+
+	@Benchmark
+	public RealMatrix[] toTransforms() {
+		return calibration.toTransforms(w);
+	}
+}
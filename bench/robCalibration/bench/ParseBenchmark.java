@@ -0,0 +1,92 @@
+package robCalibration.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import robCalibration.QR24;
+import robCalibration.io.PoseLog;
+import robCalibration.io.PoseLogFormat;
+import robCalibration.io.PoseLogReader;
+
+/**
+ * Parsing of the logs: {@link QR24#genMatrices(List, List)} on lines already in memory
+ * and {@link PoseLogReader} on files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ParseBenchmark {
+
+	@Param({"25", "1000", "10000", "100000", "1000000"})
+	public int count;
+
+	private List<String> robotLines;
+	private List<String> trackingLines;
+	private Path robotFile;
+	private Path trackingFile;
+	private QR24 calibration;
+	private PoseLogReader reader;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		BenchmarkData data = new BenchmarkData(count);
+		robotLines = data.robotLines();
+		trackingLines = data.trackingLines();
+		robotFile = Files.createTempFile("robot", ".txt");
+		trackingFile = Files.createTempFile("tracking", ".txt");
+		BenchmarkData.write(robotFile, robotLines);
+		BenchmarkData.write(trackingFile, trackingLines);
+		calibration = new QR24();
+		reader = new PoseLogReader();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(robotFile);
+		Files.deleteIfExists(trackingFile);
+	}
+
+	@Benchmark
+	public QR24 genMatrices() {
+		calibration.genMatrices(robotLines, trackingLines);
+		return calibration;
+	}
+
+	@Benchmark
+	public PoseLog readRobotLog() throws Exception {
+		return read(robotFile, PoseLogFormat.ROBOT);
+	}
+
+	@Benchmark
+	public PoseLog readTrackingLog() throws Exception {
+		return read(trackingFile, PoseLogFormat.TRACKING);
+	}
+
+	/**
+	 * like {@link PoseLogReader#readAll(Path, PoseLogFormat)} without printing the statistics
+	 */
+	private PoseLog read(Path file, PoseLogFormat format) throws Exception {
+		PoseLog log = new PoseLog(1024);
+		reader.read(file, format, chunk -> log.addAll(chunk));
+		return log;
+	}
+}
@@ -0,0 +1,89 @@
+package robCalibration.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import robCalibration.BlockAssembler;
+import robCalibration.RigidTransform;
+import robCalibration.TestDataGenerator;
+
+/**
+ * Pose math on 4x4 RealMatrix objects compared to {@link RigidTransform}: the product of two poses
+ * and the orthonormalization of a noisy rotational part (SVD vs. polar Newton iteration).
+ * Run with the GC profiler of {@link BenchmarkRunner} to compare the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoseKernelBenchmark {
+
+	private RealMatrix a;
+	private RealMatrix b;
+	private RealMatrix noisy;
+	private RigidTransform ta;
+	private RigidTransform tb;
+	private RigidTransform tc;
+	private RigidTransform tNoisy;
+	private RigidTransform tOut;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkData data = new BenchmarkData(2);
+		a = TestDataGenerator.toMatrix(data.robot, 0);
+		b = TestDataGenerator.toMatrix(data.tracker, 0);
+		// a rotational part off by about 1e-3, like the solution of the linear system
+		double[] pose = new double[BlockAssembler.POSE_SIZE];
+		System.arraycopy(data.robot, BlockAssembler.POSE_SIZE, pose, 0, BlockAssembler.POSE_SIZE);
+		for(int k=0;k<BlockAssembler.POSE_SIZE;k++) {
+			if(k%4!=3) {
+				pose[k] += 1e-3*((k*7)%5-2);
+			}
+		}
+		noisy = TestDataGenerator.toMatrix(pose, 0);
+		ta = new RigidTransform(a);
+		tb = new RigidTransform(b);
+		tc = new RigidTransform();
+		tNoisy = new RigidTransform(noisy);
+		tOut = new RigidTransform();
+	}
+
+	@Benchmark
+	public RealMatrix multiplyRealMatrix() {
+		return a.multiply(b);
+	}
+
+	@Benchmark
+	public RigidTransform multiplyRigidTransform() {
+		return tc.multiply(ta, tb);
+	}
+
+	@Benchmark
+	public RealMatrix orthonormalizeSvd() {
+		SingularValueDecomposition svd = new SingularValueDecomposition(noisy.getSubMatrix(0, 2, 0, 2));
+		RealMatrix result = new Array2DRowRealMatrix(4, 4);
+		result.setSubMatrix(svd.getU().multiply(svd.getVT()).getData(), 0, 0);
+		return result;
+	}
+
+	@Benchmark
+	public RigidTransform orthonormalizePolar() {
+		return tOut.set(tNoisy).orthonormalize();
+	}
+}
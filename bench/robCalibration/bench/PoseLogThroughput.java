@@ -0,0 +1,80 @@
+package robCalibration.bench;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import robCalibration.BlockAssembler;
+import robCalibration.TestDataGenerator;
+import robCalibration.io.PoseLogFormat;
+import robCalibration.io.PoseLogReader;
+import robCalibration.io.ReadStatistics;
+
+/**
+ * Reports the parsing throughput of {@link PoseLogReader} in MB/s.
+ *
+ * Usage: PoseLogThroughput &lt;tracking file&gt;            parses an existing tracking log
+ *        PoseLogThroughput --generate &lt;records&gt;        writes a synthetic tracking log to a temporary file first
+ */
+public class PoseLogThroughput {
+
+	public static void main(String[] args) throws Exception {
+		Path file;
+		boolean temporary = false;
+		if(args.length>1 && args[0].equals("--generate")) {
+			file = Files.createTempFile("tracking", ".txt");
+			temporary = true;
+			writeTrackingLog(file, Integer.parseInt(args[1]));
+		}else {
+			file = Paths.get(args.length>0 ? args[0] : "tracking.txt");
+		}
+		try {
+			PoseLogReader reader = new PoseLogReader();
+			for(int round=0;round<5;round++) {
+				long[] visible = {0};
+				ReadStatistics statistics = reader.read(file, PoseLogFormat.TRACKING, chunk -> {
+					for(int i=0;i<chunk.size();i++) {
+						if(chunk.isVisible(i)) {
+							visible[0]++;
+						}
+					}
+				});
+				System.out.println("[PoseLogThroughput] round "+round+": "+statistics+", visible: "+visible[0]);
+			}
+		} finally {
+			if(temporary) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * writes a tracking log in the format of tracking.txt
+	 */
+	static void writeTrackingLog(Path file, int records) throws Exception {
+		TestDataGenerator generator = new TestDataGenerator(1);
+		generator.setNoise(0.1, 0.001);
+		int block = 10000;
+		double[] robot = new double[block*BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[block*BlockAssembler.POSE_SIZE];
+		StringBuilder line = new StringBuilder();
+		try(BufferedWriter writer = Files.newBufferedWriter(file)) {
+			for(int done=0;done<records;done+=block) {
+				int count = Math.min(block, records-done);
+				generator.generate(count, robot, tracker);
+				for(int i=0;i<count;i++) {
+					line.setLength(0);
+					line.append(String.format(Locale.ROOT, "%.6f", 1614021795.0+(done+i)*0.001)).append(' ');
+					line.append((done+i)%50==0 ? 'n' : 'y').append(' ');
+					for(int k=0;k<BlockAssembler.POSE_SIZE;k++) {
+						line.append(String.format(Locale.ROOT, "%.8f", tracker[i*BlockAssembler.POSE_SIZE+k])).append(' ');
+					}
+					line.append("0.080241 \n");
+					writer.write(line.toString());
+				}
+			}
+		}
+	}
+}
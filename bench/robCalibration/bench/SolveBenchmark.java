@@ -0,0 +1,66 @@
+package robCalibration.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import robCalibration.BlockAssembler;
+
+/**
+ * The QRDecomposition solve of {@link robCalibration.QR24#calibrate()} on an already assembled system.
+ * The dense system needs 2.3 GB for a million measurements and the decomposition a copy of it,
+ * so the largest count is 100000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SolveBenchmark {
+
+	@Param({"25", "1000", "10000", "100000"})
+	public int count;
+
+	private RealMatrix A;
+	private RealVector B;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkData data = new BenchmarkData(count);
+		double[][] aData = new double[count*BlockAssembler.ROWS][BlockAssembler.COLUMNS];
+		double[] bData = new double[count*BlockAssembler.ROWS];
+		double[] ai = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
+		for(int i=0;i<count;i++) {
+			int o = i*BlockAssembler.POSE_SIZE;
+			BlockAssembler.assembleA(data.robot, o, data.tracker, o, ai, 0);
+			for(int row=0;row<BlockAssembler.ROWS;row++) {
+				System.arraycopy(ai, row*BlockAssembler.COLUMNS, aData[i*BlockAssembler.ROWS+row], 0, BlockAssembler.COLUMNS);
+			}
+			BlockAssembler.assembleB(data.robot, o, bData, i*BlockAssembler.ROWS);
+		}
+		A = new Array2DRowRealMatrix(aData, false);
+		B = new ArrayRealVector(bData, false);
+	}
+
+	@Benchmark
+	public RealVector qrSolve() {
+		return new QRDecomposition(A).getSolver().solve(B);
+	}
+}
@@ -0,0 +1,57 @@
+package robCalibration.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.QR24;
+import robCalibration.TestDataGenerator;
+
+/**
+ * Compares the solution paths of QR24 with each other on the recorded example data
+ * and on synthetic data with known X and Y.
+ *
+ * Usage: SolverComparison [robot file] [tracking file]
+ */
+public class SolverComparison {
+
+	public static void main(String[] args) throws Exception {
+		String robotFile = args.length>1 ? args[0] : "robot.txt";
+		String trackingFile = args.length>1 ? args[1] : "tracking.txt";
+
+		QR24 calibration = new QR24();
+		calibration.genMatrices(Files.readAllLines(Paths.get(robotFile)), Files.readAllLines(Paths.get(trackingFile)));
+		compare(robotFile+"/"+trackingFile, calibration, null, null);
+
+		int[] counts = {25, 1000, 100000};
+		for(int count : counts) {
+			TestDataGenerator generator = new TestDataGenerator(count);
+			generator.setNoise(0.1, 0.0005);
+			generator.generate(calibration, count);
+			compare("synthetic "+count, calibration, generator.getX(), generator.getY());
+		}
+	}
+
+	private static void compare(String name, QR24 calibration, RealMatrix trueX, RealMatrix trueY) throws Exception {
+		long start = System.nanoTime();
+		RealMatrix[] qr = calibration.calibrate();
+		long qrNanos = System.nanoTime()-start;
+		start = System.nanoTime();
+		RealMatrix[] streaming = calibration.calibrateStreaming();
+		long streamingNanos = System.nanoTime()-start;
+		start = System.nanoTime();
+		RealMatrix[] reduced = calibration.calibrateReduced();
+		long reducedNanos = System.nanoTime()-start;
+
+		System.out.println("== "+name);
+		System.out.println("  QR        "+qrNanos/1000+" us");
+		System.out.println("  streaming "+streamingNanos/1000+" us, |dX| "+qr[0].subtract(streaming[0]).getNorm()
+				+", |dY| "+qr[1].subtract(streaming[1]).getNorm());
+		System.out.println("  reduced   "+reducedNanos/1000+" us, |dX| "+qr[0].subtract(reduced[0]).getNorm()
+				+", |dY| "+qr[1].subtract(reduced[1]).getNorm());
+		if(trueX!=null) {
+			System.out.println("  QR vs. truth |dX| "+qr[0].subtract(trueX).getNorm()+", |dY| "+qr[1].subtract(trueY).getNorm());
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package robCalibration.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import robCalibration.PosePairs;
+import robCalibration.QR24;
+
+/**
+ * End-to-end calibration with the solvers of constant memory, which cover the full range up to a million measurements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class StreamingCalibrateBenchmark {
+
+	@Param({"25", "1000", "10000", "100000", "1000000"})
+	public int count;
+
+	private QR24 calibration;
+	private PosePairs pairs;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkData data = new BenchmarkData(count);
+		calibration = new QR24();
+		pairs = new PosePairs(data.robot, data.tracker, count);
+	}
+
+	@Benchmark
+	public RealMatrix[] calibrateStreaming() throws Exception {
+		return calibration.calibrateStreaming(pairs);
+	}
+
+	@Benchmark
+	public RealMatrix[] calibrateReduced() throws Exception {
+		return calibration.calibrateReduced(pairs);
+	}
+}
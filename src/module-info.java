@@ -1,4 +1,6 @@
 module qr24calibration {
 	requires commons.math3;
 	requires java.desktop;
+	requires jdk.jfr;
+	requires jdk.management;
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+package robCalibration;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Assembles the coefficients of the QR24 linear equation system for a single measurement pair (Mi,Ni)
+ * directly into caller-supplied primitive arrays. None of the methods allocate memory, so the system
+ * for millions of measurements can be built without creating temporary matrices.
+ *
+ * The block Ai has 12 rows and 24 columns and is written in row-major order:
+ * <pre>
+ *  | Nrc*RotM (r,c = 0..2)        0      -I12 |
+ *  | t0*RotM  t1*RotM  t2*RotM    RotM        |
+ * </pre>
+ * with tc = -(N0c*N03 + N1c*N13 + N2c*N23). Bi contains nine zeros followed by the negative
+ * translation of Mi.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses are the upper 3x4 part of the homogeneous matrix in row-major order (12 values)
+ * unit of length: millimeter
+ * ===
+ */
+public final class BlockAssembler {
+
+	/**
+	 * number of rows of Ai and entries of Bi
+	 */
+	public static final int ROWS = 12;
+
+	/**
+	 * number of columns of Ai, 12 unknowns of X followed by 12 unknowns of Y
+	 */
+	public static final int COLUMNS = 24;
+
+	/**
+	 * number of values of a pose in array form
+	 */
+	public static final int POSE_SIZE = 12;
+
+	private BlockAssembler() {
+	}
+
+	/**
+	 * Writes the 12x24 block Ai for a single pair of measuring data
+	 * @param robot array containing the robot pose Mi
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the pose Ni measured by the tracking system
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 * @param out target array, 288 entries starting at outOffset are overwritten
+	 * @param outOffset index of the entry (0,0) of Ai
+	 */
+	public static void assembleA(double[] robot, int robotOffset, double[] tracker, int trackerOffset, double[] out, int outOffset) {
+		for(int c=0;c<3;c++) {
+			// t = -(N0c*N03 + N1c*N13 + N2c*N23)
+			double t = -(tracker[trackerOffset+c]*tracker[trackerOffset+3]
+					+tracker[trackerOffset+4+c]*tracker[trackerOffset+7]
+					+tracker[trackerOffset+8+c]*tracker[trackerOffset+11]);
+			for(int i=0;i<3;i++) {
+				double m0 = robot[robotOffset+i*4];
+				double m1 = robot[robotOffset+i*4+1];
+				double m2 = robot[robotOffset+i*4+2];
+				for(int r=0;r<3;r++) {
+					double nrc = tracker[trackerOffset+r*4+c];
+					int o = outOffset+(r*3+i)*COLUMNS+c*3;
+					out[o] = m0*nrc;
+					out[o+1] = m1*nrc;
+					out[o+2] = m2*nrc;
+				}
+				int o = outOffset+(9+i)*COLUMNS+c*3;
+				out[o] = m0*t;
+				out[o+1] = m1*t;
+				out[o+2] = m2*t;
+			}
+		}
+		for(int i=0;i<3;i++) {
+			// fourth column: zero for the rotational rows, RotM for the translational rows
+			for(int r=0;r<3;r++) {
+				int o = outOffset+(r*3+i)*COLUMNS+9;
+				out[o] = 0;
+				out[o+1] = 0;
+				out[o+2] = 0;
+			}
+			int o = outOffset+(9+i)*COLUMNS+9;
+			out[o] = robot[robotOffset+i*4];
+			out[o+1] = robot[robotOffset+i*4+1];
+			out[o+2] = robot[robotOffset+i*4+2];
+		}
+		// fifth column: -I12
+		for(int r=0;r<ROWS;r++) {
+			int o = outOffset+r*COLUMNS+12;
+			for(int k=0;k<12;k++) {
+				out[o+k] = 0;
+			}
+			out[o+r] = -1d;
+		}
+	}
+
+	/**
+	 * Writes the 12 entries of Bi for a single robot pose
+	 * @param robot array containing the robot pose Mi
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param out target array, 12 entries starting at outOffset are overwritten
+	 * @param outOffset index of the first entry of Bi
+	 */
+	public static void assembleB(double[] robot, int robotOffset, double[] out, int outOffset) {
+		for(int r=0;r<9;r++) {
+			out[outOffset+r] = 0;
+		}
+		out[outOffset+9] = -robot[robotOffset+3];
+		out[outOffset+10] = -robot[robotOffset+7];
+		out[outOffset+11] = -robot[robotOffset+11];
+	}
+
+	/**
+	 * Copies the upper 3x4 part of a homogeneous matrix into an array
+	 * @param pose 4x4 homogeneous matrix
+	 * @param out target array, 12 entries starting at outOffset are overwritten
+	 * @param outOffset index of the first entry
+	 */
+	public static void copyPose(RealMatrix pose, double[] out, int outOffset) {
+		for(int row=0;row<3;row++) {
+			for(int col=0;col<4;col++) {
+				out[outOffset+row*4+col] = pose.getEntry(row, col);
+			}
+		}
+	}
+}
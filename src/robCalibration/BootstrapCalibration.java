@@ -0,0 +1,288 @@
+package robCalibration;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Estimates the uncertainty of X and Y by bootstrapping: the measurement set is resampled with replacement
+ * many times and every resample is solved again. The spread of the solutions gives standard deviations and
+ * percentile confidence intervals of the translation and the rotation of both transformations.
+ *
+ * The blocks Ci and Bi of the linear system are assembled only once. A resample never copies pose data,
+ * it draws how often every measurement occurs and adds each block with this multiplicity as weight to a
+ * {@link ReducedSolver}. The resamples are solved in parallel on a fork-join pool with per-thread solvers;
+ * every resample seeds its own generator from the seed and its index, so the result doesn't depend on the scheduling.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of angles in the results: degree
+ * ===
+ */
+public class BootstrapCalibration {
+
+	/**
+	 * number of entries of a packed block Ci
+	 */
+	private static final int BLOCK_SIZE = 12*12;
+
+	private int resamples = 1000;
+	private double confidence = 0.95;
+	private long seed = 0;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param resamples number of resampled measurement sets
+	 * @return this calibration
+	 */
+	public BootstrapCalibration setResamples(int resamples) {
+		if(resamples<2) {
+			throw new IllegalArgumentException("At least two resamples are needed.");
+		}
+		this.resamples = resamples;
+		return this;
+	}
+
+	/**
+	 * @param confidence level of the confidence intervals, e.g. 0.95
+	 * @return this calibration
+	 */
+	public BootstrapCalibration setConfidence(double confidence) {
+		if(!(confidence>0 && confidence<1)) {
+			throw new IllegalArgumentException("Confidence level must be between 0 and 1.");
+		}
+		this.confidence = confidence;
+		return this;
+	}
+
+	/**
+	 * @param seed seed of the resampling
+	 * @return this calibration
+	 */
+	public BootstrapCalibration setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @param pool pool solving the resamples, the common pool by default
+	 * @return this calibration
+	 */
+	public BootstrapCalibration setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Runs the bootstrap
+	 * @param pairs measurement pairs, read once
+	 * @return uncertainty of X and Y
+	 * @throws Exception Error when there're not enough measurements or the complete set is singular
+	 */
+	public BootstrapResult run(PosePairSource pairs) throws Exception {
+		long start = System.nanoTime();
+		int size = pairs.size();
+		if(size<2) {
+			throw new Exception("At least two measurements are needed, got "+size+".");
+		}
+
+		// assemble Ci and Bi of every measurement once
+		double[] c = new double[size*BLOCK_SIZE];
+		double[] b = new double[size*BlockAssembler.ROWS];
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		double[] a = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
+		for(int i=0;i<size;i++) {
+			pairs.robotPose(i, m, 0);
+			pairs.trackerPose(i, n, 0);
+			BlockAssembler.assembleA(m, 0, n, 0, a, 0);
+			for(int row=0;row<BlockAssembler.ROWS;row++) {
+				System.arraycopy(a, row*BlockAssembler.COLUMNS, c, i*BLOCK_SIZE+row*12, 12);
+			}
+			BlockAssembler.assembleB(m, 0, b, i*BlockAssembler.ROWS);
+		}
+
+		// estimate of the complete set, the samples are given relative to it
+		ReducedSolver solver = new ReducedSolver();
+		for(int i=0;i<size;i++) {
+			solver.addBlock(c, i*BLOCK_SIZE, 12, b, i*BlockAssembler.ROWS, 1);
+		}
+		double[] w = new double[BlockAssembler.COLUMNS];
+		if(!solver.solve(w, 0)) {
+			throw new Exception("Reduced system is singular, the measurements are degenerated.");
+		}
+		double[] x = new double[BlockAssembler.POSE_SIZE];
+		double[] y = new double[BlockAssembler.POSE_SIZE];
+		toPose(w, 0, x);
+		toPose(w, 12, y);
+
+		// samples[p*resamples+r] holds parameter p of resample r, p = 0..5 for X and 6..11 for Y
+		double[] samples = new double[2*TransformUncertainty.PARAMETERS*resamples];
+		ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(size));
+		pool.invoke(new ResampleTask(c, b, size, x, y, samples, 0, resamples, scratch));
+
+		int failed = 0;
+		for(int r=0;r<resamples;r++) {
+			if(Double.isNaN(samples[r])) {
+				failed++;
+			}
+		}
+		if(resamples-failed<2) {
+			throw new Exception("Less than two resamples could be solved, the measurements are degenerated.");
+		}
+		TransformUncertainty uncertaintyX = summarize("X", samples, 0);
+		TransformUncertainty uncertaintyY = summarize("Y", samples, TransformUncertainty.PARAMETERS);
+		return new BootstrapResult(uncertaintyX, uncertaintyY, resamples, failed, size, System.nanoTime()-start);
+	}
+
+	/**
+	 * standard deviations and percentile intervals of the six parameters starting at first
+	 */
+	private TransformUncertainty summarize(String name, double[] samples, int first) {
+		double[] deviation = new double[TransformUncertainty.PARAMETERS];
+		double[] lower = new double[TransformUncertainty.PARAMETERS];
+		double[] upper = new double[TransformUncertainty.PARAMETERS];
+		double[] values = new double[resamples];
+		for(int p=0;p<TransformUncertainty.PARAMETERS;p++) {
+			int count = 0;
+			double mean = 0;
+			double m2 = 0;
+			for(int r=0;r<resamples;r++) {
+				double v = samples[(first+p)*resamples+r];
+				if(Double.isNaN(v)) {
+					continue;
+				}
+				values[count++] = v;
+				double d = v-mean;
+				mean += d/count;
+				m2 += d*(v-mean);
+			}
+			deviation[p] = Math.sqrt(m2/(count-1));
+			Arrays.sort(values, 0, count);
+			lower[p] = percentile(values, count, (1-confidence)/2);
+			upper[p] = percentile(values, count, (1+confidence)/2);
+		}
+		return new TransformUncertainty(name, confidence, deviation, lower, upper);
+	}
+
+	/**
+	 * percentile of sorted values with linear interpolation between the order statistics
+	 */
+	private static double percentile(double[] sorted, int count, double fraction) {
+		double position = fraction*(count-1);
+		int index = (int) Math.floor(position);
+		if(index>=count-1) {
+			return sorted[count-1];
+		}
+		double t = position-index;
+		return sorted[index]*(1-t)+sorted[index+1]*t;
+	}
+
+	/**
+	 * converts 12 entries of the solution vector (column layout) into an orthonormalized pose (row-major)
+	 */
+	static void toPose(double[] w, int offset, double[] pose) {
+		new RigidTransform().setSolution(w, offset).orthonormalize().get(pose, 0);
+	}
+
+	/**
+	 * per-thread buffers of the resampling
+	 */
+	private static class Scratch {
+		final ReducedSolver solver = new ReducedSolver();
+		final int[] counts;
+		final double[] w = new double[BlockAssembler.COLUMNS];
+		final double[] pose = new double[BlockAssembler.POSE_SIZE];
+		final double[] relative = new double[BlockAssembler.POSE_SIZE];
+		final double[] vector = new double[3];
+		final double[] quaternion = new double[4];
+
+		Scratch(int size) {
+			counts = new int[size];
+		}
+	}
+
+	/**
+	 * solves the resamples from..to-1
+	 */
+	private class ResampleTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[] c;
+		private final double[] b;
+		private final int size;
+		private final double[] x;
+		private final double[] y;
+		private final double[] samples;
+		private final int from;
+		private final int to;
+		private final ThreadLocal<Scratch> scratch;
+
+		ResampleTask(double[] c, double[] b, int size, double[] x, double[] y, double[] samples, int from, int to,
+				ThreadLocal<Scratch> scratch) {
+			this.c = c;
+			this.b = b;
+			this.size = size;
+			this.x = x;
+			this.y = y;
+			this.samples = samples;
+			this.from = from;
+			this.to = to;
+			this.scratch = scratch;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from>1) {
+				int middle = (from+to)>>>1;
+				invokeAll(new ResampleTask(c, b, size, x, y, samples, from, middle, scratch),
+						new ResampleTask(c, b, size, x, y, samples, middle, to, scratch));
+				return;
+			}
+			Scratch s = scratch.get();
+			int resample = from;
+			SplittableRandom random = new SplittableRandom(seed+resample*0x9E3779B97F4A7C15L);
+			int[] counts = s.counts;
+			Arrays.fill(counts, 0);
+			for(int k=0;k<size;k++) {
+				counts[random.nextInt(size)]++;
+			}
+			ReducedSolver solver = s.solver;
+			solver.reset();
+			for(int i=0;i<size;i++) {
+				solver.addBlock(c, i*BLOCK_SIZE, 12, b, i*BlockAssembler.ROWS, counts[i]);
+			}
+			if(!solver.solve(s.w, 0)) {
+				for(int p=0;p<2*TransformUncertainty.PARAMETERS;p++) {
+					samples[p*resamples+resample] = Double.NaN;
+				}
+				return;
+			}
+			store(s, 0, x, 0, resample);
+			store(s, 12, y, TransformUncertainty.PARAMETERS, resample);
+		}
+
+		/**
+		 * writes the deviation of one transformation of the resample from the estimate
+		 */
+		private void store(Scratch s, int offset, double[] estimate, int first, int resample) {
+			double[] pose = s.pose;
+			toPose(s.w, offset, pose);
+			// rotation R^T*Rsample
+			double[] relative = s.relative;
+			for(int r=0;r<3;r++) {
+				for(int col=0;col<3;col++) {
+					relative[r*4+col] = estimate[r]*pose[col]+estimate[4+r]*pose[4+col]+estimate[8+r]*pose[8+col];
+				}
+			}
+			Rotations.toRotationVector(relative, 0, s.vector, 0, s.quaternion);
+			for(int k=0;k<3;k++) {
+				samples[(first+k)*resamples+resample] = pose[k*4+3]-estimate[k*4+3];
+				samples[(first+3+k)*resamples+resample] = Math.toDegrees(s.vector[k]);
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package robCalibration;
+
+/**
+ * Result of a {@link BootstrapCalibration}: the uncertainty of X (end-effector to marker)
+ * and Y (robot base to tracking system).
+ */
+public class BootstrapResult {
+
+	private final TransformUncertainty x;
+	private final TransformUncertainty y;
+	private final int resamples;
+	private final int failed;
+	private final int measurements;
+	private final long nanos;
+
+	BootstrapResult(TransformUncertainty x, TransformUncertainty y, int resamples, int failed, int measurements, long nanos) {
+		this.x = x;
+		this.y = y;
+		this.resamples = resamples;
+		this.failed = failed;
+		this.measurements = measurements;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return uncertainty of the transformation from end-effector to marker
+	 */
+	public TransformUncertainty getX() {
+		return x;
+	}
+
+	/**
+	 * @return uncertainty of the transformation from robot base to tracking system
+	 */
+	public TransformUncertainty getY() {
+		return y;
+	}
+
+	/**
+	 * @return number of resamples
+	 */
+	public int getResamples() {
+		return resamples;
+	}
+
+	/**
+	 * @return number of resamples with a singular system, they aren't part of the statistics
+	 */
+	public int getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return number of measurements
+	 */
+	public int getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return duration of the bootstrap in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		return resamples+" resamples of "+measurements+" measurements ("+failed+" singular) in "+nanos/1000000+" ms"
+				+System.lineSeparator()+x+System.lineSeparator()+y;
+	}
+}
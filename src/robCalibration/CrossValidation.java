@@ -0,0 +1,253 @@
+package robCalibration;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cross-validates the calibration: every measurement pair is held out once, X and Y are solved from the other pairs,
+ * and the held-out pair is predicted with them. A pair that is predicted much worse than it is fitted points
+ * to a bad capture, a prediction error much larger than the residuals of the complete set points to overfitting.
+ *
+ * The complete set is accumulated once in a {@link ReducedSolver}. A fold copies this state and removes its pairs
+ * by rank-12 downdates, so it costs O(size of the fold) instead of O(all pairs): a complete leave-one-out pass is about
+ * as expensive as a few regular solves. The folds are solved in parallel on a fork-join pool, every pair is written
+ * by exactly one fold, so the result doesn't depend on the scheduling.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of angles in the results: degree
+ * ===
+ */
+public class CrossValidation {
+
+	/**
+	 * number of held-out pairs solved by a single fork-join task
+	 */
+	static final int CHUNK = 4096;
+
+	private int folds = 0;
+	private long seed = 0;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param folds number of folds, the pairs are distributed randomly; 0 for leave-one-out (default)
+	 * @return this validation
+	 */
+	public CrossValidation setFolds(int folds) {
+		if(folds==1 || folds<0) {
+			throw new IllegalArgumentException("At least two folds are needed, 0 for leave-one-out.");
+		}
+		this.folds = folds;
+		return this;
+	}
+
+	/**
+	 * @param seed seed of the distribution of the pairs to the folds, not used by leave-one-out
+	 * @return this validation
+	 */
+	public CrossValidation setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @param pool pool solving the folds, the common pool by default, null to solve them on the calling thread
+	 * @return this validation
+	 */
+	public CrossValidation setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Runs the cross-validation
+	 * @param pairs measurement pairs
+	 * @return prediction errors of all pairs and their statistics
+	 * @throws Exception Error when there're not enough measurements or the complete set is singular
+	 */
+	public CrossValidationResult run(PosePairSource pairs) throws Exception {
+		long start = System.nanoTime();
+		int size = pairs.size();
+		if(size<3) {
+			throw new Exception("At least three measurements are needed, got "+size+".");
+		}
+		int count = folds==0 ? size : folds;
+		if(count>size) {
+			throw new Exception(count+" folds for "+size+" measurements.");
+		}
+
+		// complete set
+		ReducedSolver complete = new ReducedSolver();
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		for(int i=0;i<size;i++) {
+			pairs.robotPose(i, m, 0);
+			pairs.trackerPose(i, n, 0);
+			complete.add(m, 0, n, 0);
+		}
+		double[] w = new double[BlockAssembler.COLUMNS];
+		if(!complete.solve(w, 0)) {
+			throw new Exception("Reduced system is singular, the measurements are degenerated.");
+		}
+		double[] x = new double[BlockAssembler.POSE_SIZE];
+		double[] y = new double[BlockAssembler.POSE_SIZE];
+		BootstrapCalibration.toPose(w, 0, x);
+		BootstrapCalibration.toPose(w, 12, y);
+		ResidualReport fitted = new ResidualEngine().setPool(pool).evaluate(pairs, x, y);
+
+		// members[first[f]..first[f+1]-1] are the pairs of fold f
+		int[] members = new int[size];
+		int[] first = new int[count+1];
+		for(int i=0;i<size;i++) {
+			members[i] = i;
+		}
+		if(count<size) {
+			SplittableRandom random = new SplittableRandom(seed);
+			for(int i=size-1;i>0;i--) {
+				int j = random.nextInt(i+1);
+				int t = members[i];
+				members[i] = members[j];
+				members[j] = t;
+			}
+		}
+		for(int f=0;f<=count;f++) {
+			first[f] = (int) ((long) f*size/count);
+		}
+
+		double[] translation = new double[size];
+		double[] rotation = new double[size];
+		// chunks of whole folds with about CHUNK pairs each
+		int foldsPerChunk = Math.max(1, (int) ((long) CHUNK*count/size));
+		int chunks = (count+foldsPerChunk-1)/foldsPerChunk;
+		int[] failed = new int[chunks];
+		if(pool==null) {
+			for(int chunk=0;chunk<chunks;chunk++) {
+				validateChunk(pairs, complete, members, first, foldsPerChunk, translation, rotation, failed, chunk);
+			}
+		}else {
+			pool.invoke(new ChunkTask(pairs, complete, members, first, foldsPerChunk, translation, rotation, failed, 0, chunks));
+		}
+		int singular = 0;
+		for(int chunk=0;chunk<chunks;chunk++) {
+			singular += failed[chunk];
+		}
+
+		return new CrossValidationResult(translation, rotation, summarize("trans [mm]", translation),
+				summarize("rot [deg]", rotation), fitted, count, count==size, singular, System.nanoTime()-start);
+	}
+
+	/**
+	 * statistics of the pairs that could be predicted, the pairs of singular folds are NaN
+	 */
+	private ResidualStatistics summarize(String name, double[] values) {
+		double[] sorted = new double[values.length];
+		int count = 0;
+		double sum = 0, sumOfSquares = 0;
+		for(double v : values) {
+			if(!Double.isNaN(v)) {
+				sorted[count++] = v;
+				sum += v;
+				sumOfSquares += v*v;
+			}
+		}
+		sorted = Arrays.copyOf(sorted, count);
+		if(pool==null) {
+			Arrays.sort(sorted);
+		}else {
+			Arrays.parallelSort(sorted);
+		}
+		double mean = count>0 ? sum/count : Double.NaN;
+		double rms = count>0 ? Math.sqrt(sumOfSquares/count) : Double.NaN;
+		return new ResidualStatistics(name, mean, rms, sorted);
+	}
+
+	/**
+	 * solves the folds of one chunk without its pairs and predicts them
+	 */
+	private static void validateChunk(PosePairSource pairs, ReducedSolver complete, int[] members, int[] first,
+			int foldsPerChunk, double[] translation, double[] rotation, int[] failed, int chunk) {
+		ReducedSolver solver = new ReducedSolver();
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		double[] w = new double[BlockAssembler.COLUMNS];
+		RigidTransform x = new RigidTransform();
+		RigidTransform y = new RigidTransform();
+		RigidTransform left = new RigidTransform();
+		RigidTransform right = new RigidTransform();
+		int end = Math.min(first.length-1, (chunk+1)*foldsPerChunk);
+		for(int f=chunk*foldsPerChunk;f<end;f++) {
+			solver.copyFrom(complete);
+			for(int k=first[f];k<first[f+1];k++) {
+				pairs.robotPose(members[k], m, 0);
+				pairs.trackerPose(members[k], n, 0);
+				solver.remove(m, 0, n, 0);
+			}
+			if(!solver.solve(w, 0)) {
+				for(int k=first[f];k<first[f+1];k++) {
+					translation[members[k]] = Double.NaN;
+					rotation[members[k]] = Double.NaN;
+				}
+				failed[chunk]++;
+				continue;
+			}
+			x.setSolution(w, 0).orthonormalize();
+			y.setSolution(w, 12).orthonormalize();
+			for(int k=first[f];k<first[f+1];k++) {
+				int i = members[k];
+				pairs.robotPose(i, m, 0);
+				left.multiply(left.set(m, 0), x);
+				pairs.trackerPose(i, n, 0);
+				right.multiply(y, right.set(n, 0));
+				translation[i] = left.translationDistance(right);
+				rotation[i] = Math.toDegrees(right.rotationAngle(left));
+			}
+		}
+	}
+
+	/**
+	 * validates the chunks from..to-1
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final PosePairSource pairs;
+		private final ReducedSolver complete;
+		private final int[] members;
+		private final int[] first;
+		private final int foldsPerChunk;
+		private final double[] translation;
+		private final double[] rotation;
+		private final int[] failed;
+		private final int from;
+		private final int to;
+
+		ChunkTask(PosePairSource pairs, ReducedSolver complete, int[] members, int[] first, int foldsPerChunk,
+				double[] translation, double[] rotation, int[] failed, int from, int to) {
+			this.pairs = pairs;
+			this.complete = complete;
+			this.members = members;
+			this.first = first;
+			this.foldsPerChunk = foldsPerChunk;
+			this.translation = translation;
+			this.rotation = rotation;
+			this.failed = failed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from>1) {
+				int middle = (from+to)>>>1;
+				invokeAll(new ChunkTask(pairs, complete, members, first, foldsPerChunk, translation, rotation, failed, from, middle),
+						new ChunkTask(pairs, complete, members, first, foldsPerChunk, translation, rotation, failed, middle, to));
+				return;
+			}
+			validateChunk(pairs, complete, members, first, foldsPerChunk, translation, rotation, failed, from);
+		}
+	}
+}
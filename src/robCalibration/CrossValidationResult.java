@@ -0,0 +1,155 @@
+package robCalibration;
+
+import java.util.Locale;
+
+/**
+ * Result of a {@link CrossValidation}: the prediction error of every measurement pair by the calibration of
+ * its complement, their statistics and the residuals of the calibration of the complete set for comparison.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of angles: degree
+ * ===
+ */
+public class CrossValidationResult {
+
+	private final double[] translation;
+	private final double[] rotation;
+	private final ResidualStatistics translationStatistics;
+	private final ResidualStatistics rotationStatistics;
+	private final ResidualReport fitted;
+	private final int folds;
+	private final boolean leaveOneOut;
+	private final int failed;
+	private final long nanos;
+
+	CrossValidationResult(double[] translation, double[] rotation, ResidualStatistics translationStatistics,
+			ResidualStatistics rotationStatistics, ResidualReport fitted, int folds, boolean leaveOneOut, int failed, long nanos) {
+		this.translation = translation;
+		this.rotation = rotation;
+		this.translationStatistics = translationStatistics;
+		this.rotationStatistics = rotationStatistics;
+		this.fitted = fitted;
+		this.folds = folds;
+		this.leaveOneOut = leaveOneOut;
+		this.failed = failed;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return number of measurement pairs
+	 */
+	public int getSize() {
+		return translation.length;
+	}
+
+	/**
+	 * @param i index of the measurement pair
+	 * @return distance between the translations of Mi*X and Y*Ni in mm with X and Y solved without the pair, NaN if its fold was singular
+	 */
+	public double getTranslation(int i) {
+		return translation[i];
+	}
+
+	/**
+	 * @param i index of the measurement pair
+	 * @return angle of the rotation between Mi*X and Y*Ni in degrees with X and Y solved without the pair, NaN if its fold was singular
+	 */
+	public double getRotation(int i) {
+		return rotation[i];
+	}
+
+	/**
+	 * @return statistics of the translational prediction errors in mm
+	 */
+	public ResidualStatistics getTranslationStatistics() {
+		return translationStatistics;
+	}
+
+	/**
+	 * @return statistics of the rotational prediction errors in degrees
+	 */
+	public ResidualStatistics getRotationStatistics() {
+		return rotationStatistics;
+	}
+
+	/**
+	 * @return residuals of the calibration of the complete set
+	 */
+	public ResidualReport getFitted() {
+		return fitted;
+	}
+
+	/**
+	 * Aggregate score of the cross-validation, close to 1 for a well determined calibration without bad captures.
+	 * Leaving a pair out always raises its error a little, a ratio well above the one expected for the number
+	 * of pairs means that the result depends on few pairs.
+	 * @return RMS of the translational prediction errors divided by the RMS of the translational residuals
+	 */
+	public double getScore() {
+		return translationStatistics.getRms()/fitted.getTranslationStatistics().getRms();
+	}
+
+	/**
+	 * @param count largest number of indices
+	 * @return indices of the pairs with the largest translational prediction errors, largest first
+	 */
+	public int[] getWorst(int count) {
+		count = Math.min(count, translationStatistics.getCount());
+		int[] worst = new int[count];
+		int found = 0;
+		// insertion into the short sorted list, count is small compared to the number of pairs
+		for(int i=0;i<translation.length;i++) {
+			double t = translation[i];
+			if(Double.isNaN(t) || found==count && !(t>translation[worst[count-1]])) {
+				continue;
+			}
+			int k = found<count ? found++ : count-1;
+			while(k>0 && translation[worst[k-1]]<t) {
+				worst[k] = worst[k-1];
+				k--;
+			}
+			worst[k] = i;
+		}
+		return worst;
+	}
+
+	/**
+	 * @return number of folds, equal to the number of pairs for leave-one-out
+	 */
+	public int getFolds() {
+		return folds;
+	}
+
+	/**
+	 * @return number of folds whose complement was singular, their pairs aren't part of the statistics
+	 */
+	public int getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return duration of the cross-validation in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		text.append(leaveOneOut ? "leave-one-out" : folds+"-fold").append(" of ").append(translation.length)
+				.append(" pairs (").append(failed).append(" singular) in ").append(nanos/1000000).append(" ms, score ")
+				.append(String.format(Locale.ROOT, "%.3f", getScore()));
+		text.append(System.lineSeparator()).append("predicted ").append(translationStatistics);
+		text.append(System.lineSeparator()).append("predicted ").append(rotationStatistics);
+		text.append(System.lineSeparator()).append("fitted    ").append(fitted.getTranslationStatistics());
+		text.append(System.lineSeparator()).append("fitted    ").append(fitted.getRotationStatistics());
+		text.append(System.lineSeparator()).append("worst:");
+		for(int i : getWorst(5)) {
+			text.append(String.format(Locale.ROOT, " #%d %.3f mm", i, translation[i]));
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,277 @@
+package robCalibration;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Watches the measurements while they are collected and tells before the solve whether they determine X and Y.
+ * Two quantities are updated with every pair:
+ * <pre>
+ *   information A^T*A (24x24)    rank-12 update with the block Ai, O(12*24^2)
+ *   rotation scatter (3x3)       sum of w*w^T, w the rotation vector of the robot pose relative to the first one
+ * </pre>
+ * The verdict scales the information matrix to unit diagonal, so rotational and translational unknowns are comparable,
+ * factorizes it and estimates its extreme eigenvalues ({@link SmallDense#conditionEstimate(double[], double[], int)}).
+ * A failing factorization means the measurements are rank-deficient, a large condition number that they are badly
+ * conditioned; the rotation scatter explains why, e.g. when all poses rotate about a single axis.
+ * The condition is evaluated automatically after every {@value #CHECK_INTERVAL} measurements, or 1/8 of them if
+ * that is more, to find the point where enough information was collected; the automatic checks cost less than the
+ * updates then. The full verdict is evaluated on demand by {@link #getReport()} and {@link #check()}.
+ * A monitor isn't thread-safe.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * ===
+ */
+public class DegeneracyMonitor {
+
+	/**
+	 * smallest number of measurements between two automatic verdicts, the interval grows with 1/8 of the measurements
+	 */
+	static final int CHECK_INTERVAL = 8;
+
+	/**
+	 * smallest number of measurements that can determine X and Y
+	 */
+	static final int MIN_MEASUREMENTS = 3;
+
+	/**
+	 * axis diversity below which the rotations count as rotations about a single axis in the diagnostic
+	 */
+	private static final double SINGLE_AXIS = 1e-4;
+
+	/**
+	 * largest rotation below which the poses count as not rotating in the diagnostic, degrees
+	 */
+	private static final double NO_ROTATION = 1;
+
+	private static final int N = BlockAssembler.COLUMNS;
+
+	private double conditionLimit = 1e4;
+	private double sufficientCondition = 50;
+	private int sufficientMeasurements = 20;
+
+	/**
+	 * upper triangle of A^T*A, rotation of the first robot pose and scatter of the rotation vectors
+	 */
+	private final double[] information = new double[N*N];
+	private final double[] first = new double[BlockAssembler.POSE_SIZE];
+	private final double[] scatter = new double[9];
+	private double maxAngle = 0;
+	private long measurements = 0;
+	private long sufficientAt = -1;
+	private long nextCheck = 0;
+
+	/**
+	 * scratch buffers
+	 */
+	private final double[] a = new double[BlockAssembler.ROWS*N];
+	private final double[] m = new double[BlockAssembler.POSE_SIZE];
+	private final double[] n = new double[BlockAssembler.POSE_SIZE];
+	private final double[] relative = new double[BlockAssembler.POSE_SIZE];
+	private final double[] vector = new double[3];
+	private final double[] quaternion = new double[4];
+	private final double[] factor = new double[N*N];
+	private final double[] work = new double[2*N];
+
+	/**
+	 * @param limit largest condition number of the column scaled system that is accepted, 1e4 by default
+	 * @return this monitor
+	 */
+	public DegeneracyMonitor setConditionLimit(double limit) {
+		if(!(limit>=1)) {
+			throw new IllegalArgumentException("Limit has to be at least 1, got "+limit+".");
+		}
+		this.conditionLimit = limit;
+		return this;
+	}
+
+	/**
+	 * @param condition condition number of the column scaled system at which enough information was collected, 50 by default
+	 * @param measurements smallest number of measurements that is sufficient, 20 by default
+	 * @return this monitor
+	 */
+	public DegeneracyMonitor setSufficient(double condition, int measurements) {
+		if(!(condition>=1) || measurements<MIN_MEASUREMENTS) {
+			throw new IllegalArgumentException("Condition has to be at least 1 and measurements at least "+MIN_MEASUREMENTS+".");
+		}
+		this.sufficientCondition = condition;
+		this.sufficientMeasurements = measurements;
+		return this;
+	}
+
+	/**
+	 * Adds a single pair of measuring data
+	 * @param robot pose matrix of robot (4x4)
+	 * @param tracker measured data by tracking system (4x4)
+	 */
+	public void add(RealMatrix robot, RealMatrix tracker) {
+		BlockAssembler.copyPose(robot, m, 0);
+		BlockAssembler.copyPose(tracker, n, 0);
+		add(m, 0, n, 0);
+	}
+
+	/**
+	 * Adds a single pair of measuring data given as arrays
+	 * @param robot array containing the robot pose
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the tracker pose
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 */
+	public void add(double[] robot, int robotOffset, double[] tracker, int trackerOffset) {
+		BlockAssembler.assembleA(robot, robotOffset, tracker, trackerOffset, a, 0);
+		for(int row=0;row<BlockAssembler.ROWS;row++) {
+			int o = row*N;
+			for(int i=0;i<N;i++) {
+				double ai = a[o+i];
+				if(ai==0) {
+					continue;
+				}
+				for(int j=i;j<N;j++) {
+					information[i*N+j] += ai*a[o+j];
+				}
+			}
+		}
+
+		if(measurements==0) {
+			System.arraycopy(robot, robotOffset, first, 0, BlockAssembler.POSE_SIZE);
+		}else {
+			// R0^T*Ri
+			for(int r=0;r<3;r++) {
+				for(int c=0;c<3;c++) {
+					relative[r*4+c] = first[r]*robot[robotOffset+c]+first[4+r]*robot[robotOffset+4+c]+first[8+r]*robot[robotOffset+8+c];
+				}
+			}
+			Rotations.toRotationVector(relative, 0, vector, 0, quaternion);
+			for(int r=0;r<3;r++) {
+				for(int c=0;c<3;c++) {
+					scatter[r*3+c] += vector[r]*vector[c];
+				}
+			}
+			maxAngle = Math.max(maxAngle, Math.sqrt(vector[0]*vector[0]+vector[1]*vector[1]+vector[2]*vector[2]));
+		}
+		measurements++;
+
+		if(sufficientAt<0 && measurements>=sufficientMeasurements && measurements>=nextCheck) {
+			nextCheck = measurements+Math.max(CHECK_INTERVAL, measurements/8);
+			if(condition()<=sufficientCondition) {
+				sufficientAt = measurements;
+			}
+		}
+	}
+
+	/**
+	 * Evaluates the measurements collected so far
+	 * @return verdict with diagnostic
+	 */
+	public DegeneracyReport getReport() {
+		double diversity = axisDiversity();
+		double maxRotation = Math.toDegrees(maxAngle);
+		if(measurements<MIN_MEASUREMENTS) {
+			return new DegeneracyReport(DegeneracyReport.Status.COLLECTING, measurements, Double.NaN, diversity, maxRotation,
+					sufficientAt, "At least "+MIN_MEASUREMENTS+" measurements are needed, got "+measurements+".");
+		}
+		double condition = condition();
+		String reason = maxRotation<NO_ROTATION ? String.format(Locale.ROOT, " The robot poses barely rotate (at most %.2f deg).", maxRotation)
+				: diversity<SINGLE_AXIS ? " The robot poses rotate about a single axis." : "";
+		DegeneracyReport.Status status;
+		String message;
+		if(Double.isInfinite(condition)) {
+			status = DegeneracyReport.Status.RANK_DEFICIENT;
+			message = "The measurements don't determine X and Y."+reason;
+		}else if(condition>conditionLimit) {
+			status = DegeneracyReport.Status.ILL_CONDITIONED;
+			message = String.format(Locale.ROOT, "The measurements are badly conditioned (%.3g, limit %.3g), noise is amplified accordingly.%s",
+					condition, conditionLimit, reason);
+		}else if(condition<=sufficientCondition && measurements>=sufficientMeasurements) {
+			status = DegeneracyReport.Status.SUFFICIENT;
+			message = "Enough information has been collected.";
+		}else {
+			status = DegeneracyReport.Status.SOLVABLE;
+			message = "X and Y can be solved, more varied poses improve the result.";
+		}
+		if(status==DegeneracyReport.Status.SUFFICIENT && sufficientAt<0) {
+			sufficientAt = measurements;
+		}
+		return new DegeneracyReport(status, measurements, condition, diversity, maxRotation, sufficientAt, message);
+	}
+
+	/**
+	 * Stops a calibration early if the measurements don't determine X and Y well
+	 * @return verdict of a solvable set
+	 * @throws Exception Error with the diagnostic when there're too few measurements, or they're rank-deficient or badly conditioned
+	 */
+	public DegeneracyReport check() throws Exception {
+		DegeneracyReport report = getReport();
+		if(!report.isSolvable()) {
+			throw new Exception(report.getMessage());
+		}
+		return report;
+	}
+
+	/**
+	 * @return number of measurements added so far
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * Removes all measurements
+	 */
+	public void reset() {
+		Arrays.fill(information, 0);
+		Arrays.fill(scatter, 0);
+		maxAngle = 0;
+		measurements = 0;
+		sufficientAt = -1;
+		nextCheck = 0;
+	}
+
+	/**
+	 * condition estimate of the column scaled A, infinite if its information matrix is singular
+	 */
+	private double condition() {
+		System.arraycopy(information, 0, factor, 0, N*N);
+		for(int j=0;j<N;j++) {
+			if(!(factor[j*N+j]>0)) {
+				return Double.POSITIVE_INFINITY;
+			}
+			work[j] = 1d/Math.sqrt(factor[j*N+j]);
+		}
+		for(int i=0;i<N;i++) {
+			for(int j=i;j<N;j++) {
+				factor[i*N+j] *= work[i]*work[j];
+			}
+		}
+		if(!SmallDense.cholesky(factor, N, SmallDense.PIVOT_TOLERANCE)) {
+			return Double.POSITIVE_INFINITY;
+		}
+		// A^T*A squares the condition number of A
+		return Math.sqrt(SmallDense.conditionEstimate(factor, work, N));
+	}
+
+	/**
+	 * ratio of the second largest to the largest eigenvalue of the rotation scatter
+	 */
+	private double axisDiversity() {
+		double[][] s = new double[3][3];
+		for(int r=0;r<3;r++) {
+			for(int c=0;c<3;c++) {
+				s[r][c] = scatter[r*3+c];
+			}
+		}
+		if(s[0][0]+s[1][1]+s[2][2]<=0) {
+			return 0;
+		}
+		// eigenvalues in descending order
+		double[] eigenvalues = new EigenDecomposition(new Array2DRowRealMatrix(s, false)).getRealEigenvalues();
+		return Math.max(0, eigenvalues[1]/eigenvalues[0]);
+	}
+}
@@ -0,0 +1,114 @@
+package robCalibration;
+
+import java.util.Locale;
+
+/**
+ * State of a {@link DegeneracyMonitor}: whether the measurements collected so far determine X and Y, and how well.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of angles: degree
+ * ===
+ */
+public class DegeneracyReport {
+
+	/**
+	 * verdict on the measurements, in the order of increasing information
+	 */
+	public enum Status {
+		/** less than three measurements, no verdict yet */
+		COLLECTING,
+		/** X and Y are not determined, the solve would fail or return an arbitrary solution */
+		RANK_DEFICIENT,
+		/** X and Y are determined, but the noise of the measurements is amplified by more than the condition limit */
+		ILL_CONDITIONED,
+		/** X and Y can be solved */
+		SOLVABLE,
+		/** enough information has been collected, the capture can stop */
+		SUFFICIENT
+	}
+
+	private final Status status;
+	private final long measurements;
+	private final double condition;
+	private final double axisDiversity;
+	private final double maxRotation;
+	private final long sufficientAt;
+	private final String message;
+
+	DegeneracyReport(Status status, long measurements, double condition, double axisDiversity, double maxRotation,
+			long sufficientAt, String message) {
+		this.status = status;
+		this.measurements = measurements;
+		this.condition = condition;
+		this.axisDiversity = axisDiversity;
+		this.maxRotation = maxRotation;
+		this.sufficientAt = sufficientAt;
+		this.message = message;
+	}
+
+	/**
+	 * @return verdict on the measurements
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return true if X and Y can be solved from the measurements
+	 */
+	public boolean isSolvable() {
+		return status==Status.SOLVABLE || status==Status.SUFFICIENT;
+	}
+
+	/**
+	 * @return number of measurements collected
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return estimate of the condition number of the column scaled system A, the ratio of the square roots of the
+	 *         largest and smallest eigenvalue of the information matrix A^T*A; infinite if rank-deficient, NaN while collecting
+	 */
+	public double getCondition() {
+		return condition;
+	}
+
+	/**
+	 * @return ratio of the second largest to the largest eigenvalue of the scatter of the robot rotation vectors,
+	 *         0 if all poses rotate about a single axis, 1 for rotations about all axes alike
+	 */
+	public double getAxisDiversity() {
+		return axisDiversity;
+	}
+
+	/**
+	 * @return largest rotation of a robot pose relative to the first one in degrees
+	 */
+	public double getMaxRotation() {
+		return maxRotation;
+	}
+
+	/**
+	 * @return number of measurements at which the status first was {@link Status#SUFFICIENT}, -1 if never
+	 */
+	public long getSufficientAt() {
+		return sufficientAt;
+	}
+
+	/**
+	 * @return diagnostic for the user
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%s after %d measurements%s, condition %.4g, axis diversity %.3f, max rotation %.1f deg: %s",
+				status, measurements, sufficientAt>=0 ? " (sufficient at "+sufficientAt+")" : "", condition, axisDiversity,
+				maxRotation, message);
+	}
+}
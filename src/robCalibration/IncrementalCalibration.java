@@ -0,0 +1,129 @@
+package robCalibration;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Measurement pairs of a calibration that an operator can add or exclude one at a time, each change is applied
+ * to an {@link IncrementalQR} in O(24^2) instead of solving the whole system again. The poses are kept, so an
+ * excluded pair can be included again and the factor can be rebuilt from the included pairs: after a failed
+ * downdate and after every {@value #REFACTORIZE_INTERVAL} removals, to bound the loss of accuracy.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses are kept as the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * ===
+ */
+public class IncrementalCalibration {
+
+	/**
+	 * number of removals after which the factor is rebuilt from the included pairs
+	 */
+	static final int REFACTORIZE_INTERVAL = 1000;
+
+	private static final int P = BlockAssembler.POSE_SIZE;
+
+	private final IncrementalQR qr = new IncrementalQR();
+
+	private double[] robot = new double[16*P];
+	private double[] tracker = new double[16*P];
+	private boolean[] excluded = new boolean[16];
+	private int size = 0;
+	private int removals = 0;
+
+	/**
+	 * Adds a pair and includes it into the system
+	 * @param robot pose matrix of robot (4x4)
+	 * @param tracker measured data by tracking system (4x4)
+	 * @return index of the pair
+	 */
+	public int add(RealMatrix robot, RealMatrix tracker) {
+		if(size==excluded.length) {
+			int capacity = 2*size;
+			this.robot = Arrays.copyOf(this.robot, capacity*P);
+			this.tracker = Arrays.copyOf(this.tracker, capacity*P);
+			excluded = Arrays.copyOf(excluded, capacity);
+		}
+		BlockAssembler.copyPose(robot, this.robot, size*P);
+		BlockAssembler.copyPose(tracker, this.tracker, size*P);
+		qr.add(this.robot, size*P, this.tracker, size*P);
+		return size++;
+	}
+
+	/**
+	 * Excludes a pair from the system or includes it again
+	 * @param index index of the pair
+	 * @param exclude true to exclude the pair, false to include it
+	 */
+	public void setExcluded(int index, boolean exclude) {
+		if(index<0 || index>=size) {
+			throw new IndexOutOfBoundsException("Pair "+index+" of "+size+".");
+		}
+		if(excluded[index]==exclude) {
+			return;
+		}
+		excluded[index] = exclude;
+		if(!exclude) {
+			qr.add(robot, index*P, tracker, index*P);
+		}else if(++removals>=REFACTORIZE_INTERVAL || !qr.remove(robot, index*P, tracker, index*P)) {
+			refactorize();
+		}
+	}
+
+	/**
+	 * @param index index of the pair
+	 * @return true if the pair is excluded from the system
+	 */
+	public boolean isExcluded(int index) {
+		if(index<0 || index>=size) {
+			throw new IndexOutOfBoundsException("Pair "+index+" of "+size+".");
+		}
+		return excluded[index];
+	}
+
+	/**
+	 * @return number of pairs, included and excluded
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of pairs included in the system
+	 */
+	public long getIncluded() {
+		return qr.getMeasurements();
+	}
+
+	/**
+	 * Solves the system of the included pairs
+	 * @return solution vector w, the first 12 entries belong to X, the last 12 entries to Y
+	 * @throws Exception Error when there're not enough included pairs or the system is singular
+	 */
+	public RealVector solve() throws Exception {
+		return qr.solve();
+	}
+
+	/**
+	 * @return norm of the residual of the linear system of the included pairs
+	 */
+	public double getResidualNorm() {
+		return qr.getResidualNorm();
+	}
+
+	/**
+	 * Rebuilds the factor from the included pairs
+	 */
+	public void refactorize() {
+		qr.reset();
+		for(int i=0;i<size;i++) {
+			if(!excluded[i]) {
+				qr.add(robot, i*P, tracker, i*P);
+			}
+		}
+		removals = 0;
+	}
+}
@@ -0,0 +1,321 @@
+package robCalibration;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * QR factorization of the QR24 system that is updated instead of recomputed when measurements are added or removed.
+ * Only the triangular factor R (24x24) of A = Q*R, the vector z = Q^T*B and the norm of the residual are kept,
+ * Q itself is never formed:
+ * <pre>
+ *   add      every row of Ai is rotated into R by Givens rotations                 (LINPACK dchud)
+ *   remove   R^T*R - ai*ai^T is refactorized by the rotations that map R^T*p = ai   (LINPACK dchdd)
+ *   solve    back substitution R*w = z
+ * </pre>
+ * Each of them costs O(24^2) per row, independent of the number of measurements. Only measurements that
+ * were added can be removed. A removal fails if the remaining system would be singular in the precision at hand;
+ * the factor is unchanged then and the caller has to refactorize from the remaining measurements.
+ * Many removals slowly lose accuracy, as every downdate does, so a long-running caller should refactorize now and then.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * ===
+ */
+public class IncrementalQR {
+
+	/**
+	 * number of unknowns, 12 entries of X followed by 12 entries of Y
+	 */
+	private static final int N = BlockAssembler.COLUMNS;
+
+	/**
+	 * relative size of the smallest diagonal entry of R that is accepted by the solve
+	 */
+	private static final double RANK_TOLERANCE = 1e-12;
+
+	/**
+	 * upper triangular factor R, row-major 24x24, z = Q^T*B and the norm of the residual
+	 */
+	private final double[] r = new double[N*N];
+	private final double[] z = new double[N];
+	private double rho = 0;
+
+	/**
+	 * scratch buffers
+	 */
+	private final double[] a = new double[BlockAssembler.ROWS*N];
+	private final double[] b = new double[BlockAssembler.ROWS];
+	private final double[] m = new double[BlockAssembler.POSE_SIZE];
+	private final double[] n = new double[BlockAssembler.POSE_SIZE];
+	private final double[] row = new double[N];
+	private final double[] cos = new double[N];
+	private final double[] sin = new double[N];
+	private final double[] savedR = new double[N*N];
+	private final double[] savedZ = new double[N];
+
+	private long measurements = 0;
+
+	/**
+	 * Adds a single pair of measuring data
+	 * @param robot pose matrix of robot (4x4)
+	 * @param tracker measured data by tracking system (4x4)
+	 */
+	public void add(RealMatrix robot, RealMatrix tracker) {
+		BlockAssembler.copyPose(robot, m, 0);
+		BlockAssembler.copyPose(tracker, n, 0);
+		add(m, 0, n, 0);
+	}
+
+	/**
+	 * Adds a single pair of measuring data given in primitive form
+	 * @param robot array containing the robot pose
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the pose measured by the tracking system
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 */
+	public void add(double[] robot, int robotOffset, double[] tracker, int trackerOffset) {
+		BlockAssembler.assembleA(robot, robotOffset, tracker, trackerOffset, a, 0);
+		BlockAssembler.assembleB(robot, robotOffset, b, 0);
+		for(int i=0;i<BlockAssembler.ROWS;i++) {
+			System.arraycopy(a, i*N, row, 0, N);
+			update(row, b[i]);
+		}
+		measurements++;
+	}
+
+	/**
+	 * Removes a pair that was added before
+	 * @param robot pose matrix of robot (4x4), the same as added
+	 * @param tracker measured data by tracking system (4x4), the same as added
+	 * @return false if the remaining system is numerically singular, nothing is removed then
+	 */
+	public boolean remove(RealMatrix robot, RealMatrix tracker) {
+		BlockAssembler.copyPose(robot, m, 0);
+		BlockAssembler.copyPose(tracker, n, 0);
+		return remove(m, 0, n, 0);
+	}
+
+	/**
+	 * Removes a pair given in primitive form that was added before
+	 * @param robot array containing the robot pose, the same as added
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the pose measured by the tracking system, the same as added
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 * @return false if the remaining system is numerically singular, nothing is removed then
+	 */
+	public boolean remove(double[] robot, int robotOffset, double[] tracker, int trackerOffset) {
+		if(measurements==0) {
+			return false;
+		}
+		BlockAssembler.assembleA(robot, robotOffset, tracker, trackerOffset, a, 0);
+		BlockAssembler.assembleB(robot, robotOffset, b, 0);
+		System.arraycopy(r, 0, savedR, 0, N*N);
+		System.arraycopy(z, 0, savedZ, 0, N);
+		double savedRho = rho;
+		for(int i=0;i<BlockAssembler.ROWS;i++) {
+			System.arraycopy(a, i*N, row, 0, N);
+			if(!downdate(row, b[i])) {
+				// the rows removed so far are restored
+				System.arraycopy(savedR, 0, r, 0, N*N);
+				System.arraycopy(savedZ, 0, z, 0, N);
+				rho = savedRho;
+				return false;
+			}
+		}
+		measurements--;
+		return true;
+	}
+
+	/**
+	 * Adds all rows of another factorization, e.g. of another block of measurements of a tall system.
+	 * The result is the factorization of both sets of measurements, the other factorization is not changed.
+	 * @param other factorization to add
+	 */
+	public void merge(IncrementalQR other) {
+		for(int k=0;k<N;k++) {
+			// row k of R starts at the diagonal
+			Arrays.fill(row, 0, k, 0);
+			System.arraycopy(other.r, k*N+k, row, k, N-k);
+			update(row, other.z[k]);
+		}
+		rho = Math.sqrt(rho*rho+other.rho*other.rho);
+		measurements += other.measurements;
+	}
+
+	/**
+	 * Multiplies all rows added so far by a factor. With the square root of a forgetting factor before every add,
+	 * the solve weights a measurement that is k adds old by the forgetting factor to the power of k.
+	 * Scaled measurements can't be removed anymore.
+	 * @param factor factor of the rows, at least 0
+	 */
+	public void scale(double factor) {
+		for(int k=0;k<N;k++) {
+			for(int j=k;j<N;j++) {
+				r[k*N+j] *= factor;
+			}
+			z[k] *= factor;
+		}
+		rho *= factor;
+	}
+
+	/**
+	 * Copies the current factorization
+	 * @param factor target of R, row-major 24x24
+	 * @param rhs target of z = Q^T*B, 24 entries
+	 */
+	public void getFactor(double[] factor, double[] rhs) {
+		System.arraycopy(r, 0, factor, 0, N*N);
+		System.arraycopy(z, 0, rhs, 0, N);
+	}
+
+	/**
+	 * rotates the row (x, y) into R, z and rho, x is overwritten
+	 */
+	private void update(double[] x, double y) {
+		for(int k=0;k<N;k++) {
+			double xk = x[k];
+			if(xk==0) {
+				continue;
+			}
+			int diagonal = k*N+k;
+			double rkk = r[diagonal];
+			double h = Math.sqrt(rkk*rkk+xk*xk);
+			double c = rkk/h, s = xk/h;
+			r[diagonal] = h;
+			for(int j=k+1;j<N;j++) {
+				double t = r[k*N+j];
+				r[k*N+j] = c*t+s*x[j];
+				x[j] = c*x[j]-s*t;
+			}
+			double t = z[k];
+			z[k] = c*t+s*y;
+			y = c*y-s*t;
+		}
+		rho = Math.sqrt(rho*rho+y*y);
+	}
+
+	/**
+	 * removes the row (x, y) from R, z and rho, x is overwritten
+	 * @return false if R^T*R - x*x^T isn't positive definite
+	 */
+	private boolean downdate(double[] x, double y) {
+		// solve R^T*p = x, p overwrites x
+		double norm = 0;
+		for(int j=0;j<N;j++) {
+			double s = x[j];
+			for(int k=0;k<j;k++) {
+				s -= r[k*N+j]*x[k];
+			}
+			double d = r[j*N+j];
+			if(d==0) {
+				return false;
+			}
+			x[j] = s/d;
+			norm += x[j]*x[j];
+		}
+		if(!(norm<1)) {
+			return false;
+		}
+
+		// rotations that reduce (alpha, p) to (1, 0)
+		double alpha = Math.sqrt(1-norm);
+		for(int i=N-1;i>=0;i--) {
+			double scale = alpha+Math.abs(x[i]);
+			double ca = alpha/scale, sb = x[i]/scale;
+			double h = Math.sqrt(ca*ca+sb*sb);
+			cos[i] = ca/h;
+			sin[i] = sb/h;
+			alpha = scale*h;
+		}
+
+		// apply them to the columns of R
+		for(int j=0;j<N;j++) {
+			double xx = 0;
+			for(int i=j;i>=0;i--) {
+				double t = cos[i]*xx+sin[i]*r[i*N+j];
+				r[i*N+j] = cos[i]*r[i*N+j]-sin[i]*xx;
+				xx = t;
+			}
+		}
+
+		// and to z, the part of y left over reduces the residual
+		double zeta = y;
+		for(int i=0;i<N;i++) {
+			z[i] = (z[i]-sin[i]*zeta)/cos[i];
+			zeta = cos[i]*zeta-sin[i]*z[i];
+		}
+		double azeta = Math.abs(zeta);
+		rho = azeta<rho ? rho*Math.sqrt(1-(azeta/rho)*(azeta/rho)) : 0;
+		return true;
+	}
+
+	/**
+	 * Solves the current system
+	 * @param w target array for the solution, the first 12 entries belong to X, the last 12 entries to Y
+	 * @param offset index of the first entry in w
+	 * @return false if R is numerically singular, w is undefined then
+	 */
+	public boolean solve(double[] w, int offset) {
+		double largest = 0;
+		for(int k=0;k<N;k++) {
+			largest = Math.max(largest, Math.abs(r[k*N+k]));
+		}
+		for(int k=N-1;k>=0;k--) {
+			double d = r[k*N+k];
+			if(!(Math.abs(d)>RANK_TOLERANCE*largest)) {
+				return false;
+			}
+			double s = z[k];
+			for(int j=k+1;j<N;j++) {
+				s -= r[k*N+j]*w[offset+j];
+			}
+			w[offset+k] = s/d;
+		}
+		return true;
+	}
+
+	/**
+	 * Solves the current system
+	 * @return solution vector w, the first 12 entries belong to X, the last 12 entries to Y
+	 * @throws Exception Error when there're not enough measurements or the system is singular
+	 */
+	public RealVector solve() throws Exception {
+		if(measurements<2) {
+			throw new Exception("At least two measurements are needed, got "+measurements+".");
+		}
+		double[] w = new double[N];
+		if(!solve(w, 0)) {
+			throw new Exception("Triangular factor is singular, the measurements are degenerated.");
+		}
+		return new ArrayRealVector(w, false);
+	}
+
+	/**
+	 * @return norm of the residual A*w - B of the least-squares solution
+	 */
+	public double getResidualNorm() {
+		return rho;
+	}
+
+	/**
+	 * @return number of measurements in the system
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * Removes all measurements
+	 */
+	public void reset() {
+		Arrays.fill(r, 0);
+		Arrays.fill(z, 0);
+		rho = 0;
+		measurements = 0;
+	}
+}
@@ -0,0 +1,448 @@
+package robCalibration;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Nonlinear refinement of X and Y on SE(3). The linear QR24 system treats the rotations as nine free entries
+ * and orthonormalizes them afterwards, which isn't the best fit anymore. This refinement minimizes the geometric
+ * residuals of Mi*X and Y*Ni directly:
+ * <pre>
+ *   translation  tMX - tYN                          (mm)
+ *   rotation     w * log(RYN^T * RMX)               (rotation vector in radians, weighted by w in mm per radian)
+ * </pre>
+ * X is updated by RX*exp(a), tX+b and Y by exp(c)*RY, tY+d, so the rotations stay orthonormal. The Jacobians of the
+ * residuals with respect to (a, b, c, d) are analytic, including the inverse right Jacobian of the logarithm.
+ * Levenberg-Marquardt steps with damping proportional to the diagonal of J^T*J are taken until one of the
+ * stopping criteria holds. Started from the linear solution a few iterations are enough.
+ *
+ * Every iteration passes over the pairs once for J^T*J, J^T*r and the cost and once for the cost of the trial step.
+ * The passes are split into chunks of {@value #CHUNK} pairs, evaluated in parallel on a fork-join pool and combined
+ * in chunk order, so the cost of an iteration is linear in the number of pairs and the result doesn't depend on the
+ * number of threads.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of angles: radian
+ * ===
+ */
+public class LevenbergMarquardtRefinement {
+
+	/**
+	 * number of pairs evaluated by a single fork-join task
+	 */
+	static final int CHUNK = 8192;
+
+	/**
+	 * number of parameters: rotation and translation of X, rotation and translation of Y
+	 */
+	private static final int PARAMETERS = 12;
+
+	/**
+	 * entries of the sums of a chunk: cost, J^T*r, J^T*J
+	 */
+	private static final int STRIDE = 1+PARAMETERS+PARAMETERS*PARAMETERS;
+
+	private static final double[] NEGATIVE_IDENTITY = {-1, 0, 0, 0, -1, 0, 0, 0, -1};
+
+	private static final double INITIAL_DAMPING = 1e-3;
+	private static final double MAX_DAMPING = 1e12;
+
+	private double rotationWeight = 100;
+	private int maxIterations = 20;
+	private double costTolerance = 1e-10;
+	private double stepTolerance = 1e-9;
+	private double gradientTolerance = 1e-10;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param millimeterPerRadian weight of the rotational residuals, the ratio of the expected translational
+	 * and rotational errors, e.g. 0.1 mm / 0.001 rad = 100
+	 * @return this refinement
+	 */
+	public LevenbergMarquardtRefinement setRotationWeight(double millimeterPerRadian) {
+		if(!(millimeterPerRadian>0)) {
+			throw new IllegalArgumentException("Rotation weight must be positive.");
+		}
+		this.rotationWeight = millimeterPerRadian;
+		return this;
+	}
+
+	/**
+	 * @param iterations largest number of accepted steps
+	 * @return this refinement
+	 */
+	public LevenbergMarquardtRefinement setMaxIterations(int iterations) {
+		if(iterations<1) {
+			throw new IllegalArgumentException("At least one iteration is needed.");
+		}
+		this.maxIterations = iterations;
+		return this;
+	}
+
+	/**
+	 * @param tolerance stop when a step decreases the cost by less than this fraction
+	 * @return this refinement
+	 */
+	public LevenbergMarquardtRefinement setCostTolerance(double tolerance) {
+		this.costTolerance = Math.max(0, tolerance);
+		return this;
+	}
+
+	/**
+	 * @param tolerance stop when no entry of a step is larger, in mm and radians
+	 * @return this refinement
+	 */
+	public LevenbergMarquardtRefinement setStepTolerance(double tolerance) {
+		this.stepTolerance = Math.max(0, tolerance);
+		return this;
+	}
+
+	/**
+	 * @param tolerance stop when the cosine between the residuals and every column of the Jacobian is smaller
+	 * @return this refinement
+	 */
+	public LevenbergMarquardtRefinement setGradientTolerance(double tolerance) {
+		this.gradientTolerance = Math.max(0, tolerance);
+		return this;
+	}
+
+	/**
+	 * @param pool pool evaluating the chunks, the common pool by default, null to evaluate them on the calling thread
+	 * @return this refinement
+	 */
+	public LevenbergMarquardtRefinement setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * @return the settings that change the result, e.g. as part of the options of a cache key
+	 */
+	@Override
+	public String toString() {
+		return "LevenbergMarquardt rotationWeight="+rotationWeight+" maxIterations="+maxIterations+" costTolerance="+costTolerance
+				+" stepTolerance="+stepTolerance+" gradientTolerance="+gradientTolerance;
+	}
+
+	/**
+	 * Refines X and Y
+	 * @param pairs measurement pairs
+	 * @param startX start value of the transformation from end-effector to marker, e.g. the QR24 solution (4x4)
+	 * @param startY start value of the transformation from robot base to tracking system (4x4)
+	 * @return refined X and Y
+	 * @throws Exception Error when there're no measurements
+	 * @throws InterruptedException The refining thread was interrupted between two iterations
+	 */
+	public RefinementResult run(PosePairSource pairs, RealMatrix startX, RealMatrix startY) throws Exception {
+		long start = System.nanoTime();
+		if(pairs.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		double[] x = new double[BlockAssembler.POSE_SIZE];
+		double[] y = new double[BlockAssembler.POSE_SIZE];
+		BlockAssembler.copyPose(startX, x, 0);
+		BlockAssembler.copyPose(startY, y, 0);
+
+		double[] sums = new double[STRIDE];
+		double[] trialSums = new double[STRIDE];
+		double[] a = new double[PARAMETERS*PARAMETERS];
+		double[] step = new double[PARAMETERS];
+		double[] scale = new double[PARAMETERS];
+		double[] trialX = new double[BlockAssembler.POSE_SIZE];
+		double[] trialY = new double[BlockAssembler.POSE_SIZE];
+		double[] delta = new double[BlockAssembler.POSE_SIZE];
+		double[] quaternion = new double[4];
+
+		double initialCost = Double.NaN;
+		double cost = Double.NaN;
+		double damping = INITIAL_DAMPING;
+		int iterations = 0;
+		RefinementResult.Termination termination = RefinementResult.Termination.ITERATIONS;
+		while(iterations<maxIterations) {
+			if(Thread.currentThread().isInterrupted()) {
+				throw new InterruptedException("Refinement cancelled.");
+			}
+			long iterationStart = System.nanoTime();
+			evaluate(pairs, x, y, true, sums);
+			cost = sums[0];
+			if(iterations==0) {
+				initialCost = cost;
+			}
+			if(isStationary(sums, cost)) {
+				termination = RefinementResult.Termination.GRADIENT;
+				break;
+			}
+
+			// damped steps until one decreases the cost
+			double trialCost = Double.NaN;
+			while(damping<=MAX_DAMPING) {
+				for(int j=0;j<PARAMETERS;j++) {
+					System.arraycopy(sums, 1+PARAMETERS+j*PARAMETERS, a, j*PARAMETERS, PARAMETERS);
+					a[j*PARAMETERS+j] *= 1+damping;
+					step[j] = -sums[1+j];
+				}
+				if(SmallDense.solveSpd(a, step, scale, PARAMETERS)) {
+					update(x, y, step, trialX, trialY, delta, quaternion);
+					evaluate(pairs, trialX, trialY, false, trialSums);
+					trialCost = trialSums[0];
+					if(trialCost<cost) {
+						break;
+					}
+				}
+				damping *= 10;
+			}
+			if(!(damping<=MAX_DAMPING)) {
+				termination = RefinementResult.Termination.DAMPING;
+				break;
+			}
+			damping = Math.max(damping/10, 1e-12);
+			System.arraycopy(trialX, 0, x, 0, BlockAssembler.POSE_SIZE);
+			System.arraycopy(trialY, 0, y, 0, BlockAssembler.POSE_SIZE);
+			double decrease = (cost-trialCost)/cost;
+			cost = trialCost;
+			iterations++;
+			System.out.println("[Refine] iteration "+iterations+": cost "+cost+", damping "+damping+", "
+					+(System.nanoTime()-iterationStart)/1000+" us");
+
+			double largest = 0;
+			for(int j=0;j<PARAMETERS;j++) {
+				largest = Math.max(largest, Math.abs(step[j]));
+			}
+			if(largest<stepTolerance) {
+				termination = RefinementResult.Termination.STEP;
+				break;
+			}
+			if(decrease<costTolerance) {
+				termination = RefinementResult.Termination.COST;
+				break;
+			}
+		}
+		RefinementResult result = new RefinementResult(x, y, initialCost, cost, iterations, termination, System.nanoTime()-start);
+		System.out.println("[Refine] "+result);
+		return result;
+	}
+
+	/**
+	 * gradient criterion: |Jj^T*r| &lt;= tolerance*|Jj|*|r| for every column j
+	 */
+	private boolean isStationary(double[] sums, double cost) {
+		double residualNorm = Math.sqrt(2*cost);
+		for(int j=0;j<PARAMETERS;j++) {
+			double column = Math.sqrt(sums[1+PARAMETERS+j*PARAMETERS+j]);
+			if(Math.abs(sums[1+j])>gradientTolerance*column*residualNorm) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * applies a step: RX*exp(a), tX+b, exp(c)*RY, tY+d
+	 */
+	private static void update(double[] x, double[] y, double[] step, double[] outX, double[] outY, double[] delta,
+			double[] quaternion) {
+		// the translation of delta stays 0
+		RigidTransform pose = new RigidTransform();
+		RigidTransform rotation = new RigidTransform();
+		Rotations.fromRotationVector(step, 0, delta, 0, quaternion);
+		pose.multiply(pose.set(x, 0), rotation.set(delta, 0)).get(outX, 0);
+		Rotations.fromRotationVector(step, 6, delta, 0, quaternion);
+		pose.multiply(rotation.set(delta, 0), pose.set(y, 0)).get(outY, 0);
+		for(int r=0;r<3;r++) {
+			outX[r*4+3] = x[r*4+3]+step[3+r];
+			outY[r*4+3] = y[r*4+3]+step[9+r];
+		}
+	}
+
+	/**
+	 * sums the cost and, if requested, J^T*r and J^T*J of all pairs into total
+	 */
+	private void evaluate(PosePairSource pairs, double[] x, double[] y, boolean jacobian, double[] total) {
+		int chunks = (pairs.size()+CHUNK-1)/CHUNK;
+		int stride = jacobian ? STRIDE : 1;
+		double[] sums = new double[chunks*stride];
+		if(pool==null) {
+			for(int chunk=0;chunk<chunks;chunk++) {
+				evaluateChunk(pairs, x, y, rotationWeight, jacobian, sums, chunk);
+			}
+		}else {
+			pool.invoke(new ChunkTask(pairs, x, y, rotationWeight, jacobian, sums, 0, chunks));
+		}
+		Arrays.fill(total, 0);
+		for(int chunk=0;chunk<chunks;chunk++) {
+			for(int k=0;k<stride;k++) {
+				total[k] += sums[chunk*stride+k];
+			}
+		}
+	}
+
+	/**
+	 * evaluates the pairs of one chunk
+	 */
+	private static void evaluateChunk(PosePairSource pairs, double[] x, double[] y, double weight, boolean jacobian,
+			double[] sums, int chunk) {
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		RigidTransform xt = new RigidTransform(x, 0);
+		RigidTransform yt = new RigidTransform(y, 0);
+		RigidTransform product = new RigidTransform();
+		double[] left = new double[BlockAssembler.POSE_SIZE];
+		double[] right = new double[BlockAssembler.POSE_SIZE];
+		double[] error = new double[BlockAssembler.POSE_SIZE];
+		double[] residual = new double[6];
+		double[] inverse = new double[9];
+		double[] robot = new double[9];
+		double[] skew = new double[9];
+		double[] weighted = new double[9];
+		double[] rotationY = new double[9];
+		double[][] translationBlocks = {null, robot, skew, NEGATIVE_IDENTITY};
+		double[][] rotationBlocks = {weighted, null, rotationY, null};
+		double[] scratch = new double[4];
+		int offset = jacobian ? chunk*STRIDE : chunk;
+		double cost = 0;
+		int end = Math.min(pairs.size(), (chunk+1)*CHUNK);
+		for(int i=chunk*CHUNK;i<end;i++) {
+			pairs.robotPose(i, m, 0);
+			pairs.trackerPose(i, n, 0);
+			product.multiply(product.set(m, 0), xt).get(left, 0);
+			product.multiply(yt, product.set(n, 0)).get(right, 0);
+			double dx = left[3]-right[3], dy = left[7]-right[7], dz = left[11]-right[11];
+			// rotational error RYN^T*RMX, the trial steps need the same residual as the Jacobian pass,
+			// the poses aren't exactly orthonormal and other angle formulas differ slightly
+			for(int r=0;r<3;r++) {
+				for(int c=0;c<3;c++) {
+					error[r*4+c] = right[r]*left[c]+right[4+r]*left[4+c]+right[8+r]*left[8+c];
+				}
+			}
+			Rotations.toRotationVector(error, 0, residual, 3, scratch);
+			double px = residual[3], py = residual[4], pz = residual[5];
+			if(!jacobian) {
+				double angle2 = weight*weight*(px*px+py*py+pz*pz);
+				cost += 0.5*(dx*dx+dy*dy+dz*dz+angle2);
+				continue;
+			}
+			residual[0] = dx;
+			residual[1] = dy;
+			residual[2] = dz;
+			for(int r=0;r<3;r++) {
+				residual[3+r] *= weight;
+			}
+			for(int k=0;k<6;k++) {
+				cost += 0.5*residual[k]*residual[k];
+			}
+
+			// inverse right Jacobian of the logarithm, I + [p]/2 + f*[p]^2
+			double angle2 = px*px+py*py+pz*pz;
+			double angle = Math.sqrt(angle2);
+			// series 1/12+angle^2/720 for small angles, the residuals near the solution
+			double f = angle>1e-2 ? 1/angle2-(1+Math.cos(angle))/(2*angle*Math.sin(angle)) : 1d/12+angle2/720;
+			inverse[0] = 1+f*(-py*py-pz*pz);
+			inverse[1] = -pz/2+f*px*py;
+			inverse[2] = py/2+f*px*pz;
+			inverse[3] = pz/2+f*px*py;
+			inverse[4] = 1+f*(-px*px-pz*pz);
+			inverse[5] = -px/2+f*py*pz;
+			inverse[6] = -py/2+f*px*pz;
+			inverse[7] = px/2+f*py*pz;
+			inverse[8] = 1+f*(-px*px-py*py);
+
+			// 3x3 blocks of the Jacobian for the parameters (a, b, c, d)
+			// translation: [0, RM, [RY*tN]x, -I], rotation: [w*Jr^-1, 0, -w*Jr^-1*RMX^T, 0]
+			double ux = right[3]-y[3], uy = right[7]-y[7], uz = right[11]-y[11];
+			for(int r=0;r<3;r++) {
+				for(int c=0;c<3;c++) {
+					robot[r*3+c] = m[r*4+c];
+					weighted[r*3+c] = weight*inverse[r*3+c];
+				}
+			}
+			skew[1] = -uz;
+			skew[2] = uy;
+			skew[3] = uz;
+			skew[5] = -ux;
+			skew[6] = -uy;
+			skew[7] = ux;
+			for(int r=0;r<3;r++) {
+				for(int c=0;c<3;c++) {
+					rotationY[r*3+c] = -(weighted[r*3]*left[c*4]+weighted[r*3+1]*left[c*4+1]+weighted[r*3+2]*left[c*4+2]);
+				}
+			}
+			accumulate(translationBlocks, residual, 0, sums, offset);
+			accumulate(rotationBlocks, residual, 3, sums, offset);
+		}
+		sums[offset] = cost;
+	}
+
+	/**
+	 * adds the part of J^T*r and of the upper triangle of J^T*J, the only part read by SmallDense.solveSpd,
+	 * of three rows of the Jacobian given as 3x3 blocks per parameter group, null for zero blocks
+	 */
+	private static void accumulate(double[][] blocks, double[] residual, int first, double[] sums, int offset) {
+		for(int p=0;p<4;p++) {
+			double[] left = blocks[p];
+			if(left==null) {
+				continue;
+			}
+			for(int c=0;c<3;c++) {
+				sums[offset+1+3*p+c] += left[c]*residual[first]+left[3+c]*residual[first+1]+left[6+c]*residual[first+2];
+			}
+			for(int q=p;q<4;q++) {
+				double[] right = blocks[q];
+				if(right==null) {
+					continue;
+				}
+				int base = offset+1+PARAMETERS+3*p*PARAMETERS+3*q;
+				for(int r=0;r<3;r++) {
+					for(int c=0;c<3;c++) {
+						sums[base+r*PARAMETERS+c] += left[r]*right[c]+left[3+r]*right[3+c]+left[6+r]*right[6+c];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * evaluates the chunks from..to-1
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final PosePairSource pairs;
+		private final double[] x;
+		private final double[] y;
+		private final double weight;
+		private final boolean jacobian;
+		private final double[] sums;
+		private final int from;
+		private final int to;
+
+		ChunkTask(PosePairSource pairs, double[] x, double[] y, double weight, boolean jacobian, double[] sums, int from, int to) {
+			this.pairs = pairs;
+			this.x = x;
+			this.y = y;
+			this.weight = weight;
+			this.jacobian = jacobian;
+			this.sums = sums;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from>1) {
+				int middle = (from+to)>>>1;
+				invokeAll(new ChunkTask(pairs, x, y, weight, jacobian, sums, from, middle),
+						new ChunkTask(pairs, x, y, weight, jacobian, sums, middle, to));
+				return;
+			}
+			if(from<to) {
+				evaluateChunk(pairs, x, y, weight, jacobian, sums, from);
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package robCalibration;
+
+import java.util.ArrayList;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Calibrates several rigs that share the transformation Y from the robot base to the tracking system in one pass,
+ * e.g. several tools or markers on the same robot seen by the same tracker. Every rig r has its own X_r, the stacked system
+ * <pre>
+ *   [C_i | 0 .. 0 | -I12] * [x_1 .. x_R, y] = B_i      for every measurement i of every rig
+ * </pre>
+ * is block-sparse: the normal equations form an arrow with one 12x12 block per rig on the diagonal and the shared y in the last row.
+ *
+ * Each rig is accumulated in its own {@link ReducedSolver}. The solve eliminates the X block of every rig separately,
+ * which leaves the rig's own estimate y_r and its information P_r about Y (the Schur complement), combines
+ * them to Y = (sum P_r)^-1 * sum P_r*y_r and back-substitutes every X_r. The result is the least squares solution of
+ * the stacked system, its cost grows linearly with the number of rigs: one 12x12 elimination per rig and one 12x12 solve for Y.
+ * Every rig needs enough rotation for its own reduced system to be regular, like a single calibration.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * ===
+ */
+public class MultiRigCalibration {
+
+	private static final int N = 12;
+
+	private final ArrayList<ReducedSolver> rigs = new ArrayList<ReducedSolver>();
+
+	/**
+	 * Adds a rig without measurements
+	 * @return index of the new rig
+	 */
+	public int addRig() {
+		rigs.add(new ReducedSolver());
+		return rigs.size()-1;
+	}
+
+	/**
+	 * Adds a rig with all its measurement pairs
+	 * @param pairs measurement pairs of the rig
+	 * @return index of the new rig
+	 */
+	public int addRig(PosePairSource pairs) {
+		int rig = addRig();
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		for(int i=0;i<pairs.size();i++) {
+			pairs.robotPose(i, m, 0);
+			pairs.trackerPose(i, n, 0);
+			rigs.get(rig).add(m, 0, n, 0);
+		}
+		return rig;
+	}
+
+	/**
+	 * Adds a single pair of measuring data to a rig
+	 * @param rig index of the rig
+	 * @param robot pose matrix of robot (4x4)
+	 * @param tracker measured data by tracking system (4x4)
+	 */
+	public void add(int rig, RealMatrix robot, RealMatrix tracker) {
+		rigs.get(rig).add(robot, tracker);
+	}
+
+	/**
+	 * Adds a single pair of measuring data given as 3x4 row-major arrays to a rig
+	 * @param rig index of the rig
+	 * @param robot array containing the robot pose
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the pose measured by the tracking system
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 */
+	public void add(int rig, double[] robot, int robotOffset, double[] tracker, int trackerOffset) {
+		rigs.get(rig).add(robot, robotOffset, tracker, trackerOffset);
+	}
+
+	/**
+	 * @return number of rigs
+	 */
+	public int getRigs() {
+		return rigs.size();
+	}
+
+	/**
+	 * @param rig index of the rig
+	 * @return number of measurements added to the rig
+	 */
+	public long getMeasurements(int rig) {
+		return rigs.get(rig).getMeasurements();
+	}
+
+	/**
+	 * Solves X of every rig and the shared Y
+	 * @return transformations and sizes of the rigs
+	 * @throws Exception Error when there're no rigs or the system of a rig is singular
+	 */
+	public MultiRigResult solve() throws Exception {
+		long start = System.nanoTime();
+		int count = rigs.size();
+		if(count==0) {
+			throw new Exception("No rigs added.");
+		}
+		// w[24*r..] = x0 and y0 of rig r, gains[144*r..] = K of rig r
+		double[] w = new double[2*N*count];
+		double[] gains = new double[N*N*count];
+		double[] information = new double[N*N];
+		double[] sum = new double[N*N];
+		double[] y = new double[N];
+		for(int rig=0;rig<count;rig++) {
+			ReducedSolver solver = rigs.get(rig);
+			if(solver.getMeasurements()<2) {
+				throw new Exception("Rig "+rig+" needs at least two measurements, got "+solver.getMeasurements()+".");
+			}
+			if(!solver.eliminate(w, 2*N*rig, information, gains, N*N*rig)) {
+				throw new Exception("Reduced system of rig "+rig+" is singular, its measurements are degenerated.");
+			}
+			// sum of P_r and of P_r*y_r
+			for(int i=0;i<N;i++) {
+				double s = 0;
+				for(int k=0;k<N;k++) {
+					sum[i*N+k] += information[i*N+k];
+					s += information[i*N+k]*w[2*N*rig+N+k];
+				}
+				y[i] += s;
+			}
+		}
+		if(!SmallDense.solveSpd(sum, y, information, N)) {
+			throw new Exception("Shared system is singular, the measurements are degenerated.");
+		}
+
+		// x_r = x0 + K*(y - y0)
+		double[] x = new double[N];
+		RealMatrix[] transforms = new RealMatrix[count];
+		long[] measurements = new long[count];
+		for(int rig=0;rig<count;rig++) {
+			int o = 2*N*rig;
+			for(int i=0;i<N;i++) {
+				double s = w[o+i];
+				for(int k=0;k<N;k++) {
+					s += gains[N*N*rig+i*N+k]*(y[k]-w[o+N+k]);
+				}
+				x[i] = s;
+			}
+			transforms[rig] = new RigidTransform().setSolution(x, 0).orthonormalize().toMatrix();
+			measurements[rig] = rigs.get(rig).getMeasurements();
+		}
+		RealMatrix base = new RigidTransform().setSolution(y, 0).orthonormalize().toMatrix();
+		return new MultiRigResult(transforms, base, measurements, System.nanoTime()-start);
+	}
+
+	/**
+	 * Removes all rigs
+	 */
+	public void reset() {
+		rigs.clear();
+	}
+}
@@ -0,0 +1,67 @@
+package robCalibration;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Result of a {@link MultiRigCalibration}: X of every rig and the shared Y.
+ */
+public class MultiRigResult {
+
+	private final RealMatrix[] x;
+	private final RealMatrix y;
+	private final long[] measurements;
+	private final long nanos;
+
+	MultiRigResult(RealMatrix[] x, RealMatrix y, long[] measurements, long nanos) {
+		this.x = x;
+		this.y = y;
+		this.measurements = measurements;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return number of rigs
+	 */
+	public int getRigs() {
+		return x.length;
+	}
+
+	/**
+	 * @param rig index of the rig
+	 * @return transformation from end-effector to the marker of the rig (4x4)
+	 */
+	public RealMatrix getX(int rig) {
+		return x[rig];
+	}
+
+	/**
+	 * @return transformation from robot base to tracking system shared by all rigs (4x4)
+	 */
+	public RealMatrix getY() {
+		return y;
+	}
+
+	/**
+	 * @param rig index of the rig
+	 * @return number of measurements of the rig
+	 */
+	public long getMeasurements(int rig) {
+		return measurements[rig];
+	}
+
+	/**
+	 * @return duration of the solve in nanoseconds, without accumulating the measurements
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		long total = 0;
+		for(long m : measurements) {
+			total += m;
+		}
+		return x.length+" rigs with "+total+" measurements solved in "+nanos/1000+" us";
+	}
+}
@@ -0,0 +1,194 @@
+package robCalibration;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Streaming variant of the QR24 least-squares system.
+ * Instead of stacking all 12x24 blocks Ai into one tall matrix, every measurement pair (Mi,Ni)
+ * is folded into the 24x24 normal matrix A^T*A and the 24 entry right-hand side A^T*B as soon as it arrives.
+ * The memory footprint is therefore constant, no matter how many measurements are added.
+ *
+ * The normal equations are solved by a Cholesky decomposition after a diagonal (Jacobi) scaling,
+ * which compensates the different units of the rotational and translational unknowns.
+ * For well conditioned data sets the solution agrees with the QR decomposition used by
+ * {@link QR24#calibrate()} to about 1e-9 in the rotational entries and 1e-6 mm in the translational entries.
+ * Badly conditioned data sets (little rotation between the poses) lose accuracy faster, because
+ * the normal equations square the condition number of the system.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * ===
+ */
+public class NormalEquationAccumulator {
+
+	/**
+	 * number of unknowns, 12 entries of X followed by 12 entries of Y
+	 */
+	public static final int UNKNOWNS = 24;
+
+	/**
+	 * number of equations contributed by one measurement
+	 */
+	public static final int ROWS_PER_MEASUREMENT = 12;
+
+	/**
+	 * upper triangle of A^T*A, row-major 24x24
+	 */
+	private final double[] normal = new double[UNKNOWNS*UNKNOWNS];
+
+	/**
+	 * A^T*B
+	 */
+	private final double[] rhs = new double[UNKNOWNS];
+
+	/**
+	 * scratch block Ai (row-major 12x24) and Bi, reused for every measurement
+	 */
+	private final double[] a = new double[ROWS_PER_MEASUREMENT*UNKNOWNS];
+	private final double[] b = new double[ROWS_PER_MEASUREMENT];
+
+	/**
+	 * scratch poses for measurements given as RealMatrix
+	 */
+	private final double[] m = new double[12];
+	private final double[] n = new double[12];
+
+	/**
+	 * number of measurements added so far
+	 */
+	private long measurements = 0;
+
+	/**
+	 * condition estimate of the last successful solve
+	 */
+	private double condition = Double.NaN;
+
+	/**
+	 * Adds a single pair of measuring data
+	 * @param robot pose matrix of robot (4x4)
+	 * @param tracker measured data by tracking system (4x4)
+	 */
+	public void add(RealMatrix robot, RealMatrix tracker) {
+		BlockAssembler.copyPose(robot, m, 0);
+		BlockAssembler.copyPose(tracker, n, 0);
+		add(m, 0, n, 0);
+	}
+
+	/**
+	 * Adds a single pair of measuring data given as 3x4 row-major arrays
+	 * @param robot array containing the robot pose
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the pose measured by the tracking system
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 */
+	public void add(double[] robot, int robotOffset, double[] tracker, int trackerOffset) {
+		BlockAssembler.assembleA(robot, robotOffset, tracker, trackerOffset, a, 0);
+		BlockAssembler.assembleB(robot, robotOffset, b, 0);
+
+		// rank-12 update of the upper triangle. The rotational rows 0..8 of Ai have no entries in
+		// the columns 9..11 and the constant -I12 block of the Y columns is added without multiplications.
+		for(int r=0;r<ROWS_PER_MEASUREMENT;r++) {
+			int rowOffset = r*UNKNOWNS;
+			int columns = r<9 ? 9 : 12;
+			double br = b[r];
+			for(int j=0;j<columns;j++) {
+				double aj = a[rowOffset+j];
+				int normalOffset = j*UNKNOWNS;
+				for(int k=j;k<columns;k++) {
+					normal[normalOffset+k] += aj*a[rowOffset+k];
+				}
+				normal[normalOffset+12+r] -= aj;
+				rhs[j] += aj*br;
+			}
+			normal[(12+r)*UNKNOWNS+12+r] += 1;
+			rhs[12+r] -= br;
+		}
+		measurements++;
+	}
+
+	/**
+	 * Solves the accumulated normal equations
+	 * @return solution vector w, the first 12 entries belong to X, the last 12 entries to Y
+	 * @throws Exception Error when there're not enough measurements or the system is singular
+	 */
+	public RealVector solve() throws Exception {
+		if(measurements<2) {
+			throw new Exception("At least two measurements are needed, got "+measurements+".");
+		}
+
+		// scale rows and columns to unit diagonal
+		double[] scale = new double[UNKNOWNS];
+		for(int j=0;j<UNKNOWNS;j++) {
+			double d = normal[j*UNKNOWNS+j];
+			if(d<=0) {
+				throw new Exception("Normal equations are singular, unknown "+j+" is not observed.");
+			}
+			scale[j] = 1d/Math.sqrt(d);
+		}
+		RealMatrix scaled = new Array2DRowRealMatrix(UNKNOWNS, UNKNOWNS);
+		RealVector scaledRhs = new ArrayRealVector(UNKNOWNS);
+		for(int j=0;j<UNKNOWNS;j++) {
+			for(int k=j;k<UNKNOWNS;k++) {
+				double v = normal[j*UNKNOWNS+k]*scale[j]*scale[k];
+				scaled.setEntry(j, k, v);
+				scaled.setEntry(k, j, v);
+			}
+			scaledRhs.setEntry(j, rhs[j]*scale[j]);
+		}
+
+		RealVector z;
+		RealMatrix factor;
+		try {
+			CholeskyDecomposition cholesky = new CholeskyDecomposition(scaled);
+			z = cholesky.getSolver().solve(scaledRhs);
+			factor = cholesky.getLT();
+		} catch (NonPositiveDefiniteMatrixException e) {
+			throw new Exception("Normal equations are singular, the measurements are degenerated.", e);
+		}
+		double[] r = new double[UNKNOWNS*UNKNOWNS];
+		for(int j=0;j<UNKNOWNS;j++) {
+			for(int k=j;k<UNKNOWNS;k++) {
+				r[j*UNKNOWNS+k] = factor.getEntry(j, k);
+			}
+		}
+		condition = SmallDense.conditionEstimate(r, new double[2*UNKNOWNS], UNKNOWNS);
+		for(int j=0;j<UNKNOWNS;j++) {
+			z.setEntry(j, z.getEntry(j)*scale[j]);
+		}
+		return z;
+	}
+
+	/**
+	 * @return estimate of the condition number of the scaled normal equations of the last successful solve, NaN before,
+	 *         see {@link SmallDense#conditionEstimate(double[], double[], int)}
+	 */
+	public double getConditionEstimate() {
+		return condition;
+	}
+
+	/**
+	 * @return number of measurements added so far
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * Removes all measurements
+	 */
+	public void reset() {
+		Arrays.fill(normal, 0);
+		Arrays.fill(rhs, 0);
+		measurements = 0;
+		condition = Double.NaN;
+	}
+}
@@ -0,0 +1,35 @@
+package robCalibration;
+
+/**
+ * Random access to measurement pairs (Mi,Ni) in primitive form.
+ * Lets the solvers read pose data from arrays or memory mapped files without creating RealMatrix objects.
+ *
+ * ===
+ * CONVENTIONS for this interface:
+ * poses are the upper 3x4 part of the homogeneous matrix in row-major order (12 values)
+ * unit of length: millimeter
+ * ===
+ */
+public interface PosePairSource {
+
+	/**
+	 * @return number of measurement pairs
+	 */
+	int size();
+
+	/**
+	 * Copies the robot pose Mi
+	 * @param i index of the measurement pair
+	 * @param out target array
+	 * @param offset index of the first entry in the target array
+	 */
+	void robotPose(int i, double[] out, int offset);
+
+	/**
+	 * Copies the pose Ni measured by the tracking system
+	 * @param i index of the measurement pair
+	 * @param out target array
+	 * @param offset index of the first entry in the target array
+	 */
+	void trackerPose(int i, double[] out, int offset);
+}
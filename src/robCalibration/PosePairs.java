@@ -0,0 +1,105 @@
+package robCalibration;
+
+import java.util.List;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Measurement pairs (Mi,Ni) stored in two flat primitive arrays.
+ * Pose i occupies the entries 12*i..12*i+11 of each array.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses are the upper 3x4 part of the homogeneous matrix in row-major order (12 values)
+ * unit of length: millimeter
+ * ===
+ */
+public class PosePairs implements PosePairSource {
+
+	private final double[] robot;
+	private final double[] tracker;
+	private final int size;
+
+	/**
+	 * Wraps existing arrays without copying them
+	 * @param robot robot poses, at least 12*size entries
+	 * @param tracker tracker poses, at least 12*size entries
+	 * @param size number of pairs
+	 */
+	public PosePairs(double[] robot, double[] tracker, int size) {
+		if(robot.length<size*BlockAssembler.POSE_SIZE || tracker.length<size*BlockAssembler.POSE_SIZE) {
+			throw new IllegalArgumentException("Arrays are too short for "+size+" pairs.");
+		}
+		this.robot = robot;
+		this.tracker = tracker;
+		this.size = size;
+	}
+
+	/**
+	 * Copies the measurement lists of a calibration object
+	 * @param robotPoses robot pose matrices (4x4)
+	 * @param trackerPoses tracker pose matrices (4x4)
+	 * @return copied pairs, as many as the shorter list has
+	 */
+	public static PosePairs of(List<RealMatrix> robotPoses, List<RealMatrix> trackerPoses) {
+		int size = Math.min(robotPoses.size(), trackerPoses.size());
+		double[] robot = new double[size*BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[size*BlockAssembler.POSE_SIZE];
+		for(int i=0;i<size;i++) {
+			BlockAssembler.copyPose(robotPoses.get(i), robot, i*BlockAssembler.POSE_SIZE);
+			BlockAssembler.copyPose(trackerPoses.get(i), tracker, i*BlockAssembler.POSE_SIZE);
+		}
+		return new PosePairs(robot, tracker, size);
+	}
+
+	/**
+	 * Makes all pairs of a source available as arrays in memory, a source that already is a {@link PosePairs}
+	 * is returned itself and not copied, so its arrays have to be treated as read-only
+	 * @param source pairs to read
+	 * @return the source itself or a copy of its pairs
+	 */
+	public static PosePairs inMemory(PosePairSource source) {
+		if(source instanceof PosePairs) {
+			return (PosePairs) source;
+		}
+		int size = source.size();
+		double[] robot = new double[size*BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[size*BlockAssembler.POSE_SIZE];
+		for(int i=0;i<size;i++) {
+			source.robotPose(i, robot, i*BlockAssembler.POSE_SIZE);
+			source.trackerPose(i, tracker, i*BlockAssembler.POSE_SIZE);
+		}
+		return new PosePairs(robot, tracker, size);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void robotPose(int i, double[] out, int offset) {
+		System.arraycopy(robot, i*BlockAssembler.POSE_SIZE, out, offset, BlockAssembler.POSE_SIZE);
+	}
+
+	@Override
+	public void trackerPose(int i, double[] out, int offset) {
+		System.arraycopy(tracker, i*BlockAssembler.POSE_SIZE, out, offset, BlockAssembler.POSE_SIZE);
+	}
+
+	/**
+	 * Direct access to the robot poses without copying
+	 * @return array containing all robot poses
+	 */
+	public double[] getRobotPoses() {
+		return robot;
+	}
+
+	/**
+	 * Direct access to the tracker poses without copying
+	 * @return array containing all tracker poses
+	 */
+	public double[] getTrackerPoses() {
+		return tracker;
+	}
+}
@@ -0,0 +1,460 @@
+package robCalibration;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Selects the most informative measurement pairs of a large set (D-optimal design): greedily the pair that increases the
+ * determinant of the information matrix A^T*A the most is added, until the requested number is reached.
+ *
+ * As in the {@link ReducedSolver} the -I12 blocks of Y are eliminated: the determinant of the 24x24 information of k pairs
+ * is k^12 times the determinant of the centered 12x12 co-moments S = sum (Ci - mean(C))^T*(Ci - mean(C)). With the Cholesky
+ * factor S = L*L^T the increase by a pair follows from the determinant lemma and the Welford update of S
+ * <pre>
+ *   log det(S + c*Di^T*Di) - log det(S) = log det(I12 + c*Wi^T*Wi),   L*Wi = Di^T,   Di = Ci - mean(C),   c = k/(k+1)
+ * </pre>
+ * plus 12*log((k+1)/k) for the mean. It costs a 12x12 triangular solve with 12 right-hand sides and a 12x12 Cholesky
+ * decomposition, no solve of the calibration. The log determinant is submodular, a gain can only shrink when pairs are added,
+ * so the selection is lazy: only pairs whose outdated gain is still the largest are evaluated again. The gains are evaluated
+ * in parallel on a fork-join pool, the selection doesn't depend on the number of threads.
+ *
+ * The columns of Ci are scaled to unit mean diagonal of the co-moments of all candidates, so the rotational and the
+ * translational unknowns are comparable, and a small multiple of the identity keeps S positive definite before all
+ * unknowns are observed. A single pair carries no information about X, without captured pairs the first pair is the one
+ * farthest from the mean of all candidates.
+ *
+ * The same selection plans the next robot poses: with a preliminary X and Y the tracker poses of candidate robot poses are
+ * predicted by {@link #predictPairs(double[], int, RealMatrix, RealMatrix)}, and the captured pairs are passed as the
+ * start of the selection.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * ===
+ */
+public class PoseSelection {
+
+	/**
+	 * number of candidates evaluated by a single fork-join task
+	 */
+	static final int CHUNK = 1024;
+
+	/**
+	 * number of unknowns of X and of entries of a packed block Ci
+	 */
+	private static final int N = 12;
+	private static final int BLOCK_SIZE = N*N;
+	private static final int P = BlockAssembler.POSE_SIZE;
+
+	private double regularization = 1e-6;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param regularization multiple of the identity added to the scaled co-moments, in units of an average measurement
+	 * @return this selection
+	 */
+	public PoseSelection setRegularization(double regularization) {
+		if(!(regularization>0)) {
+			throw new IllegalArgumentException("Regularization must be positive.");
+		}
+		this.regularization = regularization;
+		return this;
+	}
+
+	/**
+	 * @param pool pool evaluating the gains of all candidates, the common pool by default, null to evaluate them on the calling thread
+	 * @return this selection
+	 */
+	public PoseSelection setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Selects the most informative pairs
+	 * @param candidates pairs to select from
+	 * @param count number of pairs to select
+	 * @return selected indices in the order of selection
+	 * @throws Exception Error when there're less candidates than requested
+	 * @throws InterruptedException The selecting thread was interrupted
+	 */
+	public PoseSelectionResult select(PosePairSource candidates, int count) throws Exception {
+		return select(candidates, count, new PosePairs(new double[0], new double[0], 0));
+	}
+
+	/**
+	 * Selects the pairs that add the most information to pairs captured already
+	 * @param candidates pairs to select from, e.g. planned robot poses with predicted tracker poses
+	 * @param count number of pairs to select
+	 * @param captured pairs that are part of the calibration anyway
+	 * @return selected indices of the candidates in the order of selection
+	 * @throws Exception Error when there're less candidates than requested
+	 * @throws InterruptedException The selecting thread was interrupted
+	 */
+	public PoseSelectionResult select(PosePairSource candidates, int count, PosePairSource captured) throws Exception {
+		long start = System.nanoTime();
+		int size = candidates.size();
+		if(count<1 || count>size) {
+			throw new Exception("Can't select "+count+" of "+size+" candidates.");
+		}
+		Scratch scratch = new Scratch();
+		double[] c = scratch.c;
+
+		// column scaling from the co-moments of all pairs, mean and diagonal by Welford
+		double[] scale = new double[N];
+		double[] mean = new double[BLOCK_SIZE];
+		double[] squares = new double[N];
+		long total = 0;
+		for(int i=0;i<size+captured.size();i++) {
+			PosePairSource source = i<size ? candidates : captured;
+			int index = i<size ? i : i-size;
+			source.robotPose(index, scratch.m, 0);
+			source.trackerPose(index, scratch.n, 0);
+			block(scratch.m, scratch.n, scratch, null, c);
+			total++;
+			for(int e=0;e<BLOCK_SIZE;e++) {
+				double d = c[e]-mean[e];
+				mean[e] += d/total;
+				squares[e%N] += d*(c[e]-mean[e]);
+			}
+		}
+		for(int j=0;j<N;j++) {
+			scale[j] = squares[j]>0 ? Math.sqrt(total/squares[j]) : 1;
+		}
+
+		// co-moments of the captured pairs
+		Selection selection = new Selection(regularization);
+		for(int i=0;i<captured.size();i++) {
+			captured.robotPose(i, scratch.m, 0);
+			captured.trackerPose(i, scratch.n, 0);
+			block(scratch.m, scratch.n, scratch, scale, c);
+			selection.add(c);
+		}
+
+		int[] selected = new int[count];
+		double[] gains = new double[count];
+		boolean[] taken = new boolean[size];
+		int step = 0;
+		if(selection.count==0) {
+			// farthest from the mean of all candidates
+			double farthest = -1;
+			for(int i=0;i<size;i++) {
+				candidates.robotPose(i, scratch.m, 0);
+				candidates.trackerPose(i, scratch.n, 0);
+				block(scratch.m, scratch.n, scratch, null, c);
+				double distance = 0;
+				for(int e=0;e<BLOCK_SIZE;e++) {
+					double d = (c[e]-mean[e])*scale[e%N];
+					distance += d*d;
+				}
+				if(distance>farthest) {
+					farthest = distance;
+					selected[0] = i;
+				}
+			}
+			candidates.robotPose(selected[0], scratch.m, 0);
+			candidates.trackerPose(selected[0], scratch.n, 0);
+			block(scratch.m, scratch.n, scratch, scale, c);
+			selection.add(c);
+			taken[selected[0]] = true;
+			step = 1;
+		}
+		if(!selection.factorize()) {
+			throw new Exception("Co-moments of the captured pairs are not positive definite.");
+		}
+
+		// gains of all candidates
+		double[] gain = new double[size];
+		int[] pending = new int[size];
+		for(int i=0;i<size;i++) {
+			pending[i] = i;
+		}
+		evaluate(candidates, pending, size, scale, selection, gain);
+		long evaluations = size;
+
+		// lazy greedy selection, ties are broken by the smaller index
+		int[] evaluated = new int[size];
+		for(int i=0;i<size;i++) {
+			evaluated[i] = step;
+		}
+		PriorityQueue<Integer> queue = new PriorityQueue<Integer>(size, (i, j) -> {
+			int order = Double.compare(gain[j], gain[i]);
+			return order!=0 ? order : Integer.compare(i, j);
+		});
+		for(int i=0;i<size;i++) {
+			if(!taken[i]) {
+				queue.add(i);
+			}
+		}
+		for(;step<count;step++) {
+			if(Thread.currentThread().isInterrupted()) {
+				throw new InterruptedException("Pose selection interrupted.");
+			}
+			// outdated gains are evaluated again in batches of doubling size, so a step that outdates
+			// the order of most candidates is evaluated in parallel as well
+			int batch = 1;
+			while(evaluated[queue.peek()]!=step) {
+				int stale = 0;
+				while(stale<batch && !queue.isEmpty() && evaluated[queue.peek()]!=step) {
+					pending[stale++] = queue.poll();
+				}
+				evaluate(candidates, pending, stale, scale, selection, gain);
+				for(int k=0;k<stale;k++) {
+					evaluated[pending[k]] = step;
+					queue.add(pending[k]);
+				}
+				evaluations += stale;
+				batch *= 2;
+			}
+			int best = queue.poll();
+			selected[step] = best;
+			gains[step] = gain[best];
+
+			candidates.robotPose(best, scratch.m, 0);
+			candidates.trackerPose(best, scratch.n, 0);
+			block(scratch.m, scratch.n, scratch, scale, c);
+			selection.add(c);
+			if(!selection.factorize()) {
+				throw new Exception("Co-moments lost positive definiteness at step "+step+".");
+			}
+		}
+
+		double logDeterminant = N*Math.log(selection.count);
+		for(int j=0;j<N;j++) {
+			logDeterminant += 2*Math.log(selection.lower[j*N+j]);
+		}
+		RealMatrix moments = new Array2DRowRealMatrix(N, N);
+		for(int j=0;j<N;j++) {
+			for(int k=j;k<N;k++) {
+				moments.setEntry(j, k, selection.s[j*N+k]);
+				moments.setEntry(k, j, selection.s[j*N+k]);
+			}
+		}
+		double[] eigenvalues = new EigenDecomposition(moments).getRealEigenvalues();
+		double min = Double.POSITIVE_INFINITY, max = 0;
+		for(double e : eigenvalues) {
+			min = Math.min(min, e);
+			max = Math.max(max, e);
+		}
+		return new PoseSelectionResult(selected, gains, logDeterminant, Math.max(min, 0), max, size, evaluations,
+				System.nanoTime()-start);
+	}
+
+	/**
+	 * Predicts the tracker poses of planned robot poses, Ni = Y^-1*Mi*X, so the poses can be selected before they are captured
+	 * @param robot planned robot poses, 12 entries each
+	 * @param size number of poses
+	 * @param x preliminary transformation from end-effector to marker
+	 * @param y preliminary transformation from robot base to tracking system
+	 * @return pairs of the planned robot poses and the predicted tracker poses
+	 */
+	public static PosePairs predictPairs(double[] robot, int size, RealMatrix x, RealMatrix y) {
+		RigidTransform xt = new RigidTransform(x);
+		RigidTransform inverse = new RigidTransform(y);
+		inverse.invert(inverse);
+		RigidTransform pose = new RigidTransform();
+		double[] tracker = new double[size*P];
+		for(int i=0;i<size;i++) {
+			pose.set(robot, i*P);
+			pose.multiply(inverse, pose.multiply(pose, xt));
+			pose.get(tracker, i*P);
+		}
+		return new PosePairs(robot, tracker, size);
+	}
+
+	/**
+	 * writes the packed block Ci (row-major 12x12), with scaled columns unless scale is null
+	 */
+	private static void block(double[] m, double[] n, Scratch s, double[] scale, double[] c) {
+		BlockAssembler.assembleA(m, 0, n, 0, s.a, 0);
+		for(int r=0;r<N;r++) {
+			for(int j=0;j<N;j++) {
+				c[r*N+j] = scale==null ? s.a[r*BlockAssembler.COLUMNS+j] : s.a[r*BlockAssembler.COLUMNS+j]*scale[j];
+			}
+		}
+	}
+
+	/**
+	 * increase of the log determinant of the information by one pair
+	 */
+	private static double gain(double[] m, double[] n, double[] scale, Selection selection, Scratch s) {
+		double[] w = s.c;
+		block(m, n, s, scale, w);
+		double[] mean = selection.mean;
+		double[] lower = selection.lower;
+		// forward substitution L*wi = di for every row di of Di, in place
+		for(int r=0;r<N;r++) {
+			int o = r*N;
+			for(int j=0;j<N;j++) {
+				double sum = w[o+j]-mean[o+j];
+				int l = j*N;
+				for(int k=0;k<j;k++) {
+					sum -= lower[l+k]*w[o+k];
+				}
+				w[o+j] = sum/lower[l+j];
+			}
+		}
+		// I12 + c*W^T*W
+		double factor = selection.count/(selection.count+1d);
+		double[] k = s.k;
+		for(int p=0;p<N;p++) {
+			for(int q=p;q<N;q++) {
+				double sum = 0;
+				for(int j=0;j<N;j++) {
+					sum += w[p*N+j]*w[q*N+j];
+				}
+				k[p*N+q] = (p==q ? 1 : 0)+factor*sum;
+			}
+		}
+		SmallDense.cholesky(k, N, 0);
+		double gain = N*Math.log((selection.count+1d)/selection.count);
+		for(int p=0;p<N;p++) {
+			gain += 2*Math.log(k[p*N+p]);
+		}
+		return gain;
+	}
+
+	/**
+	 * evaluates the gains of the candidates indices[0..count-1], on the pool if there are several chunks
+	 */
+	private void evaluate(PosePairSource candidates, int[] indices, int count, double[] scale, Selection selection, double[] gain) {
+		int chunks = (count+CHUNK-1)/CHUNK;
+		if(pool==null || chunks==1) {
+			for(int chunk=0;chunk<chunks;chunk++) {
+				evaluateChunk(candidates, indices, count, scale, selection, gain, chunk);
+			}
+		}else {
+			pool.invoke(new ChunkTask(candidates, indices, count, scale, selection, gain, 0, chunks));
+		}
+	}
+
+	/**
+	 * evaluates the gains of the candidates of one chunk
+	 */
+	private static void evaluateChunk(PosePairSource candidates, int[] indices, int count, double[] scale, Selection selection,
+			double[] gain, int chunk) {
+		Scratch s = new Scratch();
+		int end = Math.min(count, (chunk+1)*CHUNK);
+		for(int k=chunk*CHUNK;k<end;k++) {
+			int i = indices[k];
+			candidates.robotPose(i, s.m, 0);
+			candidates.trackerPose(i, s.n, 0);
+			gain[i] = gain(s.m, s.n, scale, selection, s);
+		}
+	}
+
+	/**
+	 * mean and co-moments of the selected blocks with the factor L*L^T of the regularized co-moments
+	 */
+	private static class Selection {
+		final double regularization;
+		final double[] mean = new double[BLOCK_SIZE];
+		final double[] s = new double[BLOCK_SIZE];
+		final double[] lower = new double[BLOCK_SIZE];
+		private final double[] delta = new double[BLOCK_SIZE];
+		private final double[] factor = new double[BLOCK_SIZE];
+		long count = 0;
+
+		Selection(double regularization) {
+			this.regularization = regularization;
+		}
+
+		/**
+		 * Welford update with a scaled block, like {@link ReducedSolver#addBlock(double[], int, int, double[], int, double)}
+		 */
+		void add(double[] c) {
+			count++;
+			for(int e=0;e<BLOCK_SIZE;e++) {
+				double d = c[e]-mean[e];
+				delta[e] = d;
+				mean[e] += d/count;
+			}
+			double f = (count-1d)/count;
+			for(int r=0;r<N;r++) {
+				int o = r*N;
+				for(int j=0;j<N;j++) {
+					double dj = delta[o+j]*f;
+					for(int k=j;k<N;k++) {
+						s[j*N+k] += dj*delta[o+k];
+					}
+				}
+			}
+		}
+
+		/**
+		 * factorizes the regularized co-moments and stores L row by row, so the forward substitutions run along contiguous rows
+		 */
+		boolean factorize() {
+			System.arraycopy(s, 0, factor, 0, BLOCK_SIZE);
+			for(int j=0;j<N;j++) {
+				factor[j*N+j] += regularization;
+			}
+			if(!SmallDense.cholesky(factor, N, 0)) {
+				return false;
+			}
+			for(int j=0;j<N;j++) {
+				for(int k=0;k<=j;k++) {
+					lower[j*N+k] = factor[k*N+j];
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * buffers of the gain evaluation
+	 */
+	private static class Scratch {
+		final double[] m = new double[P];
+		final double[] n = new double[P];
+		final double[] a = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
+		final double[] c = new double[BLOCK_SIZE];
+		final double[] k = new double[BLOCK_SIZE];
+	}
+
+	/**
+	 * evaluates the chunks from..to-1
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final PosePairSource candidates;
+		private final int[] indices;
+		private final int count;
+		private final double[] scale;
+		private final Selection selection;
+		private final double[] gain;
+		private final int from;
+		private final int to;
+
+		ChunkTask(PosePairSource candidates, int[] indices, int count, double[] scale, Selection selection, double[] gain,
+				int from, int to) {
+			this.candidates = candidates;
+			this.indices = indices;
+			this.count = count;
+			this.scale = scale;
+			this.selection = selection;
+			this.gain = gain;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from>1) {
+				int middle = (from+to)>>>1;
+				invokeAll(new ChunkTask(candidates, indices, count, scale, selection, gain, from, middle),
+						new ChunkTask(candidates, indices, count, scale, selection, gain, middle, to));
+				return;
+			}
+			evaluateChunk(candidates, indices, count, scale, selection, gain, from);
+		}
+	}
+}
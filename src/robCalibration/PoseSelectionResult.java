@@ -0,0 +1,108 @@
+package robCalibration;
+
+import java.util.Locale;
+
+/**
+ * Result of a {@link PoseSelection}: the selected pairs in the order of selection and how well they determine the calibration.
+ */
+public class PoseSelectionResult {
+
+	private final int[] indices;
+	private final double[] gains;
+	private final double logDeterminant;
+	private final double minEigenvalue;
+	private final double maxEigenvalue;
+	private final int candidates;
+	private final long evaluations;
+	private final long nanos;
+
+	PoseSelectionResult(int[] indices, double[] gains, double logDeterminant, double minEigenvalue, double maxEigenvalue,
+			int candidates, long evaluations, long nanos) {
+		this.indices = indices;
+		this.gains = gains;
+		this.logDeterminant = logDeterminant;
+		this.minEigenvalue = minEigenvalue;
+		this.maxEigenvalue = maxEigenvalue;
+		this.candidates = candidates;
+		this.evaluations = evaluations;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return indices of the selected candidates in the order of selection, not copied
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * @param k position in the order of selection
+	 * @return increase of the log determinant of the information by the k-th selected pair, 0 for the first one if no pairs were captured
+	 */
+	public double getGain(int k) {
+		return gains[k];
+	}
+
+	/**
+	 * @return log determinant of the scaled and regularized information of the selection and the captured pairs, without the constant part of Y
+	 */
+	public double getLogDeterminant() {
+		return logDeterminant;
+	}
+
+	/**
+	 * @return smallest eigenvalue of the scaled information about X, 0 if an unknown isn't determined
+	 */
+	public double getMinEigenvalue() {
+		return minEigenvalue;
+	}
+
+	/**
+	 * @return condition number of the scaled information about X, infinite if an unknown isn't determined
+	 */
+	public double getCondition() {
+		return minEigenvalue>0 ? maxEigenvalue/minEigenvalue : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @return number of candidates
+	 */
+	public int getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * @return number of gain evaluations, the lazy selection needs few more than the number of candidates
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * @return duration of the selection in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Copies the selected pairs
+	 * @param candidates the candidates the selection was made from
+	 * @return selected pairs in the order of selection
+	 */
+	public PosePairs subset(PosePairSource candidates) {
+		double[] robot = new double[indices.length*BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[indices.length*BlockAssembler.POSE_SIZE];
+		for(int k=0;k<indices.length;k++) {
+			candidates.robotPose(indices[k], robot, k*BlockAssembler.POSE_SIZE);
+			candidates.trackerPose(indices[k], tracker, k*BlockAssembler.POSE_SIZE);
+		}
+		return new PosePairs(robot, tracker, indices.length);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%d of %d candidates in %d ms (%d evaluations), log det %.3f, min eigenvalue %.4g, condition %.4g",
+				indices.length, candidates, nanos/1000000, evaluations, logDeterminant, minEigenvalue, getCondition());
+	}
+}
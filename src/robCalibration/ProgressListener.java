@@ -0,0 +1,33 @@
+package robCalibration;
+
+/**
+ * Receives the progress of a long running step, e.g. to show it in the user interface.
+ * It is called on the thread doing the work.
+ */
+public interface ProgressListener {
+
+	/**
+	 * steps of a calibration
+	 */
+	enum Phase {
+		/**
+		 * parsing a log, counted in bytes
+		 */
+		READING,
+		/**
+		 * assembling the linear equation system, counted in measurements
+		 */
+		ASSEMBLING,
+		/**
+		 * solving the linear equation system, 0 of 1 when started and 1 of 1 when finished
+		 */
+		SOLVING
+	}
+
+	/**
+	 * @param phase current step
+	 * @param done amount of work done in this step
+	 * @param total amount of work of this step
+	 */
+	void progress(Phase phase, long done, long total);
+}
@@ -1,15 +1,26 @@
 package robCalibration;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.DecompositionSolver;
-import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.QRDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
-import org.apache.commons.math3.linear.SingularValueDecomposition;
+
+import robCalibration.io.JoinStatistics;
+import robCalibration.io.PoseLog;
+import robCalibration.io.ReportWriter;
+import robCalibration.io.TimestampJoin;
+import robCalibration.metrics.Metrics;
+import robCalibration.metrics.Phase;
+import robCalibration.metrics.PhaseTimer;
+import robCalibration.solver.AutoBackend;
+import robCalibration.solver.SolverBackend;
+import robCalibration.solver.SolverResult;
 
 
 /**
@@ -29,6 +40,11 @@ import org.apache.commons.math3.linear.SingularValueDecomposition;
 
 public class QR24 {
 
+	/**
+	 * number of measurements between two progress reports
+	 */
+	private static final int PROGRESS_INTERVAL = 1024;
+
 	/**
 	 * List of specified robot pose matrices.
 	 * Index i refers to the i-1 measurement.
@@ -42,13 +58,60 @@ public class QR24 {
 	public ArrayList<RealMatrix> markerPoseMatrices = new ArrayList<RealMatrix>();
 	
 	/**
-	 * The Constructor
-	 * @param c the controller for sending Messages to Robots and Tracking System 
+	 * Receives the progress of {@link #calibrate()}, null for none.
+	 */
+	private ProgressListener progressListener;
+	
+	/**
+	 * Watches the measurements added by genMatrices, null for none.
+	 */
+	private DegeneracyMonitor degeneracyMonitor;
+	
+	/**
+	 * The measurements the monitor was fed with, to tell when the lists were changed or replaced afterwards.
+	 */
+	private final ArrayList<RealMatrix> monitoredPoses = new ArrayList<RealMatrix>();
+	private final ArrayList<RealMatrix> monitoredMarkers = new ArrayList<RealMatrix>();
+	
+	/**
+	 * The verdict of the monitor on the monitored measurements once it was checked and printed, null before.
+	 */
+	private DegeneracyReport degeneracyVerdict;
+	
+	/**
+	 * The Constructor.
+	 * Measurements are added by genMatrices or, while the robot moves, by a {@link robCalibration.live.LiveCalibration}.
 	 */
 	public QR24 (){
 		
 	}
 	
+	/**
+	 * Sets the listener receiving the progress of {@link #calibrate()}: the number of measurements assembled
+	 * and the start and the end of the solve
+	 * @param listener listener called on the calibrating thread, null for none
+	 */
+	public void setProgressListener(ProgressListener listener) {
+		this.progressListener = listener;
+	}
+	
+	/**
+	 * Sets the monitor that is updated with every measurement of genMatrices. The calibrate methods, including
+	 * the ones for a {@link PosePairSource}, calibrateIncremental(), calibrateRansac(), estimateUncertainty(),
+	 * crossValidate(), selectPoses() and refine() stop before the solve with its diagnostic if the measurements
+	 * don't determine X and Y well, see {@link DegeneracyMonitor#check()}. The verdict is printed once per set
+	 * of measurements. Measurements changed in the lists directly and pair sources are fed to the monitor before the check.
+	 * calibrateRecursive() prints its verdict on the whole recording, calibrateMultiRig() isn't checked:
+	 * the rigs share Y, so a rig can be determined together with the others although it isn't on its own.
+	 * @param monitor monitor to update, null for none
+	 */
+	public void setDegeneracyMonitor(DegeneracyMonitor monitor) {
+		this.degeneracyMonitor = monitor;
+		monitoredPoses.clear();
+		monitoredMarkers.clear();
+		degeneracyVerdict = null;
+	}
+	
 	/**
 	 * This Method takes the measured matrices set M and N and creates a linear equation system to solve
 	 * for matrices X and Y
@@ -56,6 +119,7 @@ public class QR24 {
 	 * @param N consisting if Ni
 	 * @return An array containing the matrix X and Y, leading with X 
 	 * @throws Exception Error when there're no measurements
+	 * @throws InterruptedException The calibrating thread was interrupted while assembling the system
 	 */
 	public RealMatrix[] calibrate() throws Exception {
 		
@@ -65,49 +129,466 @@ public class QR24 {
 		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
 			throw new Exception("No measurements taken.");
 		}
+		checkDegeneracy();
 		
 		System.out.println("[Calibrate] poseMatrices:"+poseMatrices.size()+", Measured: "+markerPoseMatrices.size());
 		
+		// a cancelled phase is not reported
+		PhaseTimer timer = Metrics.start(Phase.ASSEMBLY).setMeasurements(measurements);
+		
 		// create A and B matrix/vector related to the number of measurements
-		RealMatrix A = new Array2DRowRealMatrix(12*measurements, 24);
-		RealVector B = new ArrayRealVector(12*measurements);
+		double[][] aData = new double[12*measurements][BlockAssembler.COLUMNS];
+		double[] bData = new double[12*measurements];
+		
+		// scratch buffers reused for every measurement
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		double[] ai = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
 				
 		// Here are the coefficientmatrix A and the solution vector B
 		// generated from all given Measurements Mi and Ni
 		for(int cnt=0;cnt<poseMatrices.size();cnt++) {
-			A.setSubMatrix(createAEntry(poseMatrices.get(cnt), markerPoseMatrices.get(cnt)).getData(), cnt*12, 0);
-			B.setSubVector(cnt*12, new ArrayRealVector(createBEntry(poseMatrices.get(cnt))));
+			if(cnt%PROGRESS_INTERVAL==0) {
+				if(Thread.currentThread().isInterrupted()) {
+					throw new InterruptedException("Calibration cancelled.");
+				}
+				reportProgress(ProgressListener.Phase.ASSEMBLING, cnt, measurements);
+			}
+			BlockAssembler.copyPose(poseMatrices.get(cnt), m, 0);
+			BlockAssembler.copyPose(markerPoseMatrices.get(cnt), n, 0);
+			BlockAssembler.assembleA(m, 0, n, 0, ai, 0);
+			for(int row=0;row<BlockAssembler.ROWS;row++) {
+				System.arraycopy(ai, row*BlockAssembler.COLUMNS, aData[cnt*12+row], 0, BlockAssembler.COLUMNS);
+			}
+			BlockAssembler.assembleB(m, 0, bData, cnt*12);
 		}
+		RealMatrix A = new Array2DRowRealMatrix(aData, false);
+		RealVector B = new ArrayRealVector(bData, false);
+		timer.close();
+		reportProgress(ProgressListener.Phase.ASSEMBLING, measurements, measurements);
 		
 		// create solver for the linear equation system and solve it 
+		// no condition estimate, the diagonal of R is only available as copy of the whole 12n x 24 matrix
+		reportProgress(ProgressListener.Phase.SOLVING, 0, 1);
+		timer = Metrics.start(Phase.DECOMPOSITION).setMeasurements(measurements);
 		DecompositionSolver solver = new QRDecomposition(A).getSolver();
 		RealVector w = solver.solve(B);
+		timer.close();
+		reportProgress(ProgressListener.Phase.SOLVING, 1, 1);
+		
+		return toTransforms(w);
+	}
+	
+	/**
+	 * Solves the same linear equation system as {@link #calibrate()}, but folds every measurement
+	 * into a fixed-size {@link NormalEquationAccumulator} instead of building the complete matrix A.
+	 * The memory needed is independent of the number of measurements.
+	 * The result agrees with {@link #calibrate()} within the tolerance stated in {@link NormalEquationAccumulator}.
+	 * @return An array containing the matrix X and Y, leading with X
+	 * @throws Exception Error when there're no measurements or the system is singular
+	 */
+	public RealMatrix[] calibrateStreaming() throws Exception {
 		
-		// generate Matrix X and Y from the solved vector
-		RealMatrix Y = getFromW(w.getSubVector(12, 12));
-		RealMatrix X = getFromW(w.getSubVector(0, 12));
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy();
 		
-		// orthonormalize rotational part of X-Matrix via SVD
-		SingularValueDecomposition svd = new SingularValueDecomposition(getRot(X));
-		RealMatrix UV_t = svd.getU().multiply(svd.getVT());
-
-		// set new orthonormalized rotational part
-		X.setSubMatrix(UV_t.getData(), 0, 0);
+		System.out.println("[CalibrateStreaming] poseMatrices:"+poseMatrices.size()+", Measured: "+markerPoseMatrices.size());
+		
+		NormalEquationAccumulator accumulator = new NormalEquationAccumulator();
+		try(PhaseTimer timer = Metrics.start(Phase.ASSEMBLY)) {
+			timer.setMeasurements(poseMatrices.size());
+			for(int cnt=0;cnt<poseMatrices.size();cnt++) {
+				accumulator.add(poseMatrices.get(cnt), markerPoseMatrices.get(cnt));
+			}
+		}
+		return toTransforms(solve(accumulator));
+	}
+	
+	/**
+	 * Solves the QR24 system with the {@link ReducedSolver}, which eliminates the unknowns of Y
+	 * analytically by means of the -I12 block of every Ai and only factorizes a 12x12 system for X.
+	 * @return An array containing the matrix X and Y, leading with X
+	 * @throws Exception Error when there're no measurements or the system is singular
+	 */
+	public RealMatrix[] calibrateReduced() throws Exception {
+		
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy();
+		
+		System.out.println("[CalibrateReduced] poseMatrices:"+poseMatrices.size()+", Measured: "+markerPoseMatrices.size());
+		
+		ReducedSolver solver = new ReducedSolver();
+		try(PhaseTimer timer = Metrics.start(Phase.ASSEMBLY)) {
+			timer.setMeasurements(poseMatrices.size());
+			for(int cnt=0;cnt<poseMatrices.size();cnt++) {
+				solver.add(poseMatrices.get(cnt), markerPoseMatrices.get(cnt));
+			}
+		}
+		return toTransforms(solve(solver));
+	}
+	
+	/**
+	 * Solves the QR24 system like {@link #calibrateStreaming()} for measurement pairs given in primitive form,
+	 * e.g. a memory mapped {@link robCalibration.io.BinaryPoseLog}. No RealMatrix objects are created for the measurements.
+	 * @param pairs measurement pairs
+	 * @return An array containing the matrix X and Y, leading with X
+	 * @throws Exception Error when there're no measurements or the system is singular
+	 */
+	public RealMatrix[] calibrateStreaming(PosePairSource pairs) throws Exception {
+		
+		// if there's not data measured throw an error
+		if (pairs.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy(pairs);
+		
+		System.out.println("[CalibrateStreaming] pairs: "+pairs.size());
+		
+		NormalEquationAccumulator accumulator = new NormalEquationAccumulator();
+		try(PhaseTimer timer = Metrics.start(Phase.ASSEMBLY)) {
+			timer.setMeasurements(pairs.size());
+			double[] m = new double[BlockAssembler.POSE_SIZE];
+			double[] n = new double[BlockAssembler.POSE_SIZE];
+			for(int cnt=0;cnt<pairs.size();cnt++) {
+				pairs.robotPose(cnt, m, 0);
+				pairs.trackerPose(cnt, n, 0);
+				accumulator.add(m, 0, n, 0);
+			}
+		}
+		return toTransforms(solve(accumulator));
+	}
+	
+	/**
+	 * Solves the QR24 system like {@link #calibrateReduced()} for measurement pairs given in primitive form,
+	 * e.g. a memory mapped {@link robCalibration.io.BinaryPoseLog}. No RealMatrix objects are created for the measurements.
+	 * @param pairs measurement pairs
+	 * @return An array containing the matrix X and Y, leading with X
+	 * @throws Exception Error when there're no measurements or the system is singular
+	 */
+	public RealMatrix[] calibrateReduced(PosePairSource pairs) throws Exception {
+		
+		// if there's not data measured throw an error
+		if (pairs.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy(pairs);
+		
+		System.out.println("[CalibrateReduced] pairs: "+pairs.size());
+		
+		ReducedSolver solver = new ReducedSolver();
+		try(PhaseTimer timer = Metrics.start(Phase.ASSEMBLY)) {
+			timer.setMeasurements(pairs.size());
+			double[] m = new double[BlockAssembler.POSE_SIZE];
+			double[] n = new double[BlockAssembler.POSE_SIZE];
+			for(int cnt=0;cnt<pairs.size();cnt++) {
+				pairs.robotPose(cnt, m, 0);
+				pairs.trackerPose(cnt, n, 0);
+				solver.add(m, 0, n, 0);
+			}
+		}
+		return toTransforms(solve(solver));
+	}
+	
+	/**
+	 * Solves the QR24 system with the given least-squares backend, e.g. {@link AutoBackend} to pick one by the
+	 * conditioning of the measurements. The chosen backend and its duration are printed.
+	 * @param backend solver backend
+	 * @return An array containing the matrix X and Y, leading with X
+	 * @throws Exception Error when there're no measurements or the system is singular for the backend
+	 */
+	public RealMatrix[] calibrate(SolverBackend backend) throws Exception {
+		
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy();
+		
+		return solve(PosePairs.of(poseMatrices, markerPoseMatrices), backend);
+	}
+	
+	/**
+	 * Solves the QR24 system like {@link #calibrate(SolverBackend)} for measurement pairs given in primitive form
+	 * @param pairs measurement pairs
+	 * @param backend solver backend
+	 * @return An array containing the matrix X and Y, leading with X
+	 * @throws Exception Error when there're no measurements or the system is singular for the backend
+	 */
+	public RealMatrix[] calibrate(PosePairSource pairs, SolverBackend backend) throws Exception {
+		
+		// if there's not data measured throw an error
+		if (pairs.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy(pairs);
+		
+		return solve(pairs, backend);
+	}
+	
+	private RealMatrix[] solve(PosePairSource pairs, SolverBackend backend) throws Exception {
+		SolverResult result;
+		try(PhaseTimer timer = Metrics.start(Phase.DECOMPOSITION)) {
+			timer.setMeasurements(pairs.size());
+			result = backend.solve(pairs);
+			timer.setCondition(result.getCondition());
+		}
+		System.out.println("[Calibrate] pairs: "+pairs.size()+", "+result);
+		return toTransforms(result.getSolution());
+	}
+	
+	private static RealVector solve(NormalEquationAccumulator accumulator) throws Exception {
+		try(PhaseTimer timer = Metrics.start(Phase.DECOMPOSITION)) {
+			timer.setMeasurements(accumulator.getMeasurements());
+			RealVector w = accumulator.solve();
+			timer.setCondition(accumulator.getConditionEstimate());
+			return w;
+		}
+	}
+	
+	private static RealVector solve(ReducedSolver solver) throws Exception {
+		try(PhaseTimer timer = Metrics.start(Phase.DECOMPOSITION)) {
+			timer.setMeasurements(solver.getMeasurements());
+			RealVector w = solver.solve();
+			timer.setCondition(solver.getConditionEstimate());
+			return w;
+		}
+	}
+	
+	/**
+	 * Calibrates several rigs that share the transformation from robot base to tracking system in one pass,
+	 * e.g. several tools on the same robot, see {@link MultiRigCalibration}
+	 * @param rigs calibrations holding the measurements of one rig each
+	 * @return X of every rig in the order of the list and the shared Y
+	 * @throws Exception Error when a rig has no measurements or its system is singular
+	 */
+	public static MultiRigResult calibrateMultiRig(List<QR24> rigs) throws Exception {
+		MultiRigCalibration calibration = new MultiRigCalibration();
+		long measurements = 0;
+		try(PhaseTimer timer = Metrics.start(Phase.ASSEMBLY)) {
+			for(QR24 rig : rigs) {
+				// if there's not data measured throw an error
+				if (rig.poseMatrices.size()<=0 || rig.markerPoseMatrices.size()<=0) {
+					throw new Exception("No measurements taken.");
+				}
+				calibration.addRig(PosePairs.of(rig.poseMatrices, rig.markerPoseMatrices));
+				measurements += rig.poseMatrices.size();
+			}
+			timer.setMeasurements(measurements);
+		}
+		
+		System.out.println("[CalibrateMultiRig] rigs: "+rigs.size()+", Measured: "+measurements);
+		
+		try(PhaseTimer timer = Metrics.start(Phase.DECOMPOSITION)) {
+			timer.setMeasurements(measurements);
+			MultiRigResult result = calibration.solve();
+			System.out.println("[CalibrateMultiRig] "+result);
+			return result;
+		}
+	}
+	
+	/**
+	 * Factorizes the QR24 system of the current measurements so that single pairs can be added or excluded
+	 * afterwards without solving the whole system again, see {@link IncrementalCalibration}.
+	 * The indices of the pairs are the indices in poseMatrices. Use {@link #toTransforms(RealVector)} on its solution.
+	 * @return incremental calibration containing all current measurements
+	 * @throws Exception Error when there're no measurements
+	 */
+	public IncrementalCalibration calibrateIncremental() throws Exception {
+		
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		
+		checkDegeneracy();
+		
+		System.out.println("[CalibrateIncremental] poseMatrices:"+poseMatrices.size()+", Measured: "+markerPoseMatrices.size());
+		
+		IncrementalCalibration incremental = new IncrementalCalibration();
+		for(int cnt=0;cnt<poseMatrices.size();cnt++) {
+			incremental.add(poseMatrices.get(cnt), markerPoseMatrices.get(cnt));
+		}
+		return incremental;
+	}
+	
+	/**
+	 * Solves the QR24 system robust against outliers, e.g. tracker frames with reflections or partial occlusions.
+	 * Hypotheses from small random subsets are scored by their consensus and the best one is refitted on its inliers,
+	 * see {@link RansacCalibration}.
+	 * @param ransac configured random sample consensus (thresholds, number of hypotheses, seed)
+	 * @return An array containing the matrix X and Y, leading with X
+	 * @throws Exception Error when there're not enough measurements or no subset could be solved
+	 */
+	public RealMatrix[] calibrateRansac(RansacCalibration ransac) throws Exception {
+		
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		
+		checkDegeneracy();
+		
+		System.out.println("[CalibrateRansac] poseMatrices:"+poseMatrices.size()+", Measured: "+markerPoseMatrices.size());
+		
+		RansacResult result = ransac.run(PosePairs.of(poseMatrices, markerPoseMatrices));
+		System.out.println("[CalibrateRansac] "+result);
+		return toTransforms(result.getSolution());
+	}
+	
+	/**
+	 * Estimates how trustworthy the result of the calibration is by solving resampled measurement sets,
+	 * see {@link BootstrapCalibration}.
+	 * @param bootstrap configured bootstrap (number of resamples, confidence level, seed)
+	 * @return standard deviations and confidence intervals of X and Y
+	 * @throws Exception Error when there're not enough measurements or the system is singular
+	 */
+	public BootstrapResult estimateUncertainty(BootstrapCalibration bootstrap) throws Exception {
+		
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy();
+		
+		BootstrapResult result = bootstrap.run(PosePairs.of(poseMatrices, markerPoseMatrices));
+		System.out.println("[Bootstrap] "+result);
+		return result;
+	}
+	
+	/**
+	 * Cross-validates the calibration: every measurement is predicted by the calibration of the other ones,
+	 * see {@link CrossValidation}
+	 * @param validation configured cross-validation (leave-one-out or number of folds, seed)
+	 * @return prediction errors of all measurements and their statistics
+	 * @throws Exception Error when there're not enough measurements or the system is singular
+	 */
+	public CrossValidationResult crossValidate(CrossValidation validation) throws Exception {
+		
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy();
+		
+		CrossValidationResult result = validation.run(PosePairs.of(poseMatrices, markerPoseMatrices));
+		System.out.println("[CrossValidation] "+result);
+		return result;
+	}
+	
+	/**
+	 * Selects the most informative measurements, see {@link PoseSelection}. The measurement lists are not changed.
+	 * @param selection configured selection
+	 * @param count number of measurements to select
+	 * @return indices in poseMatrices of the selected measurements in the order of selection
+	 * @throws Exception Error when there're less measurements than requested
+	 */
+	public PoseSelectionResult selectPoses(PoseSelection selection, int count) throws Exception {
 		
-		//orthonormalize rotational part of Y-Matrix via SVD
-		svd = new SingularValueDecomposition(getRot(Y));
-		UV_t = svd.getU().multiply(svd.getVT());
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy();
+		
+		PoseSelectionResult result = selection.select(PosePairs.of(poseMatrices, markerPoseMatrices), count);
+		System.out.println("[PoseSelection] "+result);
+		return result;
+	}
+	
+	/**
+	 * Refines a calibration result nonlinearly on the rotations and translations instead of the orthonormalized
+	 * entries of the linear system, see {@link LevenbergMarquardtRefinement}
+	 * @param XY result of the linear calibration, X and Y
+	 * @param refinement configured refinement (rotation weight, stopping criteria)
+	 * @return An array containing the refined matrix X and Y, leading with X
+	 * @throws Exception Error when there're no measurements
+	 * @throws InterruptedException The calibrating thread was interrupted while refining
+	 */
+	public RealMatrix[] refine(RealMatrix[] XY, LevenbergMarquardtRefinement refinement) throws Exception {
+		
+		// if there's not data measured throw an error
+		if (poseMatrices.size()<=0 || markerPoseMatrices.size()<=0) {
+			throw new Exception("No measurements taken.");
+		}
+		checkDegeneracy();
+		
+		try(PhaseTimer timer = Metrics.start(Phase.REFINEMENT)) {
+			timer.setMeasurements(poseMatrices.size());
+			RefinementResult result = refinement.run(PosePairs.of(poseMatrices, markerPoseMatrices), XY[0], XY[1]);
+			return new RealMatrix[] {result.getX(), result.getY()};
+		}
+	}
+	
+	/**
+	 * Evaluates how well a calibration result explains the measurements, see {@link ResidualEngine}
+	 * @param X transformation from end-effector to marker
+	 * @param Y transformation from robot base to tracking system
+	 * @return translational (mm) and rotational (degree) residuals of Mi*X and Y*Ni with their statistics
+	 */
+	public ResidualReport evaluateResiduals(RealMatrix X, RealMatrix Y) {
+		return evaluateResiduals(X, Y, new ResidualEngine());
+	}
+	
+	/**
+	 * Evaluates how well a calibration result explains the measurements
+	 * @param X transformation from end-effector to marker
+	 * @param Y transformation from robot base to tracking system
+	 * @param engine configured residual engine
+	 * @return translational (mm) and rotational (degree) residuals of Mi*X and Y*Ni with their statistics
+	 */
+	public ResidualReport evaluateResiduals(RealMatrix X, RealMatrix Y, ResidualEngine engine) {
+		ResidualReport report = engine.evaluate(PosePairs.of(poseMatrices, markerPoseMatrices), X, Y);
+		System.out.println("[Residuals] "+report);
+		return report;
+	}
+	
+	/**
+	 * Writes a calibration result with the residuals of every measurement pair, see {@link ReportWriter}
+	 * @param XY An array containing the matrix X and Y, leading with X
+	 * @param writer target of the report, it is flushed but not closed
+	 * @return residuals of the measurement pairs
+	 * @throws IOException Error when the report can't be written
+	 */
+	public ResidualReport writeReport(RealMatrix[] XY, ReportWriter writer) throws IOException {
+		ResidualReport report = new ResidualEngine().evaluate(PosePairs.of(poseMatrices, markerPoseMatrices), XY[0], XY[1]);
+		writer.writeMatrix("X", XY[0]);
+		writer.writeMatrix("Y", XY[1]);
+		writer.writeTiming("residuals", report.getNanos());
+		writer.writeResiduals(report);
+		writer.flush();
+		return report;
+	}
+	
+	/**
+	 * Generates the matrices X and Y from the solution vector of the linear equation system
+	 * and orthonormalizes their rotational parts
+	 * @param w solution vector, the first 12 entries belong to X, the last 12 entries to Y
+	 * @return An array containing the matrix X and Y, leading with X
+	 */
+	public RealMatrix[] toTransforms(RealVector w) {
+		PhaseTimer timer = Metrics.start(Phase.ORTHONORMALIZATION);
 		
-		// set new orthonormalized rotational part
-		Y.setSubMatrix(UV_t.getData(), 0, 0);
+		// generate X and Y from the solved vector and orthonormalize their rotational parts (polar decomposition)
+		double[] entries = w.toArray();
+		RigidTransform X = new RigidTransform().setSolution(entries, 0).orthonormalize();
+		RigidTransform Y = new RigidTransform().setSolution(entries, 12).orthonormalize();
+		timer.close();
 		
 		// return the calculated X and Y matrices
-		return new RealMatrix[] {X,Y};
+		return new RealMatrix[] {X.toMatrix(),Y.toMatrix()};
 	}
 	
 	public void genMatrices(List<String> effector, List<String> marker) {
+		PhaseTimer timer = Metrics.start(Phase.PARSING);
 		markerPoseMatrices.clear();
 		poseMatrices.clear();
+		resetDegeneracy();
 		int minMeasurements = Math.min(marker.size(), effector.size());
 		for (int i=0;i<minMeasurements;i++) {
 			String markerString = marker.get(i);
@@ -143,110 +624,196 @@ public class QR24 {
 		    }
 			markerPoseMatrices.add(new Array2DRowRealMatrix(tracker));
 			poseMatrices.add(new Array2DRowRealMatrix(robot));
+			if(degeneracyMonitor!=null) {
+				degeneracyMonitor.add(poseMatrices.get(poseMatrices.size()-1), markerPoseMatrices.get(markerPoseMatrices.size()-1));
+			}
 		}
+		timer.setMeasurements(poseMatrices.size()).close();
+		recordDegeneracy();
 	}
 	
 	/**
-	 * Berechnet eine Transformationsmatrix anhand eines gegebenen Vektors 
-	 * @param w Vektor mit Eintrgen der Matrix
-	 * @return die berechnete Matrix
+	 * Creates the measurement pairs from logs read by {@link robCalibration.io.PoseLogReader}.
+	 * Pairs records by their index like {@link #genMatrices(List, List)} and skips records not visible for the tracking system.
+	 * @param effector records of the robot log
+	 * @param marker records of the tracking log
 	 */
-	public RealMatrix getFromW(RealVector w) {
-		RealMatrix M = new Array2DRowRealMatrix(4,4);
-		
-		M.setEntry(0, 0, w.getEntry(0));
-		M.setEntry(1, 0, w.getEntry(1));
-		M.setEntry(2, 0, w.getEntry(2));
-		M.setEntry(0, 1, w.getEntry(3));
-		M.setEntry(1, 1, w.getEntry(4));
-		M.setEntry(2, 1, w.getEntry(5));
-		M.setEntry(0, 2, w.getEntry(6));
-		M.setEntry(1, 2, w.getEntry(7));
-		M.setEntry(2, 2, w.getEntry(8));
-		M.setEntry(0, 3, w.getEntry(9));
-		M.setEntry(1, 3, w.getEntry(10));
-		M.setEntry(2, 3, w.getEntry(11));
-		M.setEntry(3, 3, 1);
-		
-		return M;
-	}
-		
-	/**
-	 * create A matrix for a single pair of measuring data M and N
-	 * @param m pose matrix of robot
-	 * @param n measured data by tracking system
-	 * @return Ai matrix for a single pair of measuring data M and N
-	 */
-	private RealMatrix createAEntry(RealMatrix m,RealMatrix n) {
-		
-		RealMatrix rotM = getRot(m);
-		
-		RealMatrix N = n.copy();
-		RealMatrix Ai = new Array2DRowRealMatrix(12,24); //12x24 matrix for one pair of measured matrices (M,N)
-		RealMatrix Z = new Array2DRowRealMatrix(3,3); //3x3 zero-matrix
-		RealMatrix Identity12 = MatrixUtils.createRealIdentityMatrix(12); //12x12 identity-matrix
-		
-		// first column
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(0, 0)).getData(), 0, 0);
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(1, 0)).getData(), 3, 0);
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(2, 0)).getData(), 6, 0);
-		
-		//TODO: in den letzten Zeilen die Werte mit t bestehend aus gewissen Nij multiplizieren
-		double t1 = -(N.getEntry(0, 0)*N.getEntry(0, 3)+
-				N.getEntry(1,0)*N.getEntry(1,3)+
-				N.getEntry(2, 0)*N.getEntry(2, 3));
-		
-		Ai.setSubMatrix(rotM.scalarMultiply(t1).getData(), 9, 0);
-		                                                   
-		// second column
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(0, 1)).getData(), 0, 3);
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(1, 1)).getData(), 3, 3);
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(2, 1)).getData(), 6, 3);
-		
-		double t2 = -(N.getEntry(0, 1)*N.getEntry(0,3)+
-				N.getEntry(1,1)*N.getEntry(1,3)+
-				N.getEntry(2,1)*N.getEntry(2, 3));
-		Ai.setSubMatrix(rotM.scalarMultiply(t2).getData(), 9, 3);
-
-		// third column
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(0, 2)).getData(), 0, 6);
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(1, 2)).getData(), 3, 6);
-		Ai.setSubMatrix(rotM.scalarMultiply(N.getEntry(2, 2)).getData(), 6, 6);
-		
-		double t3 = -(N.getEntry(0, 2)*N.getEntry(0, 3)+
-				N.getEntry(1,2)*N.getEntry(1,3)+
-				N.getEntry(2,2)*N.getEntry(2,3));
-		Ai.setSubMatrix(rotM.scalarMultiply(t3).getData(), 9, 6);
-		
-		// fourth column
-		Ai.setSubMatrix(Z.getData(), 0, 9);
-		Ai.setSubMatrix(Z.getData(), 3, 9);
-		Ai.setSubMatrix(Z.getData(), 6, 9);
-		Ai.setSubMatrix(rotM.getData(), 9, 9);
-		
-		// fifth column
-		Ai.setSubMatrix(Identity12.scalarMultiply(-1d).getData(), 0, 12);
-		return Ai;
+	public void genMatrices(PoseLog effector, PoseLog marker) {
+		PhaseTimer timer = Metrics.start(Phase.MATCHING);
+		markerPoseMatrices.clear();
+		poseMatrices.clear();
+		resetDegeneracy();
+		int minMeasurements = Math.min(marker.size(), effector.size());
+		double[] pose = new double[BlockAssembler.POSE_SIZE];
+		double[] robotPose = new double[BlockAssembler.POSE_SIZE];
+		RigidTransform transform = new RigidTransform();
+		for (int i=0;i<minMeasurements;i++) {
+			if(!marker.isVisible(i)) {
+				System.out.println("Messung "+i+" bersprungen");
+				continue;
+			}
+			marker.copyPose(i, pose, 0);
+			markerPoseMatrices.add(transform.set(pose, 0).toMatrix());
+			effector.copyPose(i, robotPose, 0);
+			poseMatrices.add(transform.set(robotPose, 0).toMatrix());
+			if(degeneracyMonitor!=null) {
+				degeneracyMonitor.add(robotPose, 0, pose, 0);
+			}
+		}
+		timer.setMeasurements(poseMatrices.size()).close();
+		recordDegeneracy();
+	}
+	
+	/**
+	 * Creates the measurement pairs by matching every robot pose to the tracker sample at the same time.
+	 * Unlike pairing by line index this stays aligned when the tracking system records more samples
+	 * than robot poses or when samples were not visible.
+	 * @param robotLog robot log with timestamps, see {@link robCalibration.io.PoseLogFormat#ROBOT_TIMESTAMPED}
+	 * @param trackingLog tracking log
+	 * @param join configured join (time window, nearest or interpolated)
+	 * @return counters of matched, rejected and unmatched records
+	 * @throws Exception Error when a log can't be read
+	 */
+	public JoinStatistics genMatrices(Path robotLog, Path trackingLog, TimestampJoin join) throws Exception {
+		markerPoseMatrices.clear();
+		poseMatrices.clear();
+		resetDegeneracy();
+		RigidTransform transform = new RigidTransform();
+		JoinStatistics statistics = join.join(robotLog, trackingLog, (timestamp, robot, tracker) -> {
+			poseMatrices.add(transform.set(robot, 0).toMatrix());
+			markerPoseMatrices.add(transform.set(tracker, 0).toMatrix());
+			if(degeneracyMonitor!=null) {
+				degeneracyMonitor.add(robot, 0, tracker, 0);
+			}
+		});
+		recordDegeneracy();
+		return statistics;
+	}
+	
+	/**
+	 * Tracks X and Y over a long recording in a single pass: the pairs of the join are handed to the recursive
+	 * calibration one at a time and aren't kept, so the memory doesn't grow with the length of the logs.
+	 * poseMatrices and markerPoseMatrices are left unchanged.
+	 * @param robotLog robot log with timestamps, see {@link robCalibration.io.PoseLogFormat#ROBOT_TIMESTAMPED}
+	 * @param trackingLog tracking log
+	 * @param join configured join (time window, nearest or interpolated)
+	 * @param recursive calibration with forgetting factor or window, its listener receives the time series of estimates
+	 * @return counters of matched, rejected and unmatched records
+	 * @throws Exception Error when a log can't be read or the listener stops the calibration
+	 */
+	public JoinStatistics calibrateRecursive(Path robotLog, Path trackingLog, TimestampJoin join, RecursiveCalibration recursive) throws Exception {
+		long start = System.nanoTime();
+		JoinStatistics statistics;
+		if(degeneracyMonitor!=null) {
+			// the verdict on the whole recording, the estimates of a poor one stay undetermined
+			degeneracyMonitor.reset();
+			monitoredPoses.clear();
+			monitoredMarkers.clear();
+			statistics = join.join(robotLog, trackingLog, (timestamp, robot, tracker) -> {
+				recursive.onPair(timestamp, robot, tracker);
+				degeneracyMonitor.add(robot, 0, tracker, 0);
+			});
+			System.out.println("[Degeneracy] "+degeneracyMonitor.getReport());
+		}else {
+			statistics = join.join(robotLog, trackingLog, recursive);
+		}
+		System.out.println("[CalibrateRecursive] pairs: "+recursive.getMeasurements()+", estimates: "+recursive.getEstimates()
+				+", weight: "+recursive.getWeight()+", "+(System.nanoTime()-start)/1000000+" ms");
+		return statistics;
+	}
+	
+	private void resetDegeneracy() {
+		monitoredPoses.clear();
+		monitoredMarkers.clear();
+		degeneracyVerdict = null;
+		if(degeneracyMonitor!=null) {
+			degeneracyMonitor.reset();
+		}
 	}
 	
 	/**
-	 * create B vector as an array of double values
-	 * @param m RealMatrix contains matrix that we need to get the translational part of the matrix
-	 * @return array of double values
+	 * remembers the measurements genMatrices fed to the monitor, the verdict is printed by the check
 	 */
-	private double[] createBEntry(RealMatrix m) {
-		double[] bi = {0,0,0,0,0,0,0,0,0,-m.getEntry(0, 3),-m.getEntry(1, 3),-m.getEntry(2, 3)};
-		return bi;
+	private void recordDegeneracy() {
+		if(degeneracyMonitor!=null) {
+			monitoredPoses.addAll(poseMatrices);
+			monitoredMarkers.addAll(markerPoseMatrices);
+		}
 	}
 	
 	/**
-	 * Returns rotational part of a matrix
-	 * @param mat matrix has to have at least 3 rows and 3 columns
-	 * @return RealMatrix containing rotational part of mat
+	 * stops the calibration before the solve if the monitor rejects the measurements; the monitor is fed
+	 * again if the lists were changed or replaced since genMatrices fed it, even by as many other pairs.
+	 * An accepted verdict is printed once and kept until the measurements change.
 	 */
-	private RealMatrix getRot(RealMatrix mat) {
-		return mat.copy().getSubMatrix(
-				new int[] {0,1,2}, new int[] {0,1,2});
+	private void checkDegeneracy() throws Exception {
+		if(degeneracyMonitor==null) {
+			return;
+		}
+		if(!isMonitored()) {
+			resetDegeneracy();
+			for(int cnt=0;cnt<poseMatrices.size();cnt++) {
+				degeneracyMonitor.add(poseMatrices.get(cnt), markerPoseMatrices.get(cnt));
+			}
+			monitoredPoses.addAll(poseMatrices);
+			monitoredMarkers.addAll(markerPoseMatrices);
+		}
+		if(degeneracyVerdict==null) {
+			degeneracyVerdict = degeneracyMonitor.check();
+			System.out.println("[Degeneracy] "+degeneracyVerdict);
+		}
+	}
+	
+	/**
+	 * stops the calibration of a pair source before the solve if the monitor rejects its pairs,
+	 * the pairs are fed to the monitor first, which costs about as much as the assembly of the normal equations
+	 */
+	private void checkDegeneracy(PosePairSource pairs) throws Exception {
+		if(degeneracyMonitor==null) {
+			return;
+		}
+		resetDegeneracy();
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		for(int cnt=0;cnt<pairs.size();cnt++) {
+			pairs.robotPose(cnt, m, 0);
+			pairs.trackerPose(cnt, n, 0);
+			degeneracyMonitor.add(m, 0, n, 0);
+		}
+		DegeneracyReport report = degeneracyMonitor.check();
+		System.out.println("[Degeneracy] "+report);
+	}
+	
+	/**
+	 * true if the monitor holds exactly the measurements in the lists, the same objects in the same order
+	 */
+	private boolean isMonitored() {
+		int size = poseMatrices.size();
+		if(degeneracyMonitor.getMeasurements()!=size || monitoredPoses.size()!=size || markerPoseMatrices.size()!=size
+				|| monitoredMarkers.size()!=size) {
+			return false;
+		}
+		for(int cnt=0;cnt<size;cnt++) {
+			if(poseMatrices.get(cnt)!=monitoredPoses.get(cnt) || markerPoseMatrices.get(cnt)!=monitoredMarkers.get(cnt)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void reportProgress(ProgressListener.Phase phase, long done, long total) {
+		if(progressListener!=null) {
+			progressListener.progress(phase, done, total);
+		}
+	}
+	
+	/**
+	 * Berechnet eine Transformationsmatrix anhand eines gegebenen Vektors 
+	 * @param w Vektor mit Eintrgen der Matrix
+	 * @return die berechnete Matrix
+	 */
+	public RealMatrix getFromW(RealVector w) {
+		return new RigidTransform().setSolution(w.toArray(), 0).toMatrix();
 	}
 
 	/**
@@ -254,24 +821,13 @@ public class QR24 {
 	 * @param rm the matrix to print
 	 */
 	public void printTable(RealMatrix rm) {
-		int colDimNumber = rm.getColumnDimension();
-		int rowDimNumber = rm.getRowDimension();
-		ArrayList<String> headers = new ArrayList<String>();
-		String[] alphabet = {"a","b","c","d","e","f","g","h","i","j","k","l","m","n","o","p","q","r","s","t","u","v","w","x","y","z"};
-		for(int colDim = 0; colDim < colDimNumber; colDim++) {
-			headers.add(alphabet[colDim]);
-		}
-		ArrayList<ArrayList<String>> content = new ArrayList<ArrayList<String>>();
-		for(int rowDim = 0; rowDim < rowDimNumber; rowDim++) {
-			double[] rowValues = rm.getRow(rowDim);
-			ArrayList<String> rowArrayList = new ArrayList<String>();
-			for(int colDim = 0; colDim < colDimNumber; colDim++) {
-				rowArrayList.add(rowValues[colDim]+ "");
-			}
-			content.add(rowArrayList);
+		PhaseTimer timer = Metrics.start(Phase.OUTPUT);
+		try(ReportWriter writer = ReportWriter.console()) {
+			writer.writeMatrix(null, rm);
+		} catch (IOException e) {
+			System.out.println("[PrintTable] "+e);
 		}
-		ConsoleTable ct = new ConsoleTable(headers,content);
-		ct.printTable();
+		timer.close();
 	}
 	
 }
@@ -0,0 +1,407 @@
+package robCalibration;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outlier rejection for the QR24 calibration by random sample consensus.
+ * Every hypothesis is the solution of the {@link ReducedSolver} for a small random subset of the measurements.
+ * It is scored by the residual of every pair in the linear system, Mi*X*Ni^-1 - Y, split into the
+ * translational error (mm) and the Frobenius norm of the rotational error. Pairs below both thresholds are inliers.
+ * The hypothesis with the most inliers (ties broken by the truncated squared error, then by the lower index)
+ * is refitted on its inliers until the inlier set doesn't change anymore.
+ *
+ * The hypotheses are evaluated in parallel on a fork-join pool, each worker thread reuses its own solver and
+ * buffers. Every hypothesis draws its subset from a generator seeded with the seed and its own index,
+ * so the result only depends on the seed and not on the number of threads or the scheduling.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * ===
+ */
+public class RansacCalibration {
+
+	/**
+	 * number of hypotheses evaluated by a single fork-join task
+	 */
+	private static final int HYPOTHESES_PER_TASK = 8;
+
+	/**
+	 * number of pairs between two checks whether a hypothesis can still win
+	 */
+	private static final int PRUNE_INTERVAL = 1024;
+
+	private int hypotheses = 1000;
+	private int sampleSize = 3;
+	private double translationThreshold = 2;
+	private double rotationThreshold = 0.02;
+	private int refinements = 5;
+	private long seed = 0;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param hypotheses number of random subsets to solve
+	 * @return this calibration
+	 */
+	public RansacCalibration setHypotheses(int hypotheses) {
+		if(hypotheses<1) {
+			throw new IllegalArgumentException("At least one hypothesis is needed.");
+		}
+		this.hypotheses = hypotheses;
+		return this;
+	}
+
+	/**
+	 * @param sampleSize number of measurements per subset, at least 2 (3 avoids most degenerated subsets)
+	 * @return this calibration
+	 */
+	public RansacCalibration setSampleSize(int sampleSize) {
+		if(sampleSize<2) {
+			throw new IllegalArgumentException("A subset needs at least two measurements.");
+		}
+		this.sampleSize = sampleSize;
+		return this;
+	}
+
+	/**
+	 * @param millimeter largest translational residual of an inlier
+	 * @return this calibration
+	 */
+	public RansacCalibration setTranslationThreshold(double millimeter) {
+		if(!(millimeter>0)) {
+			throw new IllegalArgumentException("Threshold must be positive.");
+		}
+		this.translationThreshold = millimeter;
+		return this;
+	}
+
+	/**
+	 * @param frobenius largest Frobenius norm of the rotational residual of an inlier, about the angle in radians times sqrt(2)
+	 * @return this calibration
+	 */
+	public RansacCalibration setRotationThreshold(double frobenius) {
+		if(!(frobenius>0)) {
+			throw new IllegalArgumentException("Threshold must be positive.");
+		}
+		this.rotationThreshold = frobenius;
+		return this;
+	}
+
+	/**
+	 * @param refinements largest number of refits on the inliers
+	 * @return this calibration
+	 */
+	public RansacCalibration setRefinements(int refinements) {
+		this.refinements = Math.max(0, refinements);
+		return this;
+	}
+
+	/**
+	 * @param seed seed of the random subsets
+	 * @return this calibration
+	 */
+	public RansacCalibration setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @param pool pool evaluating the hypotheses, the common pool by default
+	 * @return this calibration
+	 */
+	public RansacCalibration setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Runs the random sample consensus
+	 * @param source measurement pairs, copied into memory once unless they're in memory already; they aren't changed
+	 * @return refitted solution and inliers
+	 * @throws Exception Error when there're not enough measurements or no subset could be solved
+	 */
+	public RansacResult run(PosePairSource source) throws Exception {
+		long start = System.nanoTime();
+		PosePairs pairs = PosePairs.inMemory(source);
+		int size = pairs.size();
+		if(size<sampleSize) {
+			throw new Exception("At least "+sampleSize+" measurements are needed, got "+size+".");
+		}
+		double[] robot = pairs.getRobotPoses();
+		double[] tracker = pairs.getTrackerPoses();
+		double[] inverse = invertAll(tracker, size);
+
+		ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(sampleSize));
+		AtomicInteger bestCount = new AtomicInteger(0);
+		Score best = pool.invoke(new HypothesisTask(robot, tracker, inverse, size, 0, hypotheses, scratch, bestCount));
+		if(best==null) {
+			throw new Exception("No subset of "+sampleSize+" measurements could be solved, the measurements are degenerated.");
+		}
+		long searchNanos = System.nanoTime()-start;
+
+		// refit on the inliers until the set is stable
+		double[] w = new double[BlockAssembler.COLUMNS];
+		System.arraycopy(best.w, 0, w, 0, BlockAssembler.COLUMNS);
+		boolean[] inlier = new boolean[size];
+		int inliers = classify(robot, inverse, size, w, inlier);
+		ReducedSolver solver = new ReducedSolver();
+		double[] refit = new double[BlockAssembler.COLUMNS];
+		boolean[] refitInlier = new boolean[size];
+		int iterations = 0;
+		while(iterations<refinements && inliers>=sampleSize) {
+			solver.reset();
+			for(int i=0;i<size;i++) {
+				if(inlier[i]) {
+					solver.add(robot, i*BlockAssembler.POSE_SIZE, tracker, i*BlockAssembler.POSE_SIZE);
+				}
+			}
+			if(!solver.solve(refit, 0)) {
+				break;
+			}
+			iterations++;
+			int refitInliers = classify(robot, inverse, size, refit, refitInlier);
+			if(refitInliers<inliers) {
+				// the refit lost support, keep the previous solution
+				break;
+			}
+			System.arraycopy(refit, 0, w, 0, BlockAssembler.COLUMNS);
+			boolean changed = false;
+			for(int i=0;i<size;i++) {
+				changed |= inlier[i]!=refitInlier[i];
+				inlier[i] = refitInlier[i];
+			}
+			inliers = refitInliers;
+			if(!changed) {
+				break;
+			}
+		}
+		return new RansacResult(w, inlier, inliers, best.index, iterations, searchNanos, System.nanoTime()-start);
+	}
+
+	/**
+	 * inverts all tracker poses by transposing their rotational part, like the blocks Ai of the linear system
+	 */
+	private static double[] invertAll(double[] tracker, int size) {
+		double[] inverse = new double[size*BlockAssembler.POSE_SIZE];
+		for(int i=0;i<size;i++) {
+			int o = i*BlockAssembler.POSE_SIZE;
+			for(int r=0;r<3;r++) {
+				for(int c=0;c<3;c++) {
+					inverse[o+r*4+c] = tracker[o+c*4+r];
+				}
+			}
+			for(int r=0;r<3;r++) {
+				inverse[o+r*4+3] = -(inverse[o+r*4]*tracker[o+3]+inverse[o+r*4+1]*tracker[o+7]+inverse[o+r*4+2]*tracker[o+11]);
+			}
+		}
+		return inverse;
+	}
+
+	/**
+	 * Writes the squared translational and rotational residual of a pair for the solution w into out[0] and out[1]
+	 * @param w solution vector, X and Y in the column layout of {@link QR24#getFromW(org.apache.commons.math3.linear.RealVector)}
+	 * @param robot array containing Mi
+	 * @param robotOffset index of the first entry of Mi
+	 * @param inverse array containing Ni^-1
+	 * @param inverseOffset index of the first entry of Ni^-1
+	 * @param out target array of at least 2 entries
+	 */
+	static void residual(double[] w, double[] robot, int robotOffset, double[] inverse, int inverseOffset, double[] out) {
+		double translation = 0;
+		double rotation = 0;
+		for(int r=0;r<3;r++) {
+			int o = robotOffset+r*4;
+			// row r of Mi*X
+			double p0 = robot[o]*w[0]+robot[o+1]*w[1]+robot[o+2]*w[2];
+			double p1 = robot[o]*w[3]+robot[o+1]*w[4]+robot[o+2]*w[5];
+			double p2 = robot[o]*w[6]+robot[o+1]*w[7]+robot[o+2]*w[8];
+			double p3 = robot[o]*w[9]+robot[o+1]*w[10]+robot[o+2]*w[11]+robot[o+3];
+			// row r of Mi*X*Ni^-1 - Y
+			for(int c=0;c<4;c++) {
+				double q = p0*inverse[inverseOffset+c]+p1*inverse[inverseOffset+4+c]+p2*inverse[inverseOffset+8+c];
+				if(c==3) {
+					q += p3-w[21+r];
+					translation += q*q;
+				}else {
+					q -= w[12+c*3+r];
+					rotation += q*q;
+				}
+			}
+		}
+		out[0] = translation;
+		out[1] = rotation;
+	}
+
+	/**
+	 * marks the inliers of a solution
+	 * @return number of inliers
+	 */
+	private int classify(double[] robot, double[] inverse, int size, double[] w, boolean[] inlier) {
+		double[] residual = new double[2];
+		double t2 = translationThreshold*translationThreshold;
+		double r2 = rotationThreshold*rotationThreshold;
+		int count = 0;
+		for(int i=0;i<size;i++) {
+			residual(w, robot, i*BlockAssembler.POSE_SIZE, inverse, i*BlockAssembler.POSE_SIZE, residual);
+			inlier[i] = residual[0]<=t2 && residual[1]<=r2;
+			if(inlier[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * per-thread buffers of the hypothesis evaluation
+	 */
+	private static class Scratch {
+		final ReducedSolver solver = new ReducedSolver();
+		final double[] w = new double[BlockAssembler.COLUMNS];
+		final double[] residual = new double[2];
+		final int[] sample;
+
+		Scratch(int sampleSize) {
+			sample = new int[sampleSize];
+		}
+	}
+
+	/**
+	 * consensus of a single hypothesis
+	 */
+	private static class Score {
+		final int index;
+		final int inliers;
+		final double cost;
+		final double[] w;
+
+		Score(int index, int inliers, double cost, double[] w) {
+			this.index = index;
+			this.inliers = inliers;
+			this.cost = cost;
+			this.w = w;
+		}
+
+		/**
+		 * total order independent of the evaluation order: more inliers, lower cost, lower index
+		 */
+		boolean isBetterThan(Score other) {
+			if(other==null) {
+				return true;
+			}
+			if(inliers!=other.inliers) {
+				return inliers>other.inliers;
+			}
+			if(cost!=other.cost) {
+				return cost<other.cost;
+			}
+			return index<other.index;
+		}
+	}
+
+	/**
+	 * evaluates the hypotheses from..to-1 and returns the best one, null if none could be solved
+	 */
+	private class HypothesisTask extends RecursiveTask<Score> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[] robot;
+		private final double[] tracker;
+		private final double[] inverse;
+		private final int size;
+		private final int from;
+		private final int to;
+		private final ThreadLocal<Scratch> scratch;
+		private final AtomicInteger bestCount;
+
+		HypothesisTask(double[] robot, double[] tracker, double[] inverse, int size, int from, int to,
+				ThreadLocal<Scratch> scratch, AtomicInteger bestCount) {
+			this.robot = robot;
+			this.tracker = tracker;
+			this.inverse = inverse;
+			this.size = size;
+			this.from = from;
+			this.to = to;
+			this.scratch = scratch;
+			this.bestCount = bestCount;
+		}
+
+		@Override
+		protected Score compute() {
+			if(to-from>HYPOTHESES_PER_TASK) {
+				int middle = (from+to)>>>1;
+				HypothesisTask left = new HypothesisTask(robot, tracker, inverse, size, from, middle, scratch, bestCount);
+				HypothesisTask right = new HypothesisTask(robot, tracker, inverse, size, middle, to, scratch, bestCount);
+				left.fork();
+				Score r = right.compute();
+				Score l = left.join();
+				return r!=null && r.isBetterThan(l) ? r : l;
+			}
+			Scratch s = scratch.get();
+			Score best = null;
+			for(int h=from;h<to;h++) {
+				Score score = evaluate(h, s);
+				if(score!=null && score.isBetterThan(best)) {
+					best = score;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * solves the subset of hypothesis h and counts its inliers
+		 * @return null if the subset is degenerated or the hypothesis can't have the most inliers anymore
+		 */
+		private Score evaluate(int h, Scratch s) {
+			SplittableRandom random = new SplittableRandom(seed+h*0x9E3779B97F4A7C15L);
+			int[] sample = s.sample;
+			for(int k=0;k<sample.length;k++) {
+				int candidate;
+				boolean duplicate;
+				do {
+					candidate = random.nextInt(size);
+					duplicate = false;
+					for(int j=0;j<k;j++) {
+						duplicate |= sample[j]==candidate;
+					}
+				}while(duplicate);
+				sample[k] = candidate;
+			}
+			ReducedSolver solver = s.solver;
+			solver.reset();
+			for(int k=0;k<sample.length;k++) {
+				solver.add(robot, sample[k]*BlockAssembler.POSE_SIZE, tracker, sample[k]*BlockAssembler.POSE_SIZE);
+			}
+			double[] w = s.w;
+			if(!solver.solve(w, 0)) {
+				return null;
+			}
+
+			double t2 = 1/(translationThreshold*translationThreshold);
+			double r2 = 1/(rotationThreshold*rotationThreshold);
+			double[] residual = s.residual;
+			int inliers = 0;
+			double cost = 0;
+			for(int i=0;i<size;i++) {
+				if(i%PRUNE_INTERVAL==0 && inliers+size-i<bestCount.get()) {
+					// can't reach the best inlier count found so far, so it can't be chosen
+					return null;
+				}
+				residual(w, robot, i*BlockAssembler.POSE_SIZE, inverse, i*BlockAssembler.POSE_SIZE, residual);
+				double t = residual[0]*t2;
+				double r = residual[1]*r2;
+				if(t<=1 && r<=1) {
+					inliers++;
+					cost += t+r;
+				}else {
+					cost += 2;
+				}
+			}
+			bestCount.accumulateAndGet(inliers, Math::max);
+			return new Score(h, inliers, cost, w.clone());
+		}
+	}
+}
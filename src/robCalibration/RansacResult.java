@@ -0,0 +1,91 @@
+package robCalibration;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Result of a {@link RansacCalibration}: the solution refitted on the inliers and the inlier flags of all pairs.
+ */
+public class RansacResult {
+
+	private final double[] w;
+	private final boolean[] inlier;
+	private final int inliers;
+	private final int hypothesis;
+	private final int refinements;
+	private final long searchNanos;
+	private final long totalNanos;
+
+	RansacResult(double[] w, boolean[] inlier, int inliers, int hypothesis, int refinements, long searchNanos, long totalNanos) {
+		this.w = w;
+		this.inlier = inlier;
+		this.inliers = inliers;
+		this.hypothesis = hypothesis;
+		this.refinements = refinements;
+		this.searchNanos = searchNanos;
+		this.totalNanos = totalNanos;
+	}
+
+	/**
+	 * @return solution vector w, the first 12 entries belong to X, the last 12 entries to Y, see {@link QR24#toTransforms(RealVector)}
+	 */
+	public RealVector getSolution() {
+		return new ArrayRealVector(w);
+	}
+
+	/**
+	 * @param i index of the measurement pair
+	 * @return true if the pair is consistent with the solution
+	 */
+	public boolean isInlier(int i) {
+		return inlier[i];
+	}
+
+	/**
+	 * @return number of inliers
+	 */
+	public int getInliers() {
+		return inliers;
+	}
+
+	/**
+	 * @return number of pairs
+	 */
+	public int getSize() {
+		return inlier.length;
+	}
+
+	/**
+	 * @return index of the winning hypothesis
+	 */
+	public int getHypothesis() {
+		return hypothesis;
+	}
+
+	/**
+	 * @return number of refits on the inliers
+	 */
+	public int getRefinements() {
+		return refinements;
+	}
+
+	/**
+	 * @return time spent evaluating the hypotheses in nanoseconds
+	 */
+	public long getSearchNanos() {
+		return searchNanos;
+	}
+
+	/**
+	 * @return total time including the refits in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	@Override
+	public String toString() {
+		return inliers+" of "+inlier.length+" pairs are inliers (hypothesis "+hypothesis+", "+refinements+" refits, "
+				+searchNanos/1000000+" ms search, "+totalNanos/1000000+" ms total)";
+	}
+}
@@ -0,0 +1,244 @@
+package robCalibration;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.io.PosePairHandler;
+
+/**
+ * Recursive least-squares calibration that tracks X and Y while they drift, e.g. over a recording of a whole day.
+ * Every pair is rotated into an {@link IncrementalQR} in O(24^2), the state is its 24x24 factor. Old pairs lose
+ * their influence in one of two ways:
+ * <pre>
+ *   forgetting factor   the factor is scaled by sqrt(lambda) before every add, a pair k adds old has the weight lambda^k,
+ *                       about 1/(1-lambda) pairs take part in the estimate
+ *   sliding window      the last n pairs are kept in a ring buffer and the oldest one is removed by a downdate
+ * </pre>
+ * Without either every pair keeps the weight 1, which is the batch solution of all pairs so far. Memory is constant
+ * in both modes, the ring buffer of the window holds n pairs. Like {@link IncrementalCalibration} the window
+ * rebuilds the factor from the ring after a failed downdate and after {@value #REFACTORIZE_INTERVAL} removals,
+ * or the window size if that is more, which at most doubles the cost per pair.
+ * An estimate is solved and passed to the listener after every interval of pairs; pairs that don't determine
+ * X and Y yet emit no estimate. A calibration isn't thread-safe.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * unit of time: second
+ * ===
+ */
+public class RecursiveCalibration implements PosePairHandler {
+
+	/**
+	 * smallest number of removals after which the factor of the window is rebuilt from the ring
+	 */
+	static final int REFACTORIZE_INTERVAL = 1000;
+
+	private static final int P = BlockAssembler.POSE_SIZE;
+
+	private final IncrementalQR qr = new IncrementalQR();
+
+	private double forgetting = 1;
+	private double scale = 1;
+	private int window = 0;
+	private int interval = 1;
+	private RecursiveEstimateListener listener;
+
+	/**
+	 * ring buffer of the poses in the window
+	 */
+	private double[] robot = new double[0];
+	private double[] tracker = new double[0];
+
+	private long measurements = 0;
+	private double weight = 0;
+	private int removals = 0;
+	private long estimates = 0;
+
+	/**
+	 * scratch buffers
+	 */
+	private final double[] w = new double[BlockAssembler.COLUMNS];
+	private final double[] m = new double[P];
+	private final double[] n = new double[P];
+
+	/**
+	 * Weights a pair that is k pairs old by factor^k, replaces a window
+	 * @param factor forgetting factor in (0, 1], 1 keeps every pair with full weight
+	 * @return this calibration
+	 */
+	public RecursiveCalibration setForgetting(double factor) {
+		if(!(factor>0 && factor<=1)) {
+			throw new IllegalArgumentException("Forgetting factor has to be in (0, 1], got "+factor+".");
+		}
+		checkEmpty();
+		this.forgetting = factor;
+		this.scale = Math.sqrt(factor);
+		this.window = 0;
+		this.robot = new double[0];
+		this.tracker = new double[0];
+		return this;
+	}
+
+	/**
+	 * Estimates from the last pairs only, replaces a forgetting factor
+	 * @param pairs number of pairs in the window, at least 3; 0 for all pairs
+	 * @return this calibration
+	 */
+	public RecursiveCalibration setWindow(int pairs) {
+		if(pairs!=0 && pairs<DegeneracyMonitor.MIN_MEASUREMENTS) {
+			throw new IllegalArgumentException("Window has to be 0 or at least "+DegeneracyMonitor.MIN_MEASUREMENTS+" pairs, got "+pairs+".");
+		}
+		checkEmpty();
+		this.window = pairs;
+		this.forgetting = 1;
+		this.scale = 1;
+		this.robot = new double[pairs*P];
+		this.tracker = new double[pairs*P];
+		return this;
+	}
+
+	/**
+	 * @param pairs number of pairs between two estimates, 1 by default
+	 * @return this calibration
+	 */
+	public RecursiveCalibration setInterval(int pairs) {
+		if(pairs<1) {
+			throw new IllegalArgumentException("Interval has to be at least 1, got "+pairs+".");
+		}
+		this.interval = pairs;
+		return this;
+	}
+
+	/**
+	 * @param listener receiver of the estimates, null for none
+	 * @return this calibration
+	 */
+	public RecursiveCalibration setListener(RecursiveEstimateListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Adds a pair and passes an estimate to the listener at the end of every interval
+	 */
+	@Override
+	public void onPair(double timestamp, double[] robot, double[] tracker) throws Exception {
+		add(robot, 0, tracker, 0);
+		if(listener!=null && measurements%interval==0) {
+			RecursiveEstimate estimate = getEstimate(timestamp);
+			if(estimate!=null) {
+				listener.onEstimate(estimate);
+			}
+		}
+	}
+
+	/**
+	 * Adds a single pair of measuring data
+	 * @param robot pose matrix of robot (4x4)
+	 * @param tracker measured data by tracking system (4x4)
+	 */
+	public void add(RealMatrix robot, RealMatrix tracker) {
+		BlockAssembler.copyPose(robot, m, 0);
+		BlockAssembler.copyPose(tracker, n, 0);
+		add(m, 0, n, 0);
+	}
+
+	/**
+	 * Adds a single pair of measuring data given as arrays, the oldest pair of a full window is removed
+	 * @param robot array containing the robot pose
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the tracker pose
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 */
+	public void add(double[] robot, int robotOffset, double[] tracker, int trackerOffset) {
+		if(window>0) {
+			int slot = (int) (measurements%window)*P;
+			boolean rebuild = false;
+			if(measurements>=window) {
+				rebuild = ++removals>=Math.max(REFACTORIZE_INTERVAL, window) || !qr.remove(this.robot, slot, this.tracker, slot);
+			}
+			System.arraycopy(robot, robotOffset, this.robot, slot, P);
+			System.arraycopy(tracker, trackerOffset, this.tracker, slot, P);
+			measurements++;
+			if(rebuild) {
+				refactorize();
+			}else {
+				qr.add(this.robot, slot, this.tracker, slot);
+			}
+			weight = Math.min(measurements, window);
+		}else {
+			if(forgetting<1) {
+				qr.scale(scale);
+			}
+			qr.add(robot, robotOffset, tracker, trackerOffset);
+			measurements++;
+			weight = forgetting*weight+1;
+		}
+	}
+
+	/**
+	 * Solves the current estimate
+	 * @param timestamp unix timestamp of the last pair in seconds
+	 * @return estimate with orthonormalized rotations, null if the pairs don't determine X and Y
+	 */
+	public RecursiveEstimate getEstimate(double timestamp) {
+		if(measurements<2 || !qr.solve(w, 0)) {
+			return null;
+		}
+		RealMatrix x = new RigidTransform().setSolution(w, 0).orthonormalize().toMatrix();
+		RealMatrix y = new RigidTransform().setSolution(w, 12).orthonormalize().toMatrix();
+		estimates++;
+		return new RecursiveEstimate(timestamp, measurements, x, y, weight, qr.getResidualNorm());
+	}
+
+	/**
+	 * @return number of pairs added so far, including the forgotten ones
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return number of estimates solved so far
+	 */
+	public long getEstimates() {
+		return estimates;
+	}
+
+	/**
+	 * @return effective number of pairs in the estimate, see {@link RecursiveEstimate#getWeight()}
+	 */
+	public double getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Removes all pairs, the settings are kept
+	 */
+	public void reset() {
+		qr.reset();
+		measurements = 0;
+		weight = 0;
+		removals = 0;
+		estimates = 0;
+	}
+
+	/**
+	 * rebuilds the factor of the window from the ring
+	 */
+	private void refactorize() {
+		qr.reset();
+		int size = (int) Math.min(measurements, window);
+		for(int i=0;i<size;i++) {
+			qr.add(robot, i*P, tracker, i*P);
+		}
+		removals = 0;
+	}
+
+	private void checkEmpty() {
+		if(measurements>0) {
+			throw new IllegalStateException("The mode can't be changed after pairs were added, reset first.");
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package robCalibration;
+
+import java.util.Locale;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Estimate of X and Y emitted by a {@link RecursiveCalibration} while it passes through a recording.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of time: second
+ * ===
+ */
+public class RecursiveEstimate {
+
+	private final double timestamp;
+	private final long measurements;
+	private final RealMatrix x;
+	private final RealMatrix y;
+	private final double weight;
+	private final double residualNorm;
+
+	RecursiveEstimate(double timestamp, long measurements, RealMatrix x, RealMatrix y, double weight, double residualNorm) {
+		this.timestamp = timestamp;
+		this.measurements = measurements;
+		this.x = x;
+		this.y = y;
+		this.weight = weight;
+		this.residualNorm = residualNorm;
+	}
+
+	/**
+	 * @return unix timestamp of the last pair in seconds
+	 */
+	public double getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return number of pairs processed so far, including the forgotten ones
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return transformation from end-effector to marker
+	 */
+	public RealMatrix getX() {
+		return x;
+	}
+
+	/**
+	 * @return transformation from robot base to tracking system
+	 */
+	public RealMatrix getY() {
+		return y;
+	}
+
+	/**
+	 * @return effective number of pairs in the estimate: the sum of their weights with a forgetting factor,
+	 *         the number of pairs in the window otherwise
+	 */
+	public double getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return norm of the weighted residual of the linear system
+	 */
+	public double getResidualNorm() {
+		return residualNorm;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "t=%.3f s, measurements: %d, weight: %.1f, residual: %.4g, X translation: (%.3f, %.3f, %.3f), Y translation: (%.3f, %.3f, %.3f)",
+				timestamp, measurements, weight, residualNorm, x.getEntry(0, 3), x.getEntry(1, 3), x.getEntry(2, 3),
+				y.getEntry(0, 3), y.getEntry(1, 3), y.getEntry(2, 3));
+	}
+}
@@ -0,0 +1,15 @@
+package robCalibration;
+
+/**
+ * Receives the estimates of a {@link RecursiveCalibration}.
+ */
+@FunctionalInterface
+public interface RecursiveEstimateListener {
+
+	/**
+	 * Called on the thread that adds the pairs
+	 * @param estimate current estimate of X and Y
+	 * @throws Exception stops the calibration
+	 */
+	void onEstimate(RecursiveEstimate estimate) throws Exception;
+}
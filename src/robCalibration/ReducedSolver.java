@@ -0,0 +1,358 @@
+package robCalibration;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Solver for the QR24 system that exploits the constant -I12 block of every Ai.
+ * Each block has the form Ai = [Ci | -I12], so the system Ci*x - y = Bi is linear in y with unit coefficients.
+ * For a fixed x the best y is the mean of Ci*x - Bi, which eliminates y analytically:
+ * <pre>
+ *   sum |(Ci - mean(C))*x - (Bi - mean(B))|^2  -&gt;  min      (12 unknowns)
+ *   y = mean(C)*x - mean(B)                                  (back-substitution)
+ * </pre>
+ * The centered normal equations are accumulated with a weighted Welford update, so no measurement
+ * has to be stored and no cancellation occurs when the means are subtracted.
+ *
+ * Compared to the 24 column QR decomposition of {@link QR24#calibrate()} the per-measurement
+ * work drops from a Householder sweep over 12 rows of 24 columns to one symmetric 12x12 update
+ * (rotational rows only touch 9 columns), and the final factorization is a 12x12 instead of a
+ * 24x24 one. The solver state is 312 doubles (the 24 column accumulator needs 600) and does not grow with
+ * the number of measurements.
+ *
+ * Measurements can be added with a weight, which allows resampling without copying pose data, and removed again
+ * by the inverse update, which allows solving with held-out measurements without accumulating the rest again.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * ===
+ */
+public class ReducedSolver {
+
+	/**
+	 * number of unknowns of X
+	 */
+	private static final int N = 12;
+
+	/**
+	 * centered normal matrix (upper triangle) and right-hand side of the reduced system
+	 */
+	private final double[] s = new double[N*N];
+	private final double[] r = new double[N];
+
+	/**
+	 * weighted means of the blocks Ci (row-major 12x12) and Bi
+	 */
+	private final double[] meanC = new double[N*N];
+	private final double[] meanB = new double[N];
+
+	/**
+	 * scratch buffers
+	 */
+	private final double[] delta = new double[N*N];
+	private final double[] deltaB = new double[N];
+	private final double[] a = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
+	private final double[] b = new double[BlockAssembler.ROWS];
+	private final double[] m = new double[BlockAssembler.POSE_SIZE];
+	private final double[] n = new double[BlockAssembler.POSE_SIZE];
+	private final double[] factor = new double[N*N];
+	private final double[] scale = new double[N];
+	private final double[] x = new double[N];
+	private final double[] work = new double[2*N];
+
+	/**
+	 * sum of all weights and number of blocks with a positive weight
+	 */
+	private double weight = 0;
+	private long measurements = 0;
+
+	/**
+	 * condition estimate of the last successful solve
+	 */
+	private double condition = Double.NaN;
+
+	/**
+	 * Adds a single pair of measuring data
+	 * @param robot pose matrix of robot (4x4)
+	 * @param tracker measured data by tracking system (4x4)
+	 */
+	public void add(RealMatrix robot, RealMatrix tracker) {
+		BlockAssembler.copyPose(robot, m, 0);
+		BlockAssembler.copyPose(tracker, n, 0);
+		add(m, 0, n, 0);
+	}
+
+	/**
+	 * Adds a single pair of measuring data given as 3x4 row-major arrays
+	 * @param robot array containing the robot pose
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the pose measured by the tracking system
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 */
+	public void add(double[] robot, int robotOffset, double[] tracker, int trackerOffset) {
+		BlockAssembler.assembleA(robot, robotOffset, tracker, trackerOffset, a, 0);
+		BlockAssembler.assembleB(robot, robotOffset, b, 0);
+		addBlock(a, 0, BlockAssembler.COLUMNS, b, 0, 1d);
+	}
+
+	/**
+	 * Adds an already assembled block Ci (the left 12 columns of Ai) and Bi with a weight.
+	 * @param c array containing Ci in row-major order
+	 * @param cOffset index of the entry (0,0) of Ci
+	 * @param cStride distance between two rows of Ci, 12 for packed blocks or 24 for complete blocks Ai
+	 * @param bi array containing Bi
+	 * @param bOffset index of the first entry of Bi
+	 * @param w weight of the measurement, e.g. the multiplicity in a resample; blocks with weight 0 are ignored
+	 */
+	public void addBlock(double[] c, int cOffset, int cStride, double[] bi, int bOffset, double w) {
+		if(w<=0) {
+			return;
+		}
+		double total = weight+w;
+		double gain = w/total;
+		for(int row=0;row<N;row++) {
+			int o = cOffset+row*cStride;
+			for(int col=0;col<N;col++) {
+				double d = c[o+col]-meanC[row*N+col];
+				delta[row*N+col] = d;
+				meanC[row*N+col] += d*gain;
+			}
+			double d = bi[bOffset+row]-meanB[row];
+			deltaB[row] = d;
+			meanB[row] += d*gain;
+		}
+
+		// co-moment update with w*(old weight)/(new weight), the rotational rows have no entries in the columns 9..11
+		double f = w*weight/total;
+		if(f>0) {
+			for(int row=0;row<N;row++) {
+				int columns = row<9 ? 9 : N;
+				int o = row*N;
+				double db = deltaB[row]*f;
+				for(int j=0;j<columns;j++) {
+					double dj = delta[o+j];
+					double fdj = dj*f;
+					for(int k=j;k<columns;k++) {
+						s[j*N+k] += fdj*delta[o+k];
+					}
+					r[j] += dj*db;
+				}
+			}
+		}
+		weight = total;
+		measurements++;
+	}
+
+	/**
+	 * Removes a single pair of measuring data that was added before
+	 * @param robot array containing the robot pose, the same as added
+	 * @param robotOffset index of the first entry of the robot pose
+	 * @param tracker array containing the pose measured by the tracking system, the same as added
+	 * @param trackerOffset index of the first entry of the tracker pose
+	 */
+	public void remove(double[] robot, int robotOffset, double[] tracker, int trackerOffset) {
+		BlockAssembler.assembleA(robot, robotOffset, tracker, trackerOffset, a, 0);
+		BlockAssembler.assembleB(robot, robotOffset, b, 0);
+		removeBlock(a, 0, BlockAssembler.COLUMNS, b, 0, 1d);
+	}
+
+	/**
+	 * Removes a block that was added before with the same weight, the inverse of
+	 * {@link #addBlock(double[], int, int, double[], int, double)}. A rank-12 downdate of the co-moments, the
+	 * result agrees with accumulating the remaining blocks up to rounding.
+	 * @param c array containing Ci in row-major order
+	 * @param cOffset index of the entry (0,0) of Ci
+	 * @param cStride distance between two rows of Ci, 12 for packed blocks or 24 for complete blocks Ai
+	 * @param bi array containing Bi
+	 * @param bOffset index of the first entry of Bi
+	 * @param w weight the block was added with; blocks with weight 0 are ignored
+	 */
+	public void removeBlock(double[] c, int cOffset, int cStride, double[] bi, int bOffset, double w) {
+		if(w<=0) {
+			return;
+		}
+		double total = weight-w;
+		if(!(total>0)) {
+			reset();
+			return;
+		}
+		double gain = w/total;
+		for(int row=0;row<N;row++) {
+			int o = cOffset+row*cStride;
+			for(int col=0;col<N;col++) {
+				double d = c[o+col]-meanC[row*N+col];
+				delta[row*N+col] = d;
+				meanC[row*N+col] -= d*gain;
+			}
+			double d = bi[bOffset+row]-meanB[row];
+			deltaB[row] = d;
+			meanB[row] -= d*gain;
+		}
+
+		// co-moment downdate with w*(old weight)/(new weight), deltas relative to the old means
+		double f = w*weight/total;
+		for(int row=0;row<N;row++) {
+			int columns = row<9 ? 9 : N;
+			int o = row*N;
+			double db = deltaB[row]*f;
+			for(int j=0;j<columns;j++) {
+				double dj = delta[o+j];
+				double fdj = dj*f;
+				for(int k=j;k<columns;k++) {
+					s[j*N+k] -= fdj*delta[o+k];
+				}
+				r[j] -= dj*db;
+			}
+		}
+		weight = total;
+		measurements--;
+	}
+
+	/**
+	 * Solves the reduced system and back-substitutes Y without allocating memory
+	 * @param w target array, the 12 entries of X followed by the 12 entries of Y are written starting at offset
+	 * @param offset index of the first entry
+	 * @return false if the reduced system is singular or there're less than two measurements
+	 */
+	public boolean solve(double[] w, int offset) {
+		if(measurements<2) {
+			return false;
+		}
+		System.arraycopy(s, 0, factor, 0, N*N);
+		System.arraycopy(r, 0, x, 0, N);
+		if(!SmallDense.solveSpd(factor, x, scale, N)) {
+			return false;
+		}
+		condition = SmallDense.conditionEstimate(factor, work, N);
+		System.arraycopy(x, 0, w, offset, N);
+
+		// y = mean(C)*x - mean(B)
+		for(int row=0;row<N;row++) {
+			double sum = -meanB[row];
+			for(int col=0;col<N;col++) {
+				sum += meanC[row*N+col]*w[offset+col];
+			}
+			w[offset+N+row] = sum;
+		}
+		return true;
+	}
+
+	/**
+	 * Eliminates X for a joint calibration of several solvers that share Y, see {@link MultiRigCalibration}.
+	 * The measurements of this solver alone give x0 and y0 = mean(C)*x0 - mean(B) like {@link #solve(double[], int)}.
+	 * For a given Y the best X is x0 + K*(Y - y0), and the measurements add (Y - y0)^T*P*(Y - y0) to the sum of squares, with
+	 * <pre>
+	 *   P = (mean(C)*S^-1*mean(C)^T + I/n)^-1     (information about Y)
+	 *   K = S^-1*mean(C)^T*P
+	 * </pre>
+	 * which is the Schur complement of the X block of this solver's part of the joint normal equations.
+	 * @param w target array, x0 followed by y0 are written starting at offset
+	 * @param offset index of the first entry of x0
+	 * @param information target of P, 12x12 row-major
+	 * @param gain target array, K is written in row-major order starting at gainOffset
+	 * @param gainOffset index of the first entry of K
+	 * @return false if the reduced system is singular or there're less than two measurements
+	 */
+	boolean eliminate(double[] w, int offset, double[] information, double[] gain, int gainOffset) {
+		if(!solve(w, offset)) {
+			return false;
+		}
+		// factor and scale still hold the factorization of S, column k of t = S^-1*mean(C)^T is S^-1 times row k of mean(C)
+		double[] t = new double[N*N];
+		double[] column = new double[N];
+		for(int k=0;k<N;k++) {
+			System.arraycopy(meanC, k*N, column, 0, N);
+			SmallDense.solveFactorized(factor, scale, column, 0, N);
+			for(int j=0;j<N;j++) {
+				t[j*N+k] = column[j];
+			}
+		}
+		// covariance of y0 per unit residual variance, upper triangle
+		double[] q = new double[N*N];
+		for(int i=0;i<N;i++) {
+			for(int k=i;k<N;k++) {
+				double sum = i==k ? 1d/weight : 0;
+				for(int j=0;j<N;j++) {
+					sum += meanC[i*N+j]*t[j*N+k];
+				}
+				q[i*N+k] = sum;
+			}
+		}
+		if(!SmallDense.invertSpd(q, information, column, N)) {
+			return false;
+		}
+		for(int i=0;i<N;i++) {
+			for(int k=0;k<N;k++) {
+				double sum = 0;
+				for(int j=0;j<N;j++) {
+					sum += t[i*N+j]*information[j*N+k];
+				}
+				gain[gainOffset+i*N+k] = sum;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Solves the reduced system
+	 * @return solution vector w, the first 12 entries belong to X, the last 12 entries to Y
+	 * @throws Exception Error when there're not enough measurements or the system is singular
+	 */
+	public RealVector solve() throws Exception {
+		if(measurements<2) {
+			throw new Exception("At least two measurements are needed, got "+measurements+".");
+		}
+		double[] w = new double[2*N];
+		if(!solve(w, 0)) {
+			throw new Exception("Reduced system is singular, the measurements are degenerated.");
+		}
+		return new ArrayRealVector(w, false);
+	}
+
+	/**
+	 * @return estimate of the condition number of the scaled reduced system of the last successful solve, NaN before,
+	 *         see {@link SmallDense#conditionEstimate(double[], double[], int)}
+	 */
+	public double getConditionEstimate() {
+		return condition;
+	}
+
+	/**
+	 * @return number of measurements added so far
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * Copies the state of another solver, e.g. the complete system before measurements are removed
+	 * @param other solver to copy
+	 */
+	public void copyFrom(ReducedSolver other) {
+		System.arraycopy(other.s, 0, s, 0, N*N);
+		System.arraycopy(other.r, 0, r, 0, N);
+		System.arraycopy(other.meanC, 0, meanC, 0, N*N);
+		System.arraycopy(other.meanB, 0, meanB, 0, N);
+		weight = other.weight;
+		measurements = other.measurements;
+		condition = other.condition;
+	}
+
+	/**
+	 * Removes all measurements
+	 */
+	public void reset() {
+		Arrays.fill(s, 0);
+		Arrays.fill(r, 0);
+		Arrays.fill(meanC, 0);
+		Arrays.fill(meanB, 0);
+		weight = 0;
+		measurements = 0;
+		condition = Double.NaN;
+	}
+}
@@ -0,0 +1,108 @@
+package robCalibration;
+
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Result of a {@link LevenbergMarquardtRefinement}: the refined X and Y and how the iteration ended.
+ */
+public class RefinementResult {
+
+	/**
+	 * reason for the end of the iteration
+	 */
+	public enum Termination {
+		/** the relative decrease of the cost fell below the tolerance */
+		COST,
+		/** the largest entry of the step fell below the tolerance */
+		STEP,
+		/** the gradient is orthogonal to the residuals within the tolerance, the cost is at a minimum */
+		GRADIENT,
+		/** the largest number of iterations was reached */
+		ITERATIONS,
+		/** no step decreased the cost even with the largest damping */
+		DAMPING
+	}
+
+	private final double[] x;
+	private final double[] y;
+	private final double initialCost;
+	private final double finalCost;
+	private final int iterations;
+	private final Termination termination;
+	private final long nanos;
+
+	RefinementResult(double[] x, double[] y, double initialCost, double finalCost, int iterations, Termination termination, long nanos) {
+		this.x = x;
+		this.y = y;
+		this.initialCost = initialCost;
+		this.finalCost = finalCost;
+		this.iterations = iterations;
+		this.termination = termination;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return refined transformation from end-effector to marker (4x4)
+	 */
+	public RealMatrix getX() {
+		return toMatrix(x);
+	}
+
+	/**
+	 * @return refined transformation from robot base to tracking system (4x4)
+	 */
+	public RealMatrix getY() {
+		return toMatrix(y);
+	}
+
+	/**
+	 * @return cost of the start values, half the sum of the squared weighted residuals
+	 */
+	public double getInitialCost() {
+		return initialCost;
+	}
+
+	/**
+	 * @return cost of the refined X and Y
+	 */
+	public double getFinalCost() {
+		return finalCost;
+	}
+
+	/**
+	 * @return number of accepted steps
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return reason for the end of the iteration
+	 */
+	public Termination getTermination() {
+		return termination;
+	}
+
+	/**
+	 * @return duration of the refinement in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	private static RealMatrix toMatrix(double[] pose) {
+		RealMatrix m = MatrixUtils.createRealIdentityMatrix(4);
+		for(int r=0;r<3;r++) {
+			for(int c=0;c<4;c++) {
+				m.setEntry(r, c, pose[r*4+c]);
+			}
+		}
+		return m;
+	}
+
+	@Override
+	public String toString() {
+		return iterations+" iterations ("+termination+") in "+nanos/1000000+" ms, cost "+initialCost+" -> "+finalCost;
+	}
+}
@@ -0,0 +1,183 @@
+package robCalibration;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.metrics.Metrics;
+import robCalibration.metrics.Phase;
+import robCalibration.metrics.PhaseTimer;
+
+/**
+ * Evaluates how well X and Y explain every measurement pair: Mi*X and Y*Ni describe the same marker pose
+ * in the robot base, the residuals are the distance of their translations and the angle of the rotation between them.
+ *
+ * The pairs are read in primitive form and split into chunks of {@value #CHUNK} pairs, which are evaluated in parallel
+ * on a fork-join pool without allocating anything per pair. Every chunk adds up its own sums, they're combined in
+ * chunk order, so the statistics don't depend on the number of threads.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of angles in the results: degree
+ * ===
+ */
+public class ResidualEngine {
+
+	/**
+	 * number of pairs evaluated by a single fork-join task
+	 */
+	static final int CHUNK = 8192;
+
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param pool pool evaluating the chunks, the common pool by default, null to evaluate them on the calling thread
+	 * @return this engine
+	 */
+	public ResidualEngine setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Evaluates the residuals of a calibration result
+	 * @param pairs measurement pairs
+	 * @param x transformation from end-effector to marker (4x4)
+	 * @param y transformation from robot base to tracking system (4x4)
+	 * @return residuals and their statistics
+	 */
+	public ResidualReport evaluate(PosePairSource pairs, RealMatrix x, RealMatrix y) {
+		double[] xPose = new double[BlockAssembler.POSE_SIZE];
+		double[] yPose = new double[BlockAssembler.POSE_SIZE];
+		BlockAssembler.copyPose(x, xPose, 0);
+		BlockAssembler.copyPose(y, yPose, 0);
+		return evaluate(pairs, xPose, yPose);
+	}
+
+	/**
+	 * Evaluates the residuals of a calibration result
+	 * @param pairs measurement pairs
+	 * @param x transformation from end-effector to marker, upper 3x4 part in row-major order
+	 * @param y transformation from robot base to tracking system, upper 3x4 part in row-major order
+	 * @return residuals and their statistics
+	 */
+	public ResidualReport evaluate(PosePairSource pairs, double[] x, double[] y) {
+		long start = System.nanoTime();
+		int size = pairs.size();
+		PhaseTimer timer = Metrics.start(Phase.RESIDUALS).setMeasurements(size);
+		double[] translation = new double[size];
+		double[] rotation = new double[size];
+		int chunks = (size+CHUNK-1)/CHUNK;
+		// sums[4*chunk..] = sum and sum of squares of the translations, then of the rotations
+		double[] sums = new double[4*chunks];
+		if(pool==null) {
+			for(int chunk=0;chunk<chunks;chunk++) {
+				evaluateChunk(pairs, x, y, translation, rotation, sums, chunk);
+			}
+		}else {
+			pool.invoke(new ChunkTask(pairs, x, y, translation, rotation, sums, 0, chunks));
+		}
+
+		double[] total = new double[4];
+		for(int chunk=0;chunk<chunks;chunk++) {
+			for(int k=0;k<4;k++) {
+				total[k] += sums[4*chunk+k];
+			}
+		}
+		ResidualStatistics translationStatistics = summarize("trans [mm]", translation, total[0], total[1]);
+		ResidualStatistics rotationStatistics = summarize("rot [deg]", rotation, total[2], total[3]);
+		timer.close();
+		return new ResidualReport(translation, rotation, translationStatistics, rotationStatistics, System.nanoTime()-start);
+	}
+
+	private ResidualStatistics summarize(String name, double[] values, double sum, double sumOfSquares) {
+		int count = values.length;
+		double[] sorted = values.clone();
+		if(pool==null) {
+			Arrays.sort(sorted);
+		}else {
+			Arrays.parallelSort(sorted);
+		}
+		double mean = count>0 ? sum/count : Double.NaN;
+		double rms = count>0 ? Math.sqrt(sumOfSquares/count) : Double.NaN;
+		return new ResidualStatistics(name, mean, rms, sorted);
+	}
+
+	/**
+	 * evaluates the pairs of one chunk and stores the sums of the chunk
+	 */
+	private static void evaluateChunk(PosePairSource pairs, double[] x, double[] y, double[] translation, double[] rotation,
+			double[] sums, int chunk) {
+		double[] pose = new double[BlockAssembler.POSE_SIZE];
+		RigidTransform xt = new RigidTransform(x, 0);
+		RigidTransform yt = new RigidTransform(y, 0);
+		RigidTransform left = new RigidTransform();
+		RigidTransform right = new RigidTransform();
+		double sumTranslation = 0, squaresTranslation = 0;
+		double sumRotation = 0, squaresRotation = 0;
+		int end = Math.min(translation.length, (chunk+1)*CHUNK);
+		for(int i=chunk*CHUNK;i<end;i++) {
+			pairs.robotPose(i, pose, 0);
+			left.multiply(left.set(pose, 0), xt);
+			pairs.trackerPose(i, pose, 0);
+			right.multiply(yt, right.set(pose, 0));
+			double t = left.translationDistance(right);
+			double r = Math.toDegrees(right.rotationAngle(left));
+			translation[i] = t;
+			rotation[i] = r;
+			sumTranslation += t;
+			squaresTranslation += t*t;
+			sumRotation += r;
+			squaresRotation += r*r;
+		}
+		sums[4*chunk] = sumTranslation;
+		sums[4*chunk+1] = squaresTranslation;
+		sums[4*chunk+2] = sumRotation;
+		sums[4*chunk+3] = squaresRotation;
+	}
+
+	/**
+	 * evaluates the chunks from..to-1
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final PosePairSource pairs;
+		private final double[] x;
+		private final double[] y;
+		private final double[] translation;
+		private final double[] rotation;
+		private final double[] sums;
+		private final int from;
+		private final int to;
+
+		ChunkTask(PosePairSource pairs, double[] x, double[] y, double[] translation, double[] rotation, double[] sums,
+				int from, int to) {
+			this.pairs = pairs;
+			this.x = x;
+			this.y = y;
+			this.translation = translation;
+			this.rotation = rotation;
+			this.sums = sums;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from>1) {
+				int middle = (from+to)>>>1;
+				invokeAll(new ChunkTask(pairs, x, y, translation, rotation, sums, from, middle),
+						new ChunkTask(pairs, x, y, translation, rotation, sums, middle, to));
+				return;
+			}
+			if(from<to) {
+				evaluateChunk(pairs, x, y, translation, rotation, sums, from);
+			}
+		}
+	}
+}
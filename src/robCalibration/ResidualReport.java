@@ -0,0 +1,92 @@
+package robCalibration;
+
+/**
+ * Result of a {@link ResidualEngine}: the residuals of every measurement pair and their statistics.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of angles: degree
+ * ===
+ */
+public class ResidualReport {
+
+	private final double[] translation;
+	private final double[] rotation;
+	private final ResidualStatistics translationStatistics;
+	private final ResidualStatistics rotationStatistics;
+	private final long nanos;
+
+	ResidualReport(double[] translation, double[] rotation, ResidualStatistics translationStatistics,
+			ResidualStatistics rotationStatistics, long nanos) {
+		this.translation = translation;
+		this.rotation = rotation;
+		this.translationStatistics = translationStatistics;
+		this.rotationStatistics = rotationStatistics;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return number of measurement pairs
+	 */
+	public int getSize() {
+		return translation.length;
+	}
+
+	/**
+	 * @param i index of the measurement pair
+	 * @return distance between the translations of Mi*X and Y*Ni in mm
+	 */
+	public double getTranslation(int i) {
+		return translation[i];
+	}
+
+	/**
+	 * @param i index of the measurement pair
+	 * @return angle of the rotation between Mi*X and Y*Ni in degrees
+	 */
+	public double getRotation(int i) {
+		return rotation[i];
+	}
+
+	/**
+	 * @return translational residuals of all pairs in mm, not copied
+	 */
+	public double[] getTranslations() {
+		return translation;
+	}
+
+	/**
+	 * @return rotational residuals of all pairs in degrees, not copied
+	 */
+	public double[] getRotations() {
+		return rotation;
+	}
+
+	/**
+	 * @return statistics of the translational residuals in mm
+	 */
+	public ResidualStatistics getTranslationStatistics() {
+		return translationStatistics;
+	}
+
+	/**
+	 * @return statistics of the rotational residuals in degrees
+	 */
+	public ResidualStatistics getRotationStatistics() {
+		return rotationStatistics;
+	}
+
+	/**
+	 * @return duration of the evaluation in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		return translation.length+" pairs in "+nanos/1000000+" ms"
+				+System.lineSeparator()+translationStatistics+System.lineSeparator()+rotationStatistics;
+	}
+}
@@ -0,0 +1,91 @@
+package robCalibration;
+
+import java.util.Locale;
+
+/**
+ * Summary of one kind of residual of a {@link ResidualReport}, either the translational residuals in mm
+ * or the rotational residuals in degrees.
+ */
+public class ResidualStatistics {
+
+	private final String name;
+	private final double mean;
+	private final double rms;
+	private final double[] sorted;
+
+	/**
+	 * @param name name and unit used by toString
+	 * @param mean mean of the residuals
+	 * @param rms root mean square of the residuals
+	 * @param sorted residuals in ascending order, kept for the percentiles
+	 */
+	ResidualStatistics(String name, double mean, double rms, double[] sorted) {
+		this.name = name;
+		this.mean = mean;
+		this.rms = rms;
+		this.sorted = sorted;
+	}
+
+	/**
+	 * @return number of residuals
+	 */
+	public int getCount() {
+		return sorted.length;
+	}
+
+	/**
+	 * @return mean of the residuals, NaN if there are none
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return root mean square of the residuals, NaN if there are none
+	 */
+	public double getRms() {
+		return rms;
+	}
+
+	/**
+	 * @return largest residual, NaN if there are none
+	 */
+	public double getMax() {
+		return sorted.length>0 ? sorted[sorted.length-1] : Double.NaN;
+	}
+
+	/**
+	 * @return median of the residuals, NaN if there are none
+	 */
+	public double getMedian() {
+		return getPercentile(0.5);
+	}
+
+	/**
+	 * Percentile with linear interpolation between the order statistics
+	 * @param fraction 0..1, e.g. 0.95 for the 95th percentile
+	 * @return residual below which the fraction of the residuals lies, NaN if there are none
+	 */
+	public double getPercentile(double fraction) {
+		if(!(fraction>=0 && fraction<=1)) {
+			throw new IllegalArgumentException("Fraction must be between 0 and 1.");
+		}
+		int count = sorted.length;
+		if(count==0) {
+			return Double.NaN;
+		}
+		double position = fraction*(count-1);
+		int index = (int) Math.floor(position);
+		if(index>=count-1) {
+			return sorted[count-1];
+		}
+		double t = position-index;
+		return sorted[index]*(1-t)+sorted[index+1]*t;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%-9s mean %.4f  rms %.4f  p50 %.4f  p95 %.4f  p99 %.4f  max %.4f",
+				name, mean, rms, getMedian(), getPercentile(0.95), getPercentile(0.99), getMax());
+	}
+}
@@ -0,0 +1,100 @@
+package robCalibration;
+
+import java.util.Locale;
+
+/**
+ * Fixed set of statistics of one kind of residual, small enough to be stored or sent without the residuals themselves,
+ * e.g. by the calibration cache or the batch output.
+ */
+public class ResidualSummary {
+
+	/**
+	 * number of values of {@link #toArray()}
+	 */
+	public static final int VALUES = 6;
+
+	private final double mean;
+	private final double rms;
+	private final double median;
+	private final double p95;
+	private final double p99;
+	private final double max;
+
+	/**
+	 * @param values mean, rms, median, 95th and 99th percentile and maximum, as returned by {@link #toArray()}
+	 */
+	public ResidualSummary(double[] values) {
+		if(values.length!=VALUES) {
+			throw new IllegalArgumentException("A residual summary consists of "+VALUES+" values.");
+		}
+		this.mean = values[0];
+		this.rms = values[1];
+		this.median = values[2];
+		this.p95 = values[3];
+		this.p99 = values[4];
+		this.max = values[5];
+	}
+
+	/**
+	 * @param statistics statistics of all residuals
+	 * @return summary of the statistics
+	 */
+	public static ResidualSummary of(ResidualStatistics statistics) {
+		return new ResidualSummary(new double[] {statistics.getMean(), statistics.getRms(), statistics.getMedian(),
+				statistics.getPercentile(0.95), statistics.getPercentile(0.99), statistics.getMax()});
+	}
+
+	/**
+	 * @return mean
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return root mean square
+	 */
+	public double getRms() {
+		return rms;
+	}
+
+	/**
+	 * @return median
+	 */
+	public double getMedian() {
+		return median;
+	}
+
+	/**
+	 * @return 95th percentile
+	 */
+	public double getP95() {
+		return p95;
+	}
+
+	/**
+	 * @return 99th percentile
+	 */
+	public double getP99() {
+		return p99;
+	}
+
+	/**
+	 * @return largest residual
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return mean, rms, median, 95th and 99th percentile and maximum
+	 */
+	public double[] toArray() {
+		return new double[] {mean, rms, median, p95, p99, max};
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "mean %.4f  rms %.4f  p50 %.4f  p95 %.4f  p99 %.4f  max %.4f", mean, rms, median, p95, p99, max);
+	}
+}
@@ -0,0 +1,289 @@
+package robCalibration;
+
+import java.util.Locale;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+
+/**
+ * Mutable rigid transformation stored as the 12 entries of the upper 3x4 part of the homogeneous matrix,
+ * the bottom row is always 0 0 0 1. The operations write into this object and never allocate,
+ * a few scratch transforms per thread replace the 4x4 RealMatrix copies of the pose math.
+ *
+ * Non-orthonormal rotational parts, e.g. from the solution of the linear system, are projected onto the closest
+ * rotation by {@link #orthonormalize()}, the orthogonal factor of the polar decomposition. It is the same matrix
+ * U*V^T as the SVD orthonormalization, computed by a scaled Newton iteration on the 3x3 entries.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * unit of angles: radian
+ * ===
+ */
+public final class RigidTransform {
+
+	/**
+	 * largest number of Newton steps of the orthonormalization, it converges in 3 to 6 steps for solutions of the calibration
+	 */
+	private static final int MAX_ITERATIONS = 30;
+
+	private double r00, r01, r02, tx;
+	private double r10, r11, r12, ty;
+	private double r20, r21, r22, tz;
+
+	/**
+	 * Creates the identity
+	 */
+	public RigidTransform() {
+		r00 = 1;
+		r11 = 1;
+		r22 = 1;
+	}
+
+	/**
+	 * @param pose array containing the pose
+	 * @param offset index of the first entry of the pose
+	 */
+	public RigidTransform(double[] pose, int offset) {
+		set(pose, offset);
+	}
+
+	/**
+	 * @param matrix homogeneous matrix (4x4) or its upper 3x4 part
+	 */
+	public RigidTransform(RealMatrix matrix) {
+		set(matrix);
+	}
+
+	/**
+	 * @param pose array containing the pose
+	 * @param offset index of the first entry of the pose
+	 * @return this transform
+	 */
+	public RigidTransform set(double[] pose, int offset) {
+		r00 = pose[offset]; r01 = pose[offset+1]; r02 = pose[offset+2]; tx = pose[offset+3];
+		r10 = pose[offset+4]; r11 = pose[offset+5]; r12 = pose[offset+6]; ty = pose[offset+7];
+		r20 = pose[offset+8]; r21 = pose[offset+9]; r22 = pose[offset+10]; tz = pose[offset+11];
+		return this;
+	}
+
+	/**
+	 * @param matrix homogeneous matrix (4x4) or its upper 3x4 part
+	 * @return this transform
+	 */
+	public RigidTransform set(RealMatrix matrix) {
+		r00 = matrix.getEntry(0, 0); r01 = matrix.getEntry(0, 1); r02 = matrix.getEntry(0, 2); tx = matrix.getEntry(0, 3);
+		r10 = matrix.getEntry(1, 0); r11 = matrix.getEntry(1, 1); r12 = matrix.getEntry(1, 2); ty = matrix.getEntry(1, 3);
+		r20 = matrix.getEntry(2, 0); r21 = matrix.getEntry(2, 1); r22 = matrix.getEntry(2, 2); tz = matrix.getEntry(2, 3);
+		return this;
+	}
+
+	/**
+	 * @param other transform to copy
+	 * @return this transform
+	 */
+	public RigidTransform set(RigidTransform other) {
+		r00 = other.r00; r01 = other.r01; r02 = other.r02; tx = other.tx;
+		r10 = other.r10; r11 = other.r11; r12 = other.r12; ty = other.ty;
+		r20 = other.r20; r21 = other.r21; r22 = other.r22; tz = other.tz;
+		return this;
+	}
+
+	/**
+	 * Sets the transform from 12 entries of the solution vector of the linear system,
+	 * the rotational part column by column followed by the translation. The rotational part isn't orthonormalized.
+	 * @param w solution vector
+	 * @param offset index of the first entry, 0 for X and 12 for Y
+	 * @return this transform
+	 */
+	public RigidTransform setSolution(double[] w, int offset) {
+		r00 = w[offset]; r10 = w[offset+1]; r20 = w[offset+2];
+		r01 = w[offset+3]; r11 = w[offset+4]; r21 = w[offset+5];
+		r02 = w[offset+6]; r12 = w[offset+7]; r22 = w[offset+8];
+		tx = w[offset+9]; ty = w[offset+10]; tz = w[offset+11];
+		return this;
+	}
+
+	/**
+	 * @param pose target array
+	 * @param offset index of the first entry of the pose
+	 */
+	public void get(double[] pose, int offset) {
+		pose[offset] = r00; pose[offset+1] = r01; pose[offset+2] = r02; pose[offset+3] = tx;
+		pose[offset+4] = r10; pose[offset+5] = r11; pose[offset+6] = r12; pose[offset+7] = ty;
+		pose[offset+8] = r20; pose[offset+9] = r21; pose[offset+10] = r22; pose[offset+11] = tz;
+	}
+
+	/**
+	 * @param row row of the homogeneous matrix, 0..3
+	 * @param column column of the homogeneous matrix, 0..3
+	 * @return entry of the homogeneous matrix
+	 */
+	public double get(int row, int column) {
+		switch(row*4+column) {
+		case 0: return r00;
+		case 1: return r01;
+		case 2: return r02;
+		case 3: return tx;
+		case 4: return r10;
+		case 5: return r11;
+		case 6: return r12;
+		case 7: return ty;
+		case 8: return r20;
+		case 9: return r21;
+		case 10: return r22;
+		case 11: return tz;
+		case 15: return 1;
+		default:
+			if(row==3 && column>=0 && column<3) {
+				return 0;
+			}
+			throw new IndexOutOfBoundsException("Entry ("+row+","+column+") of a 4x4 matrix.");
+		}
+	}
+
+	/**
+	 * @return new homogeneous matrix (4x4)
+	 */
+	public RealMatrix toMatrix() {
+		return new Array2DRowRealMatrix(new double[][] {
+			{r00, r01, r02, tx},
+			{r10, r11, r12, ty},
+			{r20, r21, r22, tz},
+			{0, 0, 0, 1}}, false);
+	}
+
+	/**
+	 * Sets this transform to the product a*b, a and b may be this transform
+	 * @param a left factor
+	 * @param b right factor
+	 * @return this transform
+	 */
+	public RigidTransform multiply(RigidTransform a, RigidTransform b) {
+		double c00 = a.r00*b.r00+a.r01*b.r10+a.r02*b.r20;
+		double c01 = a.r00*b.r01+a.r01*b.r11+a.r02*b.r21;
+		double c02 = a.r00*b.r02+a.r01*b.r12+a.r02*b.r22;
+		double c03 = a.r00*b.tx+a.r01*b.ty+a.r02*b.tz+a.tx;
+		double c10 = a.r10*b.r00+a.r11*b.r10+a.r12*b.r20;
+		double c11 = a.r10*b.r01+a.r11*b.r11+a.r12*b.r21;
+		double c12 = a.r10*b.r02+a.r11*b.r12+a.r12*b.r22;
+		double c13 = a.r10*b.tx+a.r11*b.ty+a.r12*b.tz+a.ty;
+		double c20 = a.r20*b.r00+a.r21*b.r10+a.r22*b.r20;
+		double c21 = a.r20*b.r01+a.r21*b.r11+a.r22*b.r21;
+		double c22 = a.r20*b.r02+a.r21*b.r12+a.r22*b.r22;
+		double c23 = a.r20*b.tx+a.r21*b.ty+a.r22*b.tz+a.tz;
+		r00 = c00; r01 = c01; r02 = c02; tx = c03;
+		r10 = c10; r11 = c11; r12 = c12; ty = c13;
+		r20 = c20; r21 = c21; r22 = c22; tz = c23;
+		return this;
+	}
+
+	/**
+	 * Sets this transform to the inverse of a rigid transform, the rotational part of a has to be orthonormal
+	 * @param a transform to invert, may be this transform
+	 * @return this transform
+	 */
+	public RigidTransform invert(RigidTransform a) {
+		double t;
+		t = a.r01; r01 = a.r10; r10 = t;
+		t = a.r02; r02 = a.r20; r20 = t;
+		t = a.r12; r12 = a.r21; r21 = t;
+		r00 = a.r00; r11 = a.r11; r22 = a.r22;
+		double x = a.tx, y = a.ty, z = a.tz;
+		tx = -(r00*x+r01*y+r02*z);
+		ty = -(r10*x+r11*y+r12*z);
+		tz = -(r20*x+r21*y+r22*z);
+		return this;
+	}
+
+	/**
+	 * Angle of the rotation between the rotational parts of this and another transform, the angle of R^T*S.
+	 * Uses the trace for the cosine and the skew-symmetric part for the sine, so small angles stay accurate.
+	 * @param other second transform
+	 * @return angle in radians, 0..pi
+	 */
+	public double rotationAngle(RigidTransform other) {
+		// entry (r,c) of R^T*S is the dot product of column r of R and column c of S
+		double trace = r00*other.r00+r10*other.r10+r20*other.r20
+				+r01*other.r01+r11*other.r11+r21*other.r21
+				+r02*other.r02+r12*other.r12+r22*other.r22;
+		double x = (r02*other.r01+r12*other.r11+r22*other.r21)-(r01*other.r02+r11*other.r12+r21*other.r22);
+		double y = (r00*other.r02+r10*other.r12+r20*other.r22)-(r02*other.r00+r12*other.r10+r22*other.r20);
+		double z = (r01*other.r00+r11*other.r10+r21*other.r20)-(r00*other.r01+r10*other.r11+r20*other.r21);
+		// trace = 1+2*cos(angle), |(x,y,z)| = 2*sin(angle)
+		return Math.atan2(Math.sqrt(x*x+y*y+z*z), trace-1);
+	}
+
+	/**
+	 * @param other second transform
+	 * @return distance between the translations of this and another transform in mm
+	 */
+	public double translationDistance(RigidTransform other) {
+		double dx = tx-other.tx, dy = ty-other.ty, dz = tz-other.tz;
+		return Math.sqrt(dx*dx+dy*dy+dz*dz);
+	}
+
+	/**
+	 * Replaces the rotational part by the closest orthonormal matrix (Frobenius norm), the orthogonal factor of its
+	 * polar decomposition. The scaled Newton iteration R = (g*R + R^-T/g)/2 converges quadratically, a matrix that is already
+	 * close to a rotation needs 3 or 4 steps. Like U*V^T of the SVD the result is a reflection if the determinant is negative.
+	 * A singular rotational part falls back to the SVD.
+	 * @return this transform
+	 */
+	public RigidTransform orthonormalize() {
+		for(int iteration=0;iteration<MAX_ITERATIONS;iteration++) {
+			// cofactors, R^-T = cofactor matrix / det
+			double c00 = r11*r22-r12*r21, c01 = r12*r20-r10*r22, c02 = r10*r21-r11*r20;
+			double c10 = r02*r21-r01*r22, c11 = r00*r22-r02*r20, c12 = r01*r20-r00*r21;
+			double c20 = r01*r12-r02*r11, c21 = r02*r10-r00*r12, c22 = r00*r11-r01*r10;
+			double det = r00*c00+r01*c01+r02*c02;
+			double norm = r00*r00+r01*r01+r02*r02+r10*r10+r11*r11+r12*r12+r20*r20+r21*r21+r22*r22;
+			double cofactorNorm = c00*c00+c01*c01+c02*c02+c10*c10+c11*c11+c12*c12+c20*c20+c21*c21+c22*c22;
+			if(!(Math.abs(det)>1e-12*norm*Math.sqrt(norm)) || Double.isInfinite(det)) {
+				orthonormalizeSvd();
+				return this;
+			}
+			// g = sqrt(|R^-1|/|R|) balances the norms of both terms (Frobenius scaling)
+			double g = Math.sqrt(Math.sqrt(cofactorNorm/(det*det))/Math.sqrt(norm));
+			double a = 0.5*g, b = 0.5/(g*det);
+			double n00 = a*r00+b*c00, n01 = a*r01+b*c01, n02 = a*r02+b*c02;
+			double n10 = a*r10+b*c10, n11 = a*r11+b*c11, n12 = a*r12+b*c12;
+			double n20 = a*r20+b*c20, n21 = a*r21+b*c21, n22 = a*r22+b*c22;
+			double d00 = n00-r00, d01 = n01-r01, d02 = n02-r02;
+			double d10 = n10-r10, d11 = n11-r11, d12 = n12-r12;
+			double d20 = n20-r20, d21 = n21-r21, d22 = n22-r22;
+			double change = d00*d00+d01*d01+d02*d02+d10*d10+d11*d11+d12*d12+d20*d20+d21*d21+d22*d22;
+			r00 = n00; r01 = n01; r02 = n02;
+			r10 = n10; r11 = n11; r12 = n12;
+			r20 = n20; r21 = n21; r22 = n22;
+			// the step squares the distance to the rotation, a change near rounding means the last step was exact
+			if(change<1e-20) {
+				break;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * fallback for singular rotational parts
+	 */
+	private void orthonormalizeSvd() {
+		RealMatrix rot = new Array2DRowRealMatrix(new double[][] {
+			{r00, r01, r02},
+			{r10, r11, r12},
+			{r20, r21, r22}}, false);
+		SingularValueDecomposition svd = new SingularValueDecomposition(rot);
+		RealMatrix UV_t = svd.getU().multiply(svd.getVT());
+		r00 = UV_t.getEntry(0, 0); r01 = UV_t.getEntry(0, 1); r02 = UV_t.getEntry(0, 2);
+		r10 = UV_t.getEntry(1, 0); r11 = UV_t.getEntry(1, 1); r12 = UV_t.getEntry(1, 2);
+		r20 = UV_t.getEntry(2, 0); r21 = UV_t.getEntry(2, 1); r22 = UV_t.getEntry(2, 2);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "[%.6f %.6f %.6f %.4f; %.6f %.6f %.6f %.4f; %.6f %.6f %.6f %.4f]",
+				r00, r01, r02, tx, r10, r11, r12, ty, r20, r21, r22, tz);
+	}
+}
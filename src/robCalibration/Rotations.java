@@ -0,0 +1,170 @@
+package robCalibration;
+
+/**
+ * Primitive helpers for the rotational part of poses.
+ * Quaternions are stored as (w, x, y, z), poses as the upper 3x4 part of the homogeneous matrix in row-major order.
+ * None of the methods allocate memory.
+ */
+public final class Rotations {
+
+	private Rotations() {
+	}
+
+	/**
+	 * Converts the rotational part of a pose into a unit quaternion with w &gt;= 0 (Shepperd's method)
+	 * @param pose array containing the pose
+	 * @param offset index of the first entry of the pose
+	 * @param q target array for the quaternion
+	 * @param qOffset index of w
+	 */
+	public static void toQuaternion(double[] pose, int offset, double[] q, int qOffset) {
+		double r00 = pose[offset], r01 = pose[offset+1], r02 = pose[offset+2];
+		double r10 = pose[offset+4], r11 = pose[offset+5], r12 = pose[offset+6];
+		double r20 = pose[offset+8], r21 = pose[offset+9], r22 = pose[offset+10];
+		double trace = r00+r11+r22;
+		double w, x, y, z;
+		if(trace>=r00 && trace>=r11 && trace>=r22) {
+			double s = 2*Math.sqrt(1+trace);
+			w = 0.25*s;
+			x = (r21-r12)/s;
+			y = (r02-r20)/s;
+			z = (r10-r01)/s;
+		}else if(r00>=r11 && r00>=r22) {
+			double s = 2*Math.sqrt(1+r00-r11-r22);
+			w = (r21-r12)/s;
+			x = 0.25*s;
+			y = (r01+r10)/s;
+			z = (r02+r20)/s;
+		}else if(r11>=r22) {
+			double s = 2*Math.sqrt(1+r11-r00-r22);
+			w = (r02-r20)/s;
+			x = (r01+r10)/s;
+			y = 0.25*s;
+			z = (r12+r21)/s;
+		}else {
+			double s = 2*Math.sqrt(1+r22-r00-r11);
+			w = (r10-r01)/s;
+			x = (r02+r20)/s;
+			y = (r12+r21)/s;
+			z = 0.25*s;
+		}
+		double norm = Math.sqrt(w*w+x*x+y*y+z*z);
+		if(w<0) {
+			norm = -norm;
+		}
+		q[qOffset] = w/norm;
+		q[qOffset+1] = x/norm;
+		q[qOffset+2] = y/norm;
+		q[qOffset+3] = z/norm;
+	}
+
+	/**
+	 * Writes the rotation matrix of a unit quaternion into the rotational part of a pose, the translation is not changed
+	 * @param q array containing the quaternion
+	 * @param qOffset index of w
+	 * @param pose target array
+	 * @param offset index of the first entry of the pose
+	 */
+	public static void fromQuaternion(double[] q, int qOffset, double[] pose, int offset) {
+		double w = q[qOffset], x = q[qOffset+1], y = q[qOffset+2], z = q[qOffset+3];
+		pose[offset] = 1-2*(y*y+z*z);
+		pose[offset+1] = 2*(x*y-z*w);
+		pose[offset+2] = 2*(x*z+y*w);
+		pose[offset+4] = 2*(x*y+z*w);
+		pose[offset+5] = 1-2*(x*x+z*z);
+		pose[offset+6] = 2*(y*z-x*w);
+		pose[offset+8] = 2*(x*z-y*w);
+		pose[offset+9] = 2*(y*z+x*w);
+		pose[offset+10] = 1-2*(x*x+y*y);
+	}
+
+	/**
+	 * Converts the rotational part of a pose into a rotation vector (axis times angle, logarithm of the rotation)
+	 * @param pose array containing the pose
+	 * @param offset index of the first entry of the pose
+	 * @param out target array, the angle is given in radians, 0..pi
+	 * @param outOffset index of the x component
+	 * @param scratch scratch array of at least 4 entries
+	 */
+	public static void toRotationVector(double[] pose, int offset, double[] out, int outOffset, double[] scratch) {
+		toQuaternion(pose, offset, scratch, 0);
+		double x = scratch[1], y = scratch[2], z = scratch[3];
+		double sin = Math.sqrt(x*x+y*y+z*z);
+		// q = (cos(angle/2), sin(angle/2)*axis), the limit for small angles is 2*(x,y,z)
+		double factor = sin>1e-12 ? 2*Math.atan2(sin, scratch[0])/sin : 2;
+		out[outOffset] = x*factor;
+		out[outOffset+1] = y*factor;
+		out[outOffset+2] = z*factor;
+	}
+
+	/**
+	 * Writes the rotation matrix of a rotation vector (exponential of axis times angle) into the rotational part of a pose,
+	 * the translation is not changed
+	 * @param v array containing the rotation vector, the angle in radians
+	 * @param vOffset index of the x component
+	 * @param pose target array
+	 * @param offset index of the first entry of the pose
+	 * @param scratch scratch array of at least 4 entries
+	 */
+	public static void fromRotationVector(double[] v, int vOffset, double[] pose, int offset, double[] scratch) {
+		double x = v[vOffset], y = v[vOffset+1], z = v[vOffset+2];
+		double angle = Math.sqrt(x*x+y*y+z*z);
+		// sin(angle/2)/angle, the limit for small angles is 1/2
+		double factor = angle>1e-12 ? Math.sin(angle/2)/angle : 0.5;
+		scratch[0] = Math.cos(angle/2);
+		scratch[1] = x*factor;
+		scratch[2] = y*factor;
+		scratch[3] = z*factor;
+		fromQuaternion(scratch, 0, pose, offset);
+	}
+
+	/**
+	 * Interpolates between two poses, spherical linear for the rotation and linear for the translation
+	 * @param a array containing the pose at t=0
+	 * @param aOffset index of the first entry of a
+	 * @param b array containing the pose at t=1
+	 * @param bOffset index of the first entry of b
+	 * @param t interpolation parameter, 0..1
+	 * @param out target array, may be a or b
+	 * @param outOffset index of the first entry of the result
+	 * @param scratch scratch array of at least 8 entries
+	 */
+	public static void interpolate(double[] a, int aOffset, double[] b, int bOffset, double t, double[] out, int outOffset, double[] scratch) {
+		toQuaternion(a, aOffset, scratch, 0);
+		toQuaternion(b, bOffset, scratch, 4);
+		double dot = scratch[0]*scratch[4]+scratch[1]*scratch[5]+scratch[2]*scratch[6]+scratch[3]*scratch[7];
+		double sign = 1;
+		if(dot<0) {
+			// take the shorter arc
+			dot = -dot;
+			sign = -1;
+		}
+		double wa, wb;
+		if(dot>0.9995) {
+			wa = 1-t;
+			wb = t;
+		}else {
+			double theta = Math.acos(dot);
+			double sin = Math.sin(theta);
+			wa = Math.sin((1-t)*theta)/sin;
+			wb = Math.sin(t*theta)/sin;
+		}
+		wb *= sign;
+		double norm = 0;
+		for(int k=0;k<4;k++) {
+			scratch[k] = wa*scratch[k]+wb*scratch[4+k];
+			norm += scratch[k]*scratch[k];
+		}
+		norm = Math.sqrt(norm);
+		for(int k=0;k<4;k++) {
+			scratch[k] /= norm;
+		}
+		double tx = (1-t)*a[aOffset+3]+t*b[bOffset+3];
+		double ty = (1-t)*a[aOffset+7]+t*b[bOffset+7];
+		double tz = (1-t)*a[aOffset+11]+t*b[bOffset+11];
+		fromQuaternion(scratch, 0, out, outOffset);
+		out[outOffset+3] = tx;
+		out[outOffset+7] = ty;
+		out[outOffset+11] = tz;
+	}
+}
@@ -0,0 +1,235 @@
+package robCalibration;
+
+/**
+ * In-place kernels for the small dense systems (12x12 and 24x24) of the calibration.
+ * All matrices are stored in flat row-major arrays. None of the methods allocate memory,
+ * so they can be used with per-thread scratch buffers in parallel code.
+ */
+public final class SmallDense {
+
+	/**
+	 * relative size of the smallest accepted Cholesky pivot of the scaled matrix
+	 */
+	public static final double PIVOT_TOLERANCE = 1e-14;
+
+	private SmallDense() {
+	}
+
+	/**
+	 * Solves a*x = b for a symmetric positive definite matrix a.
+	 * The rows and columns of a are scaled to unit diagonal before the Cholesky decomposition,
+	 * which compensates different units of the unknowns (rotation vs. millimeter).
+	 * @param a n x n matrix, only the upper triangle is read; overwritten by the scaled Cholesky factor
+	 * @param b right-hand side, overwritten by the solution x
+	 * @param scale scratch array of at least n entries, contains the applied scaling afterwards
+	 * @param n dimension of the system
+	 * @return false if a is not positive definite (numerically singular), b is undefined then
+	 */
+	public static boolean solveSpd(double[] a, double[] b, double[] scale, int n) {
+		if(!factorizeScaled(a, scale, n)) {
+			return false;
+		}
+		solveFactorized(a, scale, b, 0, n);
+		return true;
+	}
+
+	/**
+	 * Inverts a symmetric positive definite matrix with the same scaling as {@link #solveSpd(double[], double[], double[], int)}
+	 * @param a n x n matrix, only the upper triangle is read; overwritten by the scaled Cholesky factor
+	 * @param inverse target of the complete n x n inverse
+	 * @param scale scratch array of at least n entries, contains the applied scaling afterwards
+	 * @param n dimension of the matrix
+	 * @return false if a is not positive definite (numerically singular), inverse is undefined then
+	 */
+	public static boolean invertSpd(double[] a, double[] inverse, double[] scale, int n) {
+		if(!factorizeScaled(a, scale, n)) {
+			return false;
+		}
+		// the inverse is symmetric, row j is the solution for the j-th unit vector
+		for(int j=0;j<n;j++) {
+			for(int k=0;k<n;k++) {
+				inverse[j*n+k] = j==k ? 1 : 0;
+			}
+			solveFactorized(a, scale, inverse, j*n, n);
+		}
+		return true;
+	}
+
+	/**
+	 * scales rows and columns to unit diagonal and factorizes in place
+	 */
+	private static boolean factorizeScaled(double[] a, double[] scale, int n) {
+		for(int j=0;j<n;j++) {
+			double d = a[j*n+j];
+			if(!(d>0)) {
+				return false;
+			}
+			scale[j] = 1d/Math.sqrt(d);
+		}
+		for(int j=0;j<n;j++) {
+			for(int k=j;k<n;k++) {
+				a[j*n+k] *= scale[j]*scale[k];
+			}
+		}
+		return cholesky(a, n, PIVOT_TOLERANCE);
+	}
+
+	/**
+	 * Solves a*x = b with the scaled Cholesky factor left by {@link #solveSpd(double[], double[], double[], int)},
+	 * e.g. for further right-hand sides of the same matrix
+	 * @param r scaled Cholesky factor in the upper triangle
+	 * @param scale scaling of the factorization
+	 * @param b right-hand side, overwritten by the solution x
+	 * @param offset index of the first entry of b
+	 * @param n dimension of the system
+	 */
+	public static void solveFactorized(double[] r, double[] scale, double[] b, int offset, int n) {
+		for(int j=0;j<n;j++) {
+			b[offset+j] *= scale[j];
+		}
+		// forward substitution R^T*z = b
+		for(int j=0;j<n;j++) {
+			double s = b[offset+j];
+			for(int k=0;k<j;k++) {
+				s -= r[k*n+j]*b[offset+k];
+			}
+			b[offset+j] = s/r[j*n+j];
+		}
+		// back substitution R*x = z
+		for(int j=n-1;j>=0;j--) {
+			double s = b[offset+j];
+			for(int k=j+1;k<n;k++) {
+				s -= r[j*n+k]*b[offset+k];
+			}
+			b[offset+j] = s/r[j*n+j];
+		}
+		for(int j=0;j<n;j++) {
+			b[offset+j] *= scale[j];
+		}
+	}
+
+	/**
+	 * Cholesky decomposition a = R^T*R in place
+	 * @param a n x n symmetric matrix, only the upper triangle is read; overwritten by R in the upper triangle
+	 * @param n dimension of the matrix
+	 * @param minPivot smallest accepted pivot (before the square root)
+	 * @return false if a pivot is not larger than minPivot, a is undefined then
+	 */
+	public static boolean cholesky(double[] a, int n, double minPivot) {
+		for(int j=0;j<n;j++) {
+			double d = a[j*n+j];
+			for(int k=0;k<j;k++) {
+				d -= a[k*n+j]*a[k*n+j];
+			}
+			if(!(d>minPivot)) {
+				return false;
+			}
+			d = Math.sqrt(d);
+			a[j*n+j] = d;
+			for(int i=j+1;i<n;i++) {
+				double s = a[j*n+i];
+				for(int k=0;k<j;k++) {
+					s -= a[k*n+j]*a[k*n+i];
+				}
+				a[j*n+i] = s/d;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * number of power and inverse iterations of {@link #conditionEstimate(double[], double[], int)}
+	 */
+	private static final int CONDITION_ITERATIONS = 10;
+
+	/**
+	 * Cheap estimate of the condition number of a factorized symmetric positive definite matrix a = R^T*R.
+	 * The largest eigenvalue is estimated by power iteration, the smallest by inverse iteration with the factor,
+	 * both start from the same fixed vector, so the estimate is deterministic. Both iterations converge from below,
+	 * the result is a lower bound of the true condition number, at least the squared ratio of the diagonal entries of R.
+	 * Costs O(n^2) per iteration, negligible next to the factorization.
+	 * @param r n x n Cholesky factor in the upper triangle, e.g. from {@link #cholesky(double[], int, double)}
+	 * @param work scratch array of at least 2n entries
+	 * @param n dimension of the matrix
+	 * @return condition estimate, at least 1
+	 */
+	public static double conditionEstimate(double[] r, double[] work, int n) {
+		double min = Double.POSITIVE_INFINITY, max = 0;
+		for(int j=0;j<n;j++) {
+			double d = Math.abs(r[j*n+j]);
+			min = Math.min(min, d);
+			max = Math.max(max, d);
+		}
+		double ratio = max/min;
+		double diagonal = ratio*ratio;
+
+		// largest eigenvalue, v <- R^T*R*v, the work array holds v followed by R*v
+		startVector(work, n);
+		double largest = 0;
+		for(int it=0;it<CONDITION_ITERATIONS;it++) {
+			for(int i=0;i<n;i++) {
+				double s = 0;
+				for(int j=i;j<n;j++) {
+					s += r[i*n+j]*work[j];
+				}
+				work[n+i] = s;
+			}
+			for(int j=0;j<n;j++) {
+				double s = 0;
+				for(int i=0;i<=j;i++) {
+					s += r[i*n+j]*work[n+i];
+				}
+				work[j] = s;
+			}
+			largest = normalize(work, n);
+		}
+
+		// smallest eigenvalue, v <- (R^T*R)^-1*v by forward and back substitution in place
+		startVector(work, n);
+		double inverse = 0;
+		for(int it=0;it<CONDITION_ITERATIONS;it++) {
+			for(int j=0;j<n;j++) {
+				double s = work[j];
+				for(int k=0;k<j;k++) {
+					s -= r[k*n+j]*work[k];
+				}
+				work[j] = s/r[j*n+j];
+			}
+			for(int j=n-1;j>=0;j--) {
+				double s = work[j];
+				for(int k=j+1;k<n;k++) {
+					s -= r[j*n+k]*work[k];
+				}
+				work[j] = s/r[j*n+j];
+			}
+			inverse = normalize(work, n);
+		}
+		return Math.max(diagonal, largest*inverse);
+	}
+
+	/**
+	 * fixed start vector with distinct entries, unlikely to be orthogonal to an eigenvector
+	 */
+	private static void startVector(double[] v, int n) {
+		for(int j=0;j<n;j++) {
+			v[j] = 1+(double)j/n;
+		}
+		normalize(v, n);
+	}
+
+	/**
+	 * scales v to unit length
+	 * @return length before
+	 */
+	private static double normalize(double[] v, int n) {
+		double norm = 0;
+		for(int j=0;j<n;j++) {
+			norm += v[j]*v[j];
+		}
+		norm = Math.sqrt(norm);
+		for(int j=0;j<n;j++) {
+			v[j] /= norm;
+		}
+		return norm;
+	}
+}
@@ -0,0 +1,203 @@
+package robCalibration;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Generates deterministic synthetic measurement data for the calibration.
+ * The generator picks a random X (end-effector to marker) and Y (robot base to tracking system)
+ * and creates robot poses Mi together with the matching tracker measurements Ni = Y^-1*Mi*X,
+ * optionally disturbed by gaussian noise. The same seed always creates the same data.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses given as arrays are the upper 3x4 part of the homogeneous matrix in row-major order
+ * unit of length: millimeter
+ * ===
+ */
+public class TestDataGenerator {
+
+	private final Random random;
+
+	/**
+	 * the true transformations used for generating the data
+	 */
+	private final double[] x = new double[BlockAssembler.POSE_SIZE];
+	private final double[] y = new double[BlockAssembler.POSE_SIZE];
+
+	/**
+	 * standard deviation of the translational noise in mm and of the rotational noise in rad
+	 */
+	private double translationNoise = 0;
+	private double rotationNoise = 0;
+
+	/**
+	 * scratch buffers
+	 */
+	private final double[] yInverse = new double[BlockAssembler.POSE_SIZE];
+	private final double[] mx = new double[BlockAssembler.POSE_SIZE];
+	private final double[] noise = new double[BlockAssembler.POSE_SIZE];
+	private final double[] clean = new double[BlockAssembler.POSE_SIZE];
+
+	/**
+	 * Creates a generator with random X and Y
+	 * @param seed seed of the random number generator
+	 */
+	public TestDataGenerator(long seed) {
+		random = new Random(seed);
+		randomTransform(random, x, 0, 100);
+		randomTransform(random, y, 0, 2000);
+	}
+
+	/**
+	 * Sets the noise added to the tracker measurements
+	 * @param translationSigma standard deviation of the translation in mm
+	 * @param rotationSigma standard deviation of the rotation angle around each axis in rad
+	 */
+	public void setNoise(double translationSigma, double rotationSigma) {
+		this.translationNoise = translationSigma;
+		this.rotationNoise = rotationSigma;
+	}
+
+	/**
+	 * @return the true transformation from end-effector to marker
+	 */
+	public RealMatrix getX() {
+		return toMatrix(x, 0);
+	}
+
+	/**
+	 * @return the true transformation from robot base to tracking system
+	 */
+	public RealMatrix getY() {
+		return toMatrix(y, 0);
+	}
+
+	/**
+	 * Generates measurements into flat arrays
+	 * @param count number of measurements
+	 * @param robot target array for the robot poses, at least 12*count entries
+	 * @param tracker target array for the tracker poses, at least 12*count entries
+	 */
+	public void generate(int count, double[] robot, double[] tracker) {
+		invert(y, 0, yInverse, 0);
+		for(int i=0;i<count;i++) {
+			int o = i*BlockAssembler.POSE_SIZE;
+			randomTransform(random, robot, o, 500);
+			multiply(robot, o, x, 0, mx, 0);
+			multiply(yInverse, 0, mx, 0, clean, 0);
+			if(translationNoise>0 || rotationNoise>0) {
+				rotation(random.nextGaussian()*rotationNoise, random.nextGaussian()*rotationNoise,
+						random.nextGaussian()*rotationNoise, noise, 0);
+				noise[3] = random.nextGaussian()*translationNoise;
+				noise[7] = random.nextGaussian()*translationNoise;
+				noise[11] = random.nextGaussian()*translationNoise;
+				multiply(clean, 0, noise, 0, tracker, o);
+			}else {
+				System.arraycopy(clean, 0, tracker, o, BlockAssembler.POSE_SIZE);
+			}
+		}
+	}
+
+	/**
+	 * Generates measurements and stores them in the lists of the calibration object
+	 * @param calibration calibration object, existing measurements are removed
+	 * @param count number of measurements
+	 */
+	public void generate(QR24 calibration, int count) {
+		double[] robot = new double[count*BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[count*BlockAssembler.POSE_SIZE];
+		generate(count, robot, tracker);
+		calibration.poseMatrices.clear();
+		calibration.markerPoseMatrices.clear();
+		for(int i=0;i<count;i++) {
+			calibration.poseMatrices.add(toMatrix(robot, i*BlockAssembler.POSE_SIZE));
+			calibration.markerPoseMatrices.add(toMatrix(tracker, i*BlockAssembler.POSE_SIZE));
+		}
+	}
+
+	/**
+	 * Writes a random rigid transformation, the rotation is uniformly distributed
+	 * @param random random number generator
+	 * @param out target array
+	 * @param offset index of the first entry
+	 * @param maxTranslation maximum absolute value of each translational entry in mm
+	 */
+	public static void randomTransform(Random random, double[] out, int offset, double maxTranslation) {
+		// uniform rotation from a random unit quaternion
+		double qw = random.nextGaussian(), qx = random.nextGaussian(), qy = random.nextGaussian(), qz = random.nextGaussian();
+		double norm = Math.sqrt(qw*qw+qx*qx+qy*qy+qz*qz);
+		qw /= norm; qx /= norm; qy /= norm; qz /= norm;
+		out[offset] = 1-2*(qy*qy+qz*qz);
+		out[offset+1] = 2*(qx*qy-qz*qw);
+		out[offset+2] = 2*(qx*qz+qy*qw);
+		out[offset+4] = 2*(qx*qy+qz*qw);
+		out[offset+5] = 1-2*(qx*qx+qz*qz);
+		out[offset+6] = 2*(qy*qz-qx*qw);
+		out[offset+8] = 2*(qx*qz-qy*qw);
+		out[offset+9] = 2*(qy*qz+qx*qw);
+		out[offset+10] = 1-2*(qx*qx+qy*qy);
+		out[offset+3] = (random.nextDouble()*2-1)*maxTranslation;
+		out[offset+7] = (random.nextDouble()*2-1)*maxTranslation;
+		out[offset+11] = (random.nextDouble()*2-1)*maxTranslation;
+	}
+
+	/**
+	 * Converts a pose array into a 4x4 homogeneous matrix
+	 * @param pose array containing the pose
+	 * @param offset index of the first entry
+	 * @return 4x4 homogeneous matrix
+	 */
+	public static RealMatrix toMatrix(double[] pose, int offset) {
+		return new RigidTransform(pose, offset).toMatrix();
+	}
+
+	/**
+	 * out = a*b for rigid transformations, out must not overlap a or b
+	 */
+	private static void multiply(double[] a, int ao, double[] b, int bo, double[] out, int oo) {
+		for(int row=0;row<3;row++) {
+			double a0 = a[ao+row*4], a1 = a[ao+row*4+1], a2 = a[ao+row*4+2];
+			for(int col=0;col<4;col++) {
+				out[oo+row*4+col] = a0*b[bo+col]+a1*b[bo+4+col]+a2*b[bo+8+col];
+			}
+			out[oo+row*4+3] += a[ao+row*4+3];
+		}
+	}
+
+	/**
+	 * out = a^-1 for a rigid transformation
+	 */
+	private static void invert(double[] a, int ao, double[] out, int oo) {
+		for(int row=0;row<3;row++) {
+			for(int col=0;col<3;col++) {
+				out[oo+row*4+col] = a[ao+col*4+row];
+			}
+		}
+		for(int row=0;row<3;row++) {
+			out[oo+row*4+3] = -(out[oo+row*4]*a[ao+3]+out[oo+row*4+1]*a[ao+7]+out[oo+row*4+2]*a[ao+11]);
+		}
+	}
+
+	/**
+	 * rotation about the axes x, y and z by small angles (Rodrigues formula), zero translation
+	 */
+	private static void rotation(double rx, double ry, double rz, double[] out, int offset) {
+		double angle = Math.sqrt(rx*rx+ry*ry+rz*rz);
+		double s = angle>0 ? Math.sin(angle)/angle : 1;
+		double c = angle>0 ? (1-Math.cos(angle))/(angle*angle) : 0.5;
+		out[offset] = 1-c*(ry*ry+rz*rz);
+		out[offset+1] = -s*rz+c*rx*ry;
+		out[offset+2] = s*ry+c*rx*rz;
+		out[offset+4] = s*rz+c*rx*ry;
+		out[offset+5] = 1-c*(rx*rx+rz*rz);
+		out[offset+6] = -s*rx+c*ry*rz;
+		out[offset+8] = -s*ry+c*rx*rz;
+		out[offset+9] = s*rx+c*ry*rz;
+		out[offset+10] = 1-c*(rx*rx+ry*ry);
+		out[offset+3] = 0;
+		out[offset+7] = 0;
+		out[offset+11] = 0;
+	}
+}
@@ -0,0 +1,79 @@
+package robCalibration;
+
+/**
+ * Spread of a transformation estimated by {@link BootstrapCalibration}.
+ * The six parameters are the translation x, y, z in mm followed by the rotation vector x, y, z in degrees.
+ * Both are given as deviation from the estimate of the complete measurement set: the translation as the
+ * difference of the translations, the rotation as the rotation vector of R^T*Rsample about the axes of the transformation.
+ */
+public class TransformUncertainty {
+
+	/**
+	 * number of parameters
+	 */
+	public static final int PARAMETERS = 6;
+
+	private static final String[] NAMES = {"tx [mm]", "ty [mm]", "tz [mm]", "rx [deg]", "ry [deg]", "rz [deg]"};
+
+	private final String name;
+	private final double confidence;
+	private final double[] deviation;
+	private final double[] lower;
+	private final double[] upper;
+
+	TransformUncertainty(String name, double confidence, double[] deviation, double[] lower, double[] upper) {
+		this.name = name;
+		this.confidence = confidence;
+		this.deviation = deviation;
+		this.lower = lower;
+		this.upper = upper;
+	}
+
+	/**
+	 * @param axis 0..2 for x, y, z
+	 * @return standard deviation of the translation along the axis in mm
+	 */
+	public double getTranslationDeviation(int axis) {
+		return deviation[axis];
+	}
+
+	/**
+	 * @param axis 0..2 for x, y, z
+	 * @return standard deviation of the rotation about the axis in degrees
+	 */
+	public double getRotationDeviation(int axis) {
+		return deviation[3+axis];
+	}
+
+	/**
+	 * @param parameter 0..5, translation x, y, z then rotation x, y, z
+	 * @return lower bound of the percentile confidence interval, relative to the estimate
+	 */
+	public double getLower(int parameter) {
+		return lower[parameter];
+	}
+
+	/**
+	 * @param parameter 0..5, translation x, y, z then rotation x, y, z
+	 * @return upper bound of the percentile confidence interval, relative to the estimate
+	 */
+	public double getUpper(int parameter) {
+		return upper[parameter];
+	}
+
+	/**
+	 * @return confidence level of the intervals, e.g. 0.95
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder(name);
+		for(int p=0;p<PARAMETERS;p++) {
+			text.append(String.format("%n  %-9s sd %.4f  %.0f%% [%+.4f, %+.4f]", NAMES[p], deviation[p], confidence*100, lower[p], upper[p]));
+		}
+		return text.toString();
+	}
+}
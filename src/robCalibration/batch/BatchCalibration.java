@@ -0,0 +1,289 @@
+package robCalibration.batch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.DegeneracyMonitor;
+import robCalibration.PosePairs;
+import robCalibration.QR24;
+import robCalibration.ResidualEngine;
+import robCalibration.ResidualReport;
+import robCalibration.ResidualSummary;
+import robCalibration.cache.CacheKey;
+import robCalibration.cache.CachedCalibration;
+import robCalibration.cache.CalibrationCache;
+import robCalibration.cache.ContentDigest;
+import robCalibration.io.PoseLog;
+import robCalibration.io.PoseLogFormat;
+import robCalibration.io.PoseLogReader;
+import robCalibration.metrics.Metrics;
+import robCalibration.metrics.MetricsCollector;
+import robCalibration.metrics.Phase;
+import robCalibration.metrics.PhaseTimer;
+
+/**
+ * Calibrates many recorded sessions without the GUI.
+ * A session is a directory containing a robot log and a tracking log, the sessions are searched recursively
+ * below a root directory. They are calibrated concurrently on a bounded pool of threads, each session parses its logs
+ * on its own thread so the pool is the only parallelism. Every session gets one JSON line in the output file,
+ * in the order of the session paths, containing X, Y, the statistics of the residuals and the timings or the error when it failed.
+ * A failed session doesn't stop the others. Sessions whose logs were calibrated before are read from the
+ * {@link CalibrationCache} if one is set, the command line uses the default cache unless --no-cache is given.
+ * With --metrics the command line prints the durations of the phases of all sessions, see {@link MetricsCollector}.
+ */
+public class BatchCalibration {
+
+	/**
+	 * file names of the logs of a session
+	 */
+	public static final String ROBOT_FILE = "robot.txt";
+	public static final String TRACKING_FILE = "tracking.txt";
+
+	/**
+	 * options of the batch calibrations in the cache keys
+	 */
+	public static final String OPTIONS = "QR24";
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private CalibrationCache cache;
+
+	/**
+	 * @param threads number of sessions calibrated at the same time
+	 * @return this batch
+	 */
+	public BatchCalibration setThreads(int threads) {
+		if(threads<1) {
+			throw new IllegalArgumentException("At least one thread is needed.");
+		}
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * @param cache cache checked before a session is parsed and calibrated, null for none
+	 * @return this batch
+	 */
+	public BatchCalibration setCache(CalibrationCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	/**
+	 * Finds all sessions below a directory
+	 * @param root directory to search
+	 * @return directories containing a robot and a tracking log, sorted by path
+	 * @throws IOException Error when the directory tree can't be read
+	 */
+	public static List<Path> findSessions(Path root) throws IOException {
+		try(Stream<Path> paths = Files.walk(root)) {
+			return paths.filter(path -> Files.isRegularFile(path.resolve(ROBOT_FILE)) && Files.isRegularFile(path.resolve(TRACKING_FILE)))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Calibrates all sessions below a directory
+	 * @param root directory to search for sessions
+	 * @param output JSON Lines file to create, an existing file is replaced
+	 * @return number of failed sessions
+	 * @throws IOException Error when the directory tree can't be read or the output can't be written
+	 * @throws InterruptedException Interrupted while waiting for the sessions
+	 */
+	public int run(Path root, Path output) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		List<Path> sessions = findSessions(root);
+		System.out.println("[Batch] "+sessions.size()+" sessions found below "+root+", "+threads+" threads");
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		int failed = 0;
+		try(BufferedWriter writer = Files.newBufferedWriter(output)) {
+			List<Future<SessionResult>> results = new ArrayList<Future<SessionResult>>();
+			for(Path session : sessions) {
+				String name = root.relativize(session).toString();
+				results.add(pool.submit(() -> calibrate(name, session, cache)));
+			}
+			for(Future<SessionResult> future : results) {
+				SessionResult result;
+				try {
+					result = future.get();
+				} catch (ExecutionException e) {
+					// calibrate catches everything, only errors like OutOfMemoryError end up here
+					throw new IOException(e.getCause());
+				}
+				if(!result.isSuccessful()) {
+					failed++;
+				}
+				PhaseTimer timer = Metrics.start(Phase.OUTPUT).setMeasurements(result.measurements);
+				writer.write(result.toJson());
+				writer.newLine();
+				timer.close();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		System.out.println("[Batch] "+sessions.size()+" sessions calibrated, "+failed+" failed, "
+				+(System.nanoTime()-start)/1000000+" ms");
+		return failed;
+	}
+
+	/**
+	 * Calibrates a single session
+	 * @param name name of the session in the output
+	 * @param directory directory containing the logs
+	 * @return result or error of the session
+	 */
+	public static SessionResult calibrate(String name, Path directory) {
+		return calibrate(name, directory, null);
+	}
+
+	/**
+	 * Calibrates a single session unless its result is in the cache
+	 * @param name name of the session in the output
+	 * @param directory directory containing the logs
+	 * @param cache cache to check and to fill, null for none
+	 * @return result or error of the session
+	 */
+	public static SessionResult calibrate(String name, Path directory, CalibrationCache cache) {
+		SessionResult result = new SessionResult(name);
+		long start = System.nanoTime();
+		try {
+			Path robotFile = directory.resolve(ROBOT_FILE);
+			Path trackingFile = directory.resolve(TRACKING_FILE);
+			ContentDigest robotDigest = null, trackingDigest = null;
+			CacheKey key = null;
+			if(cache!=null) {
+				robotDigest = ContentDigest.of(robotFile);
+				trackingDigest = ContentDigest.of(trackingFile);
+				key = CacheKey.of(robotDigest, trackingDigest, OPTIONS);
+				CachedCalibration cached = lookup(cache, key);
+				if(cached!=null) {
+					result.cached = true;
+					result.measurements = cached.getMeasurements();
+					result.x = cached.getX();
+					result.y = cached.getY();
+					result.translation = cached.getTranslation();
+					result.rotation = cached.getRotation();
+					result.readNanos = System.nanoTime()-start;
+					result.totalNanos = result.readNanos;
+					return result;
+				}
+			}
+			PoseLogReader reader = new PoseLogReader().setParallelism(1);
+			PoseLog robot = reader.readAll(robotFile, PoseLogFormat.ROBOT);
+			PoseLog tracking = reader.readAll(trackingFile, PoseLogFormat.TRACKING);
+			if(key!=null && !(robotDigest.isUnchanged(robotFile) && trackingDigest.isUnchanged(trackingFile))) {
+				// the records may belong to either version of the logs, they aren't cached
+				System.out.println("[Batch] "+name+" was modified while it was read, the result isn't cached");
+				key = null;
+			}
+			long parsed = System.nanoTime();
+			result.readNanos = parsed-start;
+
+			QR24 calibration = new QR24();
+			// a poor capture fails with the diagnostic before the solve
+			calibration.setDegeneracyMonitor(new DegeneracyMonitor());
+			calibration.genMatrices(robot, tracking);
+			result.measurements = calibration.poseMatrices.size();
+			RealMatrix[] transforms = calibration.calibrate();
+			long solved = System.nanoTime();
+			result.solveNanos = solved-parsed;
+			result.x = transforms[0];
+			result.y = transforms[1];
+			// the sessions already run in parallel, the residuals are evaluated on the session's thread
+			ResidualReport residuals = new ResidualEngine().setPool(null)
+					.evaluate(PosePairs.of(calibration.poseMatrices, calibration.markerPoseMatrices), transforms[0], transforms[1]);
+			result.translation = ResidualSummary.of(residuals.getTranslationStatistics());
+			result.rotation = ResidualSummary.of(residuals.getRotationStatistics());
+			if(cache!=null) {
+				store(cache, key, new CachedCalibration(transforms[0], transforms[1], residuals));
+			}
+		} catch (Exception e) {
+			result.error = e.toString();
+		}
+		result.totalNanos = System.nanoTime()-start;
+		return result;
+	}
+
+	/**
+	 * a broken cache must not fail the session, it is calibrated instead
+	 */
+	private static CachedCalibration lookup(CalibrationCache cache, CacheKey key) {
+		try {
+			return cache.get(key);
+		} catch (IOException e) {
+			System.out.println("[Batch] cache not readable: "+e);
+			return null;
+		}
+	}
+
+	private static void store(CalibrationCache cache, CacheKey key, CachedCalibration result) {
+		try {
+			cache.put(key, result);
+		} catch (IOException e) {
+			System.out.println("[Batch] cache not writable: "+e);
+		}
+	}
+
+	/**
+	 * Command line entry of the batch mode
+	 * @param args &lt;root directory&gt; &lt;output file&gt; [--threads n] [--cache directory | --no-cache] [--metrics]
+	 * @return exit code, 0 if all sessions were calibrated, 1 if a session failed, 2 for wrong arguments
+	 */
+	public static int runCommandLine(String[] args) {
+		String usage = "Usage: --batch <root directory> <output.jsonl> [--threads n] [--cache <directory> | --no-cache] [--metrics]";
+		if(args.length<2) {
+			System.out.println(usage);
+			return 2;
+		}
+		BatchCalibration batch = new BatchCalibration();
+		MetricsCollector metrics = null;
+		try {
+			Path cacheDirectory = CalibrationCache.DEFAULT_DIRECTORY;
+			for(int i=2;i<args.length;i++) {
+				if(args[i].equals("--threads") && i+1<args.length) {
+					batch.setThreads(Integer.parseInt(args[++i]));
+				}else if(args[i].equals("--cache") && i+1<args.length) {
+					cacheDirectory = Path.of(args[++i]);
+				}else if(args[i].equals("--no-cache")) {
+					cacheDirectory = null;
+				}else if(args[i].equals("--metrics")) {
+					metrics = new MetricsCollector();
+				}else {
+					System.out.println(usage);
+					return 2;
+				}
+			}
+			if(cacheDirectory!=null) {
+				batch.setCache(new CalibrationCache(cacheDirectory));
+			}
+			if(metrics!=null) {
+				Metrics.addListener(metrics);
+			}
+			int failed = batch.run(Path.of(args[0]), Path.of(args[1]));
+			if(metrics!=null) {
+				System.out.println("[Metrics]"+System.lineSeparator()+metrics);
+			}
+			return failed>0 ? 1 : 0;
+		} catch (IOException | InterruptedException | IllegalArgumentException e) {
+			System.out.println("[Batch] "+e);
+			return 2;
+		} finally {
+			if(metrics!=null) {
+				Metrics.removeListener(metrics);
+			}
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package robCalibration.batch;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.ResidualSummary;
+
+/**
+ * Result of a single session of a {@link BatchCalibration}, written as one line of JSON.
+ */
+public class SessionResult {
+
+	private final String session;
+	int measurements;
+	RealMatrix x;
+	RealMatrix y;
+	ResidualSummary translation;
+	ResidualSummary rotation;
+	boolean cached;
+	long readNanos;
+	long solveNanos;
+	long totalNanos;
+	String error;
+
+	SessionResult(String session) {
+		this.session = session;
+	}
+
+	/**
+	 * @return name of the session, its path relative to the root directory
+	 */
+	public String getSession() {
+		return session;
+	}
+
+	/**
+	 * @return false if the session failed
+	 */
+	public boolean isSuccessful() {
+		return error==null;
+	}
+
+	/**
+	 * @return message of the error, null if the session was calibrated
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @return transformation from end-effector to marker, null if the session failed
+	 */
+	public RealMatrix getX() {
+		return x;
+	}
+
+	/**
+	 * @return transformation from robot base to tracking system, null if the session failed
+	 */
+	public RealMatrix getY() {
+		return y;
+	}
+
+	/**
+	 * @return number of measurements used
+	 */
+	public int getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return summary of the translational residuals of Mi*X and Y*Ni in mm, null if the session failed
+	 */
+	public ResidualSummary getTranslationResiduals() {
+		return translation;
+	}
+
+	/**
+	 * @return summary of the rotational residuals of Mi*X and Y*Ni in degrees, null if the session failed
+	 */
+	public ResidualSummary getRotationResiduals() {
+		return rotation;
+	}
+
+	/**
+	 * @return root mean square of the translational residuals of Mi*X and Y*Ni in mm, NaN if the session failed
+	 */
+	public double getRmsTranslation() {
+		return translation!=null ? translation.getRms() : Double.NaN;
+	}
+
+	/**
+	 * @return root mean square of the rotational residuals of Mi*X and Y*Ni in degrees, NaN if the session failed
+	 */
+	public double getRmsRotation() {
+		return rotation!=null ? rotation.getRms() : Double.NaN;
+	}
+
+	/**
+	 * @return true if the result was read from the calibration cache instead of calibrated
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * @return the result as a single line of JSON
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder(512);
+		json.append("{\"session\":");
+		string(json, session);
+		json.append(",\"ok\":").append(isSuccessful());
+		json.append(",\"cached\":").append(cached);
+		if(error!=null) {
+			json.append(",\"error\":");
+			string(json, error);
+		}
+		json.append(",\"measurements\":").append(measurements);
+		if(x!=null) {
+			json.append(",\"X\":");
+			matrix(json, x);
+			json.append(",\"Y\":");
+			matrix(json, y);
+		}
+		if(translation!=null) {
+			json.append(",\"residuals\":{\"translationMm\":");
+			summary(json, translation);
+			json.append(",\"rotationDeg\":");
+			summary(json, rotation);
+			json.append('}');
+		}
+		json.append(",\"timingsMs\":{\"read\":");
+		number(json, readNanos/1e6);
+		json.append(",\"solve\":");
+		number(json, solveNanos/1e6);
+		json.append(",\"total\":");
+		number(json, totalNanos/1e6);
+		json.append("}}");
+		return json.toString();
+	}
+
+	/**
+	 * 4x4 matrix as array of rows
+	 */
+	private static void matrix(StringBuilder json, RealMatrix m) {
+		json.append('[');
+		for(int row=0;row<m.getRowDimension();row++) {
+			json.append(row>0 ? ",[" : "[");
+			for(int col=0;col<m.getColumnDimension();col++) {
+				if(col>0) {
+					json.append(',');
+				}
+				number(json, m.getEntry(row, col));
+			}
+			json.append(']');
+		}
+		json.append(']');
+	}
+
+	/**
+	 * summary of one kind of residual as object
+	 */
+	private static void summary(StringBuilder json, ResidualSummary summary) {
+		json.append("{\"mean\":");
+		number(json, summary.getMean());
+		json.append(",\"rms\":");
+		number(json, summary.getRms());
+		json.append(",\"p50\":");
+		number(json, summary.getMedian());
+		json.append(",\"p95\":");
+		number(json, summary.getP95());
+		json.append(",\"p99\":");
+		number(json, summary.getP99());
+		json.append(",\"max\":");
+		number(json, summary.getMax());
+		json.append('}');
+	}
+
+	/**
+	 * JSON has no NaN or infinity, they're written as null
+	 */
+	static void number(StringBuilder json, double value) {
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			json.append("null");
+		}else {
+			json.append(value);
+		}
+	}
+
+	static void string(StringBuilder json, String value) {
+		json.append('"');
+		for(int i=0;i<value.length();i++) {
+			char c = value.charAt(i);
+			switch(c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			default:
+				if(c<0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				}else {
+					json.append(c);
+				}
+			}
+		}
+		json.append('"');
+	}
+}
@@ -0,0 +1,102 @@
+package robCalibration.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Identifies a calibration by the contents of its robot log and tracking log and the options of the solver.
+ * Renaming, moving or copying the logs doesn't change the key, changing a single byte does.
+ */
+public final class CacheKey {
+
+	private final long robotHash;
+	private final long robotSize;
+	private final long trackingHash;
+	private final long trackingSize;
+	private final String options;
+
+	CacheKey(long robotHash, long robotSize, long trackingHash, long trackingSize, String options) {
+		this.robotHash = robotHash;
+		this.robotSize = robotSize;
+		this.trackingHash = trackingHash;
+		this.trackingSize = trackingSize;
+		this.options = options;
+	}
+
+	/**
+	 * Hashes both logs
+	 * @param robot robot log
+	 * @param tracking tracking log
+	 * @param options description of the solver and all settings that change the result, e.g. "QR24"
+	 * @return key of the calibration
+	 * @throws IOException Error when a log can't be read
+	 */
+	public static CacheKey of(Path robot, Path tracking, String options) throws IOException {
+		return of(ContentDigest.of(robot), ContentDigest.of(tracking), options);
+	}
+
+	/**
+	 * Builds the key from the digests taken when the logs were read
+	 * @param robot digest of the robot log
+	 * @param tracking digest of the tracking log
+	 * @param options description of the solver and all settings that change the result, e.g. "QR24"
+	 * @return key of the calibration
+	 */
+	public static CacheKey of(ContentDigest robot, ContentDigest tracking, String options) {
+		return new CacheKey(robot.getHash(), robot.getSize(), tracking.getHash(), tracking.getSize(), options);
+	}
+
+	/**
+	 * @return hash of the key as 16 hex digits, the name of the cache entry
+	 */
+	public String getId() {
+		long id = ContentHash.combine(robotHash, robotSize);
+		id = ContentHash.combine(id, trackingHash);
+		id = ContentHash.combine(id, trackingSize);
+		id = ContentHash.combine(id, ContentHash.of(options));
+		return String.format("%016x", id);
+	}
+
+	/**
+	 * @return description of the solver and its settings
+	 */
+	public String getOptions() {
+		return options;
+	}
+
+	long getRobotHash() {
+		return robotHash;
+	}
+
+	long getRobotSize() {
+		return robotSize;
+	}
+
+	long getTrackingHash() {
+		return trackingHash;
+	}
+
+	long getTrackingSize() {
+		return trackingSize;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof CacheKey)) {
+			return false;
+		}
+		CacheKey key = (CacheKey) other;
+		return robotHash==key.robotHash && robotSize==key.robotSize && trackingHash==key.trackingHash
+				&& trackingSize==key.trackingSize && options.equals(key.options);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(robotHash)*31+Long.hashCode(trackingHash);
+	}
+
+	@Override
+	public String toString() {
+		return getId()+" ("+options+")";
+	}
+}
@@ -0,0 +1,78 @@
+package robCalibration.cache;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.ResidualReport;
+import robCalibration.ResidualSummary;
+
+/**
+ * Result of a calibration as kept by the {@link CalibrationCache}: X, Y and the summaries of the residuals.
+ */
+public class CachedCalibration {
+
+	private final RealMatrix x;
+	private final RealMatrix y;
+	private final int measurements;
+	private final ResidualSummary translation;
+	private final ResidualSummary rotation;
+
+	/**
+	 * @param x transformation from end-effector to marker
+	 * @param y transformation from robot base to tracking system
+	 * @param measurements number of measurement pairs
+	 * @param translation summary of the translational residuals in mm
+	 * @param rotation summary of the rotational residuals in degrees
+	 */
+	public CachedCalibration(RealMatrix x, RealMatrix y, int measurements, ResidualSummary translation, ResidualSummary rotation) {
+		this.x = x;
+		this.y = y;
+		this.measurements = measurements;
+		this.translation = translation;
+		this.rotation = rotation;
+	}
+
+	/**
+	 * @param x transformation from end-effector to marker
+	 * @param y transformation from robot base to tracking system
+	 * @param residuals residuals of the result
+	 */
+	public CachedCalibration(RealMatrix x, RealMatrix y, ResidualReport residuals) {
+		this(x, y, residuals.getSize(), ResidualSummary.of(residuals.getTranslationStatistics()),
+				ResidualSummary.of(residuals.getRotationStatistics()));
+	}
+
+	/**
+	 * @return transformation from end-effector to marker
+	 */
+	public RealMatrix getX() {
+		return x;
+	}
+
+	/**
+	 * @return transformation from robot base to tracking system
+	 */
+	public RealMatrix getY() {
+		return y;
+	}
+
+	/**
+	 * @return number of measurement pairs
+	 */
+	public int getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return summary of the translational residuals in mm
+	 */
+	public ResidualSummary getTranslation() {
+		return translation;
+	}
+
+	/**
+	 * @return summary of the rotational residuals in degrees
+	 */
+	public ResidualSummary getRotation() {
+		return rotation;
+	}
+}
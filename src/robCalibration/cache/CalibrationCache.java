@@ -0,0 +1,253 @@
+package robCalibration.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.BlockAssembler;
+import robCalibration.ResidualSummary;
+
+/**
+ * Keeps calibration results on the local disk, keyed by the contents of the logs and the solver options
+ * (see {@link CacheKey}), so a calibration of the same logs is read back instead of parsed and solved again,
+ * also after a restart. Every result is a small properties file named by the id of its key, it contains
+ * the complete key, so a collision of the ids is detected and treated as a miss.
+ *
+ * Entries are written to a temporary file and moved into place, so readers never see a partial entry and
+ * several processes can share a directory. A hit renews the modification time of the entry, entries unused for
+ * longer than the maximum age are deleted, and while the entries are larger than the maximum size the least
+ * recently used ones are deleted. Unreadable entries are deleted and reported as miss.
+ */
+public class CalibrationCache {
+
+	/**
+	 * directory used when nothing else is configured
+	 */
+	public static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home"), ".qr24", "cache");
+
+	/**
+	 * version of the entries, a change of the format or of the solvers invalidates all existing entries
+	 */
+	static final int VERSION = 1;
+
+	private static final String SUFFIX = ".properties";
+
+	private final Path directory;
+	private long maxBytes = 64L<<20;
+	private Duration maxAge = Duration.ofDays(30);
+
+	/**
+	 * @param directory directory of the entries, created if necessary
+	 * @throws IOException Error when the directory can't be created
+	 */
+	public CalibrationCache(Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	/**
+	 * @param bytes largest total size of the entries
+	 * @return this cache
+	 */
+	public CalibrationCache setMaxBytes(long bytes) {
+		if(bytes<0) {
+			throw new IllegalArgumentException("Size must not be negative.");
+		}
+		this.maxBytes = bytes;
+		return this;
+	}
+
+	/**
+	 * @param age largest time since an entry was written or used
+	 * @return this cache
+	 */
+	public CalibrationCache setMaxAge(Duration age) {
+		if(age.isNegative()) {
+			throw new IllegalArgumentException("Age must not be negative.");
+		}
+		this.maxAge = age;
+		return this;
+	}
+
+	/**
+	 * @return directory of the entries
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Looks up a calibration
+	 * @param key key of the logs and options
+	 * @return cached result, null if there is none
+	 * @throws IOException Error when the directory can't be accessed
+	 */
+	public CachedCalibration get(CacheKey key) throws IOException {
+		Path file = directory.resolve(key.getId()+SUFFIX);
+		Properties entry = new Properties();
+		try(InputStream in = Files.newInputStream(file)) {
+			entry.load(in);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		CachedCalibration result;
+		try {
+			if(!matches(entry, key)) {
+				return null;
+			}
+			result = new CachedCalibration(matrix(entry, "X"), matrix(entry, "Y"),
+					Integer.parseInt(entry.getProperty("measurements")),
+					new ResidualSummary(values(entry, "residuals.translation", ResidualSummary.VALUES)),
+					new ResidualSummary(values(entry, "residuals.rotation", ResidualSummary.VALUES)));
+		} catch (RuntimeException e) {
+			System.out.println("[CalibrationCache] deleting unreadable entry "+file.getFileName()+": "+e);
+			Files.deleteIfExists(file);
+			return null;
+		}
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (NoSuchFileException e) {
+			// evicted in the meantime, the result is still valid
+		}
+		return result;
+	}
+
+	/**
+	 * Stores a calibration and evicts old entries
+	 * @param key key of the logs and options
+	 * @param result result of the calibration
+	 * @throws IOException Error when the entry can't be written
+	 */
+	public void put(CacheKey key, CachedCalibration result) throws IOException {
+		Properties entry = new Properties();
+		entry.setProperty("version", Integer.toString(VERSION));
+		entry.setProperty("robot.hash", Long.toHexString(key.getRobotHash()));
+		entry.setProperty("robot.size", Long.toString(key.getRobotSize()));
+		entry.setProperty("tracking.hash", Long.toHexString(key.getTrackingHash()));
+		entry.setProperty("tracking.size", Long.toString(key.getTrackingSize()));
+		entry.setProperty("options", key.getOptions());
+		entry.setProperty("measurements", Integer.toString(result.getMeasurements()));
+		entry.setProperty("X", text(pose(result.getX())));
+		entry.setProperty("Y", text(pose(result.getY())));
+		entry.setProperty("residuals.translation", text(result.getTranslation().toArray()));
+		entry.setProperty("residuals.rotation", text(result.getRotation().toArray()));
+
+		Path temporary = Files.createTempFile(directory, key.getId(), ".tmp");
+		try {
+			try(OutputStream out = Files.newOutputStream(temporary)) {
+				entry.store(out, "QR24 calibration");
+			}
+			Files.move(temporary, directory.resolve(key.getId()+SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		evict();
+	}
+
+	/**
+	 * Deletes the entries older than the maximum age, then the least recently used ones until the entries fit into the maximum size
+	 * @throws IOException Error when the directory can't be listed
+	 */
+	public synchronized void evict() throws IOException {
+		long now = System.currentTimeMillis();
+		List<Path> files = new ArrayList<Path>();
+		List<BasicFileAttributes> attributes = new ArrayList<BasicFileAttributes>();
+		try(DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*"+SUFFIX)) {
+			for(Path file : entries) {
+				try {
+					files.add(file);
+					attributes.add(Files.readAttributes(file, BasicFileAttributes.class));
+				} catch (NoSuchFileException e) {
+					// deleted by another process
+					files.remove(files.size()-1);
+				}
+			}
+		}
+		List<Integer> order = new ArrayList<Integer>();
+		long total = 0;
+		for(int i=0;i<files.size();i++) {
+			if(now-attributes.get(i).lastModifiedTime().toMillis()>maxAge.toMillis()) {
+				Files.deleteIfExists(files.get(i));
+			}else {
+				order.add(i);
+				total += attributes.get(i).size();
+			}
+		}
+		order.sort(Comparator.comparing(i -> attributes.get(i).lastModifiedTime()));
+		for(int k=0;k<order.size() && total>maxBytes;k++) {
+			int i = order.get(k);
+			Files.deleteIfExists(files.get(i));
+			total -= attributes.get(i).size();
+		}
+	}
+
+	private static boolean matches(Properties entry, CacheKey key) {
+		return Integer.toString(VERSION).equals(entry.getProperty("version"))
+				&& Long.toHexString(key.getRobotHash()).equals(entry.getProperty("robot.hash"))
+				&& Long.toString(key.getRobotSize()).equals(entry.getProperty("robot.size"))
+				&& Long.toHexString(key.getTrackingHash()).equals(entry.getProperty("tracking.hash"))
+				&& Long.toString(key.getTrackingSize()).equals(entry.getProperty("tracking.size"))
+				&& key.getOptions().equals(entry.getProperty("options"));
+	}
+
+	/**
+	 * upper 3x4 part of a transformation in row-major order
+	 */
+	private static double[] pose(RealMatrix m) {
+		double[] pose = new double[BlockAssembler.POSE_SIZE];
+		BlockAssembler.copyPose(m, pose, 0);
+		return pose;
+	}
+
+	private static RealMatrix matrix(Properties entry, String name) {
+		double[] pose = values(entry, name, BlockAssembler.POSE_SIZE);
+		RealMatrix m = MatrixUtils.createRealIdentityMatrix(4);
+		for(int r=0;r<3;r++) {
+			for(int c=0;c<4;c++) {
+				m.setEntry(r, c, pose[r*4+c]);
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * values separated by spaces, written with the shortest representation that reads back exactly
+	 */
+	private static String text(double[] values) {
+		StringBuilder text = new StringBuilder();
+		for(int i=0;i<values.length;i++) {
+			if(i>0) {
+				text.append(' ');
+			}
+			text.append(values[i]);
+		}
+		return text.toString();
+	}
+
+	private static double[] values(Properties entry, String name, int count) {
+		String[] parts = entry.getProperty(name).trim().split(" ");
+		if(parts.length!=count) {
+			throw new IllegalArgumentException(name+" has "+parts.length+" values instead of "+count+".");
+		}
+		double[] values = new double[count];
+		for(int i=0;i<count;i++) {
+			values[i] = Double.parseDouble(parts[i]);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,72 @@
+package robCalibration.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Hash and size of the contents of a single log. A reader takes the digest when it reads the log and keeps it
+ * with the records, so a {@link CacheKey} built from it describes the records that were parsed, not the file as
+ * it is at the time of the calibration.
+ */
+public final class ContentDigest {
+
+	private final long hash;
+	private final long size;
+	private final FileTime modified;
+
+	private ContentDigest(long hash, long size, FileTime modified) {
+		this.hash = hash;
+		this.size = size;
+		this.modified = modified;
+	}
+
+	/**
+	 * Hashes a log
+	 * @param file log to hash
+	 * @return digest of the current contents
+	 * @throws IOException Error when the log can't be read
+	 */
+	public static ContentDigest of(Path file) throws IOException {
+		FileTime modified = Files.getLastModifiedTime(file);
+		return new ContentDigest(ContentHash.of(file), Files.size(file), modified);
+	}
+
+	/**
+	 * Tells whether a log is still unchanged since it was hashed, e.g. after it was read
+	 * @param file log that was hashed
+	 * @return true if the size and the time of the last modification are the same as when it was hashed
+	 * @throws IOException Error when the attributes of the log can't be read
+	 */
+	public boolean isUnchanged(Path file) throws IOException {
+		return size==Files.size(file) && modified.equals(Files.getLastModifiedTime(file));
+	}
+
+	long getHash() {
+		return hash;
+	}
+
+	long getSize() {
+		return size;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof ContentDigest)) {
+			return false;
+		}
+		ContentDigest digest = (ContentDigest) other;
+		return hash==digest.hash && size==digest.size;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(hash);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%016x (%d bytes)", hash, size);
+	}
+}
@@ -0,0 +1,99 @@
+package robCalibration.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fast non-cryptographic 64-bit hash of file contents, in the style of xxHash64 with a single lane.
+ * The file is read in blocks of {@value #BLOCK} bytes and consumed as little-endian 64-bit words,
+ * the hash only identifies contents, it doesn't protect against deliberate collisions.
+ */
+final class ContentHash {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private static final int BLOCK = 1<<20;
+
+	private long hash = PRIME5;
+	private long length = 0;
+
+	private ContentHash() {
+	}
+
+	/**
+	 * @param file file to hash
+	 * @return hash of the contents
+	 * @throws IOException Error when the file can't be read
+	 */
+	static long of(Path file) throws IOException {
+		ContentHash content = new ContentHash();
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK).order(ByteOrder.LITTLE_ENDIAN);
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while(channel.read(buffer)>=0) {
+				buffer.flip();
+				content.words(buffer);
+				// keeps the bytes of an incomplete word for the next block
+				buffer.compact();
+			}
+		}
+		buffer.flip();
+		return content.finish(buffer);
+	}
+
+	/**
+	 * @param text text to hash, encoded as UTF-8
+	 * @return hash of the text
+	 */
+	static long of(String text) {
+		ContentHash content = new ContentHash();
+		ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).order(ByteOrder.LITTLE_ENDIAN);
+		content.words(buffer);
+		return content.finish(buffer);
+	}
+
+	/**
+	 * mixes two hashes into one, the order matters
+	 */
+	static long combine(long first, long second) {
+		return avalanche(Long.rotateLeft(first*PRIME2, 31)*PRIME1^second);
+	}
+
+	private void words(ByteBuffer buffer) {
+		long h = hash;
+		int count = 0;
+		while(buffer.remaining()>=8) {
+			long k = Long.rotateLeft(buffer.getLong()*PRIME2, 31)*PRIME1;
+			h = Long.rotateLeft(h^k, 27)*PRIME1+PRIME4;
+			count += 8;
+		}
+		hash = h;
+		length += count;
+	}
+
+	private long finish(ByteBuffer tail) {
+		long h = hash;
+		while(tail.hasRemaining()) {
+			h = Long.rotateLeft(h^(tail.get()&0xFFL)*PRIME5, 11)*PRIME1;
+			length++;
+		}
+		return avalanche(h^length);
+	}
+
+	private static long avalanche(long h) {
+		h ^= h>>>33;
+		h *= PRIME2;
+		h ^= h>>>29;
+		h *= PRIME3;
+		h ^= h>>>32;
+		return h;
+	}
+}
@@ -0,0 +1,238 @@
+package robCalibration.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scans whitespace separated ASCII tokens directly from a byte buffer without creating Strings.
+ * Numbers whose digits fit into 53 bits and whose decimal exponent is at most 22 (every value written
+ * by the robot and the tracking system, including the microsecond timestamps) are converted on a fast path
+ * with a single rounding, which gives the same result as {@link Double#parseDouble(String)}.
+ * All other numbers (17 significant digits, NaN, Infinity) fall back to {@link Double#parseDouble(String)}.
+ */
+public class AsciiScanner {
+
+	/**
+	 * exactly representable powers of ten
+	 */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private ByteBuffer buffer;
+	private int position;
+	private int limit;
+
+	/**
+	 * Sets the region to scan
+	 * @param buffer buffer containing ASCII text, read with absolute access only
+	 * @param position index of the first byte
+	 * @param limit index after the last byte
+	 */
+	public void reset(ByteBuffer buffer, int position, int limit) {
+		this.buffer = buffer;
+		this.position = position;
+		this.limit = limit;
+	}
+
+	/**
+	 * @return index of the next byte to scan
+	 */
+	public int position() {
+		return position;
+	}
+
+	/**
+	 * Skips blanks, carriage returns and line feeds
+	 * @return true if there are bytes left
+	 */
+	public boolean skipEmptyLines() {
+		while(position<limit) {
+			byte c = buffer.get(position);
+			if(c!=' ' && c!='\t' && c!='\r' && c!='\n') {
+				return true;
+			}
+			position++;
+		}
+		return false;
+	}
+
+	/**
+	 * Skips everything up to and including the next line feed
+	 */
+	public void skipLine() {
+		while(position<limit) {
+			if(buffer.get(position++)=='\n') {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true if only blanks are left on the current line
+	 */
+	public boolean atLineEnd() {
+		skipBlanks();
+		if(position>=limit) {
+			return true;
+		}
+		byte c = buffer.get(position);
+		return c=='\n' || c=='\r';
+	}
+
+	/**
+	 * Reads the next token of the current line as a single character
+	 * @return first character of the token
+	 * @throws NumberFormatException if the line has no more tokens
+	 */
+	public char nextChar() {
+		if(atLineEnd()) {
+			throw new NumberFormatException("Unexpected end of line at byte "+position);
+		}
+		char c = (char) buffer.get(position);
+		skipToken();
+		return c;
+	}
+
+	/**
+	 * Reads the next token of the current line as a double value
+	 * @return parsed value
+	 * @throws NumberFormatException if the line has no more tokens or the token is no number
+	 */
+	public double nextDouble() {
+		if(atLineEnd()) {
+			throw new NumberFormatException("Unexpected end of line at byte "+position);
+		}
+		int start = position;
+		boolean negative = false;
+		byte c = buffer.get(position);
+		if(c=='-' || c=='+') {
+			negative = c=='-';
+			position++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+		boolean fast = true;
+		while(position<limit) {
+			c = buffer.get(position);
+			if(c>='0' && c<='9') {
+				anyDigit = true;
+				if(mantissa!=0 || c!='0') {
+					if(digits<18) {
+						mantissa = mantissa*10+(c-'0');
+						digits++;
+					}else {
+						fast = false;
+					}
+				}
+				position++;
+			}else {
+				break;
+			}
+		}
+		if(position<limit && buffer.get(position)=='.') {
+			position++;
+			while(position<limit) {
+				c = buffer.get(position);
+				if(c>='0' && c<='9') {
+					anyDigit = true;
+					if(mantissa!=0 || c!='0') {
+						if(digits<18) {
+							mantissa = mantissa*10+(c-'0');
+							digits++;
+						}else {
+							fast = false;
+						}
+					}
+					exponent--;
+					position++;
+				}else {
+					break;
+				}
+			}
+		}
+		if(position<limit && anyDigit) {
+			c = buffer.get(position);
+			if(c=='e' || c=='E') {
+				position++;
+				boolean negativeExponent = false;
+				if(position<limit) {
+					c = buffer.get(position);
+					if(c=='-' || c=='+') {
+						negativeExponent = c=='-';
+						position++;
+					}
+				}
+				int e = 0;
+				boolean exponentDigit = false;
+				while(position<limit) {
+					c = buffer.get(position);
+					if(c>='0' && c<='9') {
+						exponentDigit = true;
+						if(e<10000) {
+							e = e*10+(c-'0');
+						}
+						position++;
+					}else {
+						break;
+					}
+				}
+				fast &= exponentDigit;
+				exponent += negativeExponent ? -e : e;
+			}
+		}
+		if(!anyDigit || !fast || !isDelimiter()) {
+			return slowPath(start);
+		}
+
+		double value;
+		if(mantissa==0) {
+			value = 0;
+		}else if(mantissa<=(1L<<53) && exponent>=-22 && exponent<=22) {
+			// mantissa and power of ten are exact, so the result is correctly rounded
+			value = exponent<0 ? mantissa/POWERS_OF_TEN[-exponent] : mantissa*POWERS_OF_TEN[exponent];
+		}else {
+			return slowPath(start);
+		}
+		return negative ? -value : value;
+	}
+
+	private boolean isDelimiter() {
+		if(position>=limit) {
+			return true;
+		}
+		byte c = buffer.get(position);
+		return c==' ' || c=='\t' || c=='\r' || c=='\n';
+	}
+
+	private void skipBlanks() {
+		while(position<limit) {
+			byte c = buffer.get(position);
+			if(c!=' ' && c!='\t') {
+				return;
+			}
+			position++;
+		}
+	}
+
+	private void skipToken() {
+		while(position<limit && !isDelimiter()) {
+			position++;
+		}
+	}
+
+	/**
+	 * parses the token starting at start with Double.parseDouble
+	 */
+	private double slowPath(int start) {
+		position = start;
+		skipToken();
+		byte[] token = new byte[position-start];
+		for(int i=0;i<token.length;i++) {
+			token[i] = buffer.get(start+i);
+		}
+		return Double.parseDouble(new String(token, StandardCharsets.ISO_8859_1));
+	}
+}
@@ -0,0 +1,255 @@
+package robCalibration.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import robCalibration.BlockAssembler;
+import robCalibration.PosePairSource;
+
+/**
+ * Memory mapped access to a binary pose pair file written by {@link BinaryPoseLogWriter}.
+ * Opening a file only maps it and builds the index of the visible pairs, the pose data is read
+ * directly from the mapped columns when a solver asks for it.
+ *
+ * The file layout (all numbers little-endian):
+ * <pre>
+ *   0  magic "QR24PAIR"
+ *   8  int    version
+ *  12  int    number of columns (26)
+ *  16  long   number of pairs n
+ *  24  long   number of visible pairs
+ *  32  byte[32] SHA-256 of the robot log
+ *  64  byte[32] SHA-256 of the tracking log
+ *  96  long   offset of the visibility flags
+ * 104  long   offset of the first column
+ * 128  visibility flags, one bit per pair (bit i%8 of byte i/8), padded to 8 bytes
+ *      26 columns of n doubles: robot pose entries 0..11, tracker pose entries 0..11, timestamp, quality
+ * </pre>
+ *
+ * As {@link PosePairSource} only the pairs visible for the tracking system are exposed.
+ */
+public class BinaryPoseLog implements PosePairSource, AutoCloseable {
+
+	static final byte[] MAGIC = "QR24PAIR".getBytes(StandardCharsets.US_ASCII);
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 128;
+	static final int COLUMNS = 2*BlockAssembler.POSE_SIZE+2;
+	static final int TIMESTAMP_COLUMN = 2*BlockAssembler.POSE_SIZE;
+	static final int QUALITY_COLUMN = 2*BlockAssembler.POSE_SIZE+1;
+
+	private final FileChannel channel;
+	private final long count;
+	private final byte[] robotHash = new byte[32];
+	private final byte[] trackingHash = new byte[32];
+	private final MappedByteBuffer flags;
+	private final DoubleBuffer[] columns = new DoubleBuffer[COLUMNS];
+
+	/**
+	 * record index of every visible pair, null if all pairs are visible
+	 */
+	private final int[] visibleIndex;
+	private final int visibleCount;
+
+	private BinaryPoseLog(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		channel.read(header, 0);
+		header.flip();
+		byte[] magic = new byte[MAGIC.length];
+		if(header.limit()<HEADER_SIZE) {
+			throw new IOException("Not a binary pose pair file.");
+		}
+		header.get(magic);
+		if(!Arrays.equals(magic, MAGIC)) {
+			throw new IOException("Not a binary pose pair file.");
+		}
+		int version = header.getInt(8);
+		if(version!=VERSION || header.getInt(12)!=COLUMNS) {
+			throw new IOException("Unsupported binary pose pair file version "+version+".");
+		}
+		count = header.getLong(16);
+		long visible = header.getLong(24);
+		header.position(32);
+		header.get(robotHash);
+		header.get(trackingHash);
+		long flagsOffset = header.getLong(96);
+		long dataOffset = header.getLong(104);
+		if(count<0 || count*8>Integer.MAX_VALUE || visible>count) {
+			throw new IOException("Binary pose pair file with "+count+" pairs is not supported.");
+		}
+		if(channel.size()<dataOffset+COLUMNS*count*8) {
+			throw new IOException("Binary pose pair file is truncated.");
+		}
+
+		flags = channel.map(FileChannel.MapMode.READ_ONLY, flagsOffset, (count+7)/8);
+		for(int c=0;c<COLUMNS;c++) {
+			columns[c] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset+c*count*8, count*8)
+					.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		}
+
+		visibleCount = (int) visible;
+		if(visible==count) {
+			visibleIndex = null;
+		}else {
+			visibleIndex = new int[visibleCount];
+			int v = 0;
+			for(int i=0;i<count;i++) {
+				if(isVisible(i)) {
+					if(v>=visibleCount) {
+						throw new IOException("Visibility flags don't match the header.");
+					}
+					visibleIndex[v++] = i;
+				}
+			}
+			if(v!=visibleCount) {
+				throw new IOException("Visibility flags don't match the header.");
+			}
+		}
+	}
+
+	/**
+	 * Opens and maps a binary pose pair file
+	 * @param file file written by {@link BinaryPoseLogWriter}
+	 * @return mapped file
+	 * @throws IOException Error when the file can't be read or has the wrong format
+	 */
+	public static BinaryPoseLog open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new BinaryPoseLog(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return number of visible pairs
+	 */
+	@Override
+	public int size() {
+		return visibleCount;
+	}
+
+	@Override
+	public void robotPose(int i, double[] out, int offset) {
+		int record = record(i);
+		for(int k=0;k<BlockAssembler.POSE_SIZE;k++) {
+			out[offset+k] = columns[k].get(record);
+		}
+	}
+
+	@Override
+	public void trackerPose(int i, double[] out, int offset) {
+		int record = record(i);
+		for(int k=0;k<BlockAssembler.POSE_SIZE;k++) {
+			out[offset+k] = columns[BlockAssembler.POSE_SIZE+k].get(record);
+		}
+	}
+
+	/**
+	 * @param i index of a visible pair
+	 * @return timestamp of the tracker sample in seconds or NaN
+	 */
+	public double getTimestamp(int i) {
+		return columns[TIMESTAMP_COLUMN].get(record(i));
+	}
+
+	/**
+	 * @param i index of a visible pair
+	 * @return quality value of the tracker sample or NaN
+	 */
+	public double getQuality(int i) {
+		return columns[QUALITY_COLUMN].get(record(i));
+	}
+
+	/**
+	 * @return number of pairs including the ones not visible for the tracking system
+	 */
+	public long getRecordCount() {
+		return count;
+	}
+
+	/**
+	 * @param record index of the pair including the invisible ones
+	 * @return false if the marker was not visible for the tracking system
+	 */
+	public boolean isVisible(long record) {
+		return (flags.get((int) (record>>>3)) & (1<<(record&7)))!=0;
+	}
+
+	/**
+	 * Direct read-only access to a column
+	 * @param column 0..11 robot pose entries, 12..23 tracker pose entries, 24 timestamp, 25 quality
+	 * @return column of all pairs including the invisible ones
+	 */
+	public DoubleBuffer getColumn(int column) {
+		return columns[column].asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return SHA-256 of the robot log the file was converted from
+	 */
+	public byte[] getRobotHash() {
+		return robotHash.clone();
+	}
+
+	/**
+	 * @return SHA-256 of the tracking log the file was converted from
+	 */
+	public byte[] getTrackingHash() {
+		return trackingHash.clone();
+	}
+
+	/**
+	 * Checks whether the file was converted from the given logs
+	 * @param robotLog robot log
+	 * @param trackingLog tracking log
+	 * @return true if both hashes match
+	 * @throws IOException Error when the logs can't be read
+	 */
+	public boolean isConvertedFrom(Path robotLog, Path trackingLog) throws IOException {
+		return Arrays.equals(robotHash, sha256(robotLog)) && Arrays.equals(trackingHash, sha256(trackingLog));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int record(int i) {
+		return visibleIndex==null ? i : visibleIndex[i];
+	}
+
+	/**
+	 * Calculates the SHA-256 of a file through memory mapping
+	 * @param file file to hash
+	 * @return 32 byte hash
+	 * @throws IOException Error when the file can't be read
+	 */
+	public static byte[] sha256(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = in.size();
+			for(long position=0;position<size;position+=PoseLogReader.DEFAULT_CHUNK_SIZE) {
+				digest.update(in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(PoseLogReader.DEFAULT_CHUNK_SIZE, size-position)));
+			}
+		}
+		return digest.digest();
+	}
+}
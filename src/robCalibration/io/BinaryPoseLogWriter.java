@@ -0,0 +1,141 @@
+package robCalibration.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import robCalibration.BlockAssembler;
+
+/**
+ * Converts a robot log and a tracking log in the text formats into the binary pose pair format of {@link BinaryPoseLog}.
+ * Records are paired by their index like {@link robCalibration.QR24#genMatrices(java.util.List, java.util.List)},
+ * pairs not visible for the tracking system are kept and marked in the visibility flags.
+ * Both logs are streamed record by record and every column is written through its own small buffer,
+ * so the conversion needs constant memory.
+ */
+public class BinaryPoseLogWriter {
+
+	/**
+	 * size of the write buffer of each column in bytes
+	 */
+	private static final int BUFFER_SIZE = 64<<10;
+
+	/**
+	 * Converts the text logs
+	 * @param robotLog robot log, format of robot.txt
+	 * @param trackingLog tracking log, format of tracking.txt
+	 * @param target binary file to create, an existing file is replaced
+	 * @return number of pairs written
+	 * @throws IOException Error when a log can't be read or contains malformed lines
+	 */
+	public static long convert(Path robotLog, Path trackingLog, Path target) throws IOException {
+		long start = System.nanoTime();
+		long count = Math.min(PoseLogReader.countRecords(robotLog), PoseLogReader.countRecords(trackingLog));
+		if(count*8>Integer.MAX_VALUE) {
+			throw new IOException("Logs with "+count+" pairs are too large for the binary format.");
+		}
+		long flagsOffset = BinaryPoseLog.HEADER_SIZE;
+		long dataOffset = flagsOffset+((count+7)/8+7)/8*8;
+
+		try(FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				PoseCursor robot = PoseLogReader.open(robotLog, PoseLogFormat.ROBOT);
+				PoseCursor tracking = PoseLogReader.open(trackingLog, PoseLogFormat.TRACKING)) {
+
+			ByteBuffer[] buffers = new ByteBuffer[BinaryPoseLog.COLUMNS];
+			long[] positions = new long[BinaryPoseLog.COLUMNS];
+			for(int c=0;c<BinaryPoseLog.COLUMNS;c++) {
+				buffers[c] = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				positions[c] = dataOffset+c*count*8;
+			}
+			ByteBuffer flags = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			long flagsPosition = flagsOffset;
+			int currentFlags = 0;
+			long visible = 0;
+
+			for(long i=0;i<count;i++) {
+				if(!robot.next() || !tracking.next()) {
+					throw new IOException("Log changed during the conversion.");
+				}
+				for(int k=0;k<BlockAssembler.POSE_SIZE;k++) {
+					positions[k] = put(out, buffers[k], positions[k], robot.pose(k));
+					positions[BlockAssembler.POSE_SIZE+k] = put(out, buffers[BlockAssembler.POSE_SIZE+k],
+							positions[BlockAssembler.POSE_SIZE+k], tracking.pose(k));
+				}
+				positions[BinaryPoseLog.TIMESTAMP_COLUMN] = put(out, buffers[BinaryPoseLog.TIMESTAMP_COLUMN],
+						positions[BinaryPoseLog.TIMESTAMP_COLUMN], tracking.timestamp());
+				positions[BinaryPoseLog.QUALITY_COLUMN] = put(out, buffers[BinaryPoseLog.QUALITY_COLUMN],
+						positions[BinaryPoseLog.QUALITY_COLUMN], tracking.quality());
+
+				if(tracking.visible()) {
+					currentFlags |= 1<<(i&7);
+					visible++;
+				}
+				if((i&7)==7 || i==count-1) {
+					if(!flags.hasRemaining()) {
+						flagsPosition = flush(out, flags, flagsPosition);
+					}
+					flags.put((byte) currentFlags);
+					currentFlags = 0;
+				}
+			}
+			for(int c=0;c<BinaryPoseLog.COLUMNS;c++) {
+				flush(out, buffers[c], positions[c]);
+			}
+			flush(out, flags, flagsPosition);
+
+			ByteBuffer header = ByteBuffer.allocate(BinaryPoseLog.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.put(BinaryPoseLog.MAGIC);
+			header.putInt(BinaryPoseLog.VERSION);
+			header.putInt(BinaryPoseLog.COLUMNS);
+			header.putLong(count);
+			header.putLong(visible);
+			header.put(BinaryPoseLog.sha256(robotLog));
+			header.put(BinaryPoseLog.sha256(trackingLog));
+			header.putLong(flagsOffset);
+			header.putLong(dataOffset);
+			header.flip();
+			writeFully(out, header, 0);
+			// the file ends with the padding of the flags when there are no pairs, make the size explicit
+			if(out.size()<dataOffset+BinaryPoseLog.COLUMNS*count*8) {
+				writeFully(out, ByteBuffer.allocate(1), dataOffset+BinaryPoseLog.COLUMNS*count*8-1);
+			}
+		}
+		System.out.println("[BinaryPoseLogWriter] "+count+" pairs written to "+target.getFileName()+" in "
+				+(System.nanoTime()-start)/1000000+" ms");
+		return count;
+	}
+
+	private static long put(FileChannel out, ByteBuffer buffer, long position, double value) throws IOException {
+		if(!buffer.hasRemaining()) {
+			position = flush(out, buffer, position);
+		}
+		buffer.putDouble(value);
+		return position;
+	}
+
+	/**
+	 * writes the content of the buffer at position and clears it
+	 * @return position behind the written bytes
+	 */
+	private static long flush(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+		buffer.flip();
+		position = writeFully(out, buffer, position);
+		buffer.clear();
+		return position;
+	}
+
+	/**
+	 * writes the remaining bytes of the buffer at position
+	 * @return position behind the written bytes
+	 */
+	private static long writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += out.write(buffer, position);
+		}
+		return position;
+	}
+}
@@ -0,0 +1,90 @@
+package robCalibration.io;
+
+import java.util.Locale;
+
+/**
+ * Counters of a {@link TimestampJoin}
+ */
+public class JoinStatistics {
+
+	long robotRecords;
+	long trackerRecords;
+	long matched;
+	long interpolated;
+	long unmatched;
+	long invisible;
+	long outOfOrder;
+	double maxTimeDifference;
+	double sumTimeDifference;
+
+	/**
+	 * @return number of robot poses read
+	 */
+	public long getRobotRecords() {
+		return robotRecords;
+	}
+
+	/**
+	 * @return number of tracker samples read
+	 */
+	public long getTrackerRecords() {
+		return trackerRecords;
+	}
+
+	/**
+	 * @return number of pairs handed to the handler
+	 */
+	public long getMatched() {
+		return matched;
+	}
+
+	/**
+	 * @return number of pairs whose tracker pose was interpolated between two samples
+	 */
+	public long getInterpolated() {
+		return interpolated;
+	}
+
+	/**
+	 * @return number of robot poses without a visible tracker sample inside the time window
+	 */
+	public long getUnmatched() {
+		return unmatched;
+	}
+
+	/**
+	 * @return number of tracker samples rejected because the marker was not visible
+	 */
+	public long getInvisible() {
+		return invisible;
+	}
+
+	/**
+	 * @return number of robot poses and tracker samples rejected because their timestamp went backwards
+	 */
+	public long getOutOfOrder() {
+		return outOfOrder;
+	}
+
+	/**
+	 * @return largest time difference between a robot pose and the tracker sample used for it, in seconds
+	 */
+	public double getMaxTimeDifference() {
+		return maxTimeDifference;
+	}
+
+	/**
+	 * @return mean time difference between a robot pose and the tracker sample used for it, in seconds
+	 */
+	public double getMeanTimeDifference() {
+		return matched>0 ? sumTimeDifference/matched : 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "robot: %d, tracker: %d, matched: %d (interpolated: %d), unmatched: %d, "
+				+"invisible: %d, out of order: %d, time difference mean/max: %.3f/%.3f ms",
+				robotRecords, trackerRecords, matched, interpolated, unmatched, invisible, outOfOrder,
+				getMeanTimeDifference()*1e3, maxTimeDifference*1e3);
+	}
+}
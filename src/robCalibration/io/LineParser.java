@@ -0,0 +1,65 @@
+package robCalibration.io;
+
+import robCalibration.BlockAssembler;
+
+/**
+ * Parses a single line of a pose log into primitive fields.
+ * The fields are overwritten by every call of {@link #parse(AsciiScanner)}.
+ */
+class LineParser {
+
+	private final PoseLogFormat format;
+
+	double timestamp;
+	boolean visible;
+	double quality;
+	final double[] pose = new double[BlockAssembler.POSE_SIZE];
+
+	LineParser(PoseLogFormat format) {
+		this.format = format;
+	}
+
+	/**
+	 * Parses the next non-empty line
+	 * @param scanner scanner positioned at the beginning of a line
+	 * @return false if there are no more lines
+	 * @throws NumberFormatException if the line is malformed
+	 */
+	boolean parse(AsciiScanner scanner) {
+		if(!scanner.skipEmptyLines()) {
+			return false;
+		}
+		switch(format) {
+		case TRACKING:
+			timestamp = scanner.nextDouble();
+			char flag = scanner.nextChar();
+			if(flag!='y' && flag!='n') {
+				throw new NumberFormatException("Visibility flag has to be y or n, got "+flag);
+			}
+			visible = flag=='y';
+			readPose(scanner);
+			quality = scanner.atLineEnd() ? Double.NaN : scanner.nextDouble();
+			break;
+		case ROBOT_TIMESTAMPED:
+			timestamp = scanner.nextDouble();
+			visible = true;
+			readPose(scanner);
+			quality = Double.NaN;
+			break;
+		default:
+			timestamp = Double.NaN;
+			visible = true;
+			readPose(scanner);
+			quality = Double.NaN;
+			break;
+		}
+		scanner.skipLine();
+		return true;
+	}
+
+	private void readPose(AsciiScanner scanner) {
+		for(int i=0;i<BlockAssembler.POSE_SIZE;i++) {
+			pose[i] = scanner.nextDouble();
+		}
+	}
+}
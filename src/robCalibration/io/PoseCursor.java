@@ -0,0 +1,125 @@
+package robCalibration.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import robCalibration.BlockAssembler;
+
+/**
+ * Sequential pull access to the records of a pose log.
+ * The file is memory mapped window by window and every record is parsed directly from the mapped bytes
+ * into primitive fields, nothing is allocated per record. Only the current record is kept, so the memory
+ * needed is independent of the size of the file.
+ *
+ * <pre>
+ * try(PoseCursor cursor = PoseLogReader.open(file, PoseLogFormat.TRACKING)) {
+ *     while(cursor.next()) {
+ *         cursor.copyPose(pose, 0);
+ *     }
+ * }
+ * </pre>
+ */
+public class PoseCursor implements AutoCloseable {
+
+	private final Path file;
+	private final FileChannel channel;
+	private final long size;
+	private final int windowSize;
+	private final AsciiScanner scanner = new AsciiScanner();
+	private final LineParser parser;
+
+	/**
+	 * file position of the current window and of its end
+	 */
+	private long windowStart = 0;
+	private long windowEnd = 0;
+	private long index = -1;
+
+	PoseCursor(Path file, PoseLogFormat format, int windowSize) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+		this.windowSize = windowSize;
+		this.parser = new LineParser(format);
+	}
+
+	/**
+	 * Moves to the next record
+	 * @return false if there are no more records
+	 * @throws IOException Error when the file can't be read or the line is malformed
+	 */
+	public boolean next() throws IOException {
+		while(true) {
+			int lineStart = scanner.position();
+			try {
+				if(windowEnd>windowStart && parser.parse(scanner)) {
+					index++;
+					return true;
+				}
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed line at byte "+(windowStart+lineStart)+" of "+file.getFileName()+": "+e.getMessage(), e);
+			}
+			if(windowEnd>=size) {
+				return false;
+			}
+			// map the next window, it always ends behind a line feed
+			windowStart = windowEnd;
+			windowEnd = PoseLogReader.nextLineStart(channel, Math.min(windowStart+windowSize, size), size);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd-windowStart);
+			scanner.reset(buffer, 0, buffer.limit());
+		}
+	}
+
+	/**
+	 * @return index of the current record in the file, empty lines are not counted
+	 */
+	public long index() {
+		return index;
+	}
+
+	/**
+	 * @return unix timestamp of the current record in seconds or NaN
+	 */
+	public double timestamp() {
+		return parser.timestamp;
+	}
+
+	/**
+	 * @return false if the marker was not visible for the tracking system
+	 */
+	public boolean visible() {
+		return parser.visible;
+	}
+
+	/**
+	 * @return quality value of the tracking system or NaN
+	 */
+	public double quality() {
+		return parser.quality;
+	}
+
+	/**
+	 * @param k index of the pose entry, 0..11 in row-major order
+	 * @return entry of the current pose
+	 */
+	public double pose(int k) {
+		return parser.pose[k];
+	}
+
+	/**
+	 * Copies the pose of the current record
+	 * @param out target array
+	 * @param offset index of the first entry
+	 */
+	public void copyPose(double[] out, int offset) {
+		System.arraycopy(parser.pose, 0, out, offset, BlockAssembler.POSE_SIZE);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
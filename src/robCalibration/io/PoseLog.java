@@ -0,0 +1,150 @@
+package robCalibration.io;
+
+import java.util.Arrays;
+
+import robCalibration.BlockAssembler;
+
+/**
+ * Column-wise primitive storage of pose records read from a robot or tracking log.
+ * Records without timestamp or quality (robot logs) store NaN, records of robot logs are always visible.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * poses are the upper 3x4 part of the homogeneous matrix in row-major order (12 values)
+ * unit of length: millimeter
+ * ===
+ */
+public class PoseLog {
+
+	private double[] poses;
+	private double[] timestamps;
+	private boolean[] visible;
+	private double[] quality;
+	private int size = 0;
+
+	/**
+	 * index of the first record in the complete log, used when a log is read in chunks
+	 */
+	private long firstRecord = 0;
+
+	/**
+	 * Creates an empty log
+	 * @param capacity initial number of records
+	 */
+	public PoseLog(int capacity) {
+		capacity = Math.max(capacity, 1);
+		poses = new double[capacity*BlockAssembler.POSE_SIZE];
+		timestamps = new double[capacity];
+		visible = new boolean[capacity];
+		quality = new double[capacity];
+	}
+
+	/**
+	 * Appends a record
+	 * @param timestamp unix timestamp in seconds or NaN
+	 * @param isVisible false if the marker was not visible for the tracking system
+	 * @param pose array containing the pose
+	 * @param offset index of the first entry of the pose
+	 * @param q quality value of the tracking system or NaN
+	 */
+	public void add(double timestamp, boolean isVisible, double[] pose, int offset, double q) {
+		ensureCapacity(size+1);
+		System.arraycopy(pose, offset, poses, size*BlockAssembler.POSE_SIZE, BlockAssembler.POSE_SIZE);
+		timestamps[size] = timestamp;
+		visible[size] = isVisible;
+		quality[size] = q;
+		size++;
+	}
+
+	/**
+	 * Appends all records of another log
+	 * @param other log to append
+	 */
+	public void addAll(PoseLog other) {
+		ensureCapacity(size+other.size);
+		System.arraycopy(other.poses, 0, poses, size*BlockAssembler.POSE_SIZE, other.size*BlockAssembler.POSE_SIZE);
+		System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+		System.arraycopy(other.visible, 0, visible, size, other.size);
+		System.arraycopy(other.quality, 0, quality, size, other.size);
+		size += other.size;
+	}
+
+	/**
+	 * Removes all records, the capacity is kept
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return number of records
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return index of the first record in the complete log
+	 */
+	public long getFirstRecord() {
+		return firstRecord;
+	}
+
+	void setFirstRecord(long firstRecord) {
+		this.firstRecord = firstRecord;
+	}
+
+	/**
+	 * @param i index of the record
+	 * @return unix timestamp in seconds or NaN
+	 */
+	public double getTimestamp(int i) {
+		return timestamps[i];
+	}
+
+	/**
+	 * @param i index of the record
+	 * @return false if the marker was not visible for the tracking system
+	 */
+	public boolean isVisible(int i) {
+		return visible[i];
+	}
+
+	/**
+	 * @param i index of the record
+	 * @return quality value of the tracking system or NaN
+	 */
+	public double getQuality(int i) {
+		return quality[i];
+	}
+
+	/**
+	 * Direct access to the pose storage without copying.
+	 * The pose of record i starts at index 12*i, entries behind 12*size() are undefined.
+	 * @return array containing all poses
+	 */
+	public double[] getPoses() {
+		return poses;
+	}
+
+	/**
+	 * Copies the pose of a record
+	 * @param i index of the record
+	 * @param out target array
+	 * @param offset index of the first entry in the target array
+	 */
+	public void copyPose(int i, double[] out, int offset) {
+		System.arraycopy(poses, i*BlockAssembler.POSE_SIZE, out, offset, BlockAssembler.POSE_SIZE);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity<=timestamps.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, timestamps.length+(timestamps.length>>1));
+		poses = Arrays.copyOf(poses, newCapacity*BlockAssembler.POSE_SIZE);
+		timestamps = Arrays.copyOf(timestamps, newCapacity);
+		visible = Arrays.copyOf(visible, newCapacity);
+		quality = Arrays.copyOf(quality, newCapacity);
+	}
+}
@@ -0,0 +1,23 @@
+package robCalibration.io;
+
+/**
+ * Line formats of the recorded pose logs.
+ * Every line contains the upper 3x4 part of a homogeneous matrix in row-major order.
+ */
+public enum PoseLogFormat {
+
+	/**
+	 * robot log, e.g. robot.txt: 12 values per line
+	 */
+	ROBOT,
+
+	/**
+	 * robot log with time: unix timestamp in seconds followed by 12 values per line
+	 */
+	ROBOT_TIMESTAMPED,
+
+	/**
+	 * tracking log, e.g. tracking.txt: unix timestamp, visibility flag y/n, 12 values, quality
+	 */
+	TRACKING
+}
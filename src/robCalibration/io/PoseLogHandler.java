@@ -0,0 +1,16 @@
+package robCalibration.io;
+
+/**
+ * Receives the records of a pose log chunk by chunk in file order.
+ */
+@FunctionalInterface
+public interface PoseLogHandler {
+
+	/**
+	 * Called once per chunk. The chunk object may be reused after the method returns,
+	 * implementations have to copy what they want to keep.
+	 * @param chunk records of the chunk, {@link PoseLog#getFirstRecord()} is the index of the first record in the file
+	 * @throws Exception stops reading the log
+	 */
+	void onChunk(PoseLog chunk) throws Exception;
+}
@@ -0,0 +1,275 @@
+package robCalibration.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import robCalibration.ProgressListener;
+import robCalibration.metrics.Metrics;
+import robCalibration.metrics.Phase;
+import robCalibration.metrics.PhaseTimer;
+
+/**
+ * Reads robot and tracking pose logs by memory mapping the file and parsing the numbers directly from the mapped bytes.
+ * Large files are split into chunks on line boundaries, the chunks are parsed in parallel on the common
+ * fork-join pool and handed to the caller in file order. Only a bounded number of chunks is in flight,
+ * so the memory needed does not depend on the size of the file.
+ *
+ * For sequential access record by record see {@link #open(Path, PoseLogFormat)}.
+ */
+public class PoseLogReader {
+
+	/**
+	 * default size of a chunk in bytes
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8<<20;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private ProgressListener progressListener;
+
+	/**
+	 * @param chunkSize size of a chunk in bytes, a chunk is extended to the end of its last line
+	 * @return this reader
+	 */
+	public PoseLogReader setChunkSize(int chunkSize) {
+		if(chunkSize<=0) {
+			throw new IllegalArgumentException("Chunk size has to be positive.");
+		}
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * @param parallelism number of chunks parsed at the same time
+	 * @return this reader
+	 */
+	public PoseLogReader setParallelism(int parallelism) {
+		if(parallelism<=0) {
+			throw new IllegalArgumentException("Parallelism has to be positive.");
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * @param listener receives the number of bytes parsed after every chunk, null for none
+	 * @return this reader
+	 */
+	public PoseLogReader setProgressListener(ProgressListener listener) {
+		this.progressListener = listener;
+		return this;
+	}
+
+	/**
+	 * Reads a complete log into memory
+	 * @param file log file
+	 * @param format line format of the file
+	 * @return all records of the file
+	 * @throws IOException Error when the file can't be read or contains malformed lines;
+	 *         InterruptedIOException with the interrupt flag set again if the calling thread was interrupted
+	 */
+	public PoseLog readAll(Path file, PoseLogFormat format) throws IOException {
+		PoseLog log = new PoseLog(1024);
+		try {
+			ReadStatistics statistics = read(file, format, chunk -> log.addAll(chunk));
+			System.out.println("[PoseLogReader] "+file.getFileName()+": "+statistics);
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			InterruptedIOException interrupted = new InterruptedIOException("Reading "+file.getFileName()+" was interrupted.");
+			interrupted.initCause(e);
+			throw interrupted;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+		return log;
+	}
+
+	/**
+	 * Parses a log in parallel chunks and hands the chunks to the handler in file order
+	 * @param file log file
+	 * @param format line format of the file
+	 * @param handler receives the parsed chunks on the calling thread
+	 * @return size and duration of the parsing
+	 * @throws IOException Error when the file can't be read or contains malformed lines
+	 * @throws InterruptedException The calling thread was interrupted, the chunks in flight are cancelled
+	 * @throws Exception Error thrown by the handler
+	 */
+	public ReadStatistics read(Path file, PoseLogFormat format, PoseLogHandler handler) throws Exception {
+		long start = System.nanoTime();
+		long records = 0;
+		try(PhaseTimer timer = Metrics.start(Phase.PARSING);
+				FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			List<long[]> chunks = split(channel, size);
+
+			ArrayDeque<Future<PoseLog>> pending = new ArrayDeque<Future<PoseLog>>();
+			int next = 0;
+			int delivered = 0;
+			try {
+				while(next<chunks.size() && pending.size()<2*parallelism) {
+					pending.add(submit(channel, chunks.get(next++), format, file));
+				}
+				while(!pending.isEmpty()) {
+					PoseLog chunk;
+					try {
+						chunk = pending.poll().get();
+					} catch (ExecutionException e) {
+						throw unwrap(e.getCause());
+					}
+					if(next<chunks.size()) {
+						pending.add(submit(channel, chunks.get(next++), format, file));
+					}
+					chunk.setFirstRecord(records);
+					records += chunk.size();
+					handler.onChunk(chunk);
+					if(progressListener!=null) {
+						progressListener.progress(ProgressListener.Phase.READING, chunks.get(delivered)[1], size);
+					}
+					delivered++;
+				}
+			} finally {
+				for(Future<PoseLog> future : pending) {
+					future.cancel(true);
+				}
+			}
+			timer.setMeasurements(records);
+			return new ReadStatistics(size, records, System.nanoTime()-start, chunks.size());
+		}
+	}
+
+	/**
+	 * Opens a log for sequential reading record by record
+	 * @param file log file
+	 * @param format line format of the file
+	 * @return cursor positioned before the first record
+	 * @throws IOException Error when the file can't be opened
+	 */
+	public static PoseCursor open(Path file, PoseLogFormat format) throws IOException {
+		return new PoseCursor(file, format, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Counts the records of a log without parsing them
+	 * @param file log file
+	 * @return number of lines containing anything else than blanks
+	 * @throws IOException Error when the file can't be read
+	 */
+	public static long countRecords(Path file) throws IOException {
+		long records = 0;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			boolean content = false;
+			for(long position=0;position<size;position+=DEFAULT_CHUNK_SIZE) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(DEFAULT_CHUNK_SIZE, size-position));
+				int limit = buffer.limit();
+				for(int i=0;i<limit;i++) {
+					byte c = buffer.get(i);
+					if(c=='\n') {
+						if(content) {
+							records++;
+						}
+						content = false;
+					}else if(c!=' ' && c!='\t' && c!='\r') {
+						content = true;
+					}
+				}
+			}
+			if(content) {
+				records++;
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Splits the file into chunks which start at the beginning of a line
+	 * @return list of {start, end} positions
+	 */
+	private List<long[]> split(FileChannel channel, long size) throws IOException {
+		List<long[]> chunks = new ArrayList<long[]>();
+		long start = 0;
+		while(start<size) {
+			long end = nextLineStart(channel, Math.min(start+chunkSize, size), size);
+			chunks.add(new long[] {start, end});
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return position after the first line feed at or behind position, size if there is none
+	 */
+	static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while(position<size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if(read<=0) {
+				break;
+			}
+			for(int i=0;i<read;i++) {
+				if(buffer.get(i)=='\n') {
+					return position+i+1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * The fork-join pool wraps a checked exception of a task once when it runs and again when get() rethrows it
+	 * on another thread, so the IOException of a chunk is somewhere down the cause chain.
+	 * @return first IOException in the cause chain of a failed chunk, the failure wrapped in one otherwise
+	 */
+	static IOException unwrap(Throwable failure) {
+		for(Throwable cause=failure;cause!=null;cause=cause.getCause()) {
+			if(cause instanceof IOException) {
+				return (IOException) cause;
+			}
+		}
+		return new IOException(failure);
+	}
+
+	private Future<PoseLog> submit(FileChannel channel, long[] chunk, PoseLogFormat format, Path file) {
+		return ForkJoinPool.commonPool().submit(() -> parseChunk(channel, chunk[0], chunk[1], format, file));
+	}
+
+	/**
+	 * Maps and parses a single chunk
+	 */
+	static PoseLog parseChunk(FileChannel channel, long start, long end, PoseLogFormat format, Path file) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end-start);
+		// initial capacity only, a line of robot.txt has about 100 bytes
+		PoseLog log = new PoseLog((int) Math.min((end-start)/64+1, 1<<20));
+		AsciiScanner scanner = new AsciiScanner();
+		scanner.reset(buffer, 0, buffer.limit());
+		LineParser parser = new LineParser(format);
+		int lineStart = 0;
+		try {
+			while(true) {
+				lineStart = scanner.position();
+				if(!parser.parse(scanner)) {
+					break;
+				}
+				log.add(parser.timestamp, parser.visible, parser.pose, 0, parser.quality);
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed line at byte "+(start+lineStart)+" of "+file.getFileName()+": "+e.getMessage(), e);
+		}
+		return log;
+	}
+}
@@ -0,0 +1,76 @@
+package robCalibration.io;
+
+import java.nio.ByteBuffer;
+
+import robCalibration.BlockAssembler;
+
+/**
+ * Parses pose messages received over the network. A message is a line in one of the log formats,
+ * so a stream can be recorded and replayed as a log file. The fields are overwritten by every call of {@link #next()}.
+ */
+public class PoseMessageParser {
+
+	private final AsciiScanner scanner = new AsciiScanner();
+	private final LineParser parser;
+
+	/**
+	 * @param format line format of the messages, {@link PoseLogFormat#ROBOT_TIMESTAMPED} or {@link PoseLogFormat#TRACKING}
+	 */
+	public PoseMessageParser(PoseLogFormat format) {
+		this.parser = new LineParser(format);
+	}
+
+	/**
+	 * Sets the bytes to parse, e.g. the content of a datagram
+	 * @param buffer buffer containing the messages, read with absolute access only
+	 * @param position index of the first byte
+	 * @param limit index after the last byte
+	 */
+	public void reset(ByteBuffer buffer, int position, int limit) {
+		scanner.reset(buffer, position, limit);
+	}
+
+	/**
+	 * Parses the next message
+	 * @return false if there are no more messages
+	 * @throws NumberFormatException if the message is malformed, the parser continues with the next line
+	 */
+	public boolean next() {
+		try {
+			return parser.parse(scanner);
+		} catch (NumberFormatException e) {
+			scanner.skipLine();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return index of the next byte to parse
+	 */
+	public int position() {
+		return scanner.position();
+	}
+
+	/**
+	 * @return timestamp of the current message in seconds
+	 */
+	public double timestamp() {
+		return parser.timestamp;
+	}
+
+	/**
+	 * @return false if the marker was not visible for the tracking system
+	 */
+	public boolean visible() {
+		return parser.visible;
+	}
+
+	/**
+	 * Copies the pose of the current message
+	 * @param out target array
+	 * @param offset index of the first entry
+	 */
+	public void copyPose(double[] out, int offset) {
+		System.arraycopy(parser.pose, 0, out, offset, BlockAssembler.POSE_SIZE);
+	}
+}
@@ -0,0 +1,17 @@
+package robCalibration.io;
+
+/**
+ * Receives aligned measurement pairs, e.g. from {@link TimestampJoin}.
+ */
+@FunctionalInterface
+public interface PosePairHandler {
+
+	/**
+	 * Called once per pair. The arrays are reused for the next pair, implementations have to copy what they want to keep.
+	 * @param timestamp unix timestamp of the robot pose in seconds
+	 * @param robot robot pose Mi, 12 entries in row-major order
+	 * @param tracker tracker pose Ni at the time of the robot pose, 12 entries in row-major order
+	 * @throws Exception stops the join
+	 */
+	void onPair(double timestamp, double[] robot, double[] tracker) throws Exception;
+}
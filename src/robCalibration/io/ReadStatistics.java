@@ -0,0 +1,68 @@
+package robCalibration.io;
+
+import java.util.Locale;
+
+/**
+ * Size and duration of reading a pose log
+ */
+public class ReadStatistics {
+
+	private final long bytes;
+	private final long records;
+	private final long nanos;
+	private final int chunks;
+
+	/**
+	 * @param bytes number of bytes parsed
+	 * @param records number of records parsed
+	 * @param nanos duration in nanoseconds
+	 * @param chunks number of chunks the file was split into
+	 */
+	public ReadStatistics(long bytes, long records, long nanos, int chunks) {
+		this.bytes = bytes;
+		this.records = records;
+		this.nanos = nanos;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * @return number of bytes parsed
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return number of records parsed
+	 */
+	public long getRecords() {
+		return records;
+	}
+
+	/**
+	 * @return duration in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return number of chunks the file was split into
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * @return throughput in megabytes (10^6 bytes) per second
+	 */
+	public double getMegabytesPerSecond() {
+		return nanos>0 ? bytes*1e3/nanos : 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%d records, %.1f MB in %.1f ms (%.1f MB/s, %d chunks)",
+				records, bytes/1e6, nanos/1e6, getMegabytesPerSecond(), chunks);
+	}
+}
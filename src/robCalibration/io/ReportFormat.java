@@ -0,0 +1,39 @@
+package robCalibration.io;
+
+/**
+ * Formats of the {@link ReportWriter}. Every format has one record per matrix, timing, residual row and estimate,
+ * the records are written in the order of the calls.
+ * <pre>
+ *   TEXT        matrix     name on its own line, then the rows with aligned columns; no name line if the name is null
+ *               timing     name: 12.345 ms
+ *               residual   pair, translation and rotation separated by tabs, after a header line
+ *               estimate   timestamp, pairs, weight, residual, X and Y separated by tabs, after a header line
+ *   CSV         matrix     matrix,name,rows,columns,entries in row-major order
+ *               timing     timing,name,nanoseconds
+ *               residual   residual,pair,translation,rotation; NaN is an empty field
+ *               estimate   estimate,timestamp,pairs,weight,residual,X,Y
+ *   JSON_LINES  matrix     {"matrix":"X","rows":[[...],...]}
+ *               timing     {"timing":"solve","nanos":123}
+ *               residual   {"residual":7,"translationMm":0.12,"rotationDeg":0.034}; NaN is null
+ *               estimate   {"estimate":1.7e9,"pairs":500,"weight":99.9,"residual":0.5,"x":[...],"y":[...]}
+ *   BINARY      header     magic "QR24REPT", int version
+ *               matrix     byte 1, name, int rows, int columns, doubles in row-major order
+ *               timing     byte 2, name, long nanoseconds
+ *               residual   byte 3, long pair, double translation, double rotation
+ *               estimate   byte 4, double timestamp, long pairs, double weight, double residual, 12 doubles X, 12 doubles Y
+ * </pre>
+ * X and Y of an estimate are the upper 3x4 part in row-major order, the timestamp is a unix timestamp in seconds.
+ * Names in the binary format are an unsigned short length followed by the UTF-8 bytes, all numbers are little-endian.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of angles: degree
+ * ===
+ */
+public enum ReportFormat {
+	TEXT,
+	CSV,
+	JSON_LINES,
+	BINARY
+}
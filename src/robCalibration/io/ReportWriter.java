@@ -0,0 +1,585 @@
+package robCalibration.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.BlockAssembler;
+import robCalibration.RecursiveEstimate;
+import robCalibration.ResidualReport;
+import robCalibration.metrics.Metrics;
+import robCalibration.metrics.Phase;
+import robCalibration.metrics.PhaseTimer;
+
+/**
+ * Streams calibration results to a channel in one of the {@link ReportFormat}s: matrices like X and Y, timings
+ * and the residuals of every measurement pair. The records are encoded directly into a single write buffer
+ * that is handed to the channel whenever it is full, so the memory doesn't grow with the size of the report.
+ * A {@link robCalibration.RecursiveCalibration} writes its time series of estimates with {@link #writeEstimate(RecursiveEstimate)}.
+ * The console and the GUI render their text through the same writer, see {@link #console()} and {@link #toText(RealMatrix, int)}.
+ * A writer isn't thread-safe.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * unit of length: millimeter
+ * unit of angles: degree
+ * ===
+ */
+public class ReportWriter implements Closeable {
+
+	static final byte[] MAGIC = "QR24REPT".getBytes(StandardCharsets.US_ASCII);
+	static final int VERSION = 1;
+
+	/**
+	 * record types of the binary format
+	 */
+	static final byte MATRIX = 1;
+	static final byte TIMING = 2;
+	static final byte RESIDUAL = 3;
+	static final byte ESTIMATE = 4;
+
+	/**
+	 * size of the write buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 64<<10;
+
+	private final WritableByteChannel channel;
+	private final ReportFormat format;
+	private final boolean closeChannel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final byte[] digits = new byte[20];
+	private final DecimalFormat timingFormat = decimalFormat(3);
+	private DecimalFormat valueFormat;
+	private boolean residualHeader = false;
+	private boolean estimateHeader = false;
+
+	/**
+	 * Creates a writer on an open channel, the channel isn't closed by {@link #close()}
+	 * @param channel target of the report
+	 * @param format format of the report
+	 * @throws IOException Error when the header of the binary format can't be written
+	 */
+	public ReportWriter(WritableByteChannel channel, ReportFormat format) throws IOException {
+		this(channel, format, false);
+	}
+
+	private ReportWriter(WritableByteChannel channel, ReportFormat format, boolean closeChannel) throws IOException {
+		this.channel = channel;
+		this.format = format;
+		this.closeChannel = closeChannel;
+		if(format==ReportFormat.BINARY) {
+			buffer.put(MAGIC);
+			buffer.putInt(VERSION);
+		}
+	}
+
+	/**
+	 * Creates a report file
+	 * @param path file to create, an existing file is replaced
+	 * @param format format of the report
+	 * @return writer that closes the file when it is closed
+	 * @throws IOException Error when the file can't be created
+	 */
+	public static ReportWriter open(Path path, ReportFormat format) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			return new ReportWriter(channel, format, true);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return text writer to System.out, closing it only flushes
+	 */
+	public static ReportWriter console() {
+		try {
+			return new ReportWriter(Channels.newChannel(System.out), ReportFormat.TEXT);
+		} catch (IOException e) {
+			// only the binary format writes in the constructor
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Renders a matrix as text, e.g. for the GUI
+	 * @param matrix matrix to render
+	 * @param decimals maximal number of fractional digits, -1 for all digits needed to restore the value
+	 * @return the rows of the matrix with aligned columns, each row ends with a line break
+	 */
+	public static String toText(RealMatrix matrix, int decimals) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try(ReportWriter writer = new ReportWriter(Channels.newChannel(out), ReportFormat.TEXT).setDecimals(decimals)) {
+			writer.writeMatrix(null, matrix);
+		} catch (IOException e) {
+			// a byte array doesn't fail
+			throw new UncheckedIOException(e);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param decimals maximal number of fractional digits of the text format, -1 for all digits needed to restore the value (default).
+	 *        The other formats always write all digits.
+	 * @return this writer
+	 */
+	public ReportWriter setDecimals(int decimals) {
+		if(decimals<-1) {
+			throw new IllegalArgumentException("Number of decimals has to be at least 0, or -1 for all digits.");
+		}
+		this.valueFormat = decimals<0 ? null : decimalFormat(decimals);
+		return this;
+	}
+
+	/**
+	 * Writes a matrix, e.g. X or Y
+	 * @param name name of the matrix, may be null for the text format only
+	 * @param matrix matrix to write
+	 * @throws IOException Error when the channel can't be written
+	 */
+	public void writeMatrix(String name, RealMatrix matrix) throws IOException {
+		if(name==null && format!=ReportFormat.TEXT) {
+			throw new IllegalArgumentException("Matrices need a name in the format "+format+".");
+		}
+		int rows = matrix.getRowDimension();
+		int columns = matrix.getColumnDimension();
+		switch(format) {
+		case TEXT:
+			if(name!=null) {
+				text(name);
+				ascii("\n");
+			}
+			String[] values = new String[rows*columns];
+			int[] widths = new int[columns];
+			for(int row=0;row<rows;row++) {
+				for(int col=0;col<columns;col++) {
+					values[row*columns+col] = textValue(matrix.getEntry(row, col));
+					widths[col] = Math.max(widths[col], values[row*columns+col].length());
+				}
+			}
+			for(int row=0;row<rows;row++) {
+				for(int col=0;col<columns;col++) {
+					String value = values[row*columns+col];
+					if(col>0) {
+						ascii(" ");
+					}
+					for(int pad=value.length();pad<widths[col];pad++) {
+						ascii(" ");
+					}
+					ascii(value);
+				}
+				ascii("\n");
+			}
+			break;
+		case CSV:
+			ascii("matrix,");
+			csvString(name);
+			ascii(",");
+			integer(rows);
+			ascii(",");
+			integer(columns);
+			for(int row=0;row<rows;row++) {
+				for(int col=0;col<columns;col++) {
+					ascii(",");
+					csvNumber(matrix.getEntry(row, col));
+				}
+			}
+			ascii("\n");
+			break;
+		case JSON_LINES:
+			ascii("{\"matrix\":");
+			jsonString(name);
+			ascii(",\"rows\":[");
+			for(int row=0;row<rows;row++) {
+				ascii(row>0 ? ",[" : "[");
+				for(int col=0;col<columns;col++) {
+					if(col>0) {
+						ascii(",");
+					}
+					jsonNumber(matrix.getEntry(row, col));
+				}
+				ascii("]");
+			}
+			ascii("]}\n");
+			break;
+		case BINARY:
+			ensure(1);
+			buffer.put(MATRIX);
+			binaryName(name);
+			ensure(8);
+			buffer.putInt(rows);
+			buffer.putInt(columns);
+			for(int row=0;row<rows;row++) {
+				for(int col=0;col<columns;col++) {
+					ensure(8);
+					buffer.putDouble(matrix.getEntry(row, col));
+				}
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Writes the duration of a step
+	 * @param name name of the step, e.g. "solve"
+	 * @param nanos duration in nanoseconds
+	 * @throws IOException Error when the channel can't be written
+	 */
+	public void writeTiming(String name, long nanos) throws IOException {
+		switch(format) {
+		case TEXT:
+			text(name);
+			ascii(": ");
+			ascii(timingFormat.format(nanos/1e6));
+			ascii(" ms\n");
+			break;
+		case CSV:
+			ascii("timing,");
+			csvString(name);
+			ascii(",");
+			integer(nanos);
+			ascii("\n");
+			break;
+		case JSON_LINES:
+			ascii("{\"timing\":");
+			jsonString(name);
+			ascii(",\"nanos\":");
+			integer(nanos);
+			ascii("}\n");
+			break;
+		case BINARY:
+			ensure(1);
+			buffer.put(TIMING);
+			binaryName(name);
+			ensure(8);
+			buffer.putLong(nanos);
+			break;
+		}
+	}
+
+	/**
+	 * Writes the residual of a single measurement pair
+	 * @param pair index of the measurement pair
+	 * @param translation distance between the translations of Mi*X and Y*Ni in mm, NaN if unknown
+	 * @param rotation angle of the rotation between Mi*X and Y*Ni in degrees, NaN if unknown
+	 * @throws IOException Error when the channel can't be written
+	 */
+	public void writeResidual(long pair, double translation, double rotation) throws IOException {
+		switch(format) {
+		case TEXT:
+			if(!residualHeader) {
+				ascii("pair\ttranslation [mm]\trotation [deg]\n");
+				residualHeader = true;
+			}
+			integer(pair);
+			ascii("\t");
+			ascii(textValue(translation));
+			ascii("\t");
+			ascii(textValue(rotation));
+			ascii("\n");
+			break;
+		case CSV:
+			ascii("residual,");
+			integer(pair);
+			ascii(",");
+			csvNumber(translation);
+			ascii(",");
+			csvNumber(rotation);
+			ascii("\n");
+			break;
+		case JSON_LINES:
+			ascii("{\"residual\":");
+			integer(pair);
+			ascii(",\"translationMm\":");
+			jsonNumber(translation);
+			ascii(",\"rotationDeg\":");
+			jsonNumber(rotation);
+			ascii("}\n");
+			break;
+		case BINARY:
+			ensure(25);
+			buffer.put(RESIDUAL);
+			buffer.putLong(pair);
+			buffer.putDouble(translation);
+			buffer.putDouble(rotation);
+			break;
+		}
+	}
+
+	/**
+	 * Writes the residuals of all measurement pairs of a report, in the order of the pairs
+	 * @param report residuals of a {@link robCalibration.ResidualEngine}
+	 * @throws IOException Error when the channel can't be written
+	 */
+	public void writeResiduals(ResidualReport report) throws IOException {
+		PhaseTimer timer = Metrics.start(Phase.OUTPUT).setMeasurements(report.getSize());
+		for(int i=0;i<report.getSize();i++) {
+			writeResidual(i, report.getTranslation(i), report.getRotation(i));
+		}
+		timer.close();
+	}
+
+	/**
+	 * Writes an estimate of a time series, X and Y as the upper 3x4 part in row-major order
+	 * @param estimate estimate of a {@link robCalibration.RecursiveCalibration}
+	 * @throws IOException Error when the channel can't be written
+	 */
+	public void writeEstimate(RecursiveEstimate estimate) throws IOException {
+		RealMatrix x = estimate.getX();
+		RealMatrix y = estimate.getY();
+		switch(format) {
+		case TEXT:
+			if(!estimateHeader) {
+				ascii("timestamp [s]\tpairs\tweight\tresidual\tX (3x4)\tY (3x4)\n");
+				estimateHeader = true;
+			}
+			ascii(timingFormat.format(estimate.getTimestamp()));
+			ascii("\t");
+			integer(estimate.getMeasurements());
+			ascii("\t");
+			ascii(textValue(estimate.getWeight()));
+			ascii("\t");
+			ascii(textValue(estimate.getResidualNorm()));
+			for(RealMatrix pose : new RealMatrix[] {x, y}) {
+				for(int row=0;row<3;row++) {
+					for(int col=0;col<4;col++) {
+						ascii("\t");
+						ascii(textValue(pose.getEntry(row, col)));
+					}
+				}
+			}
+			ascii("\n");
+			break;
+		case CSV:
+			ascii("estimate,");
+			csvNumber(estimate.getTimestamp());
+			ascii(",");
+			integer(estimate.getMeasurements());
+			ascii(",");
+			csvNumber(estimate.getWeight());
+			ascii(",");
+			csvNumber(estimate.getResidualNorm());
+			for(RealMatrix pose : new RealMatrix[] {x, y}) {
+				for(int row=0;row<3;row++) {
+					for(int col=0;col<4;col++) {
+						ascii(",");
+						csvNumber(pose.getEntry(row, col));
+					}
+				}
+			}
+			ascii("\n");
+			break;
+		case JSON_LINES:
+			ascii("{\"estimate\":");
+			jsonNumber(estimate.getTimestamp());
+			ascii(",\"pairs\":");
+			integer(estimate.getMeasurements());
+			ascii(",\"weight\":");
+			jsonNumber(estimate.getWeight());
+			ascii(",\"residual\":");
+			jsonNumber(estimate.getResidualNorm());
+			ascii(",\"x\":[");
+			jsonPose(x);
+			ascii("],\"y\":[");
+			jsonPose(y);
+			ascii("]}\n");
+			break;
+		case BINARY:
+			ensure(1+8*4+2*8*BlockAssembler.POSE_SIZE);
+			buffer.put(ESTIMATE);
+			buffer.putDouble(estimate.getTimestamp());
+			buffer.putLong(estimate.getMeasurements());
+			buffer.putDouble(estimate.getWeight());
+			buffer.putDouble(estimate.getResidualNorm());
+			for(RealMatrix pose : new RealMatrix[] {x, y}) {
+				for(int row=0;row<3;row++) {
+					for(int col=0;col<4;col++) {
+						buffer.putDouble(pose.getEntry(row, col));
+					}
+				}
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Hands all buffered records to the channel
+	 * @throws IOException Error when the channel can't be written
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Flushes the records, the channel is closed only if the writer was created by {@link #open(Path, ReportFormat)}
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			if(closeChannel) {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * flushes if less than count bytes are free
+	 */
+	private void ensure(int count) throws IOException {
+		if(buffer.remaining()<count) {
+			flush();
+		}
+	}
+
+	/**
+	 * writes a string of ASCII characters, e.g. numbers and separators
+	 */
+	private void ascii(String value) throws IOException {
+		for(int i=0;i<value.length();i++) {
+			if(!buffer.hasRemaining()) {
+				flush();
+			}
+			buffer.put((byte) value.charAt(i));
+		}
+	}
+
+	/**
+	 * writes a string of any characters as UTF-8
+	 */
+	private void text(String value) throws IOException {
+		bytes(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void bytes(byte[] value) throws IOException {
+		for(int offset=0;offset<value.length;) {
+			if(!buffer.hasRemaining()) {
+				flush();
+			}
+			int count = Math.min(buffer.remaining(), value.length-offset);
+			buffer.put(value, offset, count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * writes the decimal digits of a number without creating a string
+	 */
+	private void integer(long value) throws IOException {
+		if(value==Long.MIN_VALUE) {
+			ascii(Long.toString(value));
+			return;
+		}
+		ensure(digits.length+1);
+		if(value<0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+		int count = 0;
+		do {
+			digits[count++] = (byte) ('0'+value%10);
+			value /= 10;
+		}while(value>0);
+		while(count>0) {
+			buffer.put(digits[--count]);
+		}
+	}
+
+	private String textValue(double value) {
+		return valueFormat!=null ? valueFormat.format(value) : Double.toString(value);
+	}
+
+	/**
+	 * CSV has no NaN, it is written as an empty field
+	 */
+	private void csvNumber(double value) throws IOException {
+		if(!Double.isNaN(value)) {
+			ascii(Double.toString(value));
+		}
+	}
+
+	private void csvString(String value) throws IOException {
+		if(value.indexOf(',')<0 && value.indexOf('"')<0 && value.indexOf('\n')<0 && value.indexOf('\r')<0) {
+			text(value);
+			return;
+		}
+		ascii("\"");
+		text(value.replace("\"", "\"\""));
+		ascii("\"");
+	}
+
+	/**
+	 * JSON has no NaN or infinity, they're written as null
+	 */
+	private void jsonNumber(double value) throws IOException {
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			ascii("null");
+		}else {
+			ascii(Double.toString(value));
+		}
+	}
+
+	/**
+	 * the upper 3x4 part of a pose in row-major order, separated by commas
+	 */
+	private void jsonPose(RealMatrix pose) throws IOException {
+		for(int row=0;row<3;row++) {
+			for(int col=0;col<4;col++) {
+				if(row>0 || col>0) {
+					ascii(",");
+				}
+				jsonNumber(pose.getEntry(row, col));
+			}
+		}
+	}
+
+	private void jsonString(String value) throws IOException {
+		ascii("\"");
+		int start = 0;
+		for(int i=0;i<value.length();i++) {
+			char c = value.charAt(i);
+			if(c=='"' || c=='\\' || c<0x20) {
+				text(value.substring(start, i));
+				ascii(c=='"' ? "\\\"" : c=='\\' ? "\\\\" : String.format("\\u%04x", (int) c));
+				start = i+1;
+			}
+		}
+		text(value.substring(start));
+		ascii("\"");
+	}
+
+	private void binaryName(String name) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length>0xFFFF) {
+			throw new IllegalArgumentException("Name is too long for the binary format, "+bytes.length+" bytes.");
+		}
+		ensure(2);
+		buffer.putShort((short) bytes.length);
+		bytes(bytes);
+	}
+
+	private static DecimalFormat decimalFormat(int decimals) {
+		return new DecimalFormat(decimals>0 ? "0."+"#".repeat(decimals) : "0", DecimalFormatSymbols.getInstance(Locale.ROOT));
+	}
+}
@@ -0,0 +1,180 @@
+package robCalibration.io;
+
+import java.nio.file.Path;
+
+import robCalibration.BlockAssembler;
+import robCalibration.Rotations;
+import robCalibration.metrics.Metrics;
+import robCalibration.metrics.Phase;
+import robCalibration.metrics.PhaseTimer;
+
+/**
+ * Pairs robot poses with tracker samples by their timestamps instead of their line index.
+ * Both logs are streamed once in a sort-merge fashion: for every robot pose only the last visible tracker sample
+ * at or before its timestamp and the first visible one after it are kept, so the join runs in O(n) time
+ * with O(1) extra memory, no matter how many tracker samples were recorded per robot pose.
+ *
+ * A robot pose is matched to the nearest visible tracker sample or, in {@link Mode#INTERPOLATE}, to the pose
+ * interpolated between the samples before and after it. Samples farther away than the time window are not used.
+ * Tracker samples with the visibility flag n are rejected and never used for matching or interpolation.
+ */
+public class TimestampJoin {
+
+	/**
+	 * how a tracker pose is assigned to a robot pose
+	 */
+	public enum Mode {
+		/**
+		 * use the visible tracker sample closest in time
+		 */
+		NEAREST,
+		/**
+		 * interpolate between the visible samples before and after the robot pose, nearest if only one is in the window
+		 */
+		INTERPOLATE
+	}
+
+	private Mode mode = Mode.NEAREST;
+	private double window = 0.02;
+	private double timeOffset = 0;
+
+	/**
+	 * @param mode how a tracker pose is assigned to a robot pose
+	 * @return this join
+	 */
+	public TimestampJoin setMode(Mode mode) {
+		this.mode = mode;
+		return this;
+	}
+
+	/**
+	 * @param seconds largest accepted time difference between a robot pose and a tracker sample
+	 * @return this join
+	 */
+	public TimestampJoin setWindow(double seconds) {
+		if(!(seconds>=0)) {
+			throw new IllegalArgumentException("Time window must not be negative.");
+		}
+		this.window = seconds;
+		return this;
+	}
+
+	/**
+	 * @param seconds offset added to every robot timestamp, compensates unsynchronized clocks
+	 * @return this join
+	 */
+	public TimestampJoin setTimeOffset(double seconds) {
+		this.timeOffset = seconds;
+		return this;
+	}
+
+	/**
+	 * Joins two log files
+	 * @param robotLog robot log in the format {@link PoseLogFormat#ROBOT_TIMESTAMPED}
+	 * @param trackingLog tracking log in the format {@link PoseLogFormat#TRACKING}
+	 * @param handler receives the aligned pairs in the order of the robot log
+	 * @return counters of the join
+	 * @throws Exception Error when a log can't be read or thrown by the handler
+	 */
+	public JoinStatistics join(Path robotLog, Path trackingLog, PosePairHandler handler) throws Exception {
+		// the logs are parsed while they're joined, both is measured as matching
+		try(PhaseTimer timer = Metrics.start(Phase.MATCHING);
+				PoseCursor robot = PoseLogReader.open(robotLog, PoseLogFormat.ROBOT_TIMESTAMPED);
+				PoseCursor tracker = PoseLogReader.open(trackingLog, PoseLogFormat.TRACKING)) {
+			JoinStatistics statistics = join(robot, tracker, handler);
+			timer.setMeasurements(statistics.getMatched());
+			System.out.println("[TimestampJoin] "+statistics);
+			return statistics;
+		}
+	}
+
+	/**
+	 * Joins two streams of records, both have to be ordered by time
+	 * @param robot cursor over the robot poses, the timestamps must not be NaN
+	 * @param tracker cursor over the tracker samples
+	 * @param handler receives the aligned pairs in the order of the robot log
+	 * @return counters of the join
+	 * @throws Exception Error when a log can't be read or thrown by the handler
+	 */
+	public JoinStatistics join(PoseCursor robot, PoseCursor tracker, PosePairHandler handler) throws Exception {
+		JoinStatistics statistics = new JoinStatistics();
+		double[] robotPose = new double[BlockAssembler.POSE_SIZE];
+		double[] result = new double[BlockAssembler.POSE_SIZE];
+		double[] scratch = new double[8];
+
+		// visible tracker samples before (or at) and after the current robot pose
+		double[] before = new double[BlockAssembler.POSE_SIZE];
+		double[] after = new double[BlockAssembler.POSE_SIZE];
+		double beforeTime = Double.NaN;
+		double afterTime = Double.NaN;
+		double lastTrackerTime = Double.NEGATIVE_INFINITY;
+		double lastRobotTime = Double.NEGATIVE_INFINITY;
+		boolean trackerLeft = true;
+
+		while(robot.next()) {
+			statistics.robotRecords++;
+			double time = robot.timestamp()+timeOffset;
+			if(!(time>=lastRobotTime)) {
+				statistics.outOfOrder++;
+				continue;
+			}
+			lastRobotTime = time;
+
+			// advance the tracker until the sample after the robot pose is known or the log ends
+			while(trackerLeft && !(afterTime>time)) {
+				if(!Double.isNaN(afterTime)) {
+					double[] swap = before;
+					before = after;
+					after = swap;
+					beforeTime = afterTime;
+					afterTime = Double.NaN;
+				}
+				while(true) {
+					if(!tracker.next()) {
+						trackerLeft = false;
+						break;
+					}
+					statistics.trackerRecords++;
+					double t = tracker.timestamp();
+					if(!(t>=lastTrackerTime)) {
+						statistics.outOfOrder++;
+						continue;
+					}
+					lastTrackerTime = t;
+					if(!tracker.visible()) {
+						statistics.invisible++;
+						continue;
+					}
+					tracker.copyPose(after, 0);
+					afterTime = t;
+					break;
+				}
+			}
+			double dtBefore = Double.isNaN(beforeTime) ? Double.POSITIVE_INFINITY : time-beforeTime;
+			double dtAfter = Double.isNaN(afterTime) ? Double.POSITIVE_INFINITY : afterTime-time;
+			boolean useBefore = dtBefore<=window;
+			boolean useAfter = dtAfter<=window;
+			double dt;
+			if(mode==Mode.INTERPOLATE && useBefore && useAfter && dtBefore>0) {
+				Rotations.interpolate(before, 0, after, 0, dtBefore/(dtBefore+dtAfter), result, 0, scratch);
+				statistics.interpolated++;
+				dt = Math.min(dtBefore, dtAfter);
+			}else if(useBefore && (!useAfter || dtBefore<=dtAfter)) {
+				System.arraycopy(before, 0, result, 0, BlockAssembler.POSE_SIZE);
+				dt = dtBefore;
+			}else if(useAfter) {
+				System.arraycopy(after, 0, result, 0, BlockAssembler.POSE_SIZE);
+				dt = dtAfter;
+			}else {
+				statistics.unmatched++;
+				continue;
+			}
+			statistics.matched++;
+			statistics.sumTimeDifference += dt;
+			statistics.maxTimeDifference = Math.max(statistics.maxTimeDifference, dt);
+			robot.copyPose(robotPose, 0);
+			handler.onPair(time, robotPose, result);
+		}
+		return statistics;
+	}
+}
@@ -0,0 +1,356 @@
+package robCalibration.live;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.BlockAssembler;
+import robCalibration.DegeneracyMonitor;
+import robCalibration.DegeneracyReport;
+import robCalibration.QR24;
+import robCalibration.ReducedSolver;
+import robCalibration.Rotations;
+import robCalibration.io.TimestampJoin;
+
+/**
+ * Calibrates while the robot moves: robot poses and tracker samples are received on two local endpoints,
+ * paired by their timestamps and folded into a running {@link ReducedSolver}. The current X and Y are published
+ * to a listener at a fixed rate, together with the verdict of a {@link DegeneracyMonitor} on the pairs, which tells
+ * when enough poses have been collected.
+ *
+ * Three kinds of threads are involved and none of them is the thread of the user interface:
+ * <pre>
+ *   receivers (one per endpoint)  parse messages  -&gt;  bounded queue
+ *   pairing thread                matches every robot pose with the tracker samples around it, updates the solver
+ *   publishing thread             solves the 12x12 system at the publish rate and calls the listener
+ * </pre>
+ * When the queue is full, UDP receivers drop samples and TCP receivers stop reading until there is space again
+ * (or drop as well, see {@link #setDropWhenFull(boolean)}). Dropped samples are counted.
+ * Pairing works like {@link TimestampJoin}: the visible tracker samples before and after a robot pose are taken
+ * from a history of the last {@value #HISTORY} samples, the robot pose waits until a sample after it has arrived.
+ * A visible tracker sample older than the newest one in the history can't be paired and is counted as out of order.
+ *
+ * ===
+ * CONVENTIONS for this class:
+ * timestamps in seconds, robot and tracker clocks have to be synchronized
+ * unit of length: millimeter
+ * ===
+ */
+public class LiveCalibration implements AutoCloseable {
+
+	/**
+	 * number of tracker samples kept for pairing, a power of two (about one second at 1 kHz)
+	 */
+	static final int HISTORY = 1024;
+	private static final int MASK = HISTORY-1;
+
+	/**
+	 * largest number of robot poses waiting for a tracker sample after them
+	 */
+	private static final int MAX_PENDING = 1024;
+
+	private final LiveEstimateListener listener;
+	private int queueCapacity = 8192;
+	private double window = 0.02;
+	private TimestampJoin.Mode mode = TimestampJoin.Mode.NEAREST;
+	private double publishRate = 2;
+	private boolean dropWhenFull = false;
+
+	/**
+	 * running calibration and its degeneracy monitor, both guarded by the solver
+	 */
+	private final ReducedSolver solver = new ReducedSolver();
+	private final DegeneracyMonitor monitor = new DegeneracyMonitor();
+	private final QR24 calibration = new QR24();
+
+	private BlockingQueue<PoseSample> queue;
+	private PoseReceiver robotReceiver;
+	private PoseReceiver trackerReceiver;
+	private Thread pairing;
+	private ScheduledExecutorService publisher;
+
+	/**
+	 * counters of the pairing thread
+	 */
+	private volatile long invisible = 0;
+	private volatile long outOfOrder = 0;
+	private volatile long unmatched = 0;
+
+	/**
+	 * state of the pairing thread: ring of the visible tracker samples and robot poses waiting for them
+	 */
+	private final double[] historyTime = new double[HISTORY];
+	private final double[] historyPose = new double[HISTORY*BlockAssembler.POSE_SIZE];
+	private long historyCount = 0;
+	private final ArrayDeque<PoseSample> pending = new ArrayDeque<PoseSample>();
+	private final double[] matched = new double[BlockAssembler.POSE_SIZE];
+	private final double[] scratch = new double[8];
+
+	/**
+	 * state of the publishing thread
+	 */
+	private final double[] w = new double[BlockAssembler.COLUMNS];
+	private long published = -1;
+	private DegeneracyReport.Status reported;
+
+	/**
+	 * @param listener receives the estimates on the publishing thread
+	 */
+	public LiveCalibration(LiveEstimateListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param capacity number of samples the queue between the receivers and the pairing can hold
+	 * @return this calibration
+	 */
+	public LiveCalibration setQueueCapacity(int capacity) {
+		if(capacity<1) {
+			throw new IllegalArgumentException("Queue capacity has to be positive.");
+		}
+		this.queueCapacity = capacity;
+		return this;
+	}
+
+	/**
+	 * @param seconds largest accepted time difference between a robot pose and a tracker sample
+	 * @return this calibration
+	 */
+	public LiveCalibration setWindow(double seconds) {
+		if(!(seconds>=0)) {
+			throw new IllegalArgumentException("Time window must not be negative.");
+		}
+		this.window = seconds;
+		return this;
+	}
+
+	/**
+	 * @param mode how a tracker pose is assigned to a robot pose
+	 * @return this calibration
+	 */
+	public LiveCalibration setMode(TimestampJoin.Mode mode) {
+		this.mode = mode;
+		return this;
+	}
+
+	/**
+	 * @param hertz number of estimates published per second
+	 * @return this calibration
+	 */
+	public LiveCalibration setPublishRate(double hertz) {
+		if(!(hertz>0)) {
+			throw new IllegalArgumentException("Publish rate has to be positive.");
+		}
+		this.publishRate = hertz;
+		return this;
+	}
+
+	/**
+	 * @param drop true to drop samples of TCP senders when the queue is full instead of slowing them down
+	 * @return this calibration
+	 */
+	public LiveCalibration setDropWhenFull(boolean drop) {
+		this.dropWhenFull = drop;
+		return this;
+	}
+
+	/**
+	 * Opens the endpoints on the loopback interface and starts the threads
+	 * @param transport protocol of both endpoints
+	 * @param robotPort port receiving the robot poses, format {@link robCalibration.io.PoseLogFormat#ROBOT_TIMESTAMPED}, 0 for any free port
+	 * @param trackerPort port receiving the tracker samples, format {@link robCalibration.io.PoseLogFormat#TRACKING}, 0 for any free port
+	 * @throws IOException Error when a port can't be bound
+	 */
+	public synchronized void start(PoseReceiver.Transport transport, int robotPort, int trackerPort) throws IOException {
+		if(pairing!=null) {
+			throw new IllegalStateException("Live calibration is already running.");
+		}
+		queue = new ArrayBlockingQueue<PoseSample>(queueCapacity);
+		robotReceiver = PoseReceiver.open(transport, robotPort, true, queue, !dropWhenFull);
+		try {
+			trackerReceiver = PoseReceiver.open(transport, trackerPort, false, queue, !dropWhenFull);
+		} catch (IOException e) {
+			robotReceiver.close();
+			throw e;
+		}
+		pairing = new Thread(this::pair, "live-calibration-pairing");
+		pairing.setDaemon(true);
+		pairing.start();
+		publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "live-calibration-publisher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = (long) (1e9/publishRate);
+		publisher.scheduleAtFixedRate(this::publish, period, period, TimeUnit.NANOSECONDS);
+		System.out.println("[LiveCalibration] "+transport+" robot port "+robotReceiver.getPort()+", tracker port "+trackerReceiver.getPort());
+	}
+
+	/**
+	 * @return local port receiving the robot poses
+	 */
+	public int getRobotPort() {
+		return robotReceiver.getPort();
+	}
+
+	/**
+	 * @return local port receiving the tracker samples
+	 */
+	public int getTrackerPort() {
+		return trackerReceiver.getPort();
+	}
+
+	/**
+	 * Removes all measurements from the running calibration, e.g. after the tracking system was moved
+	 */
+	public void reset() {
+		synchronized(solver) {
+			solver.reset();
+			monitor.reset();
+		}
+	}
+
+	/**
+	 * @return number of pairs in the running calibration
+	 */
+	public long getMeasurements() {
+		synchronized(solver) {
+			return solver.getMeasurements();
+		}
+	}
+
+	/**
+	 * takes the samples from the queue until the pairing thread is interrupted
+	 */
+	private void pair() {
+		try {
+			while(true) {
+				PoseSample sample = queue.take();
+				if(sample.robot) {
+					if(pending.size()>=MAX_PENDING) {
+						// no tracker samples for a long time
+						pending.poll();
+						unmatched++;
+					}
+					pending.add(sample);
+				}else if(!sample.visible) {
+					invisible++;
+				}else if(historyCount>0 && sample.timestamp<historyTime[(int) ((historyCount-1)&MASK)]) {
+					// the tracker clock went backwards or the sample was delayed
+					outOfOrder++;
+				}else {
+					int slot = (int) (historyCount&MASK);
+					historyTime[slot] = sample.timestamp;
+					System.arraycopy(sample.pose, 0, historyPose, slot*BlockAssembler.POSE_SIZE, BlockAssembler.POSE_SIZE);
+					historyCount++;
+				}
+				matchPending();
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		}
+	}
+
+	/**
+	 * matches the robot poses with a tracker sample after them
+	 */
+	private void matchPending() {
+		while(!pending.isEmpty() && historyCount>0) {
+			PoseSample robot = pending.peek();
+			double time = robot.timestamp;
+			long newest = historyCount-1;
+			if(historyTime[(int) (newest&MASK)]<time) {
+				return;
+			}
+			pending.poll();
+
+			// last sample at or before the robot pose
+			long oldest = Math.max(0, historyCount-HISTORY);
+			long before = newest;
+			while(before>=oldest && historyTime[(int) (before&MASK)]>time) {
+				before--;
+			}
+			long after = before+1;
+			double dtBefore = before>=oldest ? time-historyTime[(int) (before&MASK)] : Double.POSITIVE_INFINITY;
+			double dtAfter = after<=newest ? historyTime[(int) (after&MASK)]-time : Double.POSITIVE_INFINITY;
+			boolean useBefore = dtBefore<=window;
+			boolean useAfter = dtAfter<=window;
+			int beforeOffset = (int) (before&MASK)*BlockAssembler.POSE_SIZE;
+			int afterOffset = (int) (after&MASK)*BlockAssembler.POSE_SIZE;
+			if(mode==TimestampJoin.Mode.INTERPOLATE && useBefore && useAfter && dtBefore>0) {
+				Rotations.interpolate(historyPose, beforeOffset, historyPose, afterOffset, dtBefore/(dtBefore+dtAfter), matched, 0, scratch);
+			}else if(useBefore && (!useAfter || dtBefore<=dtAfter)) {
+				System.arraycopy(historyPose, beforeOffset, matched, 0, BlockAssembler.POSE_SIZE);
+			}else if(useAfter) {
+				System.arraycopy(historyPose, afterOffset, matched, 0, BlockAssembler.POSE_SIZE);
+			}else {
+				unmatched++;
+				continue;
+			}
+			synchronized(solver) {
+				solver.add(robot.pose, 0, matched, 0);
+				monitor.add(robot.pose, 0, matched, 0);
+			}
+		}
+	}
+
+	/**
+	 * solves the running calibration and publishes it if there are new measurements
+	 */
+	private void publish() {
+		try {
+			long measurements;
+			DegeneracyReport degeneracy;
+			synchronized(solver) {
+				measurements = solver.getMeasurements();
+				if(measurements==published) {
+					return;
+				}
+				degeneracy = monitor.getReport();
+				if(!solver.solve(w, 0)) {
+					// no estimate to publish, the diagnostic is printed once per status
+					if(degeneracy.getStatus()!=reported) {
+						System.out.println("[LiveCalibration] "+degeneracy.getMessage());
+						reported = degeneracy.getStatus();
+					}
+					return;
+				}
+			}
+			reported = degeneracy.getStatus();
+			published = measurements;
+			RealMatrix[] XY = calibration.toTransforms(new ArrayRealVector(w));
+			listener.onEstimate(new LiveEstimate(XY[0], XY[1], measurements, robotReceiver.getReceived(),
+					trackerReceiver.getReceived(), robotReceiver.getDropped()+trackerReceiver.getDropped(),
+					robotReceiver.getMalformed()+trackerReceiver.getMalformed(), invisible, outOfOrder, unmatched, degeneracy,
+					System.currentTimeMillis()));
+		} catch (RuntimeException e) {
+			// a failing listener must not end the periodic task
+			System.out.println("[LiveCalibration] publishing failed: "+e);
+		}
+	}
+
+	/**
+	 * Closes the endpoints and stops the threads, the last estimate is not published
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(pairing==null) {
+			return;
+		}
+		try {
+			robotReceiver.close();
+			trackerReceiver.close();
+		} finally {
+			pairing.interrupt();
+			publisher.shutdownNow();
+			pairing = null;
+		}
+	}
+}
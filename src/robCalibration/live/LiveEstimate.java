@@ -0,0 +1,130 @@
+package robCalibration.live;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+import robCalibration.DegeneracyReport;
+
+/**
+ * Estimate of X and Y published by a {@link LiveCalibration}, together with the counters of the ingest.
+ */
+public class LiveEstimate {
+
+	private final RealMatrix x;
+	private final RealMatrix y;
+	private final long measurements;
+	private final long robotReceived;
+	private final long trackerReceived;
+	private final long dropped;
+	private final long malformed;
+	private final long invisible;
+	private final long outOfOrder;
+	private final long unmatched;
+	private final DegeneracyReport degeneracy;
+	private final long timeMillis;
+
+	LiveEstimate(RealMatrix x, RealMatrix y, long measurements, long robotReceived, long trackerReceived, long dropped,
+			long malformed, long invisible, long outOfOrder, long unmatched, DegeneracyReport degeneracy, long timeMillis) {
+		this.x = x;
+		this.y = y;
+		this.measurements = measurements;
+		this.robotReceived = robotReceived;
+		this.trackerReceived = trackerReceived;
+		this.dropped = dropped;
+		this.malformed = malformed;
+		this.invisible = invisible;
+		this.outOfOrder = outOfOrder;
+		this.unmatched = unmatched;
+		this.degeneracy = degeneracy;
+		this.timeMillis = timeMillis;
+	}
+
+	/**
+	 * @return transformation from end-effector to marker
+	 */
+	public RealMatrix getX() {
+		return x;
+	}
+
+	/**
+	 * @return transformation from robot base to tracking system
+	 */
+	public RealMatrix getY() {
+		return y;
+	}
+
+	/**
+	 * @return number of pairs in the calibration
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return number of robot poses received
+	 */
+	public long getRobotReceived() {
+		return robotReceived;
+	}
+
+	/**
+	 * @return number of tracker samples received
+	 */
+	public long getTrackerReceived() {
+		return trackerReceived;
+	}
+
+	/**
+	 * @return number of samples dropped because of overload
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return number of malformed messages
+	 */
+	public long getMalformed() {
+		return malformed;
+	}
+
+	/**
+	 * @return number of tracker samples not visible for the tracking system
+	 */
+	public long getInvisible() {
+		return invisible;
+	}
+
+	/**
+	 * @return number of visible tracker samples rejected because their timestamp was older than the newest sample
+	 */
+	public long getOutOfOrder() {
+		return outOfOrder;
+	}
+
+	/**
+	 * @return number of robot poses without a tracker sample in the time window
+	 */
+	public long getUnmatched() {
+		return unmatched;
+	}
+
+	/**
+	 * @return verdict on the pairs of the calibration, {@link DegeneracyReport.Status#SUFFICIENT} when the robot can stop
+	 */
+	public DegeneracyReport getDegeneracy() {
+		return degeneracy;
+	}
+
+	/**
+	 * @return wall-clock time of the estimate in milliseconds
+	 */
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "measurements: "+measurements+", robot: "+robotReceived+", tracker: "+trackerReceived+", dropped: "+dropped
+				+", malformed: "+malformed+", invisible: "+invisible+", out of order: "+outOfOrder+", unmatched: "+unmatched+", "+degeneracy.getStatus();
+	}
+}
@@ -0,0 +1,13 @@
+package robCalibration.live;
+
+/**
+ * Receives the estimates of a {@link LiveCalibration}.
+ */
+public interface LiveEstimateListener {
+
+	/**
+	 * Called on the publishing thread of the calibration, user interfaces have to pass the estimate to their own thread
+	 * @param estimate current estimate of X and Y
+	 */
+	void onEstimate(LiveEstimate estimate);
+}
@@ -0,0 +1,158 @@
+package robCalibration.live;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.BlockingQueue;
+
+import robCalibration.io.PoseLogFormat;
+import robCalibration.io.PoseMessageParser;
+
+/**
+ * Receives pose messages on a local endpoint on its own thread and puts them into a bounded queue.
+ * A message is a line in the format of the robot log with timestamps or of the tracking log.
+ * When the queue is full a receiver either waits, which slows the sender down through the flow control of TCP,
+ * or drops the sample and counts it. UDP has no flow control, so UDP receivers always drop.
+ */
+public abstract class PoseReceiver implements AutoCloseable {
+
+	/**
+	 * protocol of the endpoint
+	 */
+	public enum Transport {
+		/**
+		 * one or more messages per datagram
+		 */
+		UDP,
+		/**
+		 * a stream of messages separated by line feeds, one sender at a time
+		 */
+		TCP
+	}
+
+	private final boolean robot;
+	private final BlockingQueue<PoseSample> queue;
+	private final PoseMessageParser parser;
+	private final Thread thread;
+	private final boolean blockWhenFull;
+	private volatile boolean closed = false;
+
+	/**
+	 * counters, only written by the receiving thread
+	 */
+	private volatile long received = 0;
+	private volatile long dropped = 0;
+	private volatile long malformed = 0;
+
+	PoseReceiver(boolean robot, BlockingQueue<PoseSample> queue, boolean blockWhenFull) {
+		this.robot = robot;
+		this.queue = queue;
+		this.blockWhenFull = blockWhenFull;
+		this.parser = new PoseMessageParser(robot ? PoseLogFormat.ROBOT_TIMESTAMPED : PoseLogFormat.TRACKING);
+		this.thread = new Thread(this::run, "pose-receiver-"+(robot ? "robot" : "tracker"));
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Opens a receiver on the loopback interface
+	 * @param transport protocol
+	 * @param port local port, 0 for any free port
+	 * @param robot true for robot poses, false for tracker samples
+	 * @param queue queue receiving the samples
+	 * @param blockWhenFull true to wait for space in the queue instead of dropping samples, ignored for UDP
+	 * @return started receiver
+	 * @throws IOException Error when the port can't be bound
+	 */
+	static PoseReceiver open(Transport transport, int port, boolean robot, BlockingQueue<PoseSample> queue,
+			boolean blockWhenFull) throws IOException {
+		PoseReceiver receiver = transport==Transport.UDP ? new UdpPoseReceiver(port, robot, queue)
+				: new TcpPoseReceiver(port, robot, queue, blockWhenFull);
+		receiver.thread.start();
+		return receiver;
+	}
+
+	/**
+	 * @return local port of the endpoint
+	 */
+	public abstract int getPort();
+
+	/**
+	 * receives until the endpoint is closed
+	 */
+	abstract void receive() throws IOException, InterruptedException;
+
+	private void run() {
+		try {
+			receive();
+		} catch (ClosedChannelException | InterruptedException e) {
+			// closed
+		} catch (IOException e) {
+			if(!closed) {
+				System.out.println("[PoseReceiver] "+thread.getName()+" stopped: "+e);
+			}
+		}
+	}
+
+	/**
+	 * Parses the messages in buffer[position..limit) and queues them
+	 * @return index after the last complete message
+	 */
+	int deliver(ByteBuffer buffer, int position, int limit) throws InterruptedException {
+		parser.reset(buffer, position, limit);
+		while(true) {
+			try {
+				if(!parser.next()) {
+					return parser.position();
+				}
+			} catch (NumberFormatException e) {
+				malformed++;
+				continue;
+			}
+			received++;
+			PoseSample sample = new PoseSample(robot, parser.timestamp(), parser.visible());
+			parser.copyPose(sample.pose, 0);
+			if(blockWhenFull) {
+				queue.put(sample);
+			}else if(!queue.offer(sample)) {
+				dropped++;
+			}
+		}
+	}
+
+	boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return number of messages received
+	 */
+	public long getReceived() {
+		return received;
+	}
+
+	/**
+	 * @return number of samples dropped because the queue was full
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return number of malformed messages
+	 */
+	public long getMalformed() {
+		return malformed;
+	}
+
+	/**
+	 * closes the endpoint
+	 */
+	abstract void closeEndpoint() throws IOException;
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		closeEndpoint();
+		thread.interrupt();
+	}
+}
@@ -0,0 +1,20 @@
+package robCalibration.live;
+
+import robCalibration.BlockAssembler;
+
+/**
+ * A single pose received from the robot or the tracking system.
+ */
+final class PoseSample {
+
+	final boolean robot;
+	final double timestamp;
+	final boolean visible;
+	final double[] pose = new double[BlockAssembler.POSE_SIZE];
+
+	PoseSample(boolean robot, double timestamp, boolean visible) {
+		this.robot = robot;
+		this.timestamp = timestamp;
+		this.visible = visible;
+	}
+}
@@ -0,0 +1,165 @@
+package robCalibration.live;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.LockSupport;
+
+import robCalibration.BlockAssembler;
+import robCalibration.TestDataGenerator;
+
+/**
+ * Sends synthetic robot poses and tracker samples to the endpoints of a {@link LiveCalibration} for testing without hardware.
+ * The robot stops at a random pose for every robot period and reports it once in the middle of the stop,
+ * the tracking system reports the marker pose of the current stop at its own rate. The measurements come from a
+ * {@link TestDataGenerator}, so the true X and Y are known.
+ */
+public class PoseStreamSimulator implements AutoCloseable {
+
+	private final TestDataGenerator generator;
+	private double robotRate = 20;
+	private double trackerRate = 1000;
+	private Thread thread;
+	private volatile boolean running;
+	private volatile long sent;
+
+	/**
+	 * @param generator source of the measurements, its noise settings are used
+	 */
+	public PoseStreamSimulator(TestDataGenerator generator) {
+		this.generator = generator;
+	}
+
+	/**
+	 * @param robotHertz robot poses per second
+	 * @param trackerHertz tracker samples per second
+	 * @return this simulator
+	 */
+	public PoseStreamSimulator setRates(double robotHertz, double trackerHertz) {
+		if(!(robotHertz>0) || !(trackerHertz>=robotHertz)) {
+			throw new IllegalArgumentException("Rates have to be positive, the tracker at least as fast as the robot.");
+		}
+		this.robotRate = robotHertz;
+		this.trackerRate = trackerHertz;
+		return this;
+	}
+
+	/**
+	 * Connects to the endpoints on the loopback interface and starts sending on its own thread
+	 * @param transport protocol of both endpoints
+	 * @param robotPort port receiving the robot poses
+	 * @param trackerPort port receiving the tracker samples
+	 * @throws IOException Error when an endpoint can't be reached
+	 */
+	public synchronized void start(PoseReceiver.Transport transport, int robotPort, int trackerPort) throws IOException {
+		if(thread!=null) {
+			throw new IllegalStateException("Simulator is already running.");
+		}
+		ByteChannel robot = connect(transport, robotPort);
+		ByteChannel tracker;
+		try {
+			tracker = connect(transport, trackerPort);
+		} catch (IOException e) {
+			robot.close();
+			throw e;
+		}
+		running = true;
+		thread = new Thread(() -> send(robot, tracker), "pose-stream-simulator");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static ByteChannel connect(PoseReceiver.Transport transport, int port) throws IOException {
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+		if(transport==PoseReceiver.Transport.UDP) {
+			return DatagramChannel.open().connect(address);
+		}
+		return SocketChannel.open(address);
+	}
+
+	/**
+	 * sends the messages in the order of their timestamps until stopped, one message per write.
+	 * The pose of a message is the one of the stop at its timestamp, so a sender lagging behind only delays the messages.
+	 */
+	private void send(ByteChannel robotChannel, ByteChannel trackerChannel) {
+		double[] robot = new double[BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[BlockAssembler.POSE_SIZE];
+		ByteBuffer buffer = ByteBuffer.allocate(512);
+		StringBuilder line = new StringBuilder(512);
+		long start = System.nanoTime();
+		double epoch = System.currentTimeMillis()/1000d;
+		long trackerSamples = 0;
+		long robotPoses = 0;
+		long stop = -1;
+		try(robotChannel; trackerChannel) {
+			while(running) {
+				double trackerTime = trackerSamples/trackerRate;
+				double robotTime = (robotPoses+0.5)/robotRate;
+				boolean robotNext = robotTime<=trackerTime;
+				double time = robotNext ? robotTime : trackerTime;
+				long wait = (long) (time*1e9)-(System.nanoTime()-start);
+				if(wait>0) {
+					LockSupport.parkNanos(wait);
+					continue;
+				}
+				long current = (long) (time*robotRate);
+				if(current!=stop) {
+					stop = current;
+					generator.generate(1, robot, tracker);
+				}
+				line.setLength(0);
+				if(robotNext) {
+					line.append(epoch+time);
+					write(robotChannel, buffer, line, robot);
+					robotPoses++;
+				}else {
+					line.append(epoch+time).append(" y");
+					write(trackerChannel, buffer, line, tracker);
+					trackerSamples++;
+				}
+			}
+		} catch (IOException e) {
+			if(running) {
+				System.out.println("[PoseStreamSimulator] stopped: "+e);
+			}
+		}
+	}
+
+	private void write(ByteChannel channel, ByteBuffer buffer, StringBuilder line, double[] pose) throws IOException {
+		for(int k=0;k<BlockAssembler.POSE_SIZE;k++) {
+			line.append(' ').append(pose[k]);
+		}
+		line.append('\n');
+		buffer.clear();
+		buffer.put(line.toString().getBytes(StandardCharsets.US_ASCII));
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		sent++;
+	}
+
+	/**
+	 * @return number of messages sent
+	 */
+	public long getSent() {
+		return sent;
+	}
+
+	/**
+	 * Stops sending and closes the connections
+	 */
+	@Override
+	public synchronized void close() {
+		running = false;
+		if(thread!=null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+}
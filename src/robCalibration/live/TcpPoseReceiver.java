@@ -0,0 +1,75 @@
+package robCalibration.live;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Receives a stream of pose messages over TCP from one sender at a time.
+ * When the queue is full it either drops samples or stops reading, so the sender is slowed down by the flow control of TCP.
+ */
+class TcpPoseReceiver extends PoseReceiver {
+
+	private static final int BUFFER_SIZE = 64<<10;
+
+	private final ServerSocketChannel server;
+	private volatile SocketChannel client;
+
+	TcpPoseReceiver(int port, boolean robot, BlockingQueue<PoseSample> queue, boolean blockWhenFull) throws IOException {
+		super(robot, queue, blockWhenFull);
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	@Override
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	@Override
+	void receive() throws IOException, InterruptedException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		while(!isClosed()) {
+			try(SocketChannel socket = server.accept()) {
+				client = socket;
+				buffer.clear();
+				while(socket.read(buffer)>=0) {
+					// parse the complete lines only, the rest is moved to the front
+					int end = buffer.position();
+					while(end>0 && buffer.get(end-1)!='\n') {
+						end--;
+					}
+					if(end==0) {
+						if(!buffer.hasRemaining()) {
+							throw new IOException("Message longer than "+BUFFER_SIZE+" bytes.");
+						}
+						continue;
+					}
+					deliver(buffer, 0, end);
+					buffer.limit(buffer.position());
+					buffer.position(end);
+					buffer.compact();
+				}
+			} catch (IOException e) {
+				if(isClosed()) {
+					throw e;
+				}
+				// sender disconnected abnormally, wait for the next one
+				System.out.println("[PoseReceiver] connection lost: "+e);
+			}
+		}
+	}
+
+	@Override
+	void closeEndpoint() throws IOException {
+		server.close();
+		SocketChannel socket = client;
+		if(socket!=null) {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package robCalibration.live;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Receives pose messages as UDP datagrams, drops samples when the queue is full.
+ */
+class UdpPoseReceiver extends PoseReceiver {
+
+	/**
+	 * largest datagram accepted
+	 */
+	private static final int MAX_DATAGRAM = 64<<10;
+
+	private final DatagramChannel channel;
+
+	UdpPoseReceiver(int port, boolean robot, BlockingQueue<PoseSample> queue) throws IOException {
+		super(robot, queue, false);
+		channel = DatagramChannel.open();
+		channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	@Override
+	public int getPort() {
+		return channel.socket().getLocalPort();
+	}
+
+	@Override
+	void receive() throws IOException, InterruptedException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+		while(!isClosed()) {
+			buffer.clear();
+			channel.receive(buffer);
+			deliver(buffer, 0, buffer.position());
+		}
+	}
+
+	@Override
+	void closeEndpoint() throws IOException {
+		channel.close();
+	}
+}
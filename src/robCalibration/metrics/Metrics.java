@@ -0,0 +1,96 @@
+package robCalibration.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Measures the phases of calibration runs. A phase is measured by a {@link PhaseTimer}:
+ * <pre>
+ *   try(PhaseTimer timer = Metrics.start(Phase.ASSEMBLY)) {
+ *       ...
+ *       timer.setMeasurements(count);
+ *   }
+ * </pre>
+ * The metrics of a completed phase are handed to the registered {@link MetricsListener}s and committed
+ * as flight recorder event (qr24.Phase) if a recording has it enabled.
+ *
+ * Without a listener and without a recording, {@link #start(Phase)} returns a shared timer that does nothing,
+ * a phase then costs a few nanoseconds. The timers are meant for phases of whole runs, not for single measurements.
+ */
+public final class Metrics {
+
+	private static final CopyOnWriteArrayList<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * @param listener receives the metrics of all phases completed from now on, on any thread
+	 */
+	public static void addListener(MetricsListener listener) {
+		if(listener==null) {
+			throw new IllegalArgumentException("Listener is null.");
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener listener to remove, nothing happens if it isn't registered
+	 */
+	public static void removeListener(MetricsListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Starts measuring a phase on the calling thread
+	 * @param phase phase to measure
+	 * @return timer to close when the phase is completed
+	 */
+	public static PhaseTimer start(Phase phase) {
+		PhaseEvent event = new PhaseEvent();
+		boolean recorded = event.isEnabled();
+		if(!recorded && listeners.isEmpty()) {
+			return PhaseTimer.DISABLED;
+		}
+		return new PhaseTimer(phase, recorded ? event : null);
+	}
+
+	static boolean hasListeners() {
+		return !listeners.isEmpty();
+	}
+
+	static void publish(PhaseMetrics metrics) {
+		for(MetricsListener listener : listeners) {
+			listener.phaseCompleted(metrics);
+		}
+	}
+
+	/**
+	 * @return bytes allocated by the calling thread so far, -1 if the JVM doesn't measure allocations
+	 */
+	static long allocatedBytes() {
+		return Allocation.THREADS!=null ? Allocation.THREADS.getCurrentThreadAllocatedBytes() : -1;
+	}
+
+	/**
+	 * holder of the management bean, it is only loaded when the first phase is measured
+	 */
+	private static class Allocation {
+
+		static final com.sun.management.ThreadMXBean THREADS = bean();
+
+		private static com.sun.management.ThreadMXBean bean() {
+			try {
+				if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+					com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+					if(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+						return bean;
+					}
+				}
+			} catch (UnsupportedOperationException | SecurityException e) {
+				System.out.println("[Metrics] allocations not measured: "+e);
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package robCalibration.metrics;
+
+import java.util.Locale;
+
+/**
+ * Listener that sums the metrics per phase, e.g. to find the slowest phase of a batch run.
+ * It can be shared by concurrent runs.
+ */
+public class MetricsCollector implements MetricsListener {
+
+	private final long[] count = new long[Phase.values().length];
+	private final long[] nanos = new long[Phase.values().length];
+	private final long[] maxNanos = new long[Phase.values().length];
+	private final long[] allocatedBytes = new long[Phase.values().length];
+	private final long[] measurements = new long[Phase.values().length];
+	private final double[] maxCondition = new double[Phase.values().length];
+
+	public MetricsCollector() {
+		reset();
+	}
+
+	@Override
+	public synchronized void phaseCompleted(PhaseMetrics metrics) {
+		int p = metrics.getPhase().ordinal();
+		count[p]++;
+		nanos[p] += metrics.getNanos();
+		maxNanos[p] = Math.max(maxNanos[p], metrics.getNanos());
+		if(metrics.getAllocatedBytes()>0) {
+			allocatedBytes[p] += metrics.getAllocatedBytes();
+		}
+		if(metrics.getMeasurements()>0) {
+			measurements[p] += metrics.getMeasurements();
+		}
+		if(metrics.getCondition()>maxCondition[p] || Double.isNaN(maxCondition[p])) {
+			maxCondition[p] = metrics.getCondition();
+		}
+	}
+
+	/**
+	 * @param phase phase of interest
+	 * @return number of times the phase was completed
+	 */
+	public synchronized long getCount(Phase phase) {
+		return count[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase phase of interest
+	 * @return summed duration of the phase in nanoseconds
+	 */
+	public synchronized long getNanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase phase of interest
+	 * @return longest single duration of the phase in nanoseconds
+	 */
+	public synchronized long getMaxNanos(Phase phase) {
+		return maxNanos[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase phase of interest
+	 * @return summed bytes allocated by the phase, 0 if the JVM doesn't measure allocations
+	 */
+	public synchronized long getAllocatedBytes(Phase phase) {
+		return allocatedBytes[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase phase of interest
+	 * @return summed measurements processed by the phase
+	 */
+	public synchronized long getMeasurements(Phase phase) {
+		return measurements[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase phase of interest
+	 * @return largest condition estimate reported by the phase, NaN if none was reported
+	 */
+	public synchronized double getMaxCondition(Phase phase) {
+		return maxCondition[phase.ordinal()];
+	}
+
+	/**
+	 * @return phase with the largest summed duration, null if no phase was completed
+	 */
+	public synchronized Phase getSlowest() {
+		Phase slowest = null;
+		for(Phase phase : Phase.values()) {
+			if(count[phase.ordinal()]>0 && (slowest==null || nanos[phase.ordinal()]>nanos[slowest.ordinal()])) {
+				slowest = phase;
+			}
+		}
+		return slowest;
+	}
+
+	/**
+	 * Forgets all metrics collected so far
+	 */
+	public synchronized void reset() {
+		for(int p=0;p<count.length;p++) {
+			count[p] = 0;
+			nanos[p] = 0;
+			maxNanos[p] = 0;
+			allocatedBytes[p] = 0;
+			measurements[p] = 0;
+			maxCondition[p] = Double.NaN;
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder text = new StringBuilder();
+		text.append(String.format(Locale.ROOT, "%-18s %8s %12s %12s %12s %14s %12s", "phase", "count", "total [ms]", "max [ms]",
+				"alloc [MB]", "measurements", "condition"));
+		for(Phase phase : Phase.values()) {
+			int p = phase.ordinal();
+			if(count[p]==0) {
+				continue;
+			}
+			text.append(System.lineSeparator()).append(String.format(Locale.ROOT, "%-18s %8d %12.3f %12.3f %12.1f %14d %12.4g",
+					phase, count[p], nanos[p]/1e6, maxNanos[p]/1e6, allocatedBytes[p]/1048576d, measurements[p], maxCondition[p]));
+		}
+		Phase slowest = getSlowest();
+		if(slowest!=null) {
+			text.append(System.lineSeparator()).append("slowest: ").append(slowest);
+		}
+		return text.toString();
+	}
+}
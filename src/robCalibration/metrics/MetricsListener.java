@@ -0,0 +1,13 @@
+package robCalibration.metrics;
+
+/**
+ * Receives the metrics of every completed phase, see {@link Metrics#addListener(MetricsListener)}.
+ * It is called on the thread that ran the phase, so it has to be thread-safe if phases run concurrently, e.g. in the batch mode.
+ */
+public interface MetricsListener {
+
+	/**
+	 * @param metrics duration, allocation, size and condition of the completed phase
+	 */
+	void phaseCompleted(PhaseMetrics metrics);
+}
@@ -0,0 +1,39 @@
+package robCalibration.metrics;
+
+/**
+ * Phases of a calibration run measured by {@link Metrics}
+ */
+public enum Phase {
+	/**
+	 * parsing a log, counted in records
+	 */
+	PARSING,
+	/**
+	 * pairing robot poses and tracker samples, counted in pairs
+	 */
+	MATCHING,
+	/**
+	 * assembling or accumulating the linear equation system, counted in measurements
+	 */
+	ASSEMBLY,
+	/**
+	 * decomposing and solving the linear equation system, counted in measurements
+	 */
+	DECOMPOSITION,
+	/**
+	 * orthonormalizing the rotational parts of X and Y
+	 */
+	ORTHONORMALIZATION,
+	/**
+	 * nonlinear refinement of X and Y, counted in measurements
+	 */
+	REFINEMENT,
+	/**
+	 * evaluating the residuals of a result, counted in measurements
+	 */
+	RESIDUALS,
+	/**
+	 * printing or writing results
+	 */
+	OUTPUT
+}
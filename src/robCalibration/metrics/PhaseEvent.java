@@ -0,0 +1,32 @@
+package robCalibration.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a phase, the duration is the duration of the event.
+ * Record it with e.g. -XX:StartFlightRecording and view it with "jfr print --events qr24.Phase".
+ */
+@Name("qr24.Phase")
+@Label("Calibration Phase")
+@Category("QR24")
+@Description("Phase of a calibration run")
+class PhaseEvent extends jdk.jfr.Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Measurements")
+	long measurements;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocatedBytes;
+
+	@Label("Condition")
+	@Description("Estimate of the condition number of the solved system, NaN if not known")
+	double condition;
+}
@@ -0,0 +1,75 @@
+package robCalibration.metrics;
+
+import java.util.Locale;
+
+/**
+ * Metrics of a single completed phase
+ */
+public class PhaseMetrics {
+
+	private final Phase phase;
+	private final long nanos;
+	private final long allocatedBytes;
+	private final long measurements;
+	private final double condition;
+
+	PhaseMetrics(Phase phase, long nanos, long allocatedBytes, long measurements, double condition) {
+		this.phase = phase;
+		this.nanos = nanos;
+		this.allocatedBytes = allocatedBytes;
+		this.measurements = measurements;
+		this.condition = condition;
+	}
+
+	/**
+	 * @return the completed phase
+	 */
+	public Phase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * @return duration of the phase in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return bytes allocated by the thread running the phase, without the allocations of pool threads it forked to;
+	 *         -1 if the JVM doesn't measure allocations
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return number of records, pairs or measurements processed, -1 if not applicable
+	 */
+	public long getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return estimate of the condition number of the solved system, NaN if not known
+	 */
+	public double getCondition() {
+		return condition;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		text.append(phase).append(String.format(Locale.ROOT, " %.3f ms", nanos/1e6));
+		if(allocatedBytes>=0) {
+			text.append(String.format(Locale.ROOT, ", %.1f MB allocated", allocatedBytes/1048576d));
+		}
+		if(measurements>=0) {
+			text.append(", ").append(measurements).append(" measurements");
+		}
+		if(!Double.isNaN(condition)) {
+			text.append(String.format(Locale.ROOT, ", condition %.4g", condition));
+		}
+		return text.toString();
+	}
+}
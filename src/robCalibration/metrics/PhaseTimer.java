@@ -0,0 +1,87 @@
+package robCalibration.metrics;
+
+/**
+ * Measures a single phase from {@link Metrics#start(Phase)} until {@link #close()}.
+ * A timer belongs to the thread that started it.
+ */
+public final class PhaseTimer implements AutoCloseable {
+
+	/**
+	 * shared timer returned while nothing listens, all methods do nothing
+	 */
+	static final PhaseTimer DISABLED = new PhaseTimer();
+
+	private final Phase phase;
+	private final PhaseEvent event;
+	private final long start;
+	private final long allocatedAtStart;
+	private long measurements = -1;
+	private double condition = Double.NaN;
+	private boolean closed;
+
+	private PhaseTimer() {
+		this.phase = null;
+		this.event = null;
+		this.start = 0;
+		this.allocatedAtStart = 0;
+		this.closed = true;
+	}
+
+	PhaseTimer(Phase phase, PhaseEvent event) {
+		this.phase = phase;
+		this.event = event;
+		this.allocatedAtStart = Metrics.allocatedBytes();
+		if(event!=null) {
+			event.begin();
+		}
+		this.start = System.nanoTime();
+	}
+
+	/**
+	 * @param measurements number of records, pairs or measurements processed in the phase
+	 * @return this timer
+	 */
+	public PhaseTimer setMeasurements(long measurements) {
+		if(!closed) {
+			this.measurements = measurements;
+		}
+		return this;
+	}
+
+	/**
+	 * @param condition estimate of the condition number of the system solved in the phase
+	 * @return this timer
+	 */
+	public PhaseTimer setCondition(double condition) {
+		if(!closed) {
+			this.condition = condition;
+		}
+		return this;
+	}
+
+	/**
+	 * Completes the phase and publishes its metrics, only the first call has an effect
+	 */
+	@Override
+	public void close() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		long nanos = System.nanoTime()-start;
+		long allocated = allocatedAtStart>=0 ? Metrics.allocatedBytes()-allocatedAtStart : -1;
+		if(event!=null) {
+			event.end();
+			if(event.shouldCommit()) {
+				event.phase = phase.name();
+				event.measurements = measurements;
+				event.allocatedBytes = allocated;
+				event.condition = condition;
+				event.commit();
+			}
+		}
+		if(Metrics.hasListeners()) {
+			Metrics.publish(new PhaseMetrics(phase, nanos, allocated, measurements, condition));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package robCalibration.solver;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import robCalibration.BlockAssembler;
+import robCalibration.IncrementalQR;
+import robCalibration.PosePairSource;
+
+/**
+ * Picks the backend by the conditioning of the measurements:
+ * <pre>
+ *   1. normal equations, kept if the condition estimate of the reduced system is at most the normal equation limit
+ *   2. tall QR, kept if the condition estimate of the column scaled factor R is at most the QR limit
+ *   3. SVD of the factor of step 2, minimum norm solution
+ * </pre>
+ * Step 1 is a single cheap pass and decides almost every well-posed set. The QR of step 2 splits sets of more than
+ * {@link TallQrBackend#CHUNK} measurements into blocks that are factorized in parallel, smaller sets are factorized
+ * on the calling thread. The dense Householder QR is never picked, it needs memory for the complete system.
+ */
+public class AutoBackend implements SolverBackend {
+
+	/**
+	 * default largest condition estimate of the reduced normal equations that is accepted, about 8 lost digits
+	 */
+	public static final double DEFAULT_NORMAL_LIMIT = 1e8;
+
+	/**
+	 * default largest condition estimate of the column scaled triangular factor that is accepted
+	 */
+	public static final double DEFAULT_QR_LIMIT = 1e10;
+
+	private double normalLimit = DEFAULT_NORMAL_LIMIT;
+	private double qrLimit = DEFAULT_QR_LIMIT;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private final SvdBackend svd = new SvdBackend();
+
+	/**
+	 * @param limit largest condition estimate of the reduced normal equations that is accepted, 1e8 by default
+	 * @return this backend
+	 */
+	public AutoBackend setNormalLimit(double limit) {
+		if(!(limit>=1)) {
+			throw new IllegalArgumentException("Limit has to be at least 1, got "+limit+".");
+		}
+		this.normalLimit = limit;
+		return this;
+	}
+
+	/**
+	 * @param limit largest condition estimate of the column scaled triangular factor that is accepted, 1e10 by default
+	 * @return this backend
+	 */
+	public AutoBackend setQrLimit(double limit) {
+		if(!(limit>=1)) {
+			throw new IllegalArgumentException("Limit has to be at least 1, got "+limit+".");
+		}
+		this.qrLimit = limit;
+		return this;
+	}
+
+	/**
+	 * @param tolerance relative size of the smallest singular value that is kept by the SVD, see {@link SvdBackend#setTolerance(double)}
+	 * @return this backend
+	 */
+	public AutoBackend setTolerance(double tolerance) {
+		svd.setTolerance(tolerance);
+		return this;
+	}
+
+	/**
+	 * @param pool pool factorizing the blocks of tall sets, the common pool by default, null for the calling thread
+	 * @return this backend
+	 */
+	public AutoBackend setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	@Override
+	public String getName() {
+		return "auto";
+	}
+
+	@Override
+	public SolverResult solve(PosePairSource pairs) throws Exception {
+		long start = System.nanoTime();
+		int size = pairs.size();
+		if(size<2) {
+			throw new Exception("At least two measurements are needed, got "+size+".");
+		}
+		SolverResult normal = null;
+		try {
+			normal = new NormalEquationBackend().solve(pairs);
+		}catch(Exception e) {
+			// singular reduced system, the QR decides
+		}
+		if(normal!=null && normal.getCondition()<=normalLimit) {
+			return chosen(normal, start);
+		}
+
+		IncrementalQR qr = TallQrBackend.factorize(pairs, size>TallQrBackend.CHUNK ? pool : null);
+		double condition = TallQrBackend.conditionEstimate(qr);
+		double[] w = new double[BlockAssembler.COLUMNS];
+		if(condition<=qrLimit && qr.solve(w, 0)) {
+			return chosen(new SolverResult(new ArrayRealVector(w, false), "tall QR", 0, condition, BlockAssembler.COLUMNS), start);
+		}
+		return chosen(svd.solve(qr), start);
+	}
+
+	/**
+	 * the result of the chosen backend with the duration of all steps
+	 */
+	private static SolverResult chosen(SolverResult result, long start) {
+		return new SolverResult(result.getSolution(), result.getBackend()+" (auto)", System.nanoTime()-start,
+				result.getCondition(), result.getRank());
+	}
+}
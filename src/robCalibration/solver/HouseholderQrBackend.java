@@ -0,0 +1,48 @@
+package robCalibration.solver;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealVector;
+
+import robCalibration.BlockAssembler;
+import robCalibration.PosePairSource;
+
+/**
+ * Assembles the complete matrix A (12n x 24) and solves it with the Householder QR decomposition of commons-math,
+ * the method of QR24.calibrate(). Needs memory for all of A, prefer the other backends for large sets.
+ */
+public class HouseholderQrBackend implements SolverBackend {
+
+	@Override
+	public String getName() {
+		return "Householder QR";
+	}
+
+	@Override
+	public SolverResult solve(PosePairSource pairs) throws Exception {
+		long start = System.nanoTime();
+		int size = pairs.size();
+		if(size<2) {
+			throw new Exception("At least two measurements are needed, got "+size+".");
+		}
+		double[][] aData = new double[BlockAssembler.ROWS*size][BlockAssembler.COLUMNS];
+		double[] bData = new double[BlockAssembler.ROWS*size];
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		double[] ai = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
+		for(int i=0;i<size;i++) {
+			pairs.robotPose(i, m, 0);
+			pairs.trackerPose(i, n, 0);
+			BlockAssembler.assembleA(m, 0, n, 0, ai, 0);
+			for(int row=0;row<BlockAssembler.ROWS;row++) {
+				System.arraycopy(ai, row*BlockAssembler.COLUMNS, aData[i*BlockAssembler.ROWS+row], 0, BlockAssembler.COLUMNS);
+			}
+			BlockAssembler.assembleB(m, 0, bData, i*BlockAssembler.ROWS);
+		}
+		RealVector w = new QRDecomposition(new Array2DRowRealMatrix(aData, false)).getSolver()
+				.solve(new ArrayRealVector(bData, false));
+		// the diagonal of R is only available as copy of the complete 12n x 24 matrix, no condition estimate
+		return new SolverResult(w, getName(), System.nanoTime()-start, Double.NaN, BlockAssembler.COLUMNS);
+	}
+}
@@ -0,0 +1,43 @@
+package robCalibration.solver;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import robCalibration.BlockAssembler;
+import robCalibration.PosePairSource;
+import robCalibration.ReducedSolver;
+
+/**
+ * Cholesky decomposition of the normal equations, with Y eliminated analytically by the {@link ReducedSolver}.
+ * One pass over the measurements and a 12x12 factorization, the fastest backend. The normal equations square
+ * the condition number of the system, so it loses accuracy on badly conditioned sets.
+ */
+public class NormalEquationBackend implements SolverBackend {
+
+	@Override
+	public String getName() {
+		return "normal equations";
+	}
+
+	@Override
+	public SolverResult solve(PosePairSource pairs) throws Exception {
+		long start = System.nanoTime();
+		int size = pairs.size();
+		if(size<2) {
+			throw new Exception("At least two measurements are needed, got "+size+".");
+		}
+		ReducedSolver solver = new ReducedSolver();
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		for(int i=0;i<size;i++) {
+			pairs.robotPose(i, m, 0);
+			pairs.trackerPose(i, n, 0);
+			solver.add(m, 0, n, 0);
+		}
+		double[] w = new double[BlockAssembler.COLUMNS];
+		if(!solver.solve(w, 0)) {
+			throw new Exception("Reduced system is singular, the measurements are degenerated.");
+		}
+		return new SolverResult(new ArrayRealVector(w, false), getName(), System.nanoTime()-start,
+				solver.getConditionEstimate(), BlockAssembler.COLUMNS);
+	}
+}
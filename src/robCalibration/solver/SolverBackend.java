@@ -0,0 +1,30 @@
+package robCalibration.solver;
+
+import robCalibration.PosePairSource;
+
+/**
+ * Solves the linear least squares problem A*w = B of the QR24 calibration for the measurement pairs.
+ * The backends differ in speed, memory and how they handle badly conditioned or rank-deficient data:
+ * <pre>
+ *   {@link HouseholderQrBackend}   dense Householder QR of the complete A, like QR24.calibrate()
+ *   {@link NormalEquationBackend}  Cholesky on the reduced normal equations, the fastest, squares the condition number
+ *   {@link TallQrBackend}          blocked Givens QR, the blocks are factorized in parallel, O(1) memory per block
+ *   {@link SvdBackend}             SVD of the triangular factor, minimum norm solution for rank-deficient data
+ *   {@link AutoBackend}            picks one of them by a condition estimate
+ * </pre>
+ */
+public interface SolverBackend {
+
+	/**
+	 * @return name of the backend in the reports
+	 */
+	String getName();
+
+	/**
+	 * Solves the QR24 system of the measurement pairs
+	 * @param pairs measurement pairs
+	 * @return solution vector w, the first 12 entries belong to X, the last 12 entries to Y, and how it was found
+	 * @throws Exception Error when there're not enough measurements or the system is singular for this backend
+	 */
+	SolverResult solve(PosePairSource pairs) throws Exception;
+}
@@ -0,0 +1,65 @@
+package robCalibration.solver;
+
+import java.util.Locale;
+
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Solution of a {@link SolverBackend} and how it was found
+ */
+public class SolverResult {
+
+	private final RealVector solution;
+	private final String backend;
+	private final long nanos;
+	private final double condition;
+	private final int rank;
+
+	SolverResult(RealVector solution, String backend, long nanos, double condition, int rank) {
+		this.solution = solution;
+		this.backend = backend;
+		this.nanos = nanos;
+		this.condition = condition;
+		this.rank = rank;
+	}
+
+	/**
+	 * @return solution vector w, the first 12 entries belong to X, the last 12 entries to Y
+	 */
+	public RealVector getSolution() {
+		return solution;
+	}
+
+	/**
+	 * @return name of the backend that computed the solution, with "(auto)" if it was chosen by {@link AutoBackend}
+	 */
+	public String getBackend() {
+		return backend;
+	}
+
+	/**
+	 * @return duration of the solve in nanoseconds, including the attempts of {@link AutoBackend} that were rejected
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return estimate of the condition number of the system solved by the backend (column scaled), NaN if not known
+	 */
+	public double getCondition() {
+		return condition;
+	}
+
+	/**
+	 * @return numerical rank of the system, less than 24 if the SVD dropped directions that the measurements don't determine
+	 */
+	public int getRank() {
+		return rank;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%s in %.3f ms, condition %.4g, rank %d", backend, nanos/1e6, condition, rank);
+	}
+}
@@ -0,0 +1,123 @@
+package robCalibration.solver;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+
+import robCalibration.BlockAssembler;
+import robCalibration.IncrementalQR;
+import robCalibration.PosePairSource;
+
+/**
+ * Singular value decomposition for rank-deficient data, e.g. poses that rotate about a single axis only.
+ * The system is reduced to its triangular factor R (24x24) by the {@link TallQrBackend} first, so the SVD costs
+ * the same for any number of measurements. The columns of R are scaled to unit norm and singular values below
+ * the tolerance times the largest one are dropped; the result is the minimum norm solution in the scaled
+ * unknowns, the directions the measurements don't determine are left at zero.
+ */
+public class SvdBackend implements SolverBackend {
+
+	/**
+	 * default relative size of the smallest singular value that is kept
+	 */
+	public static final double DEFAULT_TOLERANCE = 1e-10;
+
+	private double tolerance = DEFAULT_TOLERANCE;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param tolerance relative size of the smallest singular value that is kept, 1e-10 by default
+	 * @return this backend
+	 */
+	public SvdBackend setTolerance(double tolerance) {
+		if(!(tolerance>=0 && tolerance<1)) {
+			throw new IllegalArgumentException("Tolerance has to be in [0, 1), got "+tolerance+".");
+		}
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * @param pool pool factorizing the blocks of measurements, the common pool by default, null for the calling thread
+	 * @return this backend
+	 */
+	public SvdBackend setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	@Override
+	public String getName() {
+		return "SVD";
+	}
+
+	@Override
+	public SolverResult solve(PosePairSource pairs) throws Exception {
+		long start = System.nanoTime();
+		SolverResult result = solve(TallQrBackend.factorize(pairs, pool));
+		return new SolverResult(result.getSolution(), getName(), System.nanoTime()-start, result.getCondition(), result.getRank());
+	}
+
+	/**
+	 * Solves an existing factorization, used by {@link AutoBackend} after the triangular factor was rejected
+	 * @param qr factorization of all measurements
+	 * @return minimum norm solution, duration of the SVD only
+	 * @throws Exception Error when all singular values are zero
+	 */
+	SolverResult solve(IncrementalQR qr) throws Exception {
+		long start = System.nanoTime();
+		int n = BlockAssembler.COLUMNS;
+		double[] r = new double[n*n];
+		double[] z = new double[n];
+		qr.getFactor(r, z);
+
+		// unit column norms
+		double[] scale = new double[n];
+		for(int j=0;j<n;j++) {
+			double norm = 0;
+			for(int i=0;i<=j;i++) {
+				norm += r[i*n+j]*r[i*n+j];
+			}
+			scale[j] = norm>0 ? 1d/Math.sqrt(norm) : 0;
+		}
+		double[][] scaled = new double[n][n];
+		for(int i=0;i<n;i++) {
+			for(int j=i;j<n;j++) {
+				scaled[i][j] = r[i*n+j]*scale[j];
+			}
+		}
+
+		SingularValueDecomposition svd = new SingularValueDecomposition(new Array2DRowRealMatrix(scaled, false));
+		double[] sigma = svd.getSingularValues();
+		if(!(sigma[0]>0)) {
+			throw new Exception("All singular values are zero, the measurements are degenerated.");
+		}
+		RealMatrix u = svd.getU();
+		RealMatrix v = svd.getV();
+
+		// w = D*V*S^+*U^T*z, singular values are sorted in decreasing order
+		double[] coefficients = new double[n];
+		int rank = 0;
+		while(rank<n && sigma[rank]>tolerance*sigma[0]) {
+			double s = 0;
+			for(int i=0;i<n;i++) {
+				s += u.getEntry(i, rank)*z[i];
+			}
+			coefficients[rank] = s/sigma[rank];
+			rank++;
+		}
+		double[] w = new double[n];
+		for(int j=0;j<n;j++) {
+			double s = 0;
+			for(int k=0;k<rank;k++) {
+				s += v.getEntry(j, k)*coefficients[k];
+			}
+			w[j] = s*scale[j];
+		}
+		double condition = sigma[n-1]>0 ? sigma[0]/sigma[n-1] : Double.POSITIVE_INFINITY;
+		return new SolverResult(new ArrayRealVector(w, false), getName(), System.nanoTime()-start, condition, rank);
+	}
+}
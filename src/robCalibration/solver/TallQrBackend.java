@@ -0,0 +1,155 @@
+package robCalibration.solver;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import robCalibration.BlockAssembler;
+import robCalibration.IncrementalQR;
+import robCalibration.PosePairSource;
+import robCalibration.SmallDense;
+
+/**
+ * Blocked QR decomposition for very tall systems (tall-skinny QR). The measurements are split into blocks of
+ * {@link #CHUNK} pairs, every block is factorized by Givens rotations into its own 24x24 factor on a fork-join pool,
+ * and the factors are merged in block order. A is never formed, so the memory doesn't grow with the number of
+ * measurements, and the result doesn't depend on the number of threads.
+ * Keeps the accuracy of the QR decomposition, on a single thread it costs several times as much as the normal equations.
+ */
+public class TallQrBackend implements SolverBackend {
+
+	/**
+	 * number of measurement pairs factorized by a single fork-join task
+	 */
+	static final int CHUNK = 4096;
+
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param pool pool factorizing the blocks, the common pool by default, null to factorize them on the calling thread
+	 * @return this backend
+	 */
+	public TallQrBackend setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	@Override
+	public String getName() {
+		return "tall QR";
+	}
+
+	@Override
+	public SolverResult solve(PosePairSource pairs) throws Exception {
+		long start = System.nanoTime();
+		IncrementalQR qr = factorize(pairs, pool);
+		double[] w = new double[BlockAssembler.COLUMNS];
+		if(!qr.solve(w, 0)) {
+			throw new Exception("Triangular factor is singular, the measurements are degenerated.");
+		}
+		return new SolverResult(new ArrayRealVector(w, false), getName(), System.nanoTime()-start,
+				conditionEstimate(qr), BlockAssembler.COLUMNS);
+	}
+
+	/**
+	 * Factorizes all measurement pairs
+	 * @param pairs measurement pairs
+	 * @param pool pool factorizing the blocks, null for the calling thread
+	 * @return factorization of all pairs
+	 * @throws Exception Error when there're less than two measurements
+	 */
+	static IncrementalQR factorize(PosePairSource pairs, ForkJoinPool pool) throws Exception {
+		int size = pairs.size();
+		if(size<2) {
+			throw new Exception("At least two measurements are needed, got "+size+".");
+		}
+		int chunks = (size+CHUNK-1)/CHUNK;
+		IncrementalQR[] blocks = new IncrementalQR[chunks];
+		if(pool==null || chunks==1) {
+			for(int c=0;c<chunks;c++) {
+				blocks[c] = factorizeChunk(pairs, c);
+			}
+		}else {
+			pool.invoke(new ChunkTask(pairs, blocks, 0, chunks));
+		}
+		IncrementalQR qr = blocks[0];
+		for(int c=1;c<chunks;c++) {
+			qr.merge(blocks[c]);
+		}
+		return qr;
+	}
+
+	/**
+	 * Estimates the condition number of the system with unit column norms from its triangular factor R.
+	 * The scaling removes the difference of units between rotation and translation entries.
+	 * @param qr factorization
+	 * @return lower bound of the condition number of the column scaled system, infinite if R is singular
+	 */
+	static double conditionEstimate(IncrementalQR qr) {
+		int n = BlockAssembler.COLUMNS;
+		double[] r = new double[n*n];
+		qr.getFactor(r, new double[n]);
+		for(int j=0;j<n;j++) {
+			double norm = 0;
+			for(int i=0;i<=j;i++) {
+				norm += r[i*n+j]*r[i*n+j];
+			}
+			if(!(Math.abs(r[j*n+j])>0)) {
+				return Double.POSITIVE_INFINITY;
+			}
+			double scale = 1d/Math.sqrt(norm);
+			for(int i=0;i<=j;i++) {
+				r[i*n+j] *= scale;
+			}
+		}
+		// R is the Cholesky factor of the normal matrix, whose condition number is the square
+		return Math.sqrt(SmallDense.conditionEstimate(r, new double[2*n], n));
+	}
+
+	/**
+	 * factorizes the pairs of one block
+	 */
+	private static IncrementalQR factorizeChunk(PosePairSource pairs, int chunk) {
+		IncrementalQR qr = new IncrementalQR();
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		int end = Math.min(pairs.size(), (chunk+1)*CHUNK);
+		for(int i=chunk*CHUNK;i<end;i++) {
+			pairs.robotPose(i, m, 0);
+			pairs.trackerPose(i, n, 0);
+			qr.add(m, 0, n, 0);
+		}
+		return qr;
+	}
+
+	/**
+	 * factorizes the blocks from..to-1
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final PosePairSource pairs;
+		private final IncrementalQR[] blocks;
+		private final int from;
+		private final int to;
+
+		ChunkTask(PosePairSource pairs, IncrementalQR[] blocks, int from, int to) {
+			this.pairs = pairs;
+			this.blocks = blocks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from>1) {
+				int middle = (from+to)>>>1;
+				invokeAll(new ChunkTask(pairs, blocks, from, middle), new ChunkTask(pairs, blocks, middle, to));
+				return;
+			}
+			blocks[from] = factorizeChunk(pairs, from);
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package robprakt;
 
+import java.nio.file.Path;
+
+import robCalibration.cache.CalibrationCache;
+import robCalibration.live.PoseReceiver;
+
 public class Constants {
 	
 	/**
@@ -11,6 +16,25 @@ public class Constants {
 	 * height of window
 	 */
 	final static public int mainFrameHeight = 600;
+	
+	/**
+	 * local endpoints of the live calibration, robot poses and tracker samples
+	 */
+	final static public PoseReceiver.Transport liveTransport = PoseReceiver.Transport.UDP;
+	final static public int liveRobotPort = 30001;
+	final static public int liveTrackerPort = 30002;
+	
+	/**
+	 * number of live estimates shown per second
+	 */
+	final static public double livePublishRate = 2;
+	
+	/**
+	 * calibration results kept on disk, largest total size in bytes and days since the last use
+	 */
+	final static public Path cacheDirectory = CalibrationCache.DEFAULT_DIRECTORY;
+	final static public long cacheSize = 64L<<20;
+	final static public int cacheDays = 30;
 		
 	public static final double[] convertPoseDataToDoubleArray(String data, int index) {
 		String[] dataStringArray = data.split(" ");
@@ -1,4 +1,7 @@
 package robprakt;
+import java.util.Arrays;
+
+import robCalibration.batch.BatchCalibration;
 import robprakt.graphics.MainFrame;
 
 /**
@@ -6,7 +9,14 @@ import robprakt.graphics.MainFrame;
  */
 public class Main {	
 	
+	/**
+	 * Opens the main window, or calibrates recorded sessions without a window when started with --batch
+	 * @param args none for the GUI, --batch &lt;root directory&gt; &lt;output.jsonl&gt; [--threads n] [--cache directory | --no-cache] [--metrics] for the batch mode
+	 */
 	public static void main(String[] args) {
+		if(args.length>0 && args[0].equals("--batch")) {
+			System.exit(BatchCalibration.runCommandLine(Arrays.copyOfRange(args, 1, args.length)));
+		}
 		new MainFrame("StyroCutRobot Setup Manager");
 	}
 
@@ -10,22 +10,37 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
 import org.apache.commons.math3.linear.RealMatrix;
 
+import robCalibration.DegeneracyMonitor;
+import robCalibration.LevenbergMarquardtRefinement;
+import robCalibration.ProgressListener;
 import robCalibration.QR24;
 import robCalibration.TestDataGenerator;
+import robCalibration.cache.CacheKey;
+import robCalibration.cache.CachedCalibration;
+import robCalibration.cache.CalibrationCache;
+import robCalibration.cache.ContentDigest;
+import robCalibration.io.PoseLog;
+import robCalibration.io.PoseLogFormat;
+import robCalibration.io.PoseLogReader;
+import robCalibration.io.ReportWriter;
+import robCalibration.live.LiveEstimate;
 import robprakt.Constants;
 
 public class CalibrationMenu extends JPanel{
@@ -35,6 +50,11 @@ public class CalibrationMenu extends JPanel{
 	 */
 	private QR24 calibration;
 	
+	/**
+	 * controller running the live calibration
+	 */
+	private Controller controller;
+	
 	/**
 	 * Button for setting new value for number of measurements [QR24]
 	 */
@@ -47,13 +67,53 @@ public class CalibrationMenu extends JPanel{
 	
 	private JFileChooser fileChooser;
 	
-	private List<String> robotMatrices = new ArrayList<String>();
-	private List<String> trackingMatrices = new ArrayList<String>();
+	private PoseLog robotMatrices = new PoseLog(1);
+	private PoseLog trackingMatrices = new PoseLog(1);
+	
+	/**
+	 * digests of the logs taken when they were loaded, the cache key of their calibration; null if unknown
+	 */
+	private ContentDigest robotDigest, trackingDigest;
+	
+	/**
+	 * calibration results of earlier runs, null if the cache directory isn't usable
+	 */
+	private CalibrationCache cache;
+	
+	/**
+	 * background tasks loading the files and calibrating, a new task of the same kind cancels the running one
+	 */
+	private SwingWorker<PoseLog, Progress> robotLoader, trackingLoader;
+	private SwingWorker<CachedCalibration, Progress> calibrationWorker;
+	
+	/**
+	 * progress of the running task and button cancelling all tasks
+	 */
+	private JProgressBar progressBar;
+	private JButton btnCancel;
+	
+	/**
+	 * button starting and stopping the live calibration, optionally fed by the simulator
+	 */
+	private JButton btnLive;
+	private JCheckBox chkSimulate;
+	
+	/**
+	 * refine the linear calibration by a Levenberg-Marquardt iteration on the rotations and translations
+	 */
+	private JCheckBox chkRefine;
 	private JTextPane trackerPane, robotPane;
 	
 	
-	public CalibrationMenu(QR24 cal) {
+	public CalibrationMenu(QR24 cal, Controller controller) {
 		this.calibration = cal;
+		this.controller = controller;
+		try {
+			cache = new CalibrationCache(Constants.cacheDirectory).setMaxBytes(Constants.cacheSize)
+					.setMaxAge(Duration.ofDays(Constants.cacheDays));
+		} catch (IOException e) {
+			System.out.println("[CalibrationCache] not available: "+e);
+		}
 		
 		//#########################
 		//########COMPONENTS#######
@@ -136,10 +196,55 @@ public class CalibrationMenu extends JPanel{
 		selectTrackingData.setPreferredSize(btnCalDim);
 		selectTrackingData.setFont(new Font("Arial", Font.PLAIN, 15));
 		
+		GridBagConstraints refineGB = new GridBagConstraints();
+		refineGB.gridx = 6;
+		refineGB.gridy = 0;
+		
+		chkRefine = new JCheckBox("Refine (nonlinear)");
+		chkRefine.setSelected(true);
+		
+		//progress of the background tasks
+		GridBagConstraints progressGB = new GridBagConstraints();
+		progressGB.gridx = 1;
+		progressGB.gridy = 0;
+		progressGB.insets = insets;
+		
+		progressBar = new JProgressBar(0, 1000);
+		progressBar.setStringPainted(true);
+		progressBar.setString("");
+		progressBar.setPreferredSize(new Dimension(Constants.mainFrameWidth/3,Constants.mainFrameHeight/20));
+		
+		GridBagConstraints cancelGB = new GridBagConstraints();
+		cancelGB.gridx = 2;
+		cancelGB.gridy = 0;
+		cancelGB.insets = insets;
+		
+		btnCancel = new JButton("Cancel");
+		btnCancel.setFont(new Font("Arial", Font.PLAIN, 15));
+		
+		GridBagConstraints liveGB = new GridBagConstraints();
+		liveGB.gridx = 3;
+		liveGB.gridy = 0;
+		liveGB.insets = insets;
+		
+		btnLive = new JButton("START LIVE");
+		btnLive.setFont(new Font("Arial", Font.PLAIN, 15));
+		
+		GridBagConstraints simulateGB = new GridBagConstraints();
+		simulateGB.gridx = 4;
+		simulateGB.gridy = 0;
+		
+		chkSimulate = new JCheckBox("Simulator");
+		
 		//adding buttons to window
 		row1.add(selectTrackingData,selTrackGB);
 		row1.add(selectRobotData,selRobGB);
+		row1.add(chkRefine,refineGB);
 		row3.add(btnCalR1,btnCalGBS1);
+		row3.add(progressBar,progressGB);
+		row3.add(btnCancel,cancelGB);
+		row3.add(btnLive,liveGB);
+		row3.add(chkSimulate,simulateGB);
 				
 		manageListeners();
 		
@@ -157,14 +262,16 @@ public class CalibrationMenu extends JPanel{
 				
 				int choice = fileChooser.showOpenDialog(null);
 				if(choice == JFileChooser.APPROVE_OPTION) {
-					try {
-						String fileName = fileChooser.getSelectedFile().getName();
-						selectRobotData.setText("<html><center>Select Robot Data File<br><b>CURRENT File:<br>"+fileName+"</b></center></html>");
-						robotMatrices = Files.readAllLines(fileChooser.getSelectedFile().toPath());
+					File file = fileChooser.getSelectedFile();
+					cancel(robotLoader);
+					// the running calibration uses the old file
+					cancel(calibrationWorker);
+					robotLoader = load(file, PoseLogFormat.ROBOT, (log, digest) -> {
+						robotMatrices = log;
+						robotDigest = digest;
+						selectRobotData.setText("<html><center>Select Robot Data File<br><b>CURRENT File:<br>"+file.getName()+"</b></center></html>");
 						System.out.println("Matrizen vom Roboter geladen");
-					}catch (IOException er) {
-						er.printStackTrace();
-					}
+					});
 				}else {
 				   System.err.println("No File Chosen!");
 				   return;
@@ -179,14 +286,16 @@ public class CalibrationMenu extends JPanel{
 				
 				int choice = fileChooser.showOpenDialog(null);
 				if(choice == JFileChooser.APPROVE_OPTION) {
-					try {
-						String fileName = fileChooser.getSelectedFile().getName();
-						selectTrackingData.setText("<html><center>Select Tracking Data File<br><b>CURRENT File:<br>"+fileName+"</b></center></html>");
-						trackingMatrices = Files.readAllLines(fileChooser.getSelectedFile().toPath());
+					File file = fileChooser.getSelectedFile();
+					cancel(trackingLoader);
+					// the running calibration uses the old file
+					cancel(calibrationWorker);
+					trackingLoader = load(file, PoseLogFormat.TRACKING, (log, digest) -> {
+						trackingMatrices = log;
+						trackingDigest = digest;
+						selectTrackingData.setText("<html><center>Select Tracking Data File<br><b>CURRENT File:<br>"+file.getName()+"</b></center></html>");
 						System.out.println("Matrizen vom Trackingsystem geladen");
-					}catch (IOException er) {
-						er.printStackTrace();
-					}
+					});
 				}else {
 				   System.err.println("No File Chosen!");
 				   return;
@@ -203,18 +312,8 @@ public class CalibrationMenu extends JPanel{
 					System.out.println("Zuerst Bitte Dateien mit Werten Laden!");
 					return;
 				}else {
-					try {
-						calibration.genMatrices(robotMatrices, trackingMatrices);
-						RealMatrix[] XY = calibration.calibrate();
-						System.out.println("Effector to Marker: ");
-						calibration.printTable(XY[0]);
-						System.out.println("Robot to Tracking: ");
-						calibration.printTable(XY[1]);
-						robotPane.setText(matToString(XY[0]));
-						trackerPane.setText(matToString(XY[1]));
-					} catch (Exception e1) {
-						e1.printStackTrace();
-					}
+					cancel(calibrationWorker);
+					calibrationWorker = calibrate(robotMatrices, trackingMatrices, chkRefine.isSelected());
 				}
 			}
 		};
@@ -222,23 +321,285 @@ public class CalibrationMenu extends JPanel{
 		btnCalR1.addActionListener(calibrationListener);
 		selectRobotData.addActionListener(robotListener);
 		selectTrackingData.addActionListener(trackingListener);
+		btnCancel.addActionListener(e -> {
+			cancel(robotLoader);
+			cancel(trackingLoader);
+			cancel(calibrationWorker);
+		});
+		btnLive.addActionListener(e -> {
+			if(controller.isLiveCalibrationRunning()) {
+				controller.stopLiveCalibration();
+				btnLive.setText("START LIVE");
+				showStatus("Live calibration stopped");
+				return;
+			}
+			try {
+				controller.startLiveCalibration(chkSimulate.isSelected());
+				btnLive.setText("STOP LIVE");
+				showStatus("Live calibration waiting for poses");
+			} catch (IOException er) {
+				er.printStackTrace();
+				showStatus("Live calibration failed: "+er.getMessage());
+			}
+		});
 	}
 	
-	private String matToString(RealMatrix m) {
-		double[][] data = m.getData();
-		DecimalFormat df = new DecimalFormat("0.####");
-		DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance();
-		dfs.setDecimalSeparator('.');
-		df.setDecimalFormatSymbols(dfs);
-		String s = "";
-		for (int row = 0; row < data.length; row++) {
-			for (int col = 0; col < data[row].length; col++) {
-				String val = df.format(data[row][col]);
-				s+=val+" ";
+	/**
+	 * Shows an estimate of the live calibration
+	 * @param estimate current estimate
+	 */
+	public void showLiveEstimate(LiveEstimate estimate) {
+		if(!controller.isLiveCalibrationRunning()) {
+			// published before the calibration was stopped
+			return;
+		}
+		robotPane.setText(matToString(estimate.getX()));
+		trackerPane.setText(matToString(estimate.getY()));
+		showStatus("Live: "+estimate.getMeasurements()+" measurements, "+estimate.getDropped()+" dropped, "
+				+estimate.getOutOfOrder()+" out of order, "+estimate.getDegeneracy().getMessage());
+	}
+	
+	/**
+	 * Parses a log in the background. If there is a cache, the log is hashed before it is parsed;
+	 * the digest is dropped if the log was modified in the meantime.
+	 * @param file log file
+	 * @param format line format of the file
+	 * @param onLoaded called on the EDT with the complete log and its digest (null if unknown),
+	 *        not called if the task fails or is cancelled
+	 * @return started task
+	 */
+	private SwingWorker<PoseLog, Progress> load(File file, PoseLogFormat format, BiConsumer<PoseLog, ContentDigest> onLoaded) {
+		SwingWorker<PoseLog, Progress> worker = new SwingWorker<PoseLog, Progress>() {
+
+			private ContentDigest digest;
+
+			@Override
+			protected PoseLog doInBackground() throws Exception {
+				ContentDigest content = null;
+				if(cache!=null) {
+					try {
+						content = ContentDigest.of(file.toPath());
+					} catch (IOException e) {
+						System.out.println("[CalibrationCache] "+e);
+					}
+				}
+				PoseLogReader reader = new PoseLogReader()
+						.setProgressListener((phase, done, total) -> publish(new Progress(file.getName(), phase, done, total)));
+				PoseLog log = reader.readAll(file.toPath(), format);
+				if(content!=null && !content.isUnchanged(file.toPath())) {
+					// the records may belong to either version of the file, they aren't cached
+					System.out.println("[CalibrationCache] "+file.getName()+" was modified while it was loaded");
+					content = null;
+				}
+				digest = content;
+				return log;
+			}
+
+			@Override
+			protected void process(List<Progress> chunks) {
+				if(!isCancelled()) {
+					showProgress(chunks.get(chunks.size()-1));
+				}
 			}
-			s+="\n";
+
+			@Override
+			protected void done() {
+				if(isCancelled()) {
+					return;
+				}
+				try {
+					onLoaded.accept(get(), digest);
+					showStatus(file.getName()+" loaded");
+				} catch (ExecutionException | InterruptedException e) {
+					showError(file.getName(), e);
+				}
+			}
+		};
+		showStatus("Loading "+file.getName());
+		worker.execute();
+		return worker;
+	}
+	
+	/**
+	 * Creates the measurement pairs and calibrates in the background with its own calibration object,
+	 * the measurements of {@link #calibration} are only replaced when the calibration is complete.
+	 * The {@link #cache} is checked first, a hit is shown right away and skips the calibration; the measurement
+	 * pairs are created afterwards, so the measurements of {@link #calibration} still match the shown X and Y.
+	 * The key is built from the digests taken when the logs were loaded, so it belongs to the records.
+	 * @param robot records of the robot log
+	 * @param tracking records of the tracking log
+	 * @param refine true to refine the linear result with a {@link LevenbergMarquardtRefinement}
+	 * @return started task
+	 */
+	private SwingWorker<CachedCalibration, Progress> calibrate(PoseLog robot, PoseLog tracking, boolean refine) {
+		// digests of the records, for the cache key
+		ContentDigest robotContent = robotDigest;
+		ContentDigest trackingContent = trackingDigest;
+		SwingWorker<CachedCalibration, Progress> worker = new SwingWorker<CachedCalibration, Progress>() {
+			
+			private final QR24 run = new QR24();
+			private volatile boolean hit;
+
+			@Override
+			protected CachedCalibration doInBackground() throws Exception {
+				LevenbergMarquardtRefinement refinement = new LevenbergMarquardtRefinement();
+				String options = refine ? "QR24 + "+refinement : "QR24";
+				run.setProgressListener((phase, done, total) -> publish(new Progress(null, phase, done, total)));
+				CacheKey key = null;
+				if(cache!=null && robotContent!=null && trackingContent!=null) {
+					key = CacheKey.of(robotContent, trackingContent, options);
+					try {
+						CachedCalibration cached = cache.get(key);
+						if(cached!=null) {
+							hit = true;
+							SwingUtilities.invokeLater(() -> {
+								if(!isCancelled()) {
+									showResult(cached, true);
+								}
+							});
+							// the measurements are replaced on a hit as well, they have to match X and Y
+							run.genMatrices(robot, tracking);
+							return cached;
+						}
+					} catch (IOException e) {
+						System.out.println("[CalibrationCache] "+e);
+						key = null;
+					}
+				}
+				// a poor capture fails with the diagnostic before the solve
+				run.setDegeneracyMonitor(new DegeneracyMonitor());
+				run.genMatrices(robot, tracking);
+				RealMatrix[] XY = run.calibrate();
+				if(refine) {
+					XY = run.refine(XY, refinement);
+				}
+				CachedCalibration result = new CachedCalibration(XY[0], XY[1], run.evaluateResiduals(XY[0], XY[1]));
+				if(key!=null) {
+					try {
+						cache.put(key, result);
+					} catch (IOException e) {
+						System.out.println("[CalibrationCache] "+e);
+					}
+				}
+				return result;
+			}
+
+			@Override
+			protected void process(List<Progress> chunks) {
+				if(!isCancelled()) {
+					showProgress(chunks.get(chunks.size()-1));
+				}
+			}
+
+			@Override
+			protected void done() {
+				if(isCancelled()) {
+					if(hit) {
+						// the cached X and Y may be shown already, the old measurements don't belong to them
+						calibration.poseMatrices.clear();
+						calibration.markerPoseMatrices.clear();
+					}
+					return;
+				}
+				try {
+					CachedCalibration result = get();
+					calibration.poseMatrices.clear();
+					calibration.poseMatrices.addAll(run.poseMatrices);
+					calibration.markerPoseMatrices.clear();
+					calibration.markerPoseMatrices.addAll(run.markerPoseMatrices);
+					if(!hit) {
+						showResult(result, false);
+					}
+				} catch (ExecutionException | InterruptedException e) {
+					showError("Calibration", e);
+				}
+			}
+		};
+		showStatus("Calibrating");
+		worker.execute();
+		return worker;
+	}
+
+	/**
+	 * Prints X and Y and shows them with the statistics of the residuals
+	 * @param result result of a calibration
+	 * @param cached true if the result was read from the cache
+	 */
+	private void showResult(CachedCalibration result, boolean cached) {
+		System.out.println("Effector to Marker: ");
+		calibration.printTable(result.getX());
+		System.out.println("Robot to Tracking: ");
+		calibration.printTable(result.getY());
+		robotPane.setText(matToString(result.getX()));
+		trackerPane.setText(matToString(result.getY()));
+		showStatus(String.format(Locale.ROOT, "Calibration %s, residuals RMS %.3f mm / %.3f deg, max %.3f mm / %.3f deg",
+				cached ? "from cache" : "finished", result.getTranslation().getRms(), result.getRotation().getRms(),
+				result.getTranslation().getMax(), result.getRotation().getMax()));
+	}
+	
+	/**
+	 * Cancels a background task, its result is dropped
+	 * @param worker task to cancel, may be null or already finished
+	 */
+	private void cancel(SwingWorker<?, ?> worker) {
+		if(worker!=null && !worker.isDone()) {
+			worker.cancel(true);
+			showStatus("Cancelled");
 		}
-		return s;
+	}
+	
+	private void showProgress(Progress progress) {
+		switch(progress.phase) {
+		case READING:
+			progressBar.setIndeterminate(false);
+			progressBar.setValue((int) (progress.done*1000/Math.max(1, progress.total)));
+			progressBar.setString(String.format(Locale.ROOT, "Parsing %s: %.1f / %.1f MB", progress.name,
+					progress.done/1e6, progress.total/1e6));
+			break;
+		case ASSEMBLING:
+			progressBar.setIndeterminate(false);
+			progressBar.setValue((int) (progress.done*1000/Math.max(1, progress.total)));
+			progressBar.setString("Assembling measurements: "+progress.done+" / "+progress.total);
+			break;
+		case SOLVING:
+			progressBar.setIndeterminate(progress.done<progress.total);
+			progressBar.setValue(progress.done<progress.total ? 0 : 1000);
+			progressBar.setString("Solving linear equation system");
+			break;
+		}
+	}
+	
+	private void showStatus(String status) {
+		progressBar.setIndeterminate(false);
+		progressBar.setValue(0);
+		progressBar.setString(status);
+	}
+	
+	private void showError(String task, Exception e) {
+		Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+		cause.printStackTrace();
+		showStatus(task+" failed: "+cause.getMessage());
+	}
+	
+	/**
+	 * progress published by a background task
+	 */
+	private static class Progress {
+		final String name;
+		final ProgressListener.Phase phase;
+		final long done;
+		final long total;
+		
+		Progress(String name, ProgressListener.Phase phase, long done, long total) {
+			this.name = name;
+			this.phase = phase;
+			this.done = done;
+			this.total = total;
+		}
+	}
+	
+	private String matToString(RealMatrix m) {
+		return ReportWriter.toText(m, 4);
 	}
 	
 }
@@ -1,11 +1,73 @@
 package robprakt.graphics;
 
+import java.io.IOException;
 
+import javax.swing.SwingUtilities;
+
+import robCalibration.TestDataGenerator;
+import robCalibration.live.LiveCalibration;
+import robCalibration.live.PoseStreamSimulator;
+import robprakt.Constants;
+
+/**
+ * Connects the user interface with the robot and the tracking system.
+ */
 public class Controller {
 	
 	private MainFrame frame;
 	
+	/**
+	 * running live calibration and simulator, null if stopped
+	 */
+	private LiveCalibration live;
+	private PoseStreamSimulator simulator;
+	
 	public Controller(MainFrame frame) {
 		this.frame = frame;	
 	}
+	
+	/**
+	 * Starts receiving robot poses and tracker samples on the endpoints given in {@link Constants},
+	 * the estimates are shown in the frame. A running live calibration is stopped first.
+	 * @param simulate true to feed the endpoints with a local simulator instead of the real hardware
+	 * @throws IOException Error when an endpoint can't be opened
+	 */
+	public synchronized void startLiveCalibration(boolean simulate) throws IOException {
+		stopLiveCalibration();
+		LiveCalibration calibration = new LiveCalibration(estimate -> SwingUtilities.invokeLater(() -> frame.showLiveEstimate(estimate)))
+				.setPublishRate(Constants.livePublishRate);
+		calibration.start(Constants.liveTransport, Constants.liveRobotPort, Constants.liveTrackerPort);
+		live = calibration;
+		if(simulate) {
+			TestDataGenerator generator = new TestDataGenerator(System.nanoTime());
+			generator.setNoise(0.1, 0.0005);
+			simulator = new PoseStreamSimulator(generator);
+			simulator.start(Constants.liveTransport, Constants.liveRobotPort, Constants.liveTrackerPort);
+		}
+	}
+	
+	/**
+	 * Stops the live calibration and the simulator
+	 */
+	public synchronized void stopLiveCalibration() {
+		if(simulator!=null) {
+			simulator.close();
+			simulator = null;
+		}
+		if(live!=null) {
+			try {
+				live.close();
+			} catch (IOException e) {
+				System.out.println("[Controller] "+e);
+			}
+			live = null;
+		}
+	}
+	
+	/**
+	 * @return true if the live calibration is running
+	 */
+	public synchronized boolean isLiveCalibrationRunning() {
+		return live!=null;
+	}
 }
@@ -7,6 +7,7 @@ import javax.swing.JFrame;
 import javax.swing.JTabbedPane;
 
 import robCalibration.QR24;
+import robCalibration.live.LiveEstimate;
 import robprakt.Constants;
 
 public class MainFrame extends JFrame {
@@ -25,6 +26,11 @@ public class MainFrame extends JFrame {
 	 * calibration contains functions for calibrating robots
 	 */
 	private QR24 calibration;
+	
+	/**
+	 * controller for the robot and the tracking system
+	 */
+	private Controller controller;
 		
 	/**
 	 * Create the main frame.
@@ -43,6 +49,7 @@ public class MainFrame extends JFrame {
 		
 		//create calibration object
 		calibration = new QR24();
+		controller = new Controller(this);
 		
 		// tabbedPane as basic pane for navigating between menus
 		tabbedContentPane = new JTabbedPane();
@@ -50,7 +57,7 @@ public class MainFrame extends JFrame {
 		setContentPane(tabbedContentPane);
 		
 		// creating container hierarchy for menus
-		calibrationMenu = new CalibrationMenu(calibration);
+		calibrationMenu = new CalibrationMenu(calibration, controller);
 		
 		// adding menus to tabbedPane
 		tabbedContentPane.add("Calibration",calibrationMenu);
@@ -58,4 +65,12 @@ public class MainFrame extends JFrame {
 		revalidate();
 		
 	}
+	
+	/**
+	 * Shows an estimate of the live calibration, has to be called on the EDT
+	 * @param estimate current estimate
+	 */
+	public void showLiveEstimate(LiveEstimate estimate) {
+		calibrationMenu.showLiveEstimate(estimate);
+	}
 }
@@ -0,0 +1,74 @@
+package robCalibration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The rank-12 downdates of the leave-one-out cross-validation have to predict every measurement like a calibration
+ * of the other ones.
+ */
+public class CrossValidationTest {
+
+	private static final int MEASUREMENTS = 40;
+	private static final int OUTLIER = 7;
+
+	/**
+	 * noisy measurements, the tracker translation of one of them is off by 20 mm
+	 */
+	private static QR24 generate() {
+		TestDataGenerator generator = new TestDataGenerator(3);
+		generator.setNoise(0.3, 0.003);
+		QR24 calibration = new QR24();
+		generator.generate(calibration, MEASUREMENTS);
+		RealMatrix outlier = calibration.markerPoseMatrices.get(OUTLIER).copy();
+		outlier.addToEntry(0, 3, 20);
+		calibration.markerPoseMatrices.set(OUTLIER, outlier);
+		return calibration;
+	}
+
+	@Test
+	public void leaveOneOutMatchesRefitWithoutTheMeasurement() throws Exception {
+		QR24 calibration = generate();
+		CrossValidationResult result = new CrossValidation().run(PosePairs.of(calibration.poseMatrices, calibration.markerPoseMatrices));
+
+		assertEquals(MEASUREMENTS, result.getSize());
+		for(int i=0;i<MEASUREMENTS;i++) {
+			ReducedSolver solver = new ReducedSolver();
+			for(int j=0;j<MEASUREMENTS;j++) {
+				if(j!=i) {
+					solver.add(calibration.poseMatrices.get(j), calibration.markerPoseMatrices.get(j));
+				}
+			}
+			RealMatrix[] XY = calibration.toTransforms(solver.solve());
+			RealMatrix left = calibration.poseMatrices.get(i).multiply(XY[0]);
+			RealMatrix right = XY[1].multiply(calibration.markerPoseMatrices.get(i));
+			assertEquals(Errors.translation(left, right), result.getTranslation(i), 1e-9, "translation of "+i);
+			assertEquals(Math.toDegrees(Errors.rotation(left, right)), result.getRotation(i), 1e-9, "rotation of "+i);
+		}
+	}
+
+	@Test
+	public void outlierHasTheLargestPredictionError() throws Exception {
+		QR24 calibration = generate();
+		CrossValidationResult result = new CrossValidation().run(PosePairs.of(calibration.poseMatrices, calibration.markerPoseMatrices));
+
+		assertArrayEquals(new int[] {OUTLIER}, result.getWorst(1));
+	}
+
+	@Test
+	public void sequentialAndParallelCrossValidationAreEqual() throws Exception {
+		QR24 calibration = generate();
+		PosePairs pairs = PosePairs.of(calibration.poseMatrices, calibration.markerPoseMatrices);
+
+		CrossValidationResult parallel = new CrossValidation().run(pairs);
+		CrossValidationResult sequential = new CrossValidation().setPool(null).run(pairs);
+
+		for(int i=0;i<MEASUREMENTS;i++) {
+			assertEquals(sequential.getTranslation(i), parallel.getTranslation(i));
+			assertEquals(sequential.getRotation(i), parallel.getRotation(i));
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package robCalibration;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Distances between calibration results and the true transformations of the tests.
+ */
+final class Errors {
+
+	private Errors() {
+	}
+
+	/**
+	 * @return distance of the translations in mm
+	 */
+	static double translation(RealMatrix a, RealMatrix b) {
+		return new RigidTransform(a).translationDistance(new RigidTransform(b));
+	}
+
+	/**
+	 * @return angle between the rotations in radians
+	 */
+	static double rotation(RealMatrix a, RealMatrix b) {
+		return new RigidTransform(a).rotationAngle(new RigidTransform(b));
+	}
+
+	/**
+	 * @return largest difference of the entries of X and of Y
+	 */
+	static double difference(RealMatrix[] a, RealMatrix[] b) {
+		return Math.max(a[0].subtract(b[0]).getNorm(), a[1].subtract(b[1]).getNorm());
+	}
+}
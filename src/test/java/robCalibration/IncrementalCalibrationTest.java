@@ -0,0 +1,108 @@
+package robCalibration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Excluding measurements by Givens downdates has to give the same solution as a calibration of the remaining ones.
+ */
+public class IncrementalCalibrationTest {
+
+	private static final int MEASUREMENTS = 300;
+
+	private static QR24 generate() {
+		TestDataGenerator generator = new TestDataGenerator(7);
+		generator.setNoise(0.5, 0.005);
+		QR24 calibration = new QR24();
+		generator.generate(calibration, MEASUREMENTS);
+		return calibration;
+	}
+
+	@Test
+	public void excludedMeasurementsMatchRefitWithoutThem() throws Exception {
+		QR24 calibration = generate();
+		IncrementalCalibration incremental = calibration.calibrateIncremental();
+		QR24 remaining = new QR24();
+		for(int i=0;i<MEASUREMENTS;i++) {
+			if(i%3==0) {
+				incremental.setExcluded(i, true);
+			}else {
+				remaining.poseMatrices.add(calibration.poseMatrices.get(i));
+				remaining.markerPoseMatrices.add(calibration.markerPoseMatrices.get(i));
+			}
+		}
+
+		assertEquals(remaining.poseMatrices.size(), incremental.getIncluded());
+		double difference = Errors.difference(calibration.toTransforms(incremental.solve()), remaining.calibrateReduced());
+		assertTrue(difference<1e-9, "difference "+difference);
+	}
+
+	@Test
+	public void includedAgainMatchesFullCalibration() throws Exception {
+		QR24 calibration = generate();
+		IncrementalCalibration incremental = calibration.calibrateIncremental();
+		RealMatrix[] full = calibration.calibrateReduced();
+		for(int i=0;i<MEASUREMENTS/2;i++) {
+			incremental.setExcluded(i, true);
+		}
+		for(int i=0;i<MEASUREMENTS/2;i++) {
+			incremental.setExcluded(i, false);
+		}
+
+		double difference = Errors.difference(calibration.toTransforms(incremental.solve()), full);
+		assertTrue(difference<1e-9, "difference "+difference);
+	}
+
+	@Test
+	public void residualNormMatchesExplicitResidual() throws Exception {
+		QR24 calibration = generate();
+		IncrementalQR qr = new IncrementalQR();
+		for(int i=0;i<MEASUREMENTS;i++) {
+			qr.add(calibration.poseMatrices.get(i), calibration.markerPoseMatrices.get(i));
+		}
+		RealVector w = qr.solve();
+
+		double[] a = new double[BlockAssembler.ROWS*BlockAssembler.COLUMNS];
+		double[] b = new double[BlockAssembler.ROWS];
+		double[] m = new double[BlockAssembler.POSE_SIZE];
+		double[] n = new double[BlockAssembler.POSE_SIZE];
+		double squares = 0;
+		for(int i=0;i<MEASUREMENTS;i++) {
+			BlockAssembler.copyPose(calibration.poseMatrices.get(i), m, 0);
+			BlockAssembler.copyPose(calibration.markerPoseMatrices.get(i), n, 0);
+			BlockAssembler.assembleA(m, 0, n, 0, a, 0);
+			BlockAssembler.assembleB(m, 0, b, 0);
+			for(int row=0;row<BlockAssembler.ROWS;row++) {
+				double residual = -b[row];
+				for(int col=0;col<BlockAssembler.COLUMNS;col++) {
+					residual += a[row*BlockAssembler.COLUMNS+col]*w.getEntry(col);
+				}
+				squares += residual*residual;
+			}
+		}
+
+		assertEquals(Math.sqrt(squares), qr.getResidualNorm(), 1e-9*Math.sqrt(squares));
+	}
+
+	@Test
+	public void tooFewIncludedMeasurementsFail() throws Exception {
+		QR24 calibration = generate();
+		IncrementalCalibration incremental = new IncrementalCalibration();
+		for(int i=0;i<3;i++) {
+			incremental.add(calibration.poseMatrices.get(i), calibration.markerPoseMatrices.get(i));
+		}
+		incremental.setExcluded(1, true);
+		incremental.setExcluded(2, true);
+
+		assertThrows(Exception.class, incremental::solve);
+		incremental.setExcluded(1, false);
+		incremental.setExcluded(2, false);
+		assertEquals(3, incremental.getIncluded());
+		incremental.solve();
+	}
+}
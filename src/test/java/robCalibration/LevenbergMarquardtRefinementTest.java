@@ -0,0 +1,53 @@
+package robCalibration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The refinement has to improve the linear solution on noisy data and must not depend on the pool.
+ */
+public class LevenbergMarquardtRefinementTest {
+
+	private static final double TRANSLATION_NOISE = 0.5;
+	private static final double ROTATION_NOISE = 0.005;
+
+	@Test
+	public void refinementIsCloserToTheTruthThanTheLinearSolution() throws Exception {
+		TestDataGenerator generator = new TestDataGenerator(7);
+		generator.setNoise(TRANSLATION_NOISE, ROTATION_NOISE);
+		QR24 calibration = new QR24();
+		generator.generate(calibration, 200);
+		RealMatrix[] linear = calibration.calibrateReduced();
+
+		RefinementResult result = new LevenbergMarquardtRefinement().setRotationWeight(TRANSLATION_NOISE/ROTATION_NOISE)
+				.run(PosePairs.of(calibration.poseMatrices, calibration.markerPoseMatrices), linear[0], linear[1]);
+
+		assertTrue(result.getFinalCost()<result.getInitialCost());
+		double linearError = Errors.translation(linear[0], generator.getX())+Errors.translation(linear[1], generator.getY());
+		double refinedError = Errors.translation(result.getX(), generator.getX())+Errors.translation(result.getY(), generator.getY());
+		assertTrue(refinedError<linearError/5, "refined "+refinedError+" mm, linear "+linearError+" mm");
+		double linearAngle = Errors.rotation(linear[0], generator.getX())+Errors.rotation(linear[1], generator.getY());
+		double refinedAngle = Errors.rotation(result.getX(), generator.getX())+Errors.rotation(result.getY(), generator.getY());
+		assertTrue(refinedAngle<linearAngle, "refined "+refinedAngle+" rad, linear "+linearAngle+" rad");
+	}
+
+	@Test
+	public void sequentialAndParallelRefinementAreEqual() throws Exception {
+		TestDataGenerator generator = new TestDataGenerator(3);
+		generator.setNoise(TRANSLATION_NOISE, ROTATION_NOISE);
+		QR24 calibration = new QR24();
+		generator.generate(calibration, 3000);
+		RealMatrix[] linear = calibration.calibrateReduced();
+		PosePairs pairs = PosePairs.of(calibration.poseMatrices, calibration.markerPoseMatrices);
+
+		RefinementResult parallel = new LevenbergMarquardtRefinement().run(pairs, linear[0], linear[1]);
+		RefinementResult sequential = new LevenbergMarquardtRefinement().setPool(null).run(pairs, linear[0], linear[1]);
+
+		assertEquals(sequential.getFinalCost(), parallel.getFinalCost());
+		assertEquals(sequential.getX(), parallel.getX());
+		assertEquals(sequential.getY(), parallel.getY());
+	}
+}
@@ -0,0 +1,126 @@
+package robCalibration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The recursive estimate has to equal the batch calibration of the pairs it covers, with a window after many
+ * downdates and refactorizations; a forgetting factor has to follow a drifting X.
+ */
+public class RecursiveCalibrationTest {
+
+	private static final int P = BlockAssembler.POSE_SIZE;
+
+	private static double[] robot;
+	private static double[] tracker;
+
+	private static void generate(int count) {
+		TestDataGenerator generator = new TestDataGenerator(5);
+		generator.setNoise(0.3, 0.003);
+		robot = new double[count*P];
+		tracker = new double[count*P];
+		generator.generate(count, robot, tracker);
+	}
+
+	/**
+	 * batch calibration of the pairs from..to-1
+	 */
+	private static RealMatrix[] batch(int from, int to) throws Exception {
+		QR24 calibration = new QR24();
+		for(int i=from;i<to;i++) {
+			calibration.poseMatrices.add(TestDataGenerator.toMatrix(robot, i*P));
+			calibration.markerPoseMatrices.add(TestDataGenerator.toMatrix(tracker, i*P));
+		}
+		return calibration.calibrateReduced();
+	}
+
+	private static RealMatrix[] estimate(RecursiveCalibration recursive) {
+		RecursiveEstimate estimate = recursive.getEstimate(0);
+		return new RealMatrix[] {estimate.getX(), estimate.getY()};
+	}
+
+	@Test
+	public void withoutForgettingMatchesBatchOfAllPairs() throws Exception {
+		generate(500);
+		RecursiveCalibration recursive = new RecursiveCalibration();
+		for(int i=0;i<500;i++) {
+			recursive.add(robot, i*P, tracker, i*P);
+		}
+
+		double difference = Errors.difference(estimate(recursive), batch(0, 500));
+		assertTrue(difference<1e-9, "difference "+difference);
+		assertEquals(500, recursive.getWeight());
+	}
+
+	@Test
+	public void windowMatchesBatchOfLastPairs() throws Exception {
+		int window = 100;
+		// more than REFACTORIZE_INTERVAL removals, the factor is rebuilt from the ring on the way
+		int count = RecursiveCalibration.REFACTORIZE_INTERVAL+window+350;
+		generate(count);
+		RecursiveCalibration recursive = new RecursiveCalibration().setWindow(window);
+		for(int i=0;i<count;i++) {
+			recursive.add(robot, i*P, tracker, i*P);
+		}
+
+		double difference = Errors.difference(estimate(recursive), batch(count-window, count));
+		assertTrue(difference<1e-9, "difference "+difference);
+		assertEquals(window, recursive.getWeight());
+	}
+
+	@Test
+	public void forgettingFollowsDriftingX() throws Exception {
+		int count = 2000;
+		double drift = 5.0/count;
+		Random random = new Random(3);
+		double[] x = new double[P];
+		double[] y = new double[P];
+		double[] m = new double[P];
+		TestDataGenerator.randomTransform(random, x, 0, 50);
+		TestDataGenerator.randomTransform(random, y, 0, 1000);
+		RigidTransform inverseY = new RigidTransform().invert(new RigidTransform(y, 0));
+		RigidTransform drifted = new RigidTransform();
+		RecursiveCalibration forgetting = new RecursiveCalibration().setForgetting(0.99);
+		RecursiveCalibration plain = new RecursiveCalibration();
+		double[] n = new double[P];
+		for(int i=0;i<count;i++) {
+			TestDataGenerator.randomTransform(random, m, 0, 500);
+			double[] xi = x.clone();
+			xi[3] += drift*i;
+			drifted.multiply(new RigidTransform(m, 0), new RigidTransform(xi, 0));
+			drifted.multiply(inverseY, drifted).get(n, 0);
+			forgetting.add(m, 0, n, 0);
+			plain.add(m, 0, n, 0);
+		}
+
+		double end = x[3]+drift*(count-1);
+		double forgettingError = Math.abs(forgetting.getEstimate(0).getX().getEntry(0, 3)-end);
+		double plainError = Math.abs(plain.getEstimate(0).getX().getEntry(0, 3)-end);
+		assertTrue(forgettingError<0.5, "forgetting is "+forgettingError+" mm off the end of the drift");
+		assertTrue(plainError>1, "all pairs are "+plainError+" mm off the end of the drift");
+		assertEquals(1/(1-0.99), forgetting.getWeight(), 1e-3);
+	}
+
+	@Test
+	public void listenerReceivesAnEstimatePerInterval() throws Exception {
+		generate(500);
+		List<RecursiveEstimate> estimates = new ArrayList<RecursiveEstimate>();
+		RecursiveCalibration recursive = new RecursiveCalibration().setInterval(50).setListener(estimates::add);
+		for(int i=0;i<500;i++) {
+			recursive.onPair(i*0.01, Arrays.copyOfRange(robot, i*P, i*P+P), Arrays.copyOfRange(tracker, i*P, i*P+P));
+		}
+
+		assertEquals(10, estimates.size());
+		assertEquals(500, estimates.get(9).getMeasurements());
+		assertThrows(IllegalStateException.class, () -> recursive.setWindow(10));
+	}
+}
@@ -0,0 +1,97 @@
+package robCalibration.solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.RealVector;
+import org.junit.jupiter.api.Test;
+
+import robCalibration.BlockAssembler;
+import robCalibration.PosePairs;
+import robCalibration.RigidTransform;
+import robCalibration.TestDataGenerator;
+
+/**
+ * All backends have to find the same solution of a well-conditioned system; the tall QR merges several blocks
+ * and has to give the same solution as the dense Householder QR.
+ */
+public class SolverBackendTest {
+
+	/**
+	 * more than two blocks of the tall QR
+	 */
+	private static final int MEASUREMENTS = 2*TallQrBackend.CHUNK+1000;
+
+	private static PosePairs generate(int count) {
+		TestDataGenerator generator = new TestDataGenerator(3);
+		generator.setNoise(0.3, 0.003);
+		double[] robot = new double[count*BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[count*BlockAssembler.POSE_SIZE];
+		generator.generate(count, robot, tracker);
+		return new PosePairs(robot, tracker, count);
+	}
+
+	/**
+	 * exact measurements whose robot poses all rotate about z, X and Y aren't determined
+	 */
+	private static PosePairs singleAxis(int count) {
+		Random random = new Random(1);
+		double[] x = new double[BlockAssembler.POSE_SIZE];
+		double[] y = new double[BlockAssembler.POSE_SIZE];
+		TestDataGenerator.randomTransform(random, x, 0, 100);
+		TestDataGenerator.randomTransform(random, y, 0, 500);
+		RigidTransform X = new RigidTransform(x, 0);
+		RigidTransform inverseY = new RigidTransform().invert(new RigidTransform(y, 0));
+		double[] robot = new double[count*BlockAssembler.POSE_SIZE];
+		double[] tracker = new double[count*BlockAssembler.POSE_SIZE];
+		for(int i=0;i<count;i++) {
+			double angle = random.nextDouble()*6;
+			double c = Math.cos(angle), s = Math.sin(angle);
+			RigidTransform M = new RigidTransform(new double[] {
+				c, -s, 0, random.nextDouble()*300,
+				s, c, 0, random.nextDouble()*300,
+				0, 0, 1, random.nextDouble()*300}, 0);
+			M.get(robot, i*BlockAssembler.POSE_SIZE);
+			new RigidTransform().multiply(inverseY, new RigidTransform().multiply(M, X)).get(tracker, i*BlockAssembler.POSE_SIZE);
+		}
+		return new PosePairs(robot, tracker, count);
+	}
+
+	@Test
+	public void backendsAgreeOnWellConditionedData() throws Exception {
+		PosePairs pairs = generate(MEASUREMENTS);
+		RealVector reference = new HouseholderQrBackend().solve(pairs).getSolution();
+		SolverBackend[] backends = {new NormalEquationBackend(), new TallQrBackend(), new SvdBackend(), new AutoBackend()};
+
+		for(SolverBackend backend : backends) {
+			SolverResult result = backend.solve(pairs);
+			double difference = result.getSolution().subtract(reference).getLInfNorm();
+			assertTrue(difference<1e-9, backend.getName()+": difference "+difference);
+			assertEquals(BlockAssembler.COLUMNS, result.getRank(), backend.getName());
+		}
+	}
+
+	@Test
+	public void tallQrIsIndependentOfThePool() throws Exception {
+		PosePairs pairs = generate(MEASUREMENTS);
+
+		double[] parallel = new TallQrBackend().solve(pairs).getSolution().toArray();
+		double[] sequential = new TallQrBackend().setPool(null).solve(pairs).getSolution().toArray();
+
+		assertArrayEquals(sequential, parallel);
+	}
+
+	@Test
+	public void singleRotationAxisIsRankDeficient() throws Exception {
+		PosePairs pairs = singleAxis(200);
+
+		assertThrows(Exception.class, () -> new NormalEquationBackend().solve(pairs));
+		assertThrows(Exception.class, () -> new TallQrBackend().solve(pairs));
+		assertTrue(new SvdBackend().solve(pairs).getRank()<BlockAssembler.COLUMNS);
+		assertTrue(new AutoBackend().solve(pairs).getRank()<BlockAssembler.COLUMNS);
+	}
+}